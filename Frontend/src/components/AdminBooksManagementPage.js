@@ -82,6 +82,7 @@ const realApi = {
       formData.append('file', file);
       return api.post('/books/bulk/csv', formData, { headers: { 'Content-Type': 'multipart/form-data' } });
     },
+    getImportJob: (id) => api.get(`/books/bulk/jobs/${id}`),
   },
 };
 
@@ -469,9 +470,19 @@ const AdminBooksManagementPage = () => {
                   setCsvUploading(true);
                   setCsvResult(null);
                   try {
-                    const { data } = await realApi.BookService.uploadCsv(file);
-                    setCsvResult(data);
-                    showSnackbar('CSV processed successfully', 'success');
+                    // The import runs in the background; poll the job until it finishes
+                    let { data: job } = await realApi.BookService.uploadCsv(file);
+                    setCsvResult(job);
+                    while (job.status === 'QUEUED' || job.status === 'RUNNING') {
+                      await new Promise((resolve) => setTimeout(resolve, 1000));
+                      ({ data: job } = await realApi.BookService.getImportJob(job.id));
+                      setCsvResult(job);
+                    }
+                    if (job.status === 'FAILED') {
+                      showSnackbar(job.message || 'CSV import failed', 'error');
+                    } else {
+                      showSnackbar('CSV processed successfully', 'success');
+                    }
                     fetchAllData();
                   } catch (err) {
                     console.error('CSV upload failed', err);
@@ -495,7 +506,9 @@ const AdminBooksManagementPage = () => {
           {csvUploading && (
             <Box sx={{ mb: 2 }}>
               <LinearProgress />
-              <Typography variant="body2" color="text.secondary">Uploading CSV...</Typography>
+              <Typography variant="body2" color="text.secondary">
+                {csvResult ? `Importing CSV... ${csvResult.rowsProcessed ?? 0} rows processed` : 'Uploading CSV...'}
+              </Typography>
             </Box>
           )}
           {csvResult && (
@@ -0,0 +1,21 @@
+package com.org.bookstore_backend.cache;
+
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+
+/**
+ * Delivers book cache invalidations to every application node, including this one.
+ * Implementations raise a {@link BookCacheInvalidationEvent} on each node.
+ */
+public interface BookCacheInvalidationBus {
+
+    /**
+     * Tells every node that the given book changed, or with a null ID that other catalog data (categories) changed.
+     * Must only be called after the change has been committed.
+     */
+    void broadcast(Long bookId);
+
+    /**
+     * @return true if the change was committed on this node, whose {@code BookCatalogEvent} listeners have seen it
+     */
+    boolean isLocal(BookCacheInvalidationEvent event);
+}
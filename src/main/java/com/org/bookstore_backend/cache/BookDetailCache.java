@@ -0,0 +1,99 @@
+package com.org.bookstore_backend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Per-node cache of book details for {@code GET /api/books/{id}}.
+ * <p>
+ * Bounded by the estimated size of the cached DTOs; Caffeine's W-TinyLFU admission keeps a burst of
+ * one-off reads (crawlers, deep links) from pushing out the books that are actually popular.
+ * Committed changes are broadcast through the {@link BookCacheInvalidationBus} so every node drops its
+ * copy; entries also expire after {@code books.detail-cache.max-age}, which bounds staleness if an
+ * invalidation message is ever lost.
+ * <p>
+ * Cached DTOs are shared between requests and must not be modified by callers.
+ */
+@Component
+public class BookDetailCache {
+
+    // Rough per-entry overhead: DTO header and fields, boxed id, cache node
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final Cache<Long, BookDTO> cache;
+    private final BookCacheInvalidationBus invalidationBus;
+
+    public BookDetailCache(BookCacheInvalidationBus invalidationBus,
+                           MeterRegistry meterRegistry,
+                           @Value("${books.detail-cache.max-weight-bytes:33554432}") long maxWeightBytes,
+                           @Value("${books.detail-cache.max-age:10m}") Duration maxAge) {
+        this.invalidationBus = invalidationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Long id, BookDTO book) -> estimateBytes(book))
+                .expireAfterWrite(maxAge)
+                .recordStats()
+                .build();
+        // books.detail.cache.gets{result=hit|miss}, books.detail.cache.evictions, ...
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "books.detail");
+    }
+
+    /**
+     * @return the cached book, or the result of {@code loader} which is cached unless it throws
+     */
+    public BookDTO get(Long id, Function<Long, BookDTO> loader) {
+        return cache.get(id, loader);
+    }
+
+    /**
+     * @param loader loads all the books that are not cached in one go; books it does not return are not found
+     * @return the books found, by id
+     */
+    public Map<Long, BookDTO> getAll(Iterable<Long> ids, Function<Set<? extends Long>, Map<Long, BookDTO>> loader) {
+        return cache.getAll(ids, loader);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogEvent(BookCatalogEvent event) {
+        invalidationBus.broadcast(event.getBookId());
+    }
+
+    @EventListener
+    public void onInvalidation(BookCacheInvalidationEvent event) {
+        if (event.getBookId() == null) {
+            return;
+        }
+        // Waits for an in-flight load of the same key, so a load that read the old row is dropped too
+        cache.invalidate(event.getBookId());
+    }
+
+    private static int estimateBytes(BookDTO book) {
+        long chars = length(book.getTitle()) + length(book.getDescription()) + length(book.getIsbn())
+                + length(book.getImageUrl()) + length(book.getGenre()) + length(book.getPublisherName());
+        if (book.getAuthorNames() != null) {
+            for (String author : book.getAuthorNames()) {
+                chars += length(author) + 32;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD_BYTES + 2 * chars);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
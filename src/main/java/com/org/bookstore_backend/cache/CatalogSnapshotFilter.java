@@ -0,0 +1,134 @@
+package com.org.bookstore_backend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Serves the public catalog endpoints from pre-serialized snapshots.
+ * <p>
+ * Every response carries the {@link CatalogVersion} as a strong ETag. A matching {@code If-None-Match}
+ * is answered with 304 before any controller, database or Jackson work. Otherwise the JSON bytes rendered
+ * for the same URL at the current version are written straight to the response; only the first request
+ * after a catalog change renders the response again.
+ * <p>
+ * Runs after Spring Security, so CORS headers and authentication have already been applied.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class CatalogSnapshotFilter extends OncePerRequestFilter {
+
+    private static final Set<String> SNAPSHOT_PATHS = Set.of("/api/books", "/api/books/genres", "/api/categories");
+
+    private final CatalogVersion catalogVersion;
+    private final Cache<String, Snapshot> snapshots;
+    private final int maxSnapshotBytes;
+
+    public CatalogSnapshotFilter(CatalogVersion catalogVersion,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${catalog.snapshots.max-weight-bytes:67108864}") long maxWeightBytes,
+                                 @Value("${catalog.snapshots.max-snapshot-bytes:8388608}") int maxSnapshotBytes) {
+        this.catalogVersion = catalogVersion;
+        this.maxSnapshotBytes = maxSnapshotBytes;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((String key, Snapshot snapshot) -> key.length() * 2 + snapshot.body().length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "catalog.snapshots");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || !SNAPSHOT_PATHS.contains(pathOf(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long version = catalogVersion.current();
+        String etag = catalogVersion.etag(version);
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String key = keyOf(request);
+        Snapshot snapshot = snapshots.getIfPresent(key);
+        if (snapshot != null && snapshot.version() == version) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            response.setContentType(snapshot.contentType());
+            response.setContentLength(snapshot.body().length);
+            response.getOutputStream().write(snapshot.body());
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK) {
+            byte[] body = wrapper.getContentAsByteArray();
+            // A write that committed while rendering may or may not be in the body, so it is not tagged or kept
+            if (catalogVersion.current() == version) {
+                wrapper.setHeader(HttpHeaders.ETAG, etag);
+                wrapper.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+                if (body.length <= maxSnapshotBytes) {
+                    snapshots.put(key, new Snapshot(version, wrapper.getContentType(), body));
+                }
+            }
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.endsWith("/") && path.length() > 1 ? path.substring(0, path.length() - 1) : path;
+    }
+
+    // Path plus the query parameters in a canonical order, so ?a=1&b=2 and ?b=2&a=1 share a snapshot
+    private static String keyOf(HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(pathOf(request));
+        Map<String, String[]> params = new TreeMap<>(request.getParameterMap());
+        char separator = '?';
+        for (Map.Entry<String, String[]> param : params.entrySet()) {
+            for (String value : param.getValue()) {
+                key.append(separator).append(param.getKey()).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag));
+    }
+
+    private record Snapshot(long version, String contentType, byte[] body) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.org.bookstore_backend.cache;
+
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+import com.org.bookstore_backend.events.CategoryChangedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter of committed catalog changes (books and categories) seen by this node, used as the ETag of the
+ * public catalog responses.
+ * <p>
+ * Bumped from {@link BookCacheInvalidationEvent}s, so a change committed on any node moves every node's
+ * version. Counters of different nodes are not comparable, so the tag also carries a per-process epoch:
+ * a client bouncing between nodes just gets a full response instead of a wrong 304.
+ */
+@Component
+public class CatalogVersion {
+
+    private final String epoch = Long.toString(UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE, 36);
+    private final AtomicLong version = new AtomicLong();
+    private final BookCacheInvalidationBus invalidationBus;
+
+    public CatalogVersion(BookCacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * @return the strong ETag (quoted) for catalog responses rendered at {@code version}
+     */
+    public String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidationBus.broadcast(null);
+    }
+
+    // After CatalogIndexLoader has applied the change to the indexes, so no response tagged with the new version
+    // is rendered from an index without it
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener
+    public void onInvalidation(BookCacheInvalidationEvent event) {
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,32 @@
+package com.org.bookstore_backend.cache;
+
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidation bus for single-node deployments running without Kafka.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "false")
+public class InProcessBookCacheInvalidationBus implements BookCacheInvalidationBus {
+
+    private static final String NODE = "local";
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public InProcessBookCacheInvalidationBus(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    @Override
+    public void broadcast(Long bookId) {
+        applicationEventPublisher.publishEvent(new BookCacheInvalidationEvent(bookId, NODE));
+    }
+
+    @Override
+    public boolean isLocal(BookCacheInvalidationEvent event) {
+        return true;
+    }
+}
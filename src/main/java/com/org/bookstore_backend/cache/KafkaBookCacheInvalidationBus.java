@@ -0,0 +1,82 @@
+package com.org.bookstore_backend.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+import com.org.bookstore_backend.events.DomainEvent;
+import com.org.bookstore_backend.events.EventPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Invalidation bus for multi-node deployments: the local node is invalidated right away and every
+ * other node through the {@value #TOPIC} topic.
+ * <p>
+ * Every node consumes the topic in its own consumer group so each one sees every message, starting
+ * from the latest offset (a node that just started has nothing cached that could be stale).
+ */
+@Component
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = true)
+public class KafkaBookCacheInvalidationBus implements BookCacheInvalidationBus {
+
+    public static final String TOPIC = "books.cache.invalidation";
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaBookCacheInvalidationBus.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final EventPublisher eventPublisher;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final ObjectMapper objectMapper;
+
+    public KafkaBookCacheInvalidationBus(EventPublisher eventPublisher,
+                                         ApplicationEventPublisher applicationEventPublisher,
+                                         ObjectMapper objectMapper) {
+        this.eventPublisher = eventPublisher;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void broadcast(Long bookId) {
+        applicationEventPublisher.publishEvent(new BookCacheInvalidationEvent(bookId, nodeId));
+        eventPublisher.publish(TOPIC, DomainEvent.builder()
+                .type("BOOK_CHANGED")
+                .aggregateType(bookId != null ? "book" : "catalog")
+                .aggregateId(bookId != null ? String.valueOf(bookId) : null)
+                .occurredAt(System.currentTimeMillis())
+                .correlationId(nodeId)
+                .build());
+    }
+
+    @Override
+    public boolean isLocal(BookCacheInvalidationEvent event) {
+        return nodeId.equals(event.getOriginNode());
+    }
+
+    @KafkaListener(
+        topics = TOPIC,
+        groupId = "book-cache-#{T(java.util.UUID).randomUUID().toString()}",
+        containerFactory = "kafkaListenerContainerFactory",
+        properties = "auto.offset.reset=latest",
+        id = "book-cache-invalidation-consumer"
+    )
+    public void consume(@Payload String message) {
+        try {
+            DomainEvent event = objectMapper.readValue(message, DomainEvent.class);
+            if (nodeId.equals(event.getCorrelationId())) {
+                return; // already applied when it was broadcast
+            }
+            Long bookId = event.getAggregateId() != null ? Long.valueOf(event.getAggregateId()) : null;
+            applicationEventPublisher.publishEvent(new BookCacheInvalidationEvent(bookId, event.getCorrelationId()));
+        } catch (JsonProcessingException | NumberFormatException e) {
+            logger.error("Ignoring malformed book cache invalidation: {}", message, e);
+        }
+    }
+}
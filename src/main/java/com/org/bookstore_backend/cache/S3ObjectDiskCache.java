@@ -0,0 +1,416 @@
+package com.org.bookstore_backend.cache;
+
+import com.org.bookstore_backend.services.S3Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Read-through disk cache of S3 objects, used by {@link S3Service#download}.
+ * <p>
+ * Each object is one file named after the hash of its key, holding the object bytes followed by a trailer with
+ * the key and metadata, so the index can be rebuilt from the directory after a restart. Files are written to a
+ * temporary name and renamed into place, so a crash never leaves a partial object behind. Concurrent misses for the
+ * same key share one S3 download. Hits are served from a memory-mapped view of the file. The total size is kept
+ * under {@code cloud.aws.s3.disk-cache.max-size} by evicting the least recently used objects; objects larger than
+ * {@code cloud.aws.s3.disk-cache.max-object-size} are not cached.
+ * <p>
+ * Only correct for keys whose content never changes, which holds for images: their keys are derived from the
+ * SHA-256 of their content ({@code covers/<sha256>/...}, {@code blobs/<sha256>...}). {@link #invalidate} covers
+ * overwrites made through this node.
+ */
+@Component
+public class S3ObjectDiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3ObjectDiskCache.class);
+
+    private static final int TRAILER_MAGIC = 0x53334331; // "S3C1"
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    /**
+     * Streams an object from S3 into the target; S3Service's uncached download.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        GetObjectResponse fetch(S3Service.DownloadTarget target) throws IOException;
+    }
+
+    /**
+     * A cache hit: the object's metadata and a read-only mapped view of its bytes.
+     */
+    public record CachedObject(GetObjectResponse metadata, ByteBuffer data) {
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSize;
+    private final long maxObjectSize;
+
+    // Access-ordered, so iteration starts at the least recently used object; guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+
+    public S3ObjectDiskCache(MeterRegistry meterRegistry,
+                             @Value("${cloud.aws.s3.disk-cache.enabled:true}") boolean enabled,
+                             @Value("${cloud.aws.s3.disk-cache.directory:${java.io.tmpdir}/bookstore-s3-cache}") String directory,
+                             @Value("${cloud.aws.s3.disk-cache.max-size:1GB}") DataSize maxSize,
+                             @Value("${cloud.aws.s3.disk-cache.max-object-size:32MB}") DataSize maxObjectSize) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.maxSize = maxSize.toBytes();
+        this.maxObjectSize = Math.min(maxObjectSize.toBytes(), this.maxSize);
+        this.hits = meterRegistry.counter("s3.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("s3.cache.requests", "result", "miss");
+        this.bytesSaved = Counter.builder("s3.cache.bytes.saved")
+                .description("Bytes served from the disk cache instead of S3")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("s3.cache.size", this, cache -> cache.currentSize())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("s3.cache.hit.ratio", this, cache -> {
+            double total = cache.hits.count() + cache.misses.count();
+            return total == 0 ? 0 : cache.hits.count() / total;
+        }).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException e) {
+            logger.error("Cannot use S3 disk cache directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the object from disk, downloading it with {@code fetcher} first on a miss. Concurrent misses for one
+     * key wait for a single download.
+     *
+     * @return the cached object, or null if it cannot be cached (too large); the caller then streams it directly
+     */
+    public CachedObject get(String key, Fetcher fetcher) throws IOException {
+        CachedObject cached = mapped(key);
+        if (cached != null) {
+            recordHit(cached);
+            return cached;
+        }
+        CompletableFuture<Boolean> download = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inFlight.putIfAbsent(key, download);
+        if (running == null) {
+            misses.increment();
+            boolean stored;
+            try {
+                stored = populate(key, fetcher);
+                download.complete(stored);
+            } catch (IOException | RuntimeException e) {
+                download.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, download);
+            }
+            return stored ? mapped(key) : null;
+        }
+        if (!await(running)) {
+            return null;
+        }
+        // Served without a request of its own to S3
+        cached = mapped(key);
+        if (cached != null) {
+            recordHit(cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Drops the object, e.g. because it was just overwritten.
+     */
+    public void invalidate(String key) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (entries) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                totalBytes -= entry.fileSize;
+                delete(entry.file);
+            }
+        }
+    }
+
+    private long currentSize() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    private void recordHit(CachedObject cached) {
+        hits.increment();
+        bytesSaved.increment(cached.data().remaining());
+    }
+
+    private static boolean await(CompletableFuture<Boolean> download) throws IOException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a concurrent S3 download");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Maps the object's file while holding the index lock, so eviction cannot delete it in between; the mapping
+     * stays valid after the file is deleted.
+     */
+    private CachedObject mapped(String key) throws IOException {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, entry.dataLength);
+                return new CachedObject(entry.metadata(), data.asReadOnlyBuffer());
+            } catch (IOException e) {
+                // Removed from under us (e.g. tmp cleaner): forget it and go to S3
+                entries.remove(key);
+                totalBytes -= entry.fileSize;
+                logger.warn("Dropping unreadable S3 cache file {}: {}", entry.file, e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return false if the object is too large to cache
+     */
+    private boolean populate(String key, Fetcher fetcher) throws IOException {
+        Path temp = directory.resolve(TEMP_PREFIX + UUID.randomUUID());
+        OutputStream[] file = new OutputStream[1];
+        try {
+            GetObjectResponse metadata;
+            try {
+                metadata = fetcher.fetch(object -> {
+                    if (object.contentLength() != null && object.contentLength() > maxObjectSize) {
+                        throw new ObjectTooLargeException();
+                    }
+                    file[0] = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024);
+                    return file[0];
+                });
+            } catch (ObjectTooLargeException e) {
+                return false;
+            }
+            file[0].flush();
+            long dataLength = metadata.contentLength() != null ? metadata.contentLength() : Files.size(temp);
+            byte[] trailer = trailer(key, metadata, dataLength);
+            file[0].write(trailer);
+            file[0].close();
+            file[0] = null;
+
+            Path target = directory.resolve(fileName(key));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            add(key, new Entry(target, dataLength, dataLength + trailer.length,
+                    metadata.contentType(), metadata.eTag()));
+            return true;
+        } finally {
+            if (file[0] != null) {
+                try {
+                    file[0].close();
+                } catch (IOException ignored) {
+                    // the download already failed
+                }
+            }
+            delete(temp);
+        }
+    }
+
+    private void add(String key, Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.fileSize;
+                if (!previous.file.equals(entry.file)) {
+                    delete(previous.file);
+                }
+            }
+            totalBytes += entry.fileSize;
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxSize && eldest.hasNext()) {
+                Map.Entry<String, Entry> victim = eldest.next();
+                if (victim.getKey().equals(key)) {
+                    continue;
+                }
+                eldest.remove();
+                totalBytes -= victim.getValue().fileSize;
+                delete(victim.getValue().file);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from the files of a previous run, oldest first so their order approximates LRU.
+     */
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().startsWith(TEMP_PREFIX)) {
+                    // Left behind by a crash during a download
+                    delete(file);
+                } else if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(S3ObjectDiskCache::lastModified));
+        for (Path file : files) {
+            try {
+                Trailer trailer = readTrailer(file);
+                if (trailer == null || !file.getFileName().toString().equals(fileName(trailer.key))) {
+                    delete(file);
+                    continue;
+                }
+                add(trailer.key, new Entry(file, trailer.dataLength, Files.size(file), trailer.contentType, trailer.eTag));
+            } catch (IOException e) {
+                delete(file);
+            }
+        }
+        logger.info("S3 disk cache {} holds {} objects ({} bytes)", directory, entries.size(), currentSize());
+    }
+
+    private static byte[] trailer(String key, GetObjectResponse metadata, long dataLength) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key);
+        out.writeUTF(metadata.contentType() != null ? metadata.contentType() : "");
+        out.writeUTF(metadata.eTag() != null ? metadata.eTag() : "");
+        int bodyLength = out.size();
+        out.writeInt(bodyLength);
+        out.writeLong(dataLength);
+        out.writeInt(TRAILER_MAGIC);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Trailer readTrailer(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 16) {
+                return null;
+            }
+            ByteBuffer tail = ByteBuffer.allocate(16);
+            channel.read(tail, size - 16);
+            tail.flip();
+            int bodyLength = tail.getInt();
+            long dataLength = tail.getLong();
+            if (tail.getInt() != TRAILER_MAGIC || bodyLength < 0 || dataLength + bodyLength + 16 != size) {
+                return null;
+            }
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            channel.read(body, dataLength);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+            return new Trailer(in.readUTF(), in.readUTF(), in.readUTF(), dataLength);
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete S3 cache file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private record Trailer(String key, String contentType, String eTag, long dataLength) {
+    }
+
+    private record Entry(Path file, long dataLength, long fileSize, String contentType, String eTag) {
+        GetObjectResponse metadata() {
+            return GetObjectResponse.builder()
+                    .contentLength(dataLength)
+                    .contentType(contentType == null || contentType.isEmpty() ? null : contentType)
+                    .eTag(eTag == null || eTag.isEmpty() ? null : eTag)
+                    .build();
+        }
+    }
+
+    private static final class ObjectTooLargeException extends IOException {
+        ObjectTooLargeException() {
+            super("Object too large for the disk cache");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.org.bookstore_backend.cart;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of cart states that may not be in the database yet, so a restart does not lose the changes of
+ * the last flush interval.
+ * <p>
+ * Every change appends the whole new state of the cart, with the {@code carts.version} it was made over, so
+ * replaying is idempotent and the last record of a user wins; {@link CartStore} drops a record whose cart has since
+ * been written at a higher version. Records go to numbered files ({@code carts-<n>.journal}); {@link #rotate} starts
+ * a new file and returns the older ones, which {@link CartStore} deletes once the states it then writes are
+ * committed. A record is {@code length, userId, base version, item count, (bookId, quantity)..., CRC32}; a torn or
+ * corrupt record ends the replay of its file.
+ * <p>
+ * Appends reach the OS on every change, which is enough to survive a crash of the process. They are only fsynced
+ * by {@link #force}, once per flush, so an OS crash or power loss can still lose up to one flush interval.
+ */
+final class CartJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartJournal.class);
+
+    private static final String PREFIX = "carts-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final Object lock = new Object();
+    private FileChannel current;
+    private long currentNumber;
+
+    CartJournal(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        List<Path> existing = files();
+        this.currentNumber = existing.isEmpty() ? 1 : numberOf(existing.get(existing.size() - 1)) + 1;
+        this.current = open(currentNumber);
+    }
+
+    /**
+     * The last recorded state of a cart.
+     *
+     * @param baseVersion the {@code carts.version} the state was made over
+     */
+    record JournaledCart(long baseVersion, Map<Long, Integer> items) {
+    }
+
+    void append(long userId, long baseVersion, Map<Long, Integer> items) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(4 + 8 + 8 + 4 + items.size() * 12 + 4);
+        record.putInt(record.capacity() - 4);
+        record.putLong(userId);
+        record.putLong(baseVersion);
+        record.putInt(items.size());
+        for (Map.Entry<Long, Integer> item : items.entrySet()) {
+            record.putLong(item.getKey());
+            record.putInt(item.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.position() - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        synchronized (lock) {
+            while (record.hasRemaining()) {
+                current.write(record);
+            }
+        }
+    }
+
+    void force() throws IOException {
+        synchronized (lock) {
+            current.force(false);
+        }
+    }
+
+    /**
+     * Continues in a new file.
+     *
+     * @return the files before it, oldest first
+     */
+    List<Path> rotate() throws IOException {
+        synchronized (lock) {
+            if (current.size() > 0) {
+                current.force(false);
+                current.close();
+                currentNumber++;
+                current = open(currentNumber);
+            }
+            List<Path> sealed = new ArrayList<>();
+            for (Path file : files()) {
+                if (numberOf(file) < currentNumber) {
+                    sealed.add(file);
+                }
+            }
+            return sealed;
+        }
+    }
+
+    void delete(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete cart journal {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the last recorded state of every cart in the journal, by user id
+     */
+    Map<Long, JournaledCart> replay() throws IOException {
+        Map<Long, JournaledCart> carts = new LinkedHashMap<>();
+        for (Path file : files()) {
+            int records = 0;
+            try (InputStream stream = Files.newInputStream(file);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length < 24 || length > 24 + 12 * 100_000) {
+                        logger.warn("Corrupt record in cart journal {} after {} records, ignoring the rest", file, records);
+                        break;
+                    }
+                    byte[] body = new byte[length];
+                    in.readFully(body);
+                    ByteBuffer buffer = ByteBuffer.wrap(body);
+                    CRC32 crc = new CRC32();
+                    crc.update(body, 0, length - 4);
+                    if ((int) crc.getValue() != buffer.getInt(length - 4)) {
+                        logger.warn("Corrupt record in cart journal {} after {} records, ignoring the rest", file, records);
+                        break;
+                    }
+                    long userId = buffer.getLong();
+                    long baseVersion = buffer.getLong();
+                    int count = buffer.getInt();
+                    Map<Long, Integer> items = new LinkedHashMap<>();
+                    for (int i = 0; i < count; i++) {
+                        items.put(buffer.getLong(), buffer.getInt());
+                    }
+                    carts.put(userId, new JournaledCart(baseVersion, items));
+                    records++;
+                }
+            } catch (EOFException e) {
+                // Torn last record from a crash mid-append
+                logger.warn("Cart journal {} ends in a partial record after {} records", file, records);
+            }
+        }
+        return carts;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            current.force(false);
+            current.close();
+        }
+    }
+
+    private FileChannel open(long number) throws IOException {
+        return FileChannel.open(directory.resolve(PREFIX + number + SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                if (numberOf(file) > 0) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(CartJournal::numberOf));
+        return files;
+    }
+
+    private static long numberOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.org.bookstore_backend.cart;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The current price of every book in a resident cart, and which users have it in their cart.
+ * <p>
+ * The reverse index is what makes a price change cheap: only the carts listed for the book are repriced. A book
+ * leaves the index with the last cart that holds it, so the index is bounded by the resident carts. Callers may
+ * hold a shard lock of {@link CartStore} when calling in, never the other way round.
+ */
+final class CartPriceIndex {
+
+    private final Object lock = new Object();
+    private final Map<Long, Entry> books = new HashMap<>();
+
+    /**
+     * @return the price of the book, or null if no resident cart has it
+     */
+    BigDecimal price(long bookId) {
+        synchronized (lock) {
+            Entry entry = books.get(bookId);
+            return entry == null ? null : entry.price;
+        }
+    }
+
+    /**
+     * Records that the user's cart holds the book.
+     *
+     * @param price the price to use if no other cart has the book; may be null if the book is known to be indexed
+     * @return the price the cart must count the book at
+     * @throws IllegalArgumentException if the book is not indexed and no price is given
+     */
+    BigDecimal add(long bookId, long userId, BigDecimal price) {
+        synchronized (lock) {
+            Entry entry = books.get(bookId);
+            if (entry == null) {
+                if (price == null) {
+                    throw new IllegalArgumentException("No price known for book " + bookId);
+                }
+                entry = new Entry(price);
+                books.put(bookId, entry);
+            }
+            entry.users.add(userId);
+            return entry.price;
+        }
+    }
+
+    void remove(long bookId, long userId) {
+        synchronized (lock) {
+            Entry entry = books.get(bookId);
+            if (entry != null && entry.users.remove(userId) && entry.users.isEmpty()) {
+                books.remove(bookId);
+            }
+        }
+    }
+
+    /**
+     * Sets the price of an indexed book.
+     *
+     * @return the users whose carts hold the book at another price; empty if none does
+     */
+    Set<Long> reprice(long bookId, BigDecimal price) {
+        synchronized (lock) {
+            Entry entry = books.get(bookId);
+            if (entry == null || entry.price.compareTo(price) == 0) {
+                return Set.of();
+            }
+            entry.price = price;
+            return new HashSet<>(entry.users);
+        }
+    }
+
+    /**
+     * Drops a book that no longer exists.
+     *
+     * @return the users whose carts held it
+     */
+    Set<Long> removeBook(long bookId) {
+        synchronized (lock) {
+            Entry entry = books.remove(bookId);
+            return entry == null ? Set.of() : entry.users;
+        }
+    }
+
+    int size() {
+        synchronized (lock) {
+            return books.size();
+        }
+    }
+
+    private static final class Entry {
+        BigDecimal price;
+        final Set<Long> users = new HashSet<>();
+
+        Entry(BigDecimal price) {
+            this.price = price;
+        }
+    }
+}
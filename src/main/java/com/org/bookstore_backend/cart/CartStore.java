@@ -0,0 +1,883 @@
+package com.org.bookstore_backend.cart;
+
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The shopping carts of active users, held in memory and written to {@code carts}/{@code cart_items} behind the
+ * request.
+ * <p>
+ * Carts are spread over {@code carts.lock-stripes} shards by user id; each shard is a plain map guarded by its own
+ * lock, so users on different shards never contend. A cart is loaded from the database on first use and then read
+ * and changed in memory. Every change is appended to the {@link CartJournal} and marks the cart dirty; every
+ * {@code carts.write-behind.flush-interval} one background thread writes all dirty carts in a single transaction,
+ * coalescing any number of changes to a cart into one diff against what it last wrote. Clean carts idle for
+ * {@code carts.idle-timeout} are dropped from memory.
+ * <p>
+ * Each cart keeps a running total that every change adjusts by the items it touches. Book prices come from a
+ * {@link CartPriceIndex}, which also knows which carts hold each book, so a committed price change reprices just
+ * those carts. Changes committed on another node arrive as a {@link BookCacheInvalidationEvent}, upon which the price
+ * of an indexed book is read again.
+ * <p>
+ * The database stays authoritative, since requests of a user may reach any node. Every write raises
+ * {@code carts.version}, and a flush only writes a cart over the version its memory copy was read at. A cart that
+ * another node wrote in the meantime is merged instead of overwritten: books this node changed keep its quantities,
+ * all other books take the stored ones. A clean resident cart is checked against the stored version when it is
+ * used (at most every {@code carts.revalidate-after}) and read again if another node wrote it. Journal records
+ * made over a version older than the stored one are dropped on startup. Other code must not write the cart tables
+ * directly.
+ */
+@Component
+public class CartStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartStore.class);
+
+    // Max number of IDs per IN (...) clause
+    private static final int QUERY_BATCH_SIZE = 1000;
+
+    // One statement, so the version and the items are read from the same snapshot
+    private static final String LOAD_CART = "select c.id, c.version, ci.book_id, ci.quantity, b.price from carts c "
+            + "left join cart_items ci on ci.cart_id = c.id left join books b on b.id = ci.book_id where c.user_id = ?";
+    private static final String CART_VERSION = "select version from carts where user_id = ?";
+    private static final String LOCK_CARTS = "select user_id, id, version from carts where user_id in (%s) for update";
+    private static final String STORED_ITEMS = "select ci.cart_id, ci.book_id, ci.quantity, b.price from cart_items ci "
+            + "join books b on b.id = ci.book_id where ci.cart_id in (%s)";
+    private static final String BOOK_PRICES = "select id, price from books where id in (%s)";
+    private static final String BOOK_PRICE = "select price from books where id = ?";
+    private static final String USER_EXISTS = "select count(*) from users where user_id = ?";
+    private static final String INSERT_CART = "insert into carts (user_id, version) values (?, 0)";
+    private static final String UPDATE_VERSION = "update carts set version = ? where id = ? and version = ?";
+    private static final String DELETE_ITEMS = "delete from cart_items where cart_id = ?";
+    private static final String DELETE_ITEM = "delete from cart_items where cart_id = ? and book_id = ?";
+    private static final String DELETE_BOOK_ITEMS = "delete from cart_items where book_id = ?";
+    // Upserts keyed by the (cart_id, book_id) primary key, so new and changed items go in one batch
+    private static final String UPSERT_ITEM_POSTGRES = "insert into cart_items (cart_id, book_id, quantity) values (?, ?, ?) "
+            + "on conflict (cart_id, book_id) do update set quantity = excluded.quantity";
+    private static final String UPSERT_ITEM_H2 = "merge into cart_items (cart_id, book_id, quantity) key (cart_id, book_id) values (?, ?, ?)";
+
+    /**
+     * A cart as seen by callers: the items map book IDs to quantities in the order they were added.
+     *
+     * @param cartId null until the cart has been written to the database
+     * @param total  the sum of quantity times current price over the items
+     */
+    public record CartView(Long cartId, long userId, Map<Long, Integer> items, BigDecimal total) {
+    }
+
+    private final Shard[] shards;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final CartPriceIndex prices = new CartPriceIndex();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final Path journalDirectory;
+    private final Duration flushInterval;
+    private final Duration idleTimeout;
+    private final long revalidateAfterMillis;
+    private final ScheduledExecutorService flusher;
+    private CartJournal journal;
+    private String upsertItem;
+
+    public CartStore(JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager,
+                     MeterRegistry meterRegistry,
+                     @Value("${carts.lock-stripes:64}") int lockStripes,
+                     @Value("${carts.journal.directory}") String journalDirectory,
+                     @Value("${carts.write-behind.flush-interval:500ms}") Duration flushInterval,
+                     @Value("${carts.idle-timeout:30m}") Duration idleTimeout,
+                     @Value("${carts.revalidate-after:0s}") Duration revalidateAfter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // A power of two, so the shard is a mask of the mixed user id
+        this.shards = new Shard[Integer.highestOneBit(Math.max(1, lockStripes))];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        this.journalDirectory = Paths.get(journalDirectory);
+        this.flushInterval = flushInterval;
+        this.idleTimeout = idleTimeout;
+        this.revalidateAfterMillis = revalidateAfter.toMillis();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gaugeCollectionSize("carts.dirty", List.of(), dirty);
+        meterRegistry.gauge("carts.resident", this, CartStore::residentCount);
+        meterRegistry.gauge("carts.priced.books", prices, CartPriceIndex::size);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        upsertItem = upsertStatement();
+        // Without a persistent directory a restart silently loses the changes of the last flush interval
+        Files.createDirectories(journalDirectory);
+        if (!Files.isWritable(journalDirectory)) {
+            throw new IllegalStateException("carts.journal.directory " + journalDirectory + " is not writable");
+        }
+        journal = new CartJournal(journalDirectory);
+        recover();
+        long period = Math.max(50, flushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flushSafely, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Makes the journaled changes that may never have been written dirty again. A record made over an older version
+     * than the stored cart has is dropped: that cart was written since, by this node before it stopped or by another.
+     */
+    private void recover() throws IOException {
+        Map<Long, CartJournal.JournaledCart> recovered = journal.replay();
+        Set<Long> recoveredBooks = new HashSet<>();
+        recovered.values().forEach(cart -> recoveredBooks.addAll(cart.items().keySet()));
+        Map<Long, BigDecimal> bookPrices = findPrices(new ArrayList<>(recoveredBooks));
+        int restored = 0;
+        for (Map.Entry<Long, CartJournal.JournaledCart> cart : recovered.entrySet()) {
+            long userId = cart.getKey();
+            LoadedCart stored;
+            try {
+                stored = load(userId);
+            } catch (EntityNotFoundException e) {
+                continue;
+            }
+            if (stored.version() > cart.getValue().baseVersion()) {
+                continue;
+            }
+            Map<Long, Integer> items = new LinkedHashMap<>(cart.getValue().items());
+            // Books deleted while the node was down
+            items.keySet().retainAll(bookPrices.keySet());
+            CartState state = new CartState(stored.cartId(), stored.items(), stored.version());
+            applyItems(userId, state, items, bookPrices);
+            state.version = 1;
+            shardOf(userId).carts.put(userId, state);
+            dirty.add(userId);
+            restored++;
+        }
+        if (!recovered.isEmpty()) {
+            logger.info("Recovered {} of {} carts in the cart journal in {}; the others were written since",
+                    restored, recovered.size(), journalDirectory);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        flusher.shutdownNow();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+        journal.close();
+    }
+
+    /**
+     * @throws EntityNotFoundException if there is no such user
+     */
+    public CartView read(long userId) {
+        Shard shard = shardOf(userId);
+        CartState state = lockResident(shard, userId);
+        try {
+            return state.view(userId);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Applies {@code change} to a copy of the cart's items and makes the copy the cart, all under the cart's lock.
+     * If {@code change} throws, the cart is left as it was. {@code change} must not add books.
+     *
+     * @throws EntityNotFoundException if there is no such user
+     */
+    public CartView update(long userId, Consumer<Map<Long, Integer>> change) {
+        return update(userId, Map.of(), change);
+    }
+
+    /**
+     * Like {@link #update(long, Consumer)}, for a change that may add books.
+     *
+     * @param bookPrices the prices of the books {@code change} may add, used for books no resident cart holds yet; a
+     *                   book already in the price index is counted at the indexed price, which only committed changes
+     *                   move, so a stale price from the caller cannot reprice other carts
+     * @throws IllegalArgumentException if {@code change} adds a book whose price is unknown
+     */
+    public CartView update(long userId, Map<Long, BigDecimal> bookPrices, Consumer<Map<Long, Integer>> change) {
+        Shard shard = shardOf(userId);
+        CartState state = lockResident(shard, userId);
+        try {
+            Map<Long, Integer> items = new LinkedHashMap<>(state.items);
+            change.accept(items);
+            items.values().removeIf(quantity -> quantity == null || quantity <= 0);
+            if (items.equals(state.items)) {
+                return state.view(userId);
+            }
+            // Resolved before journaling, so a change that cannot be priced leaves no trace
+            Map<Long, BigDecimal> addedPrices = new HashMap<>();
+            for (Long bookId : items.keySet()) {
+                if (!state.items.containsKey(bookId)) {
+                    BigDecimal price = prices.price(bookId);
+                    if (price == null) {
+                        price = bookPrices.get(bookId);
+                    }
+                    if (price == null) {
+                        throw new IllegalArgumentException("No price known for book " + bookId);
+                    }
+                    addedPrices.put(bookId, price);
+                }
+            }
+            // Marked dirty before journaling: a flush that rotates the journal after this record also writes the cart
+            dirty.add(userId);
+            try {
+                journal.append(userId, state.journalBase, items);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to journal the cart of user " + userId, e);
+            }
+            applyItems(userId, state, items, addedPrices);
+            state.version++;
+            return state.view(userId);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Empties the cart.
+     */
+    public CartView clear(long userId) {
+        return update(userId, Map::clear);
+    }
+
+    /**
+     * Deletes the stored cart items of a book, in the caller's transaction. {@code cart_items.book_id} references
+     * {@code books} without a cascade, so this must run before the book itself is deleted. The carts in memory drop
+     * the book once the deletion is committed, through {@link #onCatalogEvent}.
+     */
+    public void deleteBookItems(long bookId) {
+        jdbcTemplate.update(DELETE_BOOK_ITEMS, bookId);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogEvent(BookCatalogEvent event) {
+        if (event.getBookId() == null) {
+            return;
+        }
+        if (event.getType() == BookCatalogEvent.Type.UPDATED && event.getBook() != null) {
+            reprice(event.getBookId(), BigDecimal.valueOf(event.getBook().getPrice()));
+        } else if (event.getType() == BookCatalogEvent.Type.DELETED) {
+            removeBook(event.getBookId());
+        }
+    }
+
+    /**
+     * Catches changes committed on other nodes, which reach this node only as an invalidation. Books that no resident
+     * cart holds are ignored, so this costs one query per change to a book that is in a cart.
+     */
+    @EventListener
+    public void onInvalidation(BookCacheInvalidationEvent event) {
+        Long bookId = event.getBookId();
+        if (bookId == null || prices.price(bookId) == null) {
+            return;
+        }
+        List<BigDecimal> price = jdbcTemplate.query(BOOK_PRICE, (rs, rowNum) -> BigDecimal.valueOf(rs.getDouble(1)), bookId);
+        if (price.isEmpty()) {
+            removeBook(bookId);
+        } else {
+            reprice(bookId, price.get(0));
+        }
+    }
+
+    /**
+     * Moves the totals of the carts that hold the book to its new price; other carts are not touched.
+     */
+    private void reprice(long bookId, BigDecimal price) {
+        Set<Long> users = prices.reprice(bookId, price);
+        for (Long userId : users) {
+            Shard shard = shardOf(userId);
+            shard.lock.lock();
+            try {
+                CartState state = shard.carts.get(userId);
+                BigDecimal counted = state == null ? null : state.unitPrices.get(bookId);
+                // Read again under the lock: a later change may have overtaken this one
+                BigDecimal current = prices.price(bookId);
+                if (counted == null || current == null || counted.compareTo(current) == 0) {
+                    continue;
+                }
+                BigDecimal quantity = BigDecimal.valueOf(state.items.get(bookId));
+                state.total = state.total.add(current.subtract(counted).multiply(quantity));
+                state.unitPrices.put(bookId, current);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        if (!users.isEmpty()) {
+            logger.debug("Repriced book {} in {} carts", bookId, users.size());
+        }
+    }
+
+    // Deleted books can no longer be bought; their stored cart rows were deleted along with the book (deleteBookItems)
+    private void removeBook(long bookId) {
+        prices.removeBook(bookId);
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (Map.Entry<Long, CartState> cart : shard.carts.entrySet()) {
+                    CartState state = cart.getValue();
+                    if (state.items.containsKey(bookId)) {
+                        Map<Long, Integer> items = new LinkedHashMap<>(state.items);
+                        items.remove(bookId);
+                        applyItems(cart.getKey(), state, items, Map.of());
+                    }
+                    if (state.persisted != null && state.persisted.containsKey(bookId)) {
+                        Map<Long, Integer> persisted = new HashMap<>(state.persisted);
+                        persisted.remove(bookId);
+                        state.persisted = persisted;
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Locks the user's shard and returns the cart, loading it first if it is not in memory or another node has
+     * written it since.
+     */
+    private CartState lockResident(Shard shard, long userId) {
+        while (true) {
+            shard.lock.lock();
+            CartState state = shard.carts.get(userId);
+            if (state != null && !revalidationDue(state)) {
+                state.lastAccess = System.currentTimeMillis();
+                return state;
+            }
+            long evictions = shard.evictions;
+            shard.lock.unlock();
+
+            if (state != null) {
+                // Probed without the lock too; a cart with unwritten changes is merged by the flush instead
+                long stored = storedVersion(userId);
+                shard.lock.lock();
+                if (shard.carts.get(userId) == state) {
+                    state.validatedAt = System.currentTimeMillis();
+                    if (stored == state.baseVersion || state.persistedVersion != state.version) {
+                        state.lastAccess = state.validatedAt;
+                        return state;
+                    }
+                    unindex(userId, state);
+                    shard.carts.remove(userId);
+                    shard.evictions++;
+                }
+                shard.lock.unlock();
+                continue;
+            }
+
+            // Loaded without the lock, so other users of the shard do not wait for the database
+            LoadedCart loaded = load(userId);
+            shard.lock.lock();
+            state = shard.carts.get(userId);
+            if (state != null) {
+                state.lastAccess = System.currentTimeMillis();
+                return state;
+            }
+            if (shard.evictions == evictions) {
+                state = new CartState(loaded.cartId(), loaded.items(), loaded.version());
+                applyItems(userId, state, new LinkedHashMap<>(loaded.items()), loaded.prices());
+                shard.carts.put(userId, state);
+                return state;
+            }
+            // A cart of this shard was written and evicted meanwhile; it may have been this one
+            shard.lock.unlock();
+        }
+    }
+
+    private boolean revalidationDue(CartState state) {
+        return state.persistedVersion == state.version
+                && System.currentTimeMillis() - state.validatedAt >= revalidateAfterMillis;
+    }
+
+    // The version of the stored cart; 0 while there is none
+    private long storedVersion(long userId) {
+        List<Long> versions = jdbcTemplate.queryForList(CART_VERSION, Long.class, userId);
+        return versions.isEmpty() ? 0 : versions.get(0);
+    }
+
+    private LoadedCart load(long userId) {
+        Long[] cart = new Long[2];
+        Map<Long, Integer> items = new LinkedHashMap<>();
+        Map<Long, BigDecimal> bookPrices = new HashMap<>();
+        jdbcTemplate.query(LOAD_CART, rs -> {
+            cart[0] = rs.getLong(1);
+            cart[1] = rs.getLong(2);
+            long bookId = rs.getLong(3);
+            if (!rs.wasNull()) {
+                items.put(bookId, rs.getInt(4));
+                bookPrices.put(bookId, BigDecimal.valueOf(rs.getDouble(5)));
+            }
+        }, userId);
+        if (cart[0] == null) {
+            Long users = jdbcTemplate.queryForObject(USER_EXISTS, Long.class, userId);
+            if (users == null || users == 0) {
+                throw new EntityNotFoundException("User not found with ID: " + userId);
+            }
+            return new LoadedCart(null, Map.of(), Map.of(), 0);
+        }
+        return new LoadedCart(cart[0], Collections.unmodifiableMap(items), bookPrices, cart[1]);
+    }
+
+    /**
+     * Makes {@code items} the cart's items and moves its total and the price index along with the difference, so a
+     * change costs as much as the items it touches.
+     *
+     * @param addedPrices the prices of the books that are not in the cart yet
+     */
+    private void applyItems(long userId, CartState state, Map<Long, Integer> items, Map<Long, BigDecimal> addedPrices) {
+        BigDecimal total = state.total;
+        for (Map.Entry<Long, Integer> old : state.items.entrySet()) {
+            if (!items.containsKey(old.getKey())) {
+                BigDecimal unit = state.unitPrices.remove(old.getKey());
+                total = total.subtract(unit.multiply(BigDecimal.valueOf(old.getValue())));
+                prices.remove(old.getKey(), userId);
+            }
+        }
+        for (Map.Entry<Long, Integer> item : items.entrySet()) {
+            Integer before = state.items.get(item.getKey());
+            if (before == null) {
+                BigDecimal unit = prices.add(item.getKey(), userId, addedPrices.get(item.getKey()));
+                state.unitPrices.put(item.getKey(), unit);
+                total = total.add(unit.multiply(BigDecimal.valueOf(item.getValue())));
+            } else if (!before.equals(item.getValue())) {
+                BigDecimal unit = state.unitPrices.get(item.getKey());
+                total = total.add(unit.multiply(BigDecimal.valueOf(item.getValue() - before)));
+            }
+        }
+        state.items = Collections.unmodifiableMap(items);
+        state.total = total;
+    }
+
+    private void flushSafely() {
+        try {
+            journal.force();
+            flush();
+            evictIdle();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to write carts: {}", e.getMessage(), e);
+        }
+    }
+
+    void flush() throws IOException {
+        List<Path> sealed = journal.rotate();
+        List<Long> users = new ArrayList<>(dirty);
+        dirty.removeAll(users);
+        if (users.isEmpty()) {
+            journal.delete(sealed);
+            return;
+        }
+
+        List<PendingCart> pending = new ArrayList<>(users.size());
+        for (Long userId : users) {
+            Shard shard = shardOf(userId);
+            shard.lock.lock();
+            try {
+                CartState state = shard.carts.get(userId);
+                if (state != null) {
+                    pending.add(new PendingCart(userId, state.cartId, state.items, state.persisted, state.version,
+                            state.baseVersion));
+                    // Changes journaled from now on come after this write, which raises the version
+                    state.journalBase = state.baseVersion + 1;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+
+        Map<Long, WrittenCart> written;
+        try {
+            written = newTransaction.execute(status -> write(pending));
+        } catch (RuntimeException e) {
+            dirty.addAll(users);
+            throw e;
+        }
+
+        int merged = 0;
+        for (PendingCart cart : pending) {
+            WrittenCart result = written.get(cart.userId());
+            Shard shard = shardOf(cart.userId());
+            shard.lock.lock();
+            try {
+                CartState state = shard.carts.get(cart.userId());
+                if (state == null) {
+                    continue;
+                }
+                if (result == null) {
+                    // The user no longer exists
+                    applyItems(cart.userId(), state, new LinkedHashMap<>(), Map.of());
+                    state.persisted = Map.of();
+                    state.persistedVersion = state.version;
+                    state.baseVersion = 0;
+                    state.journalBase = 0;
+                    continue;
+                }
+                state.cartId = result.cartId();
+                state.persisted = result.items();
+                state.persistedVersion = Math.max(state.persistedVersion, cart.version());
+                state.baseVersion = result.version();
+                state.journalBase = result.version();
+                state.validatedAt = System.currentTimeMillis();
+                if (result.stored() != null) {
+                    // Another node wrote the cart: take its changes into memory too, over any made meanwhile
+                    merged++;
+                    Map<Long, Integer> items = merge(cart.persisted(), state.items, result.stored());
+                    if (!items.equals(state.items)) {
+                        applyItems(cart.userId(), state, items, result.storedPrices());
+                    }
+                    if (state.version != cart.version()) {
+                        journal.append(cart.userId(), state.journalBase, state.items);
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        // Every record in the sealed files is covered by what was just written
+        journal.delete(sealed);
+        if (merged > 0) {
+            logger.info("Merged {} carts written by another node", merged);
+        }
+        logger.debug("Wrote {} carts", pending.size());
+    }
+
+    /**
+     * Writes the carts as batched statements in the caller's transaction. The stored carts are locked first, and a
+     * cart stored at another version than its memory copy was read at is merged with what is stored.
+     *
+     * @return what was written per user; users that no longer exist are missing
+     */
+    private Map<Long, WrittenCart> write(List<PendingCart> pending) {
+        Map<Long, StoredCart> stored = lockCarts(pending.stream().map(PendingCart::userId).collect(Collectors.toList()));
+        List<Long> missingUsers = new ArrayList<>();
+        for (PendingCart cart : pending) {
+            if (!stored.containsKey(cart.userId()) && !cart.items().isEmpty()) {
+                missingUsers.add(cart.userId());
+            }
+        }
+        if (!missingUsers.isEmpty()) {
+            List<Long> existingUsers = findExisting("select user_id from users where user_id in (%s)", missingUsers);
+            if (!existingUsers.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_CART, existingUsers, existingUsers.size(),
+                        (ps, userId) -> ps.setLong(1, userId));
+                stored.putAll(lockCarts(existingUsers));
+            }
+        }
+
+        List<Long> conflicting = new ArrayList<>();
+        for (PendingCart cart : pending) {
+            StoredCart row = stored.get(cart.userId());
+            if (row != null && isConflict(cart, row)) {
+                conflicting.add(row.id());
+            }
+        }
+        Map<Long, Map<Long, Integer>> storedItems = new HashMap<>();
+        Map<Long, BigDecimal> storedPrices = new HashMap<>();
+        findStoredItems(conflicting, storedItems, storedPrices);
+
+        Set<Long> bookIds = new HashSet<>();
+        pending.forEach(cart -> bookIds.addAll(cart.items().keySet()));
+        Set<Long> existingBooks = new HashSet<>(findExisting("select id from books where id in (%s)", new ArrayList<>(bookIds)));
+        existingBooks.addAll(storedPrices.keySet());
+
+        List<Object[]> clears = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> versions = new ArrayList<>();
+        Map<Long, WrittenCart> written = new HashMap<>();
+        for (PendingCart cart : pending) {
+            StoredCart row = stored.get(cart.userId());
+            if (row == null) {
+                if (cart.items().isEmpty()) {
+                    written.put(cart.userId(), new WrittenCart(null, Map.of(), 0, null, Map.of()));
+                }
+                continue;
+            }
+            Map<Long, Integer> items;
+            Map<Long, Integer> previous;
+            Map<Long, Integer> theirs = null;
+            if (isConflict(cart, row)) {
+                theirs = storedItems.getOrDefault(row.id(), Map.of());
+                items = merge(cart.persisted(), cart.items(), theirs);
+                previous = theirs;
+            } else {
+                items = new LinkedHashMap<>(cart.items());
+                previous = cart.persisted();
+                // Without a known previous state (recovered from the journal) replace all
+                if (previous == null) {
+                    clears.add(new Object[]{row.id()});
+                    previous = Map.of();
+                }
+            }
+            items.keySet().retainAll(existingBooks);
+            for (Long bookId : previous.keySet()) {
+                if (!items.containsKey(bookId)) {
+                    deletes.add(new Object[]{row.id(), bookId});
+                }
+            }
+            for (Map.Entry<Long, Integer> item : items.entrySet()) {
+                if (!item.getValue().equals(previous.get(item.getKey()))) {
+                    upserts.add(new Object[]{row.id(), item.getKey(), item.getValue()});
+                }
+            }
+            versions.add(new Object[]{row.version() + 1, row.id(), row.version()});
+            written.put(cart.userId(), new WrittenCart(row.id(), Collections.unmodifiableMap(items), row.version() + 1,
+                    theirs, storedPrices));
+        }
+        batchUpdate(DELETE_ITEMS, clears);
+        batchUpdate(DELETE_ITEM, deletes);
+        batchUpdate(upsertItem, upserts);
+        if (!versions.isEmpty()) {
+            for (int count : jdbcTemplate.batchUpdate(UPDATE_VERSION, versions)) {
+                if (count == 0) {
+                    // Cannot happen while the rows are locked; rolls back rather than overwrite another write
+                    throw new IllegalStateException("A cart changed while it was being written");
+                }
+            }
+        }
+        return written;
+    }
+
+    // Another node wrote the cart since this one read it, or the row was recreated
+    private static boolean isConflict(PendingCart cart, StoredCart row) {
+        return row.version() != cart.baseVersion() || (cart.cartId() != null && !cart.cartId().equals(row.id()));
+    }
+
+    /**
+     * Three-way merge of the changes this node made to a cart since {@code base} ({@code ours}) with the cart as
+     * another node stored it ({@code theirs}): a book this node changed keeps its quantity, every other book takes
+     * the stored one. Without a known base, this node's items win.
+     */
+    private static Map<Long, Integer> merge(Map<Long, Integer> base, Map<Long, Integer> ours, Map<Long, Integer> theirs) {
+        if (base == null) {
+            return new LinkedHashMap<>(ours);
+        }
+        Set<Long> bookIds = new LinkedHashSet<>(ours.keySet());
+        bookIds.addAll(theirs.keySet());
+        Map<Long, Integer> merged = new LinkedHashMap<>();
+        for (Long bookId : bookIds) {
+            Integer quantity = Objects.equals(ours.get(bookId), base.get(bookId)) ? theirs.get(bookId) : ours.get(bookId);
+            if (quantity != null) {
+                merged.put(bookId, quantity);
+            }
+        }
+        return merged;
+    }
+
+    private String upsertStatement() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if ("PostgreSQL".equalsIgnoreCase(database)) {
+            return UPSERT_ITEM_POSTGRES;
+        }
+        if ("H2".equalsIgnoreCase(database)) {
+            return UPSERT_ITEM_H2;
+        }
+        throw new IllegalStateException("No cart item upsert for database " + database);
+    }
+
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+
+    // Locked until the caller's transaction ends, so no other node writes them in between
+    private Map<Long, StoredCart> lockCarts(List<Long> userIds) {
+        Map<Long, StoredCart> carts = new HashMap<>();
+        for (int from = 0; from < userIds.size(); from += QUERY_BATCH_SIZE) {
+            List<Long> batch = userIds.subList(from, Math.min(from + QUERY_BATCH_SIZE, userIds.size()));
+            jdbcTemplate.query(String.format(LOCK_CARTS, placeholders(batch.size())), rs -> {
+                carts.put(rs.getLong(1), new StoredCart(rs.getLong(2), rs.getLong(3)));
+            }, batch.toArray());
+        }
+        return carts;
+    }
+
+    private void findStoredItems(List<Long> cartIds, Map<Long, Map<Long, Integer>> items, Map<Long, BigDecimal> bookPrices) {
+        for (int from = 0; from < cartIds.size(); from += QUERY_BATCH_SIZE) {
+            List<Long> batch = cartIds.subList(from, Math.min(from + QUERY_BATCH_SIZE, cartIds.size()));
+            jdbcTemplate.query(String.format(STORED_ITEMS, placeholders(batch.size())), rs -> {
+                items.computeIfAbsent(rs.getLong(1), cartId -> new LinkedHashMap<>()).put(rs.getLong(2), rs.getInt(3));
+                bookPrices.put(rs.getLong(2), BigDecimal.valueOf(rs.getDouble(4)));
+            }, batch.toArray());
+        }
+    }
+
+    private Map<Long, BigDecimal> findPrices(List<Long> bookIds) {
+        Map<Long, BigDecimal> bookPrices = new HashMap<>();
+        for (int from = 0; from < bookIds.size(); from += QUERY_BATCH_SIZE) {
+            List<Long> batch = bookIds.subList(from, Math.min(from + QUERY_BATCH_SIZE, bookIds.size()));
+            jdbcTemplate.query(String.format(BOOK_PRICES, placeholders(batch.size())), rs -> {
+                bookPrices.put(rs.getLong(1), BigDecimal.valueOf(rs.getDouble(2)));
+            }, batch.toArray());
+        }
+        return bookPrices;
+    }
+
+    private List<Long> findExisting(String query, List<Long> ids) {
+        List<Long> existing = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += QUERY_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + QUERY_BATCH_SIZE, ids.size()));
+            existing.addAll(jdbcTemplate.queryForList(String.format(query, placeholders(batch.size())), Long.class, batch.toArray()));
+        }
+        return existing;
+    }
+
+    void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeout.toMillis();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                Iterator<Map.Entry<Long, CartState>> entries = shard.carts.entrySet().iterator();
+                while (entries.hasNext()) {
+                    Map.Entry<Long, CartState> cart = entries.next();
+                    CartState state = cart.getValue();
+                    if (state.lastAccess < cutoff && state.persistedVersion == state.version) {
+                        unindex(cart.getKey(), state);
+                        entries.remove();
+                        shard.evictions++;
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // Takes a cart that leaves memory out of the price index
+    private void unindex(long userId, CartState state) {
+        for (Long bookId : state.items.keySet()) {
+            prices.remove(bookId, userId);
+        }
+    }
+
+    private int residentCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                count += shard.carts.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    private Shard shardOf(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h ^ (h >>> 32)) & (shards.length - 1)];
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<Long, CartState> carts = new HashMap<>();
+        long evictions;
+    }
+
+    /**
+     * One cart in memory. Guarded by the lock of its shard; {@code items} and {@code persisted} are replaced, never
+     * modified, so they can be handed out and written without copying. Items are only set through
+     * {@link #applyItems}, which keeps {@code unitPrices} and {@code total} in step.
+     */
+    private static final class CartState {
+        Long cartId;
+        Map<Long, Integer> items = Map.of();
+        // The price each item is counted at in the total
+        final Map<Long, BigDecimal> unitPrices = new HashMap<>();
+        BigDecimal total = BigDecimal.ZERO;
+        // The items as last written to the database; null if unknown
+        Map<Long, Integer> persisted;
+        // carts.version of the stored items in persisted; 0 while there is no stored cart
+        long baseVersion;
+        // The version stamped on journal records: the one a flush in flight will write, so that write is not
+        // taken for newer than the records made while it ran
+        long journalBase;
+        long version;
+        long persistedVersion;
+        long lastAccess = System.currentTimeMillis();
+        long validatedAt = lastAccess;
+
+        CartState(Long cartId, Map<Long, Integer> persisted, long baseVersion) {
+            this.cartId = cartId;
+            this.persisted = persisted;
+            this.baseVersion = baseVersion;
+            this.journalBase = baseVersion;
+        }
+
+        CartView view(long userId) {
+            return new CartView(cartId, userId, items, total);
+        }
+    }
+
+    private record LoadedCart(Long cartId, Map<Long, Integer> items, Map<Long, BigDecimal> prices, long version) {
+    }
+
+    private record PendingCart(long userId, Long cartId, Map<Long, Integer> items, Map<Long, Integer> persisted,
+                               long version, long baseVersion) {
+    }
+
+    private record StoredCart(long id, long version) {
+    }
+
+    /**
+     * @param stored       the items another node had stored, if the cart was merged with them; null otherwise
+     * @param storedPrices the prices of the books in {@code stored}
+     */
+    private record WrittenCart(Long cartId, Map<Long, Integer> items, long version, Map<Long, Integer> stored,
+                               Map<Long, BigDecimal> storedPrices) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.org.bookstore_backend.changefeed;
+
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import com.org.bookstore_backend.model.CatalogChange;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appends every book change to the catalog change log, in the transaction that makes the change.
+ * <p>
+ * The changes of one transaction are collected and written as a single JDBC batch just before it commits, so a
+ * CSV import chunk of a thousand books adds one batch, not a thousand statements. The rows carry no version yet;
+ * {@link CatalogChangeSequencer} numbers them once they are committed.
+ */
+@Component
+public class CatalogChangeRecorder {
+
+    private static final String INSERT_CHANGE = "insert into catalog_changes (book_id, change_type, changed_at) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CatalogChangeRecorder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Plain listener on purpose: it has to run inside the publishing transaction
+    @EventListener
+    public void onCatalogEvent(BookCatalogEvent event) {
+        if (event.getBookId() == null) {
+            return;
+        }
+        CatalogChange.Type type = event.getType() == BookCatalogEvent.Type.DELETED
+                ? CatalogChange.Type.DELETE
+                : CatalogChange.Type.UPSERT;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(List.of(new Pending(event.getBookId(), type)));
+            return;
+        }
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.changes.add(new Pending(event.getBookId(), type));
+    }
+
+    private void write(List<Pending> changes) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_CHANGE, changes, changes.size(), (ps, change) -> {
+            ps.setLong(1, change.bookId());
+            ps.setString(2, change.type().name());
+            ps.setTimestamp(3, now);
+        });
+    }
+
+    private record Pending(long bookId, CatalogChange.Type type) {
+    }
+
+    private final class PendingChanges implements TransactionSynchronization {
+        final List<Pending> changes = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!changes.isEmpty()) {
+                write(changes);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CatalogChangeRecorder.this);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.org.bookstore_backend.changefeed;
+
+import com.org.bookstore_backend.model.CatalogFeedState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Numbers the committed entries of the catalog change log and keeps the log compact.
+ * <p>
+ * Every {@code books.changes.sequence-interval} each node tries to lock the single {@code catalog_feed_state}
+ * row and, holding it, gives the unnumbered changes consecutive versions after {@code last_version}. Because a
+ * change only becomes visible here once its transaction has committed, and versions are only ever handed out
+ * under the lock, a change can never get a lower version than one a client has already read. Each run also
+ * deletes the older entries of every book it numbered, so the log holds one entry per book, and purges delete
+ * entries older than {@code books.changes.tombstone-retention}, raising {@code compacted_through} so clients
+ * that last synced before them are told to resync.
+ */
+@Component
+public class CatalogChangeSequencer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogChangeSequencer.class);
+
+    // Upper bound on changes numbered per run, so one run never holds the lock for long
+    private static final int BATCH_SIZE = 5000;
+
+    private static final String LOCK_STATE = "select last_version from catalog_feed_state where id = ? for update";
+    private static final String UNNUMBERED = "select id, book_id from catalog_changes where version is null order by id limit ?";
+    private static final String ASSIGN_VERSION = "update catalog_changes set version = ? where id = ?";
+    private static final String DROP_SUPERSEDED = "delete from catalog_changes where book_id = ? and version < ?";
+    private static final String UPDATE_LAST_VERSION = "update catalog_feed_state set last_version = ? where id = ?";
+    private static final String LAST_EXPIRED_DELETE = "select max(version) from catalog_changes where change_type = 'DELETE' and version is not null and changed_at < ?";
+    private static final String PURGE_DELETES = "delete from catalog_changes where change_type = 'DELETE' and version <= ?";
+    private static final String UPDATE_COMPACTED = "update catalog_feed_state set compacted_through = greatest(compacted_through, ?) where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration sequenceInterval;
+    private final Duration tombstoneRetention;
+    private final ScheduledExecutorService scheduler;
+
+    public CatalogChangeSequencer(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${books.changes.sequence-interval:1s}") Duration sequenceInterval,
+                                  @Value("${books.changes.tombstone-retention:30d}") Duration tombstoneRetention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sequenceInterval = sequenceInterval;
+        this.tombstoneRetention = tombstoneRetention;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-change-sequencer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        long period = Math.max(100, sequenceInterval.toMillis());
+        scheduler.scheduleWithFixedDelay(this::runSafely, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void runSafely() {
+        try {
+            ensureState();
+            int numbered;
+            do {
+                numbered = transactionTemplate.execute(status -> sequenceBatch());
+            } while (numbered == BATCH_SIZE);
+        } catch (RuntimeException e) {
+            // The next run picks up where this one stopped
+            logger.error("Failed to sequence catalog changes: {}", e.getMessage(), e);
+        }
+    }
+
+    private void ensureState() {
+        Long rows = jdbcTemplate.queryForObject("select count(*) from catalog_feed_state where id = ?", Long.class, CatalogFeedState.ID);
+        if (rows != null && rows > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("insert into catalog_feed_state (id, last_version, compacted_through) values (?, 0, 0)", CatalogFeedState.ID);
+        } catch (DataIntegrityViolationException e) {
+            // Another node created it first
+        }
+    }
+
+    /**
+     * Runs in one transaction, holding the state row lock.
+     *
+     * @return the number of changes numbered
+     */
+    private int sequenceBatch() {
+        long version = jdbcTemplate.queryForObject(LOCK_STATE, Long.class, CatalogFeedState.ID);
+        long previous = version;
+
+        List<long[]> changes = jdbcTemplate.query(UNNUMBERED,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, BATCH_SIZE);
+        if (!changes.isEmpty()) {
+            List<Object[]> assignments = new ArrayList<>(changes.size());
+            // Latest version per book in this batch; everything older for the book is superseded
+            Map<Long, Long> latest = new LinkedHashMap<>();
+            for (long[] change : changes) {
+                version++;
+                assignments.add(new Object[]{version, change[0]});
+                latest.put(change[1], version);
+            }
+            jdbcTemplate.batchUpdate(ASSIGN_VERSION, assignments);
+            List<Object[]> superseded = new ArrayList<>(latest.size());
+            latest.forEach((bookId, bookVersion) -> superseded.add(new Object[]{bookId, bookVersion}));
+            jdbcTemplate.batchUpdate(DROP_SUPERSEDED, superseded);
+            jdbcTemplate.update(UPDATE_LAST_VERSION, version, CatalogFeedState.ID);
+            logger.debug("Numbered {} catalog changes up to version {}", changes.size(), version);
+        }
+
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(tombstoneRetention));
+        Long expired = jdbcTemplate.queryForObject(LAST_EXPIRED_DELETE, Long.class, cutoff);
+        if (expired != null) {
+            int purged = jdbcTemplate.update(PURGE_DELETES, expired);
+            jdbcTemplate.update(UPDATE_COMPACTED, expired, CatalogFeedState.ID);
+            logger.info("Purged {} catalog delete entries up to version {}", purged, expired);
+        }
+        return (int) (version - previous);
+    }
+}
@@ -2,10 +2,21 @@ package com.org.bookstore_backend.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+
 @Configuration
 public class AwsConfig {
 
@@ -21,6 +32,25 @@ public class AwsConfig {
     @Value("${cloud.aws.region.static}")
     private String region;
 
+    // Optional endpoint of an S3-compatible store (MinIO, LocalStack) instead of AWS
+    @Value("${cloud.aws.s3.endpoint:}")
+    private String endpoint;
+
+    // S3-compatible stand-ins usually need http://host/bucket/key instead of bucket subdomains
+    @Value("${cloud.aws.s3.path-style-access:false}")
+    private boolean pathStyleAccess;
+
+    // Objects at least this large are uploaded in parallel parts of multipart-part-size
+    @Value("${cloud.aws.s3.multipart-threshold:8MB}")
+    private DataSize multipartThreshold;
+
+    @Value("${cloud.aws.s3.multipart-part-size:8MB}")
+    private DataSize multipartPartSize;
+
+    // Upper bound on concurrent HTTP connections of the async client, i.e. parts in flight across all transfers
+    @Value("${cloud.aws.s3.max-concurrency:32}")
+    private int maxConcurrency;
+
     @Bean
     public S3Client s3Client() {
         // Create AWS basic credentials using the injected access and secret keys
@@ -29,8 +59,48 @@ public class AwsConfig {
         StaticCredentialsProvider credentialsProvider = StaticCredentialsProvider.create(credentials);
 
         // Build the S3Client, providing the region and the credentials provider
-        return S3Client.builder()
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider)
+                .forcePathStyle(pathStyleAccess);
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    // Signs URLs that let clients upload straight to the bucket
+    @Bean(destroyMethod = "close")
+    public S3Presigner s3Presigner() {
+        S3Presigner.Builder builder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyleAccess).build());
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public S3AsyncClient s3AsyncClient() {
+        StaticCredentialsProvider credentialsProvider =
+                StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+
+        // Multipart is handled by the client: uploads above the threshold are split and sent part by part in parallel
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
                 .region(Region.of(region))
-                .credentialsProvider(credentialsProvider).build() ;
+                .credentialsProvider(credentialsProvider)
+                .forcePathStyle(pathStyleAccess)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConcurrency))
+                .multipartEnabled(true)
+                .multipartConfiguration(MultipartConfiguration.builder()
+                        .thresholdInBytes(multipartThreshold.toBytes())
+                        .minimumPartSizeInBytes(multipartPartSize.toBytes())
+                        .build());
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
     }
-}
\ No newline at end of file
+}
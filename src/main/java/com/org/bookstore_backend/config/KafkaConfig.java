@@ -172,6 +172,18 @@ public class KafkaConfig {
                 .build();
     }
 
+    @Bean
+    public NewTopic bookCacheInvalidationTopic() {
+        return TopicBuilder.name("books.cache.invalidation")
+                .partitions(1)
+                .replicas(1)
+                .configs(Map.of(
+                    "retention.ms", "3600000", // 1 hour; only nodes that are up need these
+                    "cleanup.policy", "delete"
+                ))
+                .build();
+    }
+
     @Bean
     public NewTopic sagaFailedTopic() {
         return TopicBuilder.name("saga.failed")
@@ -86,8 +86,10 @@ public class SecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
                         // Public GET endpoints for books and categories
-                        .requestMatchers(HttpMethod.GET, "/api/books", "/api/books/genres", "/api/books/{id}").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/books", "/api/books/genres", "/api/books/suggestions", "/api/books/facets", "/api/books/bestsellers", "/api/books/changes", "/api/books/{id}", "/api/books/{id}/related").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/categories", "/api/categories/{id}").permitAll()
+                        // Cover images, local and from object storage
+                        .requestMatchers(HttpMethod.GET, "/api/images/local/**", "/api/images/objects/**").permitAll()
                         // Public endpoints for authentication and admin registration
                         .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/test", "/api/admin/registerAdminUser", "/api/admin/initial-setup").permitAll()
                         // Public admin settings for initial setup (no authentication required)
@@ -2,19 +2,25 @@ package com.org.bookstore_backend.controller;
 import com.org.bookstore_backend.dto.OrderDTO;
 import com.org.bookstore_backend.model.OrderStatus;
 import com.org.bookstore_backend.dto.OrderDTO;
+import com.org.bookstore_backend.services.ExportService;
 import com.org.bookstore_backend.services.MailService;
 import com.org.bookstore_backend.services.NotificationService;
 import com.org.bookstore_backend.services.KafkaNotificationService;
 import com.org.bookstore_backend.services.OrderService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
  
@@ -30,13 +36,15 @@ public class AdminOrderController {
     private final NotificationService notificationService;
     private final KafkaNotificationService kafkaNotificationService;
     private final MailService mailService;
+    private final ExportService exportService;
 
     @Autowired
-    public AdminOrderController(OrderService orderService, NotificationService notificationService, KafkaNotificationService kafkaNotificationService, MailService mailService) {
+    public AdminOrderController(OrderService orderService, NotificationService notificationService, KafkaNotificationService kafkaNotificationService, MailService mailService, ExportService exportService) {
         this.orderService = orderService;
         this.notificationService = notificationService;
         this.kafkaNotificationService = kafkaNotificationService;
         this.mailService = mailService;
+        this.exportService = exportService;
     }
 
     /**
@@ -49,6 +57,26 @@ public class AdminOrderController {
         return ResponseEntity.ok(orders);
     }
 
+    /**
+     * Streams every order with its customer and items straight from a database cursor.
+     * GET /api/admin/orders/export?format=ndjson|csv
+     */
+    @GetMapping("/export")
+    public void exportOrders(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        ExportService.Format exportFormat;
+        try {
+            exportFormat = ExportService.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        }
+        logger.info("Admin is exporting all orders as {}.", exportFormat);
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"orders-" + LocalDate.now() + "." + exportFormat.getExtension() + "\"");
+        exportService.exportOrders(exportFormat, response.getOutputStream());
+    }
+
     /**
      * Retrieves revenue statistics for the admin dashboard.
      */
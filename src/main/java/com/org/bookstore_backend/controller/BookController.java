@@ -1,13 +1,27 @@
 package com.org.bookstore_backend.controller;
 import com.org.bookstore_backend.dto.BookCreationDTO;
 import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.dto.CatalogChangesDTO;
+import com.org.bookstore_backend.dto.BookFilterDTO;
+import com.org.bookstore_backend.dto.BookPageDTO;
 import com.org.bookstore_backend.dto.BookUpdateDTO;
+import com.org.bookstore_backend.dto.FacetCountDTO;
+import com.org.bookstore_backend.dto.ImageUploadCommitDTO;
+import com.org.bookstore_backend.dto.ImageUploadRequestDTO;
+import com.org.bookstore_backend.dto.ImportJobDTO;
+import com.org.bookstore_backend.dto.RankedBookDTO;
+import com.org.bookstore_backend.exception.ResourceNotFoundException;
+import com.org.bookstore_backend.services.BookImportJobService;
 import com.org.bookstore_backend.services.BookService;
+import com.org.bookstore_backend.services.ExportService;
+import com.org.bookstore_backend.services.ImageUploadService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType; // ⭐ Import MediaType
 import org.springframework.http.ResponseEntity;
@@ -18,6 +32,9 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.net.URI;
+import java.security.Principal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -27,32 +44,110 @@ import java.util.Map;
 public class BookController {
 
     private final BookService bookService;
+    private final BookImportJobService bookImportJobService;
+    private final ExportService exportService;
+    private final ImageUploadService imageUploadService;
     private static final Logger logger = LoggerFactory.getLogger(BookController.class);
 
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, BookImportJobService bookImportJobService, ExportService exportService,
+                          ImageUploadService imageUploadService) {
         this.bookService = bookService;
+        this.bookImportJobService = bookImportJobService;
+        this.exportService = exportService;
+        this.imageUploadService = imageUploadService;
     }
 
     // --- Public Endpoints (accessible to all) ---
 
+    /**
+     * Catalog listing. Passing any of {@code size}, {@code sort}, {@code direction} or {@code cursor} returns a
+     * bounded {@link BookPageDTO}; follow {@code nextCursor} to get the next page. Without them the legacy
+     * unpaginated array is returned for existing clients. {@code facets=true} adds facet counts to the page.
+     * Author, publisher, price, year and availability filters can be combined freely with category and search.
+     */
     @GetMapping
-    public ResponseEntity<List<BookDTO>> getAllBooks(
+    public ResponseEntity<?> getAllBooks(
             @RequestParam(required = false) String category, // ⭐ New: Optional category parameter
-            @RequestParam(required = false) String search) { // ⭐ New: Optional search parameter
+            @RequestParam(required = false) String search, // ⭐ New: Optional search parameter
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String direction,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean facets,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String publisher,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Integer minYear,
+            @RequestParam(required = false) Integer maxYear,
+            @RequestParam(required = false) Boolean available) {
         logger.info("Fetching all books with category: '{}', search: '{}'", category, search);
+        BookFilterDTO filter = BookFilterDTO.builder()
+                .category(category)
+                .search(search)
+                .author(author)
+                .publisher(publisher)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .minYear(minYear)
+                .maxYear(maxYear)
+                .available(available)
+                .build();
+        boolean paged = sort != null || direction != null || size != null || cursor != null || facets;
+        if (filter.hasAttributeFilters()) {
+            return paged
+                    ? ResponseEntity.ok(bookService.filterBooks(filter, sort, direction, size, cursor, facets))
+                    : ResponseEntity.ok(bookService.searchAndFilterBooks(filter));
+        }
+        if (paged) {
+            BookPageDTO page = bookService.getBookPage(category, search, sort, direction, size, cursor, facets);
+            return ResponseEntity.ok(page);
+        }
         // ⭐ Pass parameters to the service layer for filtering
         List<BookDTO> books = bookService.getAllBooks(category, search);
         // Changed to return 200 OK with an empty list, instead of NO_CONTENT, for consistency
         return ResponseEntity.ok(books);
     }
+    /**
+     * Facet counts (genre, publisher, publicationDecade, priceBand, availability) for a listing or search,
+     * for clients that still use the unpaginated array.
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<Map<String, List<FacetCountDTO>>> getFacetCounts(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String search) {
+        return ResponseEntity.ok(bookService.getFacetCounts(category, search));
+    }
+
+    /**
+     * Genre names for the dropdown, or with {@code counts=true} each genre with its book and in-stock counts.
+     */
     @GetMapping("/genres")
-    public ResponseEntity<List<String>> getAllGenres() {
-        List<String> genres = bookService.getAllGenres(); // Assumes this method exists in BookService
+    public ResponseEntity<?> getAllGenres(@RequestParam(defaultValue = "false") boolean counts) {
+        if (counts) {
+            return ResponseEntity.ok(bookService.getGenreCounts());
+        }
+        List<String> genres = bookService.getAllGenres();
         return ResponseEntity.ok(genres);
 
     }
 
+    /**
+     * Typeahead for the search box: titles and author names matching what has been typed so far.
+     * Served from an in-memory prefix tree, so it is cheap enough to call on every keystroke.
+     */
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<String>> getBookSuggestions(
+            @RequestParam("query") String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<String> suggestions = bookService.getBookSuggestions(query);
+        if (limit >= 0 && suggestions.size() > limit) {
+            suggestions = suggestions.subList(0, limit);
+        }
+        return ResponseEntity.ok(suggestions);
+    }
+
     @GetMapping("/{id}")
     // ⭐ Example: Allow all authenticated users to view a single book detail
     public ResponseEntity<BookDTO> getBookById(@PathVariable Long id) {
@@ -65,6 +160,54 @@ public class BookController {
         }
     }
 
+    /**
+     * "Customers also bought": books most often ordered together with this one, from the in-memory
+     * co-purchase model. Empty when there is not enough order history for the book.
+     */
+    @GetMapping("/{id}/related")
+    public ResponseEntity<List<BookDTO>> getRelatedBooks(@PathVariable Long id,
+                                                         @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.getRelatedBooks(id, limit));
+    }
+
+    /**
+     * Best sellers of the last hour, day or week ({@code window} = 1h, 24h or 7d), optionally within one genre.
+     * With {@code sort=trending}, the books of the last hour or day (default) that sell fastest relative to the week.
+     * Ranked in memory from the stream of placed orders; unit counts are estimates.
+     */
+    @GetMapping("/bestsellers")
+    public ResponseEntity<List<RankedBookDTO>> getBestsellers(
+            @RequestParam(required = false) String window,
+            @RequestParam(required = false) String genre,
+            @RequestParam(defaultValue = "units") String sort,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(bookService.getBestsellers(window, genre, sort, limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Delta sync for clients that keep a local copy of the catalog: the books changed since catalog version
+     * {@code since}. Start with {@code since=0} and pass the returned version on the next call.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<CatalogChangesDTO> getCatalogChanges(@RequestParam(defaultValue = "0") long since,
+                                                               @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(bookService.getCatalogChanges(since, limit));
+    }
+
+    // Recomputes the co-purchase model from the full order history in the background
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @PostMapping("/related/rebuild")
+    public ResponseEntity<Map<String, String>> rebuildRelatedBooks() {
+        if (!bookService.rebuildRelatedBooks()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "A rebuild is already running"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Rebuild started"));
+    }
+
     /**
      * Returns a preview/sample text for a given book. Currently uses the book description
      * as the sample content truncated to a sensible length. Can be extended later to load
@@ -106,13 +249,15 @@ public class BookController {
         }
     }
 
-    // CSV bulk upload for books
+    // CSV bulk upload for books: spooled and imported in the background, poll the returned job for progress
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     @PostMapping(path = "/bulk/csv", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<Map<String, Object>> uploadBooksCsv(@RequestPart("file") MultipartFile file) {
+    public ResponseEntity<?> uploadBooksCsv(@RequestPart("file") MultipartFile file, Principal principal) {
         try {
-            Map<String, Object> summary = bookService.importBooksFromCsv(file);
-            return ResponseEntity.ok(summary);
+            ImportJobDTO job = bookImportJobService.submit(file, principal != null ? principal.getName() : null);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/books/bulk/jobs/" + job.getId()))
+                    .body(job);
         } catch (IOException e) {
             logger.error("Failed to process CSV upload: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "Invalid CSV file"));
@@ -122,6 +267,40 @@ public class BookController {
         }
     }
 
+    // Progress of a CSV import: rows processed, rate and the first failed rows with their line numbers
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/bulk/jobs/{id}")
+    public ResponseEntity<ImportJobDTO> getImportJob(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(bookImportJobService.getJob(id));
+        } catch (ResourceNotFoundException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/bulk/jobs")
+    public ResponseEntity<List<ImportJobDTO>> getImportJobs() {
+        return ResponseEntity.ok(bookImportJobService.getRecentJobs());
+    }
+
+    // Full catalog export streamed from a database cursor: ndjson (default) or csv in the bulk import's columns
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public void exportBooks(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        ExportService.Format exportFormat;
+        try {
+            exportFormat = ExportService.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        }
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"books-" + LocalDate.now() + "." + exportFormat.getExtension() + "\"");
+        exportService.exportBooks(exportFormat, response.getOutputStream());
+    }
+
     // ⭐ Uncommented PreAuthorize for admin access
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     @PutMapping(path = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE) // ⭐ Use MediaType constant
@@ -150,6 +329,36 @@ public class BookController {
         }
     }
 
+    /**
+     * First step of a direct cover upload: a signed URL the client uploads the image to, straight to object
+     * storage. Commit the returned key with {@code PUT /{id}/image} afterwards.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @PostMapping("/images/uploads")
+    public ResponseEntity<?> createImageUpload(@Valid @RequestBody ImageUploadRequestDTO request) {
+        try {
+            return ResponseEntity.ok(imageUploadService.issueTicket(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Second step of a direct cover upload: checks the uploaded object and makes it the book's image
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @PutMapping(path = "/{id}/image", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> commitImageUpload(@PathVariable Long id, @Valid @RequestBody ImageUploadCommitDTO commit) {
+        try {
+            return ResponseEntity.ok(imageUploadService.commit(id, commit.getKey()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (EntityNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found with ID: " + id);
+        } catch (IOException e) {
+            logger.error("Failed to check uploaded image {} for book with ID {}: {}", commit.getKey(), id, e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Failed to check the uploaded image.");
+        }
+    }
+
     // ⭐ Uncommented PreAuthorize for admin access
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     @DeleteMapping("/{id}")
@@ -0,0 +1,153 @@
+package com.org.bookstore_backend.controller;
+
+import com.org.bookstore_backend.services.BookImageService;
+import com.org.bookstore_backend.services.BookImageService.LocalImage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Serves the cover images of the local image directory, with ETags, long-lived caching and byte ranges.
+ * Large bodies are handed to Tomcat's sendfile support, so the bytes go from the page cache to the socket without
+ * passing through the JVM; everything else is copied with {@code FileChannel.transferTo}.
+ */
+@RestController
+@RequestMapping("${app.local-images.url-prefix:/api/images/local/}")
+@ConditionalOnProperty(name = "app.local-images.enabled", havingValue = "true", matchIfMissing = true)
+public class BookImageController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Below this a plain copy is cheaper than setting up sendfile; same as Tomcat's DefaultServlet
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    private final BookImageService bookImageService;
+    private final String cacheControl;
+
+    public BookImageController(BookImageService bookImageService,
+                               @Value("${app.local-images.max-age:30d}") Duration maxAge) {
+        this.bookImageService = bookImageService;
+        this.cacheControl = "public, max-age=" + maxAge.toSeconds();
+    }
+
+    @GetMapping("{fileName:.+}")
+    public void getLocalImage(@PathVariable String fileName,
+                              HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        LocalImage image = bookImageService.findLocalImage(fileName)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found: " + fileName));
+
+        response.setHeader(HttpHeaders.ETAG, image.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), image.etag())) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long start = 0;
+        long length = image.size();
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // A stale If-Range means the client's partial copy is of another version: send the whole file
+        if (range != null && (ifRange == null || ifRange.equals(image.etag()))) {
+            long[] bounds = parseRange(range, image.size());
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + image.size());
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + bounds[0] + "-" + bounds[1] + "/" + image.size());
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            }
+        }
+
+        response.setContentType(image.contentType());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        if (length >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file itself once this method returns
+            request.setAttribute(SENDFILE_FILENAME, image.path().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        bookImageService.transfer(image, start, length, response.getOutputStream());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a single {@code bytes=} range. Multiple ranges are answered with the whole file, which the spec
+     * allows and which images never need.
+     *
+     * @return {first, last} (inclusive), an empty array to ignore the header, or null if unsatisfiable
+     */
+    private static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long first;
+            long last;
+            if (dash == 0) {
+                // Suffix range: the last n bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                first = Math.max(0, size - suffix);
+                last = size - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+            }
+            if (first >= size || first > last) {
+                return null;
+            }
+            return new long[]{first, last};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
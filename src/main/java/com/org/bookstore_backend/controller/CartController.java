@@ -1,4 +1,5 @@
 package com.org.bookstore_backend.controller;
+import com.org.bookstore_backend.dto.CartBatchRequestDTO;
 import com.org.bookstore_backend.dto.CartDTO;
 import com.org.bookstore_backend.dto.CartItemDTO;
 import com.org.bookstore_backend.services.CartService;
@@ -142,6 +143,31 @@ public class CartController {
 
     //------------------------------------------------------------------------------------------------------------------
 
+    /**
+     * Applies a list of add/update/remove operations to the authenticated user's cart, all or none.
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<CartDTO> applyCartOperations(@Valid @RequestBody CartBatchRequestDTO request) {
+        try {
+            Long userId = getCurrentUserId();
+            logger.info("Applying {} cart operations for user ID {}", request.getOperations().size(), userId);
+            CartDTO updatedCart = cartService.applyCartOperations(userId, request.getOperations());
+            return ResponseEntity.ok(updatedCart);
+        } catch (IllegalStateException e) {
+            logger.warn("Authentication principal issue when applying cart operations: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        } catch (EntityNotFoundException e) {
+            logger.error("Book, User or CartItem not found in cart batch: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid cart batch: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
     /**
      * Clears all items from the authenticated user's cart.
      */
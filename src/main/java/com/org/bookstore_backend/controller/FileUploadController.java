@@ -1,19 +1,33 @@
 package com.org.bookstore_backend.controller;
+import com.org.bookstore_backend.dto.OrphanImageReportDTO;
+import com.org.bookstore_backend.images.CoverImageService;
+import com.org.bookstore_backend.images.OrphanImageCollector;
 import com.org.bookstore_backend.services.S3Service;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 
 @RestController
 @RequestMapping("/api/images")
 public class FileUploadController {
 
+    private final CoverImageService coverImageService;
     private final S3Service s3Service;
+    private final OrphanImageCollector orphanImageCollector;
 
-    public FileUploadController(S3Service s3Service) {
+    public FileUploadController(CoverImageService coverImageService, S3Service s3Service,
+                                OrphanImageCollector orphanImageCollector) {
+        this.coverImageService = coverImageService;
         this.s3Service = s3Service;
+        this.orphanImageCollector = orphanImageCollector;
     }
 
     @PostMapping("/upload")
@@ -23,10 +37,52 @@ public class FileUploadController {
         }
 
         try {
-            String imageUrl = s3Service.uploadFile(file);
+            // Resized variants are stored next to the original (see ImageVariant)
+            String imageUrl = coverImageService.upload(file);
             return ResponseEntity.ok(imageUrl);
         } catch (IOException e) {
             return ResponseEntity.status(500).body("Failed to upload image: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams a stored object (e.g. {@code /api/images/objects/covers/<uuid>/w320.jpg}) from S3 to the client
+     * without holding it in memory.
+     */
+    @GetMapping("/objects/{*key}")
+    public void downloadImage(@PathVariable String key, HttpServletResponse response) throws IOException {
+        String objectKey = key.startsWith("/") ? key.substring(1) : key;
+        if (objectKey.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        try {
+            s3Service.download(objectKey, object -> {
+                if (object.contentType() != null) {
+                    response.setContentType(object.contentType());
+                }
+                if (object.contentLength() != null) {
+                    response.setContentLengthLong(object.contentLength());
+                }
+                if (object.eTag() != null) {
+                    response.setHeader(HttpHeaders.ETAG, object.eTag());
+                }
+                return response.getOutputStream();
+            });
+        } catch (FileNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    // Dry run of the orphaned image collector: what the next pass would delete, with up to {@code sample} keys
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/orphans")
+    public ResponseEntity<OrphanImageReportDTO> findOrphans(@RequestParam(defaultValue = "100") int sample) {
+        try {
+            return ResponseEntity.ok(orphanImageCollector.dryRun(sample));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Failed to list stored images: " + e.getMessage());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
+import java.util.Map;
 import java.util.Set;
 
 @Getter
@@ -29,6 +30,11 @@ public class BookDTO {
 
     private String imageUrl;
 
+    /**
+     * Resized copies of the image by variant name (thumb, small, medium); null when the image has none
+     */
+    private Map<String, String> imageVariants;
+
     @NotBlank(message = "Genre is mandatory")
     private String genre;
 
@@ -0,0 +1,81 @@
+package com.org.bookstore_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Any combination of catalog predicates. Null (or blank) fields are simply not applied,
+ * so an empty filter matches the whole catalog. Text fields match case-insensitively.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookFilterDTO {
+
+    // Title or author name contains
+    private String search;
+
+    // Title contains
+    private String title;
+
+    // Genre equals
+    private String category;
+
+    // Author name contains
+    private String author;
+
+    // Publisher name contains
+    private String publisher;
+
+    private Double minPrice;
+    private Double maxPrice;
+
+    private Integer minYear;
+    private Integer maxYear;
+
+    private Integer minQuantity;
+    private Integer maxQuantity;
+
+    private Boolean available;
+
+    // ISBN equals
+    private String isbn;
+
+    public static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    /**
+     * Value-based key of the predicates, with text normalized as it is matched (ISBNs match exactly): two filters
+     * with the same key select the same books.
+     */
+    public List<Object> predicateKey() {
+        return Arrays.asList(normalized(search), normalized(title), normalized(category), normalized(author),
+                normalized(publisher), minPrice, maxPrice, minYear, maxYear, minQuantity, maxQuantity, available,
+                hasText(isbn) ? isbn.trim() : null);
+    }
+
+    private static String normalized(String value) {
+        return hasText(value) ? value.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * True when the filter uses anything beyond category and search term.
+     */
+    public boolean hasAttributeFilters() {
+        return hasText(title) || hasText(author) || hasText(publisher) || hasText(isbn)
+                || minPrice != null || maxPrice != null
+                || minYear != null || maxYear != null
+                || minQuantity != null || maxQuantity != null
+                || available != null;
+    }
+}
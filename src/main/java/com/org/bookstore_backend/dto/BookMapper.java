@@ -1,5 +1,6 @@
 package com.org.bookstore_backend.dto;
 
+import com.org.bookstore_backend.images.ImageVariant;
 import com.org.bookstore_backend.model.Author;
 import com.org.bookstore_backend.model.Book;
 import org.springframework.stereotype.Component;
@@ -37,6 +38,7 @@ public class BookMapper {
                 .isbn(book.getIsbn())
                 .publicationYear(book.getPublicationYear())
                 .imageUrl(book.getImageUrl())
+                .imageVariants(ImageVariant.urlsFor(book.getImageUrl()))
                 .genre(book.getGenre())
                 .price(book.getPrice())
                 .quantity(book.getQuantity())
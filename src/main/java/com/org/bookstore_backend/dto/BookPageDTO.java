@@ -0,0 +1,41 @@
+package com.org.bookstore_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of the catalog listing. Clients pass {@code nextCursor} back as {@code cursor}
+ * to get the following page; the token is opaque and only valid for the same sort.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookPageDTO {
+
+    private List<BookDTO> books;
+
+    // Null when this is the last page
+    private String nextCursor;
+
+    private boolean hasMore;
+
+    // Effective page size and sort, after defaults and bounds were applied
+    private int size;
+
+    private String sort;
+
+    private String direction;
+
+    // Facet name -> value counts over the whole result set (not just this page); only when requested
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, List<FacetCountDTO>> facets;
+}
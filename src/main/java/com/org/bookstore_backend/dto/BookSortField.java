@@ -0,0 +1,36 @@
+package com.org.bookstore_backend.dto;
+
+/**
+ * Sort keys supported by the paginated catalog listing. Every listing is ordered by
+ * (sort key, book id) so that the id breaks ties and keyset pagination stays stable.
+ */
+public enum BookSortField {
+    TITLE("title"),
+    PRICE("price"),
+    PUBLICATION_YEAR("publicationYear");
+
+    private final String attribute;
+
+    BookSortField(String attribute) {
+        this.attribute = attribute;
+    }
+
+    /**
+     * Name of the Book entity attribute, also accepted as the request parameter value.
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public static BookSortField fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return TITLE;
+        }
+        for (BookSortField field : values()) {
+            if (field.attribute.equalsIgnoreCase(value.trim()) || field.name().equalsIgnoreCase(value.trim())) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported sort '" + value + "'. Supported: title, price, publicationYear");
+    }
+}
@@ -0,0 +1,19 @@
+package com.org.bookstore_backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Cart changes applied in order, all or none.
+ */
+@Data
+public class CartBatchRequestDTO {
+
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 100, message = "At most 100 operations per batch")
+    private List<@Valid CartOperationDTO> operations;
+}
@@ -0,0 +1,32 @@
+package com.org.bookstore_backend.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change in a batch of cart changes.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationDTO {
+
+    public enum Action {
+        // Adds the quantity to what is already in the cart
+        ADD,
+        // Sets the quantity; 0 or less removes the book
+        UPDATE,
+        REMOVE
+    }
+
+    @NotNull(message = "Action is mandatory")
+    private Action action;
+
+    @NotNull(message = "Book ID is mandatory")
+    private Long bookId;
+
+    // Required for ADD and UPDATE, ignored for REMOVE
+    private Integer quantity;
+}
@@ -0,0 +1,27 @@
+package com.org.bookstore_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Catalog changes after a client's version. Pass {@code version} as {@code since} on the next call; while
+ * {@code hasMore} is true there are further changes to fetch right away. {@code resyncRequired} means the log no
+ * longer reaches back to the client's version: drop the local copy and sync again from {@code since=0}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatalogChangesDTO {
+    private long version;
+    private boolean resyncRequired;
+    private boolean hasMore;
+    private List<BookDTO> upserted;
+    private List<Long> deleted;
+}
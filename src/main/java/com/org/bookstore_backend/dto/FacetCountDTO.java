@@ -0,0 +1,18 @@
+package com.org.bookstore_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Number of books in the current result set that carry a given facet value (e.g. genre "Fantasy": 42).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetCountDTO {
+    private String value;
+    private int count;
+}
@@ -0,0 +1,19 @@
+package com.org.bookstore_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A genre with the number of books in it and how many of those are currently in stock.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenreCountDTO {
+    private String name;
+    private long bookCount;
+    private long inStockCount;
+}
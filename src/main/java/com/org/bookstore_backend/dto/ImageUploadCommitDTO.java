@@ -0,0 +1,14 @@
+package com.org.bookstore_backend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+/**
+ * The key of an uploaded image, as returned in the {@link ImageUploadTicketDTO}.
+ */
+@Data
+public class ImageUploadCommitDTO {
+
+    @NotBlank(message = "Key is mandatory")
+    private String key;
+}
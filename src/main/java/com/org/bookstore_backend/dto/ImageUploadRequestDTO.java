@@ -0,0 +1,27 @@
+package com.org.bookstore_backend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+/**
+ * Describes a cover image the client is about to upload straight to object storage.
+ */
+@Data
+public class ImageUploadRequestDTO {
+
+    private String fileName;
+
+    @NotBlank(message = "Content type is mandatory")
+    @Pattern(regexp = "image/[A-Za-z0-9.+-]+", message = "Only images can be uploaded")
+    private String contentType;
+
+    @Positive(message = "Content length must be positive")
+    private long contentLength;
+
+    // Hex SHA-256 of the file; the object store rejects an upload whose content does not match it
+    @NotBlank(message = "SHA-256 is mandatory")
+    @Pattern(regexp = "[0-9a-fA-F]{64}", message = "SHA-256 must be 64 hex digits")
+    private String sha256;
+}
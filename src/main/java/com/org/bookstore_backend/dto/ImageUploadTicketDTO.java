@@ -0,0 +1,29 @@
+package com.org.bookstore_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Where and how to upload a cover image. Send the file with {@code method} to {@code uploadUrl} with exactly the
+ * given {@code headers} before {@code expiresAt}, then commit {@code key} to the book. When {@code alreadyStored}
+ * is true the content is in storage already: skip the upload and commit {@code key} right away.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImageUploadTicketDTO {
+    private String key;
+    private boolean alreadyStored;
+    private String uploadUrl;
+    private String method;
+    private Map<String, String> headers;
+    private Instant expiresAt;
+}
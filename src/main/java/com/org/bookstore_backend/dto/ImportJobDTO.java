@@ -0,0 +1,35 @@
+package com.org.bookstore_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Status of a bulk catalog import job, returned by {@code POST /api/books/bulk/csv} and
+ * {@code GET /api/books/bulk/jobs/{id}}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJobDTO {
+    private Long id;
+    private String status; // QUEUED, RUNNING, COMPLETED or FAILED
+    private String fileName;
+    private long rowsProcessed;
+    private long created;
+    private long updated;
+    private long failed;
+    private double rowsPerSecond; // of the current (or last) run
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String message;
+    private List<ImportJobErrorDTO> errors; // first 100 failed rows by line, only on the single-job endpoint
+}
@@ -0,0 +1,18 @@
+package com.org.bookstore_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A CSV record that could not be imported; {@code line} is the record number (1 = first row after the header).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobErrorDTO {
+    private long line;
+    private String message;
+}
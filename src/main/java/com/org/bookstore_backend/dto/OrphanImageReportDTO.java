@@ -0,0 +1,34 @@
+package com.org.bookstore_backend.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of one pass of the orphaned image collector. In a dry run nothing is deleted and {@code orphans} are the
+ * objects a real run would delete.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class OrphanImageReportDTO {
+    private boolean dryRun;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long objectsScanned;
+    private long bytesScanned;
+    private long referencedImages; // distinct images of the bucket used by books or users
+    private long foreignReferences; // image URLs pointing somewhere else
+    private long keptInGracePeriod;
+    private long keptByRefCount; // unreferenced by the scan, but still counted as used by a book in the registry
+    private long orphans;
+    private long orphanBytes;
+    private long deleted;
+    private long failed;
+    private String message;
+    private List<String> sampleKeys = new ArrayList<>(); // first orphans found
+}
@@ -0,0 +1,23 @@
+package com.org.bookstore_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A book in a bestseller or trending ranking with its (estimated) units sold in the ranking's window.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RankedBookDTO {
+    private int rank;
+    private long unitsSold;
+    // Only in trending rankings: how many times faster the book sold in the window than over the week
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double trendScore;
+    private BookDTO book;
+}
@@ -0,0 +1,27 @@
+package com.org.bookstore_backend.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * In-process application event telling this node to drop its cached copy of a book, or of
+ * catalog-wide data such as categories when {@link #getBookId()} is null.
+ * Raised by the {@code BookCacheInvalidationBus} for changes committed on this node and,
+ * when Kafka is enabled, for changes committed on any other node.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookCacheInvalidationEvent {
+
+    /**
+     * ID of the book that changed; null when something other than a single book changed
+     */
+    private final Long bookId;
+
+    /**
+     * Node that committed the change
+     */
+    private final String originNode;
+}
@@ -0,0 +1,50 @@
+package com.org.bookstore_backend.events;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * In-process application event raised by BookServiceImpl whenever a book is created, updated or deleted.
+ * Listeners that keep in-memory views of the catalog (search index, suggestions, ...) subscribe with
+ * {@code @TransactionalEventListener} so they only see changes that were actually committed.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookCatalogEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    /**
+     * The kind of change that happened to the book
+     */
+    private final Type type;
+
+    /**
+     * ID of the affected book
+     */
+    private final Long bookId;
+
+    /**
+     * State of the book after the change; null for DELETED events
+     */
+    private final BookDTO book;
+
+    public static BookCatalogEvent created(BookDTO book) {
+        return new BookCatalogEvent(Type.CREATED, book.getId(), book);
+    }
+
+    public static BookCatalogEvent updated(BookDTO book) {
+        return new BookCatalogEvent(Type.UPDATED, book.getId(), book);
+    }
+
+    public static BookCatalogEvent deleted(Long bookId) {
+        return new BookCatalogEvent(Type.DELETED, bookId, null);
+    }
+}
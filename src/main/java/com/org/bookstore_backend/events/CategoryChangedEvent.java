@@ -0,0 +1,19 @@
+package com.org.bookstore_backend.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * In-process application event raised by CategoryServiceImpl whenever a category is created, renamed or deleted.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class CategoryChangedEvent {
+
+    /**
+     * ID of the affected category
+     */
+    private final Long categoryId;
+}
@@ -0,0 +1,27 @@
+package com.org.bookstore_backend.events;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Order stream for single-node deployments running without Kafka: every committed {@link OrderPlacedEvent} is
+ * passed on as an {@link OrderStreamEvent}.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "false")
+public class InProcessOrderFeed {
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public InProcessOrderFeed(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        applicationEventPublisher.publishEvent(new OrderStreamEvent(event, System.currentTimeMillis()));
+    }
+}
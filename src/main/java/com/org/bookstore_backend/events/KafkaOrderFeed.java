@@ -0,0 +1,73 @@
+package com.org.bookstore_backend.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order stream for multi-node deployments: the {@code ORDER_CREATED} events of the {@code orders.events} topic
+ * are passed on as {@link OrderStreamEvent}s.
+ * <p>
+ * Every node consumes the topic in its own consumer group, so each node sees the orders placed on all nodes,
+ * including its own. Consumption starts at the latest offset: in-memory consumers cover older orders from the
+ * database or from their own snapshots.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = true)
+public class KafkaOrderFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaOrderFeed.class);
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final ObjectMapper objectMapper;
+
+    public KafkaOrderFeed(ApplicationEventPublisher applicationEventPublisher, ObjectMapper objectMapper) {
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    @KafkaListener(
+        topics = "orders.events",
+        groupId = "order-stream-#{T(java.util.UUID).randomUUID().toString()}",
+        containerFactory = "kafkaListenerContainerFactory",
+        properties = "auto.offset.reset=latest",
+        id = "order-stream-consumer"
+    )
+    public void consume(@Payload String message) {
+        try {
+            DomainEvent event = objectMapper.readValue(message, DomainEvent.class);
+            if (!"ORDER_CREATED".equals(event.getType()) || event.getPayloadJson() == null) {
+                return;
+            }
+            JsonNode payload = objectMapper.readTree(event.getPayloadJson());
+            List<OrderPlacedEvent.Item> items = new ArrayList<>();
+            if (payload.path("items").isArray()) {
+                for (JsonNode item : payload.path("items")) {
+                    items.add(new OrderPlacedEvent.Item(item.path("bookId").asLong(), item.path("quantity").asInt(1),
+                            item.hasNonNull("genre") ? item.get("genre").asText() : null));
+                }
+            } else if (payload.path("bookIds").isArray()) {
+                for (JsonNode bookId : payload.path("bookIds")) {
+                    items.add(new OrderPlacedEvent.Item(bookId.asLong(), 1, null));
+                }
+            } else {
+                return; // published before orders carried their books
+            }
+            long occurredAt = event.getOccurredAt() != null ? event.getOccurredAt() : System.currentTimeMillis();
+            OrderPlacedEvent order = new OrderPlacedEvent(Long.parseLong(event.getAggregateId()), items);
+            applicationEventPublisher.publishEvent(new OrderStreamEvent(order, occurredAt));
+        } catch (JsonProcessingException | NumberFormatException e) {
+            logger.error("Ignoring malformed order event: {}", message, e);
+        }
+    }
+}
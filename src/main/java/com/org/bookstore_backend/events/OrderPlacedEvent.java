@@ -0,0 +1,44 @@
+package com.org.bookstore_backend.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * In-process application event raised by OrderServiceImpl when an order has been placed. It is the local
+ * counterpart of the {@code ORDER_CREATED} domain event and carries the lines of the order, so in-memory
+ * listeners (recommendations, rankings) can update themselves once the order is committed.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class OrderPlacedEvent {
+
+    /**
+     * One book of the order.
+     *
+     * @param genre genre of the book when the order was placed; may be null in events from older publishers
+     */
+    public record Item(Long bookId, int quantity, String genre) {
+    }
+
+    /**
+     * ID of the new order
+     */
+    private final Long orderId;
+
+    /**
+     * The books of the order, one item per book
+     */
+    private final List<Item> items;
+
+    /**
+     * @return distinct IDs of the books in the order
+     */
+    public List<Long> getBookIds() {
+        return items.stream().map(Item::bookId).distinct().collect(Collectors.toList());
+    }
+}
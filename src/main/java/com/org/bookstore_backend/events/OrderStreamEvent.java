@@ -0,0 +1,26 @@
+package com.org.bookstore_backend.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * In-process application event for consumers of the stream of placed orders. Every order placed on any node is
+ * delivered once on every node: from the {@code orders.events} topic when Kafka is enabled, or from the local
+ * {@link OrderPlacedEvent} after commit otherwise (see {@link KafkaOrderFeed} and {@link InProcessOrderFeed}).
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class OrderStreamEvent {
+
+    /**
+     * The order and its books
+     */
+    private final OrderPlacedEvent order;
+
+    /**
+     * When the order was placed (milliseconds since epoch)
+     */
+    private final long occurredAt;
+}
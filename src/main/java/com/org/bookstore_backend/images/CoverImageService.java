@@ -0,0 +1,216 @@
+package com.org.bookstore_backend.images;
+
+import com.org.bookstore_backend.model.ImageBlob;
+import com.org.bookstore_backend.services.S3Service;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores uploaded cover images together with their {@link ImageVariant}s.
+ * <p>
+ * Storage is content-addressed: an upload is hashed first and stored under {@code covers/<sha256>/}, so content
+ * that is already stored costs one hash pass and one lookup, and is neither resized nor transferred again.
+ * <p>
+ * Decoding a phone photo takes tens of megabytes of heap and a good share of a core, so the resizing runs on a
+ * dedicated pool of {@code books.images.workers} threads with a queue of {@code books.images.queue-capacity}
+ * uploads; the uploading request waits for its own job. Each variant is scaled down with bilinear interpolation in
+ * halving steps (which comes close to one bicubic pass at a fraction of the cost) and written as a JPEG of quality
+ * {@code books.images.jpeg-quality}. Images ImageIO cannot decode (e.g. WebP), uploads that do not fit in the
+ * queue and jobs slower than {@code books.images.timeout} are stored as they are, without variants.
+ * <p>
+ * Callers run {@link #upload} outside their database transaction, so no connection is held while it waits.
+ */
+@Service
+public class CoverImageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoverImageService.class);
+
+    private final S3Service s3Service;
+    private final ImageBlobRegistry imageBlobRegistry;
+    private final ThreadPoolExecutor workers;
+    private final float jpegQuality;
+    private final Duration timeout;
+
+    public CoverImageService(S3Service s3Service,
+                             ImageBlobRegistry imageBlobRegistry,
+                             @Value("${books.images.workers:2}") int workers,
+                             @Value("${books.images.queue-capacity:16}") int queueCapacity,
+                             @Value("${books.images.jpeg-quality:0.8}") float jpegQuality,
+                             @Value("${books.images.timeout:30s}") Duration timeout) {
+        this.s3Service = s3Service;
+        this.imageBlobRegistry = imageBlobRegistry;
+        this.jpegQuality = Math.max(0.1f, Math.min(1f, jpegQuality));
+        this.timeout = timeout;
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, workers);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+            Thread thread = new Thread(runnable, "cover-image-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Stores the image and its variants.
+     *
+     * @return URL of the original; {@link ImageVariant#urlsFor} gives the variant URLs
+     */
+    public String upload(MultipartFile file) throws IOException {
+        String contentHash = S3Service.sha256Hex(file);
+        Optional<ImageBlob> known = imageBlobRegistry.find(contentHash);
+        if (known.isPresent()) {
+            // Same bytes as an earlier upload: no resizing, no transfer
+            imageBlobRegistry.recordUpload(contentHash, known.get().getObjectKey(), file.getSize(), file.getContentType());
+            logger.info("Cover image {} is already stored as {}", file.getOriginalFilename(), known.get().getObjectKey());
+            return s3Service.urlFor(known.get().getObjectKey());
+        }
+
+        String folder = "covers/" + contentHash + "/";
+        String key = folder + ImageVariant.ORIGINAL_NAME + S3Service.extensionOf(file.getOriginalFilename());
+        if (s3Service.exists(key)) {
+            // Stored before the registry knew about it
+            imageBlobRegistry.recordUpload(contentHash, key, file.getSize(), file.getContentType());
+            return s3Service.urlFor(key);
+        }
+        Map<ImageVariant, byte[]> variants = resize(file);
+        if (variants == null) {
+            key = "blobs/" + contentHash + S3Service.extensionOf(file.getOriginalFilename());
+            s3Service.uploadFile(file, key);
+        } else {
+            for (Map.Entry<ImageVariant, byte[]> variant : variants.entrySet()) {
+                s3Service.uploadBytes(folder + variant.getKey().fileName(), variant.getValue(), "image/jpeg");
+            }
+            // The original goes last: its key is what tells readers the variants exist
+            s3Service.uploadFile(file, key);
+            logger.info("Stored cover image {} with {} variants", key, variants.size());
+        }
+        imageBlobRegistry.recordUpload(contentHash, key, file.getSize(), file.getContentType());
+        return s3Service.urlFor(key);
+    }
+
+    /**
+     * @return the encoded variants, or null if none could be made
+     */
+    private Map<ImageVariant, byte[]> resize(MultipartFile file) throws IOException {
+        Future<Map<ImageVariant, byte[]>> job;
+        try {
+            job = workers.submit(() -> {
+                try (InputStream in = file.getInputStream()) {
+                    BufferedImage original = ImageIO.read(in);
+                    return original == null ? null : encodeVariants(original);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Image workers are saturated; storing {} without variants", file.getOriginalFilename());
+            return null;
+        }
+        try {
+            Map<ImageVariant, byte[]> variants = job.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (variants == null) {
+                logger.warn("Cannot decode {} ({}); storing it without variants", file.getOriginalFilename(), file.getContentType());
+            }
+            return variants;
+        } catch (TimeoutException e) {
+            job.cancel(true);
+            logger.warn("Resizing {} took longer than {}; storing it without variants", file.getOriginalFilename(), timeout);
+            return null;
+        } catch (ExecutionException e) {
+            logger.warn("Failed to resize {}: {}; storing it without variants", file.getOriginalFilename(), e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            job.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while resizing " + file.getOriginalFilename());
+        }
+    }
+
+    private Map<ImageVariant, byte[]> encodeVariants(BufferedImage original) throws IOException {
+        Map<ImageVariant, byte[]> variants = new EnumMap<>(ImageVariant.class);
+        // Largest first, each one scaled from the previous: far less work than scaling every variant from the original
+        BufferedImage source = original;
+        ImageVariant[] sizes = ImageVariant.values();
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            source = scaleToWidth(source, sizes[i].getWidth());
+            variants.put(sizes[i], encodeJpeg(source));
+        }
+        return variants;
+    }
+
+    /**
+     * Scales down to {@code width} (never up), onto an opaque RGB canvas since JPEG has no alpha channel.
+     */
+    private static BufferedImage scaleToWidth(BufferedImage image, int width) {
+        int targetWidth = Math.min(width, image.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            // Halve until within a factor of two of the target, then one last step to the exact size
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = Math.max(targetHeight, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return current;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,86 @@
+package com.org.bookstore_backend.images;
+
+import com.org.bookstore_backend.model.ImageBlob;
+import com.org.bookstore_backend.repo.ImageBlobRepo;
+import com.org.bookstore_backend.services.S3Service;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * The stored image blobs and how many books use each of them.
+ * <p>
+ * Blobs are recorded in their own transaction as soon as they are stored, so one uploaded for a book change that
+ * then rolls back is still known (with no references) rather than lost in the bucket. References are counted in
+ * the transaction of the book change.
+ */
+@Component
+public class ImageBlobRegistry {
+
+    private final ImageBlobRepo imageBlobRepository;
+    private final S3Service s3Service;
+    private final TransactionTemplate newTransaction;
+
+    public ImageBlobRegistry(ImageBlobRepo imageBlobRepository,
+                             S3Service s3Service,
+                             PlatformTransactionManager transactionManager) {
+        this.imageBlobRepository = imageBlobRepository;
+        this.s3Service = s3Service;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public Optional<ImageBlob> find(String contentHash) {
+        return imageBlobRepository.findById(contentHash);
+    }
+
+    /**
+     * Records that the content was uploaded (stored now or found already stored).
+     */
+    public void recordUpload(String contentHash, String objectKey, long size, String contentType) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            newTransaction.executeWithoutResult(status -> {
+                if (imageBlobRepository.touch(contentHash, now) == 0) {
+                    imageBlobRepository.save(ImageBlob.builder()
+                            .contentHash(contentHash)
+                            .objectKey(objectKey)
+                            .size(size)
+                            .contentType(contentType)
+                            .refCount(0)
+                            .createdAt(now)
+                            .lastUploadedAt(now)
+                            .build());
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Recorded concurrently by another upload of the same content
+        }
+    }
+
+    /**
+     * Counts one more book using the image; URLs that are not stored blobs are ignored.
+     */
+    public void retain(String imageUrl) {
+        adjust(imageUrl, 1);
+    }
+
+    /**
+     * Counts one book less using the image.
+     */
+    public void release(String imageUrl) {
+        adjust(imageUrl, -1);
+    }
+
+    private void adjust(String imageUrl, int delta) {
+        String key = s3Service.keyOf(imageUrl);
+        if (key != null) {
+            imageBlobRepository.adjustRefCount(key, delta);
+        }
+    }
+}
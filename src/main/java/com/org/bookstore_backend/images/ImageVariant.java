@@ -0,0 +1,72 @@
+package com.org.bookstore_backend.images;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The resized copies generated for every uploaded cover image, stored next to the original.
+ * <p>
+ * A cover with variants is stored as {@code covers/<sha256>/original.<ext>} and its variants as
+ * {@code covers/<sha256>/w<width>.jpg} (older uploads use a UUID instead of the content hash). Because the
+ * original only gets that key once all variants are stored, the variant URLs of a book follow from its image URL
+ * alone.
+ */
+public enum ImageVariant {
+    THUMB("thumb", 160),
+    SMALL("small", 320),
+    MEDIUM("medium", 640);
+
+    static final String ORIGINAL_NAME = "original";
+
+    private static final Pattern ORIGINAL_URL = Pattern.compile("^(.*/covers/(?:[0-9a-f]{64}|[0-9a-f-]{36})/)" + ORIGINAL_NAME + "(\\.[A-Za-z0-9]+)?$");
+
+    private final String name;
+    private final int width;
+
+    ImageVariant(String name, int width) {
+        this.name = name;
+        this.width = width;
+    }
+
+    /**
+     * @return the key used in {@code BookDTO.imageVariants}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the maximum width in pixels; smaller originals are not scaled up
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return file name of the variant within the cover's folder
+     */
+    String fileName() {
+        return "w" + width + ".jpg";
+    }
+
+    /**
+     * @return variant name to URL, smallest first, or null if the image has no variants (no image, a local or
+     * external URL, or an upload that could not be decoded)
+     */
+    public static Map<String, String> urlsFor(String imageUrl) {
+        if (imageUrl == null) {
+            return null;
+        }
+        Matcher matcher = ORIGINAL_URL.matcher(imageUrl);
+        if (!matcher.matches()) {
+            return null;
+        }
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (ImageVariant variant : values()) {
+            urls.put(variant.name, matcher.group(1) + variant.fileName());
+        }
+        return urls;
+    }
+}
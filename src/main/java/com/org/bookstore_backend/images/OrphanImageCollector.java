@@ -0,0 +1,412 @@
+package com.org.bookstore_backend.images;
+
+import com.org.bookstore_backend.dto.OrphanImageReportDTO;
+import com.org.bookstore_backend.model.ImageBlob;
+import com.org.bookstore_backend.repo.ImageBlobRepo;
+import com.org.bookstore_backend.services.S3Service;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import javax.sql.DataSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deletes images in the bucket that no book or user refers to any more.
+ * <p>
+ * Every {@code books.images.gc.interval} a pass reads the image URLs of {@code books} and {@code users} into a
+ * compact set of 64-bit key hashes, then streams the bucket listing page by page and checks each object against
+ * it. A cover folder ({@code covers/<hash>/}) counts as one image, so the variants of a used cover are kept with
+ * it. Objects modified within {@code books.images.gc.grace-period}, and blobs the registry saw uploaded within it,
+ * are kept: they may belong to an upload whose book is not saved yet. So are blobs whose registry reference count
+ * says a book still uses them, which double-checks the scan against books saved after it read the references.
+ * Orphans are deleted in multi-object
+ * requests of {@code books.images.gc.batch-size}, paced to {@code books.images.gc.deletes-per-second}, and their
+ * registry entries are removed so the content is stored again if it is uploaded later.
+ * <p>
+ * A hash collision can only make an orphan look used, never the reverse. Passes run one at a time on a single
+ * background thread, which also keeps the database connection of the reference scan off request threads.
+ */
+@Component
+public class OrphanImageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrphanImageCollector.class);
+
+    // S3 accepts at most 1000 keys per multi-object delete
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_SAMPLE_KEYS = 1000;
+
+    private static final String IMAGE_URLS = "select image_url from books where image_url is not null "
+            + "union all select image_url from users where image_url is not null";
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("(?:covers/([0-9a-f]{64})/|blobs/([0-9a-f]{64})(?:\\.[a-z0-9]{1,10})?)");
+
+    private final S3Service s3Service;
+    private final ImageBlobRepo imageBlobRepository;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration initialDelay;
+    private final Duration interval;
+    private final Duration gracePeriod;
+    private final int batchSize;
+    private final int deletesPerSecond;
+    private final ScheduledExecutorService worker;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public OrphanImageCollector(S3Service s3Service,
+                                ImageBlobRepo imageBlobRepository,
+                                DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${books.images.gc.enabled:true}") boolean enabled,
+                                @Value("${books.images.gc.initial-delay:10m}") Duration initialDelay,
+                                @Value("${books.images.gc.interval:6h}") Duration interval,
+                                @Value("${books.images.gc.grace-period:24h}") Duration gracePeriod,
+                                @Value("${books.images.gc.batch-size:500}") int batchSize,
+                                @Value("${books.images.gc.deletes-per-second:200}") int deletesPerSecond) {
+        this.s3Service = s3Service;
+        this.imageBlobRepository = imageBlobRepository;
+        // Read through a cursor so the driver does not buffer every image URL as a row object
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(10_000);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialDelay = initialDelay;
+        this.interval = interval;
+        this.gracePeriod = gracePeriod;
+        this.batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, batchSize));
+        this.deletesPerSecond = Math.max(1, deletesPerSecond);
+        this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orphan-image-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            worker.scheduleWithFixedDelay(this::collectSafely, initialDelay.toMillis(),
+                    Math.max(60_000, interval.toMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Finds the orphans without deleting anything.
+     *
+     * @throws IllegalStateException if a pass is already running
+     */
+    public OrphanImageReportDTO dryRun(int sampleSize) throws IOException {
+        if (running.get()) {
+            throw new IllegalStateException("An orphaned image pass is already running");
+        }
+        try {
+            return worker.submit(() -> collect(true, sampleSize)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while looking for orphaned images");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Failed to look for orphaned images: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void collectSafely() {
+        try {
+            OrphanImageReportDTO report = collect(false, 0);
+            logger.info("Orphaned image pass scanned {} objects ({} bytes), deleted {} of {} orphans ({} failed), kept {} in the grace period and {} by reference count{}",
+                    report.getObjectsScanned(), report.getBytesScanned(), report.getDeleted(), report.getOrphans(),
+                    report.getFailed(), report.getKeptInGracePeriod(), report.getKeptByRefCount(),
+                    report.getMessage() != null ? ": " + report.getMessage() : "");
+        } catch (IOException | RuntimeException e) {
+            // The next pass starts over
+            logger.error("Orphaned image pass failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private OrphanImageReportDTO collect(boolean dryRun, int sampleSize) throws IOException {
+        running.set(true);
+        try {
+            OrphanImageReportDTO report = new OrphanImageReportDTO();
+            report.setDryRun(dryRun);
+            report.setStartedAt(LocalDateTime.now());
+            Instant cutoff = Instant.now().minus(gracePeriod);
+            LocalDateTime registryCutoff = LocalDateTime.now().minus(gracePeriod);
+
+            KeySet referenced = readReferences(report);
+            boolean deleting = !dryRun;
+            if (deleting && report.getReferencedImages() == 0 && report.getForeignReferences() > 0) {
+                // Every URL pointing elsewhere means the bucket or endpoint is misconfigured, not that all images are unused
+                deleting = false;
+                report.setMessage("No image URL points to this bucket; nothing was deleted");
+            }
+
+            Sweep sweep = new Sweep(report, deleting, registryCutoff, Math.max(0, Math.min(MAX_SAMPLE_KEYS, sampleSize)));
+            try {
+                s3Service.listObjects("", object -> {
+                    report.setObjectsScanned(report.getObjectsScanned() + 1);
+                    report.setBytesScanned(report.getBytesScanned() + sizeOf(object));
+                    if (referenced.contains(hash(unitOf(object.key())))) {
+                        return;
+                    }
+                    if (object.lastModified() != null && object.lastModified().isAfter(cutoff)) {
+                        report.setKeptInGracePeriod(report.getKeptInGracePeriod() + 1);
+                        return;
+                    }
+                    sweep.add(object);
+                });
+                sweep.flush();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            report.setFinishedAt(LocalDateTime.now());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private KeySet readReferences(OrphanImageReportDTO report) {
+        KeySet referenced = new KeySet();
+        readOnlyTransaction.executeWithoutResult(status -> cursorTemplate.query(IMAGE_URLS, (RowCallbackHandler) rs -> {
+            String key = s3Service.keyOf(rs.getString(1));
+            if (key == null) {
+                report.setForeignReferences(report.getForeignReferences() + 1);
+            } else {
+                referenced.add(hash(unitOf(key)));
+            }
+        }));
+        report.setReferencedImages(referenced.size());
+        return referenced;
+    }
+
+    /**
+     * Orphans found so far, deleted (or only counted) one batch at a time.
+     */
+    private final class Sweep {
+        private final OrphanImageReportDTO report;
+        private final boolean deleting;
+        private final LocalDateTime registryCutoff;
+        private final int sampleSize;
+        private final List<S3Object> batch = new ArrayList<>();
+
+        Sweep(OrphanImageReportDTO report, boolean deleting, LocalDateTime registryCutoff, int sampleSize) {
+            this.report = report;
+            this.deleting = deleting;
+            this.registryCutoff = registryCutoff;
+            this.sampleSize = sampleSize;
+        }
+
+        void add(S3Object object) {
+            batch.add(object);
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // Content the registry saw uploaded recently may be about to be attached to a book
+            Map<String, ImageBlob> blobs = new HashMap<>();
+            Set<String> hashes = new HashSet<>();
+            for (S3Object object : batch) {
+                String contentHash = contentHashOf(unitOf(object.key()));
+                if (contentHash != null) {
+                    hashes.add(contentHash);
+                }
+            }
+            imageBlobRepository.findAllById(hashes).forEach(blob -> blobs.put(blob.getContentHash(), blob));
+
+            List<String> keys = new ArrayList<>();
+            for (S3Object object : batch) {
+                ImageBlob blob = blobs.get(contentHashOf(unitOf(object.key())));
+                if (blob != null && blob.getLastUploadedAt().isAfter(registryCutoff)) {
+                    report.setKeptInGracePeriod(report.getKeptInGracePeriod() + 1);
+                    continue;
+                }
+                // A book saved after the scan, or a count that drifted: either way not safe to delete
+                if (blob != null && blob.getRefCount() > 0) {
+                    report.setKeptByRefCount(report.getKeptByRefCount() + 1);
+                    continue;
+                }
+                keys.add(object.key());
+                report.setOrphans(report.getOrphans() + 1);
+                report.setOrphanBytes(report.getOrphanBytes() + sizeOf(object));
+                if (report.getSampleKeys().size() < sampleSize) {
+                    report.getSampleKeys().add(object.key());
+                }
+            }
+            batch.clear();
+            if (deleting && !keys.isEmpty()) {
+                delete(keys, blobs.values());
+            }
+        }
+
+        private void delete(List<String> keys, Iterable<ImageBlob> blobs) {
+            List<String> failed;
+            try {
+                failed = s3Service.deleteObjects(keys);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            report.setDeleted(report.getDeleted() + keys.size() - failed.size());
+            report.setFailed(report.getFailed() + failed.size());
+            meterRegistry.counter("images.gc.deleted").increment(keys.size() - failed.size());
+
+            // A registry entry goes once the object it points to is gone; the variants of a folder may go earlier
+            Set<String> deleted = new HashSet<>(keys);
+            failed.forEach(deleted::remove);
+            List<String> forgotten = new ArrayList<>();
+            for (ImageBlob blob : blobs) {
+                if (deleted.contains(blob.getObjectKey())) {
+                    forgotten.add(blob.getContentHash());
+                }
+            }
+            if (!forgotten.isEmpty()) {
+                imageBlobRepository.deleteAllByIdInBatch(forgotten);
+            }
+            pace(keys.size());
+        }
+
+        private void pace(int deletes) {
+            try {
+                Thread.sleep(deletes * 1000L / deletesPerSecond);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted while deleting orphaned images"));
+            }
+        }
+    }
+
+    /**
+     * The unit an object is used as: its cover folder for objects under {@code covers/<folder>/}, otherwise the key.
+     */
+    static String unitOf(String key) {
+        if (key.startsWith("covers/")) {
+            int slash = key.indexOf('/', "covers/".length());
+            if (slash > "covers/".length()) {
+                return key.substring(0, slash + 1);
+            }
+        }
+        return key;
+    }
+
+    private static String contentHashOf(String unit) {
+        Matcher matcher = CONTENT_ADDRESSED.matcher(unit);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+    }
+
+    private static long sizeOf(S3Object object) {
+        return object.size() != null ? object.size() : 0;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 units, finished with a multiplicative mix
+    private static long hash(String unit) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < unit.length(); i++) {
+            h ^= unit.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Open-addressing set of 64-bit hashes with linear probing: 8 bytes per slot instead of a String and a hash
+     * map node per referenced image.
+     */
+    private static final class KeySet {
+        private static final long EMPTY = 0L;
+
+        private long[] slots = new long[1024];
+        private int size;
+
+        void add(long hash) {
+            long key = hash == EMPTY ? 1L : hash;
+            if ((size + 1) * 2 > slots.length) {
+                grow();
+            }
+            if (insert(slots, key)) {
+                size++;
+            }
+        }
+
+        boolean contains(long hash) {
+            long key = hash == EMPTY ? 1L : hash;
+            int mask = slots.length - 1;
+            for (int slot = (int) key & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (slots[slot] == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static boolean insert(long[] table, long key) {
+            int mask = table.length - 1;
+            int slot = (int) key & mask;
+            while (table[slot] != EMPTY) {
+                if (table[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = key;
+            return true;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            Arrays.stream(old).filter(key -> key != EMPTY).forEach(key -> insert(slots, key));
+        }
+    }
+}
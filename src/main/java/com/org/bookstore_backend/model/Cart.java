@@ -26,6 +26,11 @@ public class Cart {
     @JoinColumn(name = "user_id", nullable = false, unique = true)
     private User user;
 
+    // Raised by every write of the cart or its items; CartStore only writes over the version it read
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
     // One-to-many relationship with CartItems
     // When a cart is deleted, its items should also be deleted (CascadeType.ALL)
     // 'mappedBy' indicates that CartItem owns the relationship (has the foreign key)
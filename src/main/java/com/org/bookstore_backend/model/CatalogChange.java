@@ -0,0 +1,53 @@
+package com.org.bookstore_backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the catalog change log behind {@code GET /api/books/changes}.
+ * <p>
+ * Rows are written without a version in the transaction that changes the book (an outbox), and numbered
+ * afterwards by CatalogChangeSequencer in the order they became visible, so a client that has read up to a
+ * version can never miss a change that commits later with a lower number. The log is compacted to the latest
+ * change per book.
+ */
+@Entity
+@Table(name = "catalog_changes",
+        indexes = {
+                @Index(name = "idx_catalog_changes_version", columnList = "version", unique = true),
+                @Index(name = "idx_catalog_changes_book", columnList = "book_id")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatalogChange {
+
+    public enum Type {
+        UPSERT,
+        DELETE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", length = 10, nullable = false)
+    private Type changeType;
+
+    /**
+     * Catalog version of the change; null until the sequencer has numbered it
+     */
+    @Column(name = "version")
+    private Long version;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,35 @@
+package com.org.bookstore_backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Single-row state of the catalog change log. The row is locked while versions are assigned, which keeps
+ * versions in commit order across nodes.
+ */
+@Entity
+@Table(name = "catalog_feed_state")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatalogFeedState {
+
+    public static final long ID = 1L;
+
+    @Id
+    private Long id;
+
+    /**
+     * Highest version assigned so far: the current catalog version
+     */
+    @Column(name = "last_version", nullable = false)
+    private long lastVersion;
+
+    /**
+     * Highest version of a delete that was purged from the log; clients behind it must resync from scratch
+     */
+    @Column(name = "compacted_through", nullable = false)
+    private long compactedThrough;
+}
@@ -0,0 +1,56 @@
+package com.org.bookstore_backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stored image, identified by the SHA-256 of its content. The same cover uploaded for several books, or
+ * uploaded again on every edit, is stored once under a key derived from that hash; {@code refCount} is the number
+ * of books using it.
+ */
+@Entity
+@Table(name = "image_blobs",
+        indexes = @Index(name = "idx_image_blobs_object_key", columnList = "object_key", unique = true))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImageBlob {
+
+    /**
+     * Hex SHA-256 of the uploaded bytes
+     */
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * Storage key of the original; variants, if any, are stored next to it
+     */
+    @Column(name = "object_key", length = 300, nullable = false)
+    private String objectKey;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long size;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    /**
+     * Number of books whose image this is
+     */
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Last time the content was uploaded, new or not
+     */
+    @Column(name = "last_uploaded_at", nullable = false)
+    private LocalDateTime lastUploadedAt;
+}
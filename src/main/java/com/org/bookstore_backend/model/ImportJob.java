@@ -0,0 +1,74 @@
+package com.org.bookstore_backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A bulk catalog import. The uploaded file is spooled to local disk and imported in chunks; the counters are
+ * advanced in the same transaction as each chunk (see {@link ImportJobChunk}), so they always match what has
+ * been committed.
+ */
+@Entity
+@Table(name = "import_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private ImportJobStatus status;
+
+    @Column(name = "file_name", length = 255)
+    private String fileName;
+
+    @Column(name = "spool_path", length = 1000, nullable = false)
+    private String spoolPath;
+
+    @Column(name = "submitted_by", length = 255)
+    private String submittedBy;
+
+    @Column(name = "rows_processed", nullable = false)
+    private long rowsProcessed;
+
+    @Column(name = "created_count", nullable = false)
+    private long createdCount;
+
+    @Column(name = "updated_count", nullable = false)
+    private long updatedCount;
+
+    @Column(name = "failed_count", nullable = false)
+    private long failedCount;
+
+    @Column(name = "chunks_committed", nullable = false)
+    private int chunksCommitted;
+
+    @Column(name = "submitted_at", nullable = false)
+    private LocalDateTime submittedAt;
+
+    // Start of the current (or last) run; a resumed job restarts this clock
+    @Column(name = "run_started_at")
+    private LocalDateTime runStartedAt;
+
+    // rowsProcessed when the current run started, to compute the rate of this run only
+    @Column(name = "rows_at_run_start", nullable = false)
+    private long rowsAtRunStart;
+
+    // Renewed by the node that holds the spool file while the job is queued or running there
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "message", length = 1000)
+    private String message;
+}
@@ -0,0 +1,29 @@
+package com.org.bookstore_backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Marks one chunk of an {@link ImportJob} as committed. Written in the transaction that writes the chunk's books,
+ * so a resumed job skips exactly the chunks whose books are in the database.
+ */
+@Entity
+@Table(name = "import_job_chunks",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"job_id", "chunk_index"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJobChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+}
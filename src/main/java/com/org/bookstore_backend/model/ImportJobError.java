@@ -0,0 +1,31 @@
+package com.org.bookstore_backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * A CSV record of an {@link ImportJob} that could not be imported.
+ */
+@Entity
+@Table(name = "import_job_errors", indexes = @Index(columnList = "job_id, line_number"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJobError {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    // CSV record number, 1 being the first row after the header
+    @Column(name = "line_number", nullable = false)
+    private long lineNumber;
+
+    @Column(name = "message", length = 1000)
+    private String message;
+}
@@ -0,0 +1,8 @@
+package com.org.bookstore_backend.model;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,273 @@
+package com.org.bookstore_backend.ranking;
+
+import com.org.bookstore_backend.events.OrderPlacedEvent;
+import com.org.bookstore_backend.events.OrderStreamEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bestseller and trending rankings over the last hour, day and week, overall and per genre, computed from the
+ * stream of placed orders without ever querying the database. Bestsellers rank by units sold in a window; trending
+ * ranks the books of the last hour or day by how much faster they sold there than over the whole week.
+ * <p>
+ * Every {@link OrderStreamEvent} adds the units of each book to one {@link SlidingTopK} per
+ * {@link RankingWindow}, in the overall scope and in the scope of the book's genre. The state is written to
+ * {@code books.rankings.snapshot-path} every {@code books.rankings.snapshot-interval} and on shutdown, and read
+ * back on startup, so a restart only loses the orders placed since the last snapshot. The path has no default and
+ * must be on a persistent volume; startup warns when no snapshot is found.
+ */
+@Component
+public class BestsellerRankings {
+
+    private static final Logger logger = LoggerFactory.getLogger(BestsellerRankings.class);
+
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final int SKETCH_DEPTH = 4;
+    private static final String ALL = "";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<RankingWindow, SlidingTopK> windows = new EnumMap<>(RankingWindow.class);
+    private final int sketchWidth;
+    private final int candidates;
+    private final double trendingPrior;
+    private final Path snapshotPath;
+    private final Duration snapshotInterval;
+    private final ScheduledExecutorService snapshots;
+
+    public BestsellerRankings(@Value("${books.rankings.sketch-width:4096}") int sketchWidth,
+                              @Value("${books.rankings.candidates:100}") int candidates,
+                              @Value("${books.rankings.snapshot-path}") String snapshotPath,
+                              @Value("${books.rankings.snapshot-interval:5m}") Duration snapshotInterval,
+                              @Value("${books.rankings.trending-prior:20}") double trendingPrior) {
+        this.sketchWidth = Integer.highestOneBit(Math.max(64, sketchWidth));
+        this.candidates = Math.max(1, candidates);
+        this.trendingPrior = Math.max(1, trendingPrior);
+        for (RankingWindow window : RankingWindow.values()) {
+            windows.put(window, newRanking(window));
+        }
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.snapshotInterval = snapshotInterval;
+        this.snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rankings-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        restore();
+        long period = Math.max(1000, snapshotInterval.toMillis());
+        snapshots.scheduleWithFixedDelay(this::snapshot, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        snapshots.shutdownNow();
+        snapshot();
+    }
+
+    @EventListener
+    public void onOrder(OrderStreamEvent event) {
+        // A sender's clock running ahead must not push the windows forward
+        long time = Math.min(event.getOccurredAt(), System.currentTimeMillis());
+        lock.writeLock().lock();
+        try {
+            for (OrderPlacedEvent.Item item : event.getOrder().getItems()) {
+                if (item.bookId() == null || item.quantity() <= 0) {
+                    continue;
+                }
+                String genre = scopeOf(item.genre());
+                for (SlidingTopK ranking : windows.values()) {
+                    if (genre != null) {
+                        ranking.add(item.bookId(), item.quantity(), time, ALL, genre);
+                    } else {
+                        ranking.add(item.bookId(), item.quantity(), time, ALL);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param genre null for all books
+     * @return up to {@code limit} books with the most units sold in the window, best first; counts are estimates
+     * that can only be too high, by a small margin
+     */
+    public List<Ranking> top(RankingWindow window, String genre, int limit) {
+        String scope = genre == null || genre.isBlank() ? ALL : scopeOf(genre);
+        lock.readLock().lock();
+        try {
+            return windows.get(window).top(scope, limit, System.currentTimeMillis()).stream()
+                    .map(ranked -> new Ranking(ranked.bookId(), ranked.units()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record Ranking(long bookId, long units) {
+    }
+
+    /**
+     * Books that sell faster in {@code window} than over the last week, most accelerated first.
+     * <p>
+     * The score is the window's units projected to a week, divided by the week's units plus
+     * {@code books.rankings.trending-prior}: about 1 for a book that sells steadily, higher for one that picked
+     * up. The prior keeps a book with a handful of sales from topping the list. Candidates are the books ranked
+     * in {@code window}, so the cost does not depend on the number of orders either.
+     *
+     * @param genre null for all books
+     * @throws IllegalArgumentException for the 7d window, which is the baseline itself
+     */
+    public List<Trend> trending(RankingWindow window, String genre, int limit) {
+        if (window == RankingWindow.WEEK) {
+            throw new IllegalArgumentException("Trending compares a window with the last 7d; use 1h or 24h");
+        }
+        String scope = genre == null || genre.isBlank() ? ALL : scopeOf(genre);
+        long now = System.currentTimeMillis();
+        double toWeek = (double) RankingWindow.WEEK.spanMillis() / window.spanMillis();
+        List<Trend> trends = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            SlidingTopK baseline = windows.get(RankingWindow.WEEK);
+            for (SlidingTopK.Ranked ranked : windows.get(window).top(scope, candidates * window.buckets(), now)) {
+                // Both are estimates; the week can never have sold less than part of it
+                long weekUnits = Math.max(ranked.units(), baseline.units(ranked.bookId(), now));
+                double score = ranked.units() * toWeek / (weekUnits + trendingPrior);
+                trends.add(new Trend(ranked.bookId(), ranked.units(), score));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        trends.sort(Trend.ORDER);
+        return List.copyOf(trends.subList(0, Math.max(0, Math.min(limit, trends.size()))));
+    }
+
+    /**
+     * @param units estimated units sold in the window
+     * @param score window rate relative to the weekly rate, see {@link #trending}
+     */
+    public record Trend(long bookId, long units, double score) {
+        static final Comparator<Trend> ORDER = Comparator.comparingDouble(Trend::score).reversed()
+                .thenComparing(Comparator.comparingLong(Trend::units).reversed())
+                .thenComparingLong(Trend::bookId);
+    }
+
+    void snapshot() {
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(SNAPSHOT_FORMAT);
+            out.writeInt(windows.size());
+            for (Map.Entry<RankingWindow, SlidingTopK> entry : windows.entrySet()) {
+                // Length-prefixed per window, so a window that no longer exists can be skipped on restore
+                ByteArrayOutputStream windowBytes = new ByteArrayOutputStream();
+                entry.getValue().writeTo(new DataOutputStream(windowBytes), now);
+                out.writeUTF(entry.getKey().name());
+                out.writeInt(windowBytes.size());
+                windowBytes.writeTo(out);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to serialize bestseller rankings: {}", e.getMessage(), e);
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Written outside the lock, through a temporary file so a crash never leaves a torn snapshot
+        try {
+            Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+            Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Wrote bestseller rankings snapshot ({} bytes)", bytes.size());
+        } catch (IOException e) {
+            logger.error("Failed to write bestseller rankings snapshot to {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private void restore() {
+        if (!Files.isRegularFile(snapshotPath)) {
+            // Expected on a node's first start only; otherwise the path is not on a persistent volume
+            logger.warn("No bestseller rankings snapshot at {}, starting empty", snapshotPath);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try (InputStream file = Files.newInputStream(snapshotPath);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != SNAPSHOT_FORMAT) {
+                logger.warn("Ignoring bestseller rankings snapshot {} in an unknown format", snapshotPath);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] windowBytes = new byte[in.readInt()];
+                in.readFully(windowBytes);
+                SlidingTopK ranking = windowNamed(name);
+                if (ranking != null) {
+                    ranking.readFrom(new DataInputStream(new ByteArrayInputStream(windowBytes)), now);
+                }
+            }
+            logger.info("Restored bestseller rankings from {}", snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to restore bestseller rankings from {}, starting empty: {}", snapshotPath, e.getMessage());
+            windows.replaceAll((window, ranking) -> newRanking(window));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private SlidingTopK newRanking(RankingWindow window) {
+        return new SlidingTopK(window, SKETCH_DEPTH, sketchWidth, candidates);
+    }
+
+    private SlidingTopK windowNamed(String name) {
+        for (Map.Entry<RankingWindow, SlidingTopK> entry : windows.entrySet()) {
+            if (entry.getKey().name().equals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String scopeOf(String genre) {
+        if (genre == null || genre.isBlank()) {
+            return null;
+        }
+        return genre.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,89 @@
+package com.org.bookstore_backend.ranking;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Count-min sketch over book ids: a fixed {@code depth x width} grid of counters that estimates how often a key
+ * was added, never below the true count and above it only by collisions. Uses conservative update (only the
+ * smallest counters of a key are raised), which keeps the overestimate much lower for skewed data like sales.
+ * Not thread-safe.
+ */
+final class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L
+    };
+
+    private final int depth;
+    private final int width;
+    private final int[] counters;
+
+    CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("depth must be 1.." + SEEDS.length + " and width a power of two");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new int[depth * width];
+    }
+
+    int width() {
+        return width;
+    }
+
+    void add(long key, int count) {
+        int target = estimate(key) + count;
+        for (int row = 0; row < depth; row++) {
+            int slot = row * width + index(key, row);
+            if (counters[slot] < target) {
+                counters[slot] = target;
+            }
+        }
+    }
+
+    int estimate(long key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * width + index(key, row)]);
+        }
+        return min;
+    }
+
+    void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(depth);
+        out.writeInt(width);
+        for (int counter : counters) {
+            out.writeInt(counter);
+        }
+    }
+
+    /**
+     * @return false (leaving this sketch untouched) if the stored sketch has different dimensions
+     */
+    boolean readFrom(DataInput in) throws IOException {
+        int storedDepth = in.readInt();
+        int storedWidth = in.readInt();
+        if (storedDepth != depth || storedWidth != width) {
+            in.skipBytes(storedDepth * storedWidth * Integer.BYTES);
+            return false;
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = in.readInt();
+        }
+        return true;
+    }
+
+    private int index(long key, int row) {
+        long h = (key + row) * SEEDS[row];
+        h ^= h >>> 31;
+        return (int) h & (width - 1);
+    }
+}
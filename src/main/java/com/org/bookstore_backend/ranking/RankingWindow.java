@@ -0,0 +1,51 @@
+package com.org.bookstore_backend.ranking;
+
+import java.time.Duration;
+
+/**
+ * The sliding windows bestseller rankings are kept for. Each window is a ring of time buckets, so it slides
+ * forward one bucket at a time.
+ */
+public enum RankingWindow {
+    HOUR("1h", Duration.ofMinutes(5), 12),
+    DAY("24h", Duration.ofHours(1), 24),
+    WEEK("7d", Duration.ofHours(6), 28);
+
+    private final String label;
+    private final long bucketMillis;
+    private final int buckets;
+
+    RankingWindow(String label, Duration bucket, int buckets) {
+        this.label = label;
+        this.bucketMillis = bucket.toMillis();
+        this.buckets = buckets;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    long bucketMillis() {
+        return bucketMillis;
+    }
+
+    int buckets() {
+        return buckets;
+    }
+
+    long spanMillis() {
+        return bucketMillis * buckets;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code label} is not one of 1h, 24h or 7d
+     */
+    public static RankingWindow of(String label) {
+        for (RankingWindow window : values()) {
+            if (window.label.equalsIgnoreCase(label.trim())) {
+                return window;
+            }
+        }
+        throw new IllegalArgumentException("Unknown ranking window: " + label);
+    }
+}
@@ -0,0 +1,247 @@
+package com.org.bookstore_backend.ranking;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Top books of one {@link RankingWindow}, per scope (all books, or one genre).
+ * <p>
+ * The window is a ring of time buckets. Each bucket counts the units sold per book in a {@link CountMinSketch}
+ * and, per scope, keeps the books with the highest counts in a bounded min-heap of candidates. A query sums the
+ * sketch estimates of the candidates of all live buckets and keeps the best with another small heap, so the
+ * cost depends on the number of candidates only, never on the number of orders. Not thread-safe.
+ */
+final class SlidingTopK {
+
+    private final RankingWindow window;
+    private final int sketchDepth;
+    private final int sketchWidth;
+    private final int candidatesPerScope;
+    private final Bucket[] ring;
+
+    SlidingTopK(RankingWindow window, int sketchDepth, int sketchWidth, int candidatesPerScope) {
+        this.window = window;
+        this.sketchDepth = sketchDepth;
+        this.sketchWidth = sketchWidth;
+        this.candidatesPerScope = candidatesPerScope;
+        this.ring = new Bucket[window.buckets()];
+    }
+
+    /**
+     * Counts {@code quantity} units of the book sold at {@code time} in every given scope. Sales older than the
+     * window are ignored.
+     */
+    void add(long bookId, int quantity, long time, String... scopes) {
+        Bucket bucket = bucketFor(time / window.bucketMillis());
+        if (bucket == null) {
+            return;
+        }
+        bucket.sketch.add(bookId, quantity);
+        int estimate = bucket.sketch.estimate(bookId);
+        for (String scope : scopes) {
+            bucket.candidates.computeIfAbsent(scope, s -> new Candidates(candidatesPerScope)).offer(bookId, estimate);
+        }
+    }
+
+    /**
+     * @return up to {@code limit} books of the scope with the most units sold in the window ending at {@code now}
+     */
+    List<Ranked> top(String scope, int limit, long now) {
+        long current = now / window.bucketMillis();
+        List<Bucket> live = new ArrayList<>(ring.length);
+        Set<Long> candidates = new HashSet<>();
+        for (Bucket bucket : ring) {
+            if (bucket != null && isLive(bucket.epoch, current)) {
+                live.add(bucket);
+                Candidates scoped = bucket.candidates.get(scope);
+                if (scoped != null) {
+                    candidates.addAll(scoped.byBook.keySet());
+                }
+            }
+        }
+        if (limit <= 0 || candidates.isEmpty()) {
+            return List.of();
+        }
+        PriorityQueue<Ranked> best = new PriorityQueue<>(limit + 1, Ranked.ORDER);
+        for (long bookId : candidates) {
+            long units = 0;
+            for (Bucket bucket : live) {
+                units += bucket.sketch.estimate(bookId);
+            }
+            best.offer(new Ranked(bookId, units));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Ranked> result = new ArrayList<>(best);
+        result.sort(Ranked.ORDER.reversed());
+        return result;
+    }
+
+    /**
+     * @return the estimated units of the book sold in the window ending at {@code now}, in any scope
+     */
+    long units(long bookId, long now) {
+        long current = now / window.bucketMillis();
+        long units = 0;
+        for (Bucket bucket : ring) {
+            if (bucket != null && isLive(bucket.epoch, current)) {
+                units += bucket.sketch.estimate(bookId);
+            }
+        }
+        return units;
+    }
+
+    void writeTo(DataOutput out, long now) throws IOException {
+        long current = now / window.bucketMillis();
+        List<Bucket> live = new ArrayList<>();
+        for (Bucket bucket : ring) {
+            if (bucket != null && isLive(bucket.epoch, current)) {
+                live.add(bucket);
+            }
+        }
+        out.writeLong(window.bucketMillis());
+        out.writeInt(live.size());
+        for (Bucket bucket : live) {
+            out.writeLong(bucket.epoch);
+            bucket.sketch.writeTo(out);
+            out.writeInt(bucket.candidates.size());
+            for (Map.Entry<String, Candidates> scope : bucket.candidates.entrySet()) {
+                out.writeUTF(scope.getKey());
+                out.writeInt(scope.getValue().byBook.size());
+                for (Candidate candidate : scope.getValue().byBook.values()) {
+                    out.writeLong(candidate.bookId);
+                    out.writeInt(candidate.units);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores the buckets written by {@link #writeTo}; buckets that are no longer in the window, or that were
+     * written with another bucket size or sketch size, are skipped.
+     */
+    void readFrom(DataInput in, long now) throws IOException {
+        boolean compatible = in.readLong() == window.bucketMillis();
+        long current = now / window.bucketMillis();
+        int buckets = in.readInt();
+        for (int b = 0; b < buckets; b++) {
+            long epoch = in.readLong();
+            Bucket bucket = compatible && isLive(epoch, current) ? bucketFor(epoch) : null;
+            CountMinSketch sketch = bucket != null ? bucket.sketch : new CountMinSketch(sketchDepth, sketchWidth);
+            if (!sketch.readFrom(in) && bucket != null) {
+                bucket.sketch.clear();
+                bucket = null;
+            }
+            int scopes = in.readInt();
+            for (int s = 0; s < scopes; s++) {
+                String scope = in.readUTF();
+                int size = in.readInt();
+                Candidates candidates = bucket != null
+                        ? bucket.candidates.computeIfAbsent(scope, key -> new Candidates(candidatesPerScope))
+                        : null;
+                for (int i = 0; i < size; i++) {
+                    long bookId = in.readLong();
+                    int units = in.readInt();
+                    if (candidates != null) {
+                        candidates.offer(bookId, units);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isLive(long epoch, long current) {
+        return epoch <= current && epoch > current - ring.length;
+    }
+
+    /**
+     * @return the bucket of the epoch, recycling the slot of an expired bucket; null if the epoch is older than
+     * what the slot already holds
+     */
+    private Bucket bucketFor(long epoch) {
+        int slot = (int) Math.floorMod(epoch, (long) ring.length);
+        Bucket bucket = ring[slot];
+        if (bucket != null && bucket.epoch == epoch) {
+            return bucket;
+        }
+        if (bucket != null && bucket.epoch > epoch) {
+            return null;
+        }
+        if (bucket == null) {
+            bucket = new Bucket(new CountMinSketch(sketchDepth, sketchWidth));
+            ring[slot] = bucket;
+        } else {
+            bucket.sketch.clear();
+            bucket.candidates.clear();
+        }
+        bucket.epoch = epoch;
+        return bucket;
+    }
+
+    record Ranked(long bookId, long units) {
+        static final Comparator<Ranked> ORDER = Comparator.comparingLong(Ranked::units)
+                .thenComparing(Comparator.comparingLong(Ranked::bookId).reversed());
+    }
+
+    private static final class Bucket {
+        long epoch;
+        final CountMinSketch sketch;
+        final Map<String, Candidates> candidates = new HashMap<>();
+
+        Bucket(CountMinSketch sketch) {
+            this.sketch = sketch;
+        }
+    }
+
+    private static final class Candidate {
+        final long bookId;
+        int units;
+
+        Candidate(long bookId, int units) {
+            this.bookId = bookId;
+            this.units = units;
+        }
+    }
+
+    /**
+     * Bounded min-heap of the books with the highest estimated units in a bucket; the weakest is evicted first.
+     */
+    private static final class Candidates {
+        private final int capacity;
+        private final PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingInt(c -> c.units));
+        private final Map<Long, Candidate> byBook = new HashMap<>();
+
+        Candidates(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void offer(long bookId, int units) {
+            Candidate existing = byBook.get(bookId);
+            if (existing != null) {
+                heap.remove(existing);
+                existing.units = units;
+                heap.offer(existing);
+                return;
+            }
+            if (heap.size() >= capacity) {
+                if (heap.peek().units >= units) {
+                    return;
+                }
+                byBook.remove(heap.poll().bookId);
+            }
+            Candidate candidate = new Candidate(bookId, units);
+            heap.offer(candidate);
+            byBook.put(bookId, candidate);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.org.bookstore_backend.recommend;
+
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import com.org.bookstore_backend.events.OrderStreamEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory "customers also bought" model: for every book, the books that were most often ordered together
+ * with it.
+ * <p>
+ * Each book keeps at most {@code books.related.top-k} neighbours in two parallel primitive arrays sorted by
+ * co-purchase count, and books are found through an open-addressing table keyed by the primitive book id, so a
+ * lookup is a hash probe plus a short array copy. New orders are folded in incrementally with the Space-Saving
+ * rule: a pair that is not tracked yet replaces the weakest neighbour and inherits its count plus one. This keeps
+ * memory fixed per book while frequent pairs still rise to the top. {@link CoPurchaseRebuilder} periodically
+ * replaces the whole model with exact counts computed from the order history.
+ */
+@Component
+public class CoPurchaseIndex {
+
+    private static final long[] NONE = new long[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int topK;
+    private final int maxItemsPerOrder;
+    private Table table;
+    private boolean ready = false;
+    // Orders recorded while a rebuild is reading the history; replayed on top of the rebuilt table
+    private List<PlacedOrder> pendingDuringRebuild = null;
+    // Books deleted while a rebuild is reading the history; the history it read may still contain them
+    private List<Long> deletedDuringRebuild = null;
+
+    public CoPurchaseIndex(@Value("${books.related.top-k:20}") int topK,
+                           @Value("${books.related.max-items-per-order:50}") int maxItemsPerOrder) {
+        this.topK = Math.max(1, topK);
+        this.maxItemsPerOrder = Math.max(2, maxItemsPerOrder);
+        this.table = new Table(this.topK);
+    }
+
+    /**
+     * @return the ids of the books most often bought together with {@code bookId}, best first
+     */
+    public long[] related(long bookId, int limit) {
+        lock.readLock().lock();
+        try {
+            Neighbours neighbours = table.get(bookId);
+            if (neighbours == null || neighbours.size == 0 || limit <= 0) {
+                return NONE;
+            }
+            return Arrays.copyOf(neighbours.ids, Math.min(limit, neighbours.size));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true once the model has been built from the order history
+     */
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int topK() {
+        return topK;
+    }
+
+    int maxItemsPerOrder() {
+        return maxItemsPerOrder;
+    }
+
+    /**
+     * Counts one co-purchase for every pair of distinct books in the order.
+     */
+    public void recordOrder(long orderId, long[] bookIds) {
+        long[] books = distinct(bookIds);
+        if (books.length < 2 || books.length > maxItemsPerOrder) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            table.record(books);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(new PlacedOrder(orderId, books));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onOrder(OrderStreamEvent event) {
+        recordOrder(event.getOrder().getOrderId(),
+                event.getOrder().getBookIds().stream().mapToLong(Long::longValue).toArray());
+    }
+
+    // Deletes are rare, so a full pass to drop the book from every neighbour list is cheaper than filtering on reads
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogEvent(BookCatalogEvent event) {
+        if (event.getType() != BookCatalogEvent.Type.DELETED || event.getBookId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            table.removeEverywhere(event.getBookId());
+            if (deletedDuringRebuild != null) {
+                deletedDuringRebuild.add(event.getBookId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = new ArrayList<>();
+            deletedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Swaps in a rebuilt table. Orders recorded during the rebuild are replayed unless the rebuild already read
+     * them, i.e. unless their id is not above the last order id it saw; books deleted during the rebuild are then
+     * removed from it.
+     */
+    void completeRebuild(Table fresh, long lastOrderId) {
+        lock.writeLock().lock();
+        try {
+            if (pendingDuringRebuild != null) {
+                for (PlacedOrder order : pendingDuringRebuild) {
+                    if (order.orderId > lastOrderId) {
+                        fresh.record(order.bookIds);
+                    }
+                }
+            }
+            if (deletedDuringRebuild != null) {
+                for (Long bookId : deletedDuringRebuild) {
+                    fresh.removeEverywhere(bookId);
+                }
+            }
+            pendingDuringRebuild = null;
+            deletedDuringRebuild = null;
+            table = fresh;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void abortRebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = null;
+            deletedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long[] distinct(long[] bookIds) {
+        long[] sorted = bookIds.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+
+    private record PlacedOrder(long orderId, long[] bookIds) {
+    }
+
+    /**
+     * The neighbours of one book, sorted by count (highest first). Not thread-safe on its own.
+     */
+    static final class Neighbours {
+        final long[] ids;
+        final int[] counts;
+        int size;
+
+        Neighbours(int capacity) {
+            this.ids = new long[capacity];
+            this.counts = new int[capacity];
+        }
+
+        /**
+         * Adds a neighbour with an exact count, used when building; entries must arrive best first.
+         */
+        void append(long id, int count) {
+            ids[size] = id;
+            counts[size] = count;
+            size++;
+        }
+
+        void remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                    System.arraycopy(counts, i + 1, counts, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        void increment(long id) {
+            int i = 0;
+            while (i < size && ids[i] != id) {
+                i++;
+            }
+            if (i < size) {
+                counts[i]++;
+            } else if (size < ids.length) {
+                i = size++;
+                ids[i] = id;
+                counts[i] = 1;
+            } else {
+                // Space-Saving: evict the weakest neighbour, the newcomer takes over its count
+                i = size - 1;
+                ids[i] = id;
+                counts[i]++;
+            }
+            // Restore the ordering by moving the entry up past neighbours with a lower count
+            long movedId = ids[i];
+            int movedCount = counts[i];
+            while (i > 0 && counts[i - 1] < movedCount) {
+                ids[i] = ids[i - 1];
+                counts[i] = counts[i - 1];
+                i--;
+            }
+            ids[i] = movedId;
+            counts[i] = movedCount;
+        }
+    }
+
+    /**
+     * Open-addressing hash table from book id to {@link Neighbours} with linear probing. Entries are never
+     * removed (a deleted book just gets an empty neighbour list), which keeps probing simple.
+     */
+    static final class Table {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final int capacityPerBook;
+        private long[] keys;
+        private Neighbours[] values;
+        private int size;
+
+        Table(int capacityPerBook) {
+            this(capacityPerBook, 16);
+        }
+
+        Table(int capacityPerBook, int expectedBooks) {
+            this.capacityPerBook = capacityPerBook;
+            int slots = Integer.highestOneBit(Math.max(16, expectedBooks * 2 - 1)) << 1;
+            this.keys = new long[slots];
+            this.values = new Neighbours[slots];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        Neighbours get(long bookId) {
+            int mask = keys.length - 1;
+            for (int slot = mix(bookId) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == bookId) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        Neighbours getOrCreate(long bookId) {
+            int slot = slotFor(bookId);
+            if (values[slot] == null) {
+                values[slot] = new Neighbours(capacityPerBook);
+            }
+            return values[slot];
+        }
+
+        void put(long bookId, Neighbours neighbours) {
+            values[slotFor(bookId)] = neighbours;
+        }
+
+        private int slotFor(long bookId) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = mix(bookId) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == bookId) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = bookId;
+            size++;
+            return slot;
+        }
+
+        void record(long[] books) {
+            for (long book : books) {
+                Neighbours neighbours = getOrCreate(book);
+                for (long other : books) {
+                    if (other != book) {
+                        neighbours.increment(other);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Empties the neighbours of the book and removes it from the neighbours of every other book.
+         */
+        void removeEverywhere(long bookId) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == EMPTY) {
+                    continue;
+                }
+                if (keys[i] == bookId) {
+                    values[i].size = 0;
+                } else {
+                    values[i].remove(bookId);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Neighbours[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Neighbours[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
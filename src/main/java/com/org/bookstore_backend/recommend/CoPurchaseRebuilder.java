@@ -0,0 +1,331 @@
+package com.org.bookstore_backend.recommend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rebuilds the {@link CoPurchaseIndex} with exact counts from the whole order history, as a fork/join job.
+ * <p>
+ * The order lines are read once into primitive arrays and turned into two compressed adjacency lists: the books
+ * of every order and the orders of every book. The books are then split into ranges that a dedicated
+ * {@link ForkJoinPool} of {@code books.related.rebuild-parallelism} workers processes independently: for each
+ * book, a dense counter array gathers how often every other book appears in its orders and only the top
+ * {@code books.related.top-k} are kept. Every book is written by exactly one task, so no locking is needed until
+ * the finished table is swapped in.
+ */
+@Component
+public class CoPurchaseRebuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoPurchaseRebuilder.class);
+
+    private static final String ORDER_LINES = "select order_id, book_id from order_items order by order_id, book_id";
+
+    // Books per leaf task: small enough to balance hot books across workers, large enough to amortize forking
+    private static final int BOOKS_PER_TASK = 256;
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final CoPurchaseIndex index;
+    private final int parallelism;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public CoPurchaseRebuilder(DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               CoPurchaseIndex index,
+                               @Value("${books.related.rebuild-parallelism:0}") int parallelism) {
+        // Read through a cursor so the driver does not buffer the whole order history as row objects
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(10_000);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.index = index;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildInBackground();
+    }
+
+    /**
+     * Starts recomputing the model from every order; it is swapped in when done.
+     *
+     * @return false if a rebuild is already running
+     */
+    public boolean rebuildInBackground() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(this::rebuild, "co-purchase-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            index.beginRebuild();
+            OrderLines lines;
+            try {
+                lines = readOrderLines();
+            } catch (Exception e) {
+                logger.error("Failed to read order history for co-purchase recommendations: {}", e.getMessage(), e);
+                index.abortRebuild();
+                return;
+            }
+            CoPurchaseIndex.Table table = compute(lines);
+            index.completeRebuild(table, lines.lastOrderId);
+            logger.info("Built co-purchase recommendations from {} order lines over {} books in {} ms",
+                    lines.size, lines.bookCount(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.error("Co-purchase rebuild failed: {}", e.getMessage(), e);
+            index.abortRebuild();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private OrderLines readOrderLines() {
+        OrderLines lines = new OrderLines();
+        readOnlyTransaction.executeWithoutResult(status -> cursorTemplate.query(ORDER_LINES,
+                (RowCallbackHandler) rs -> lines.add(rs.getLong(1), rs.getLong(2))));
+        return lines;
+    }
+
+    private CoPurchaseIndex.Table compute(OrderLines lines) {
+        Graph graph = Graph.of(lines, index.maxItemsPerOrder());
+        CoPurchaseIndex.Neighbours[] result = new CoPurchaseIndex.Neighbours[graph.books.length];
+        // One set of dense counters per worker thread, reused by every leaf task that thread runs
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(graph.books.length, index.topK()));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new BookRange(graph, result, scratch, index.topK(), 0, graph.books.length));
+        } finally {
+            pool.shutdown();
+        }
+        CoPurchaseIndex.Table table = new CoPurchaseIndex.Table(index.topK(), graph.books.length);
+        for (int b = 0; b < result.length; b++) {
+            if (result[b] != null) {
+                table.put(graph.books[b], result[b]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Raw (order id, book id) pairs in order id order, in growable primitive arrays.
+     */
+    private static final class OrderLines {
+        long[] orderIds = new long[1024];
+        long[] bookIds = new long[1024];
+        int size;
+        long lastOrderId = Long.MIN_VALUE;
+        int bookCount;
+
+        void add(long orderId, long bookId) {
+            if (size == orderIds.length) {
+                orderIds = Arrays.copyOf(orderIds, size * 2);
+                bookIds = Arrays.copyOf(bookIds, size * 2);
+            }
+            orderIds[size] = orderId;
+            bookIds[size] = bookId;
+            size++;
+            lastOrderId = Math.max(lastOrderId, orderId);
+        }
+
+        int bookCount() {
+            return bookCount;
+        }
+    }
+
+    /**
+     * Books are renumbered densely (0..n-1, in id order) so counters can be plain arrays.
+     * {@code orderBooks[orderStart[o]..orderStart[o+1])} are the books of order o and
+     * {@code bookOrders[bookStart[b]..bookStart[b+1])} the orders of book b.
+     */
+    private static final class Graph {
+        final long[] books;
+        final int[] orderStart;
+        final int[] orderBooks;
+        final int[] bookStart;
+        final int[] bookOrders;
+
+        private Graph(long[] books, int[] orderStart, int[] orderBooks, int[] bookStart, int[] bookOrders) {
+            this.books = books;
+            this.orderStart = orderStart;
+            this.orderBooks = orderBooks;
+            this.bookStart = bookStart;
+            this.bookOrders = bookOrders;
+        }
+
+        static Graph of(OrderLines lines, int maxItemsPerOrder) {
+            long[] books = Arrays.copyOf(lines.bookIds, lines.size);
+            Arrays.sort(books);
+            int distinct = 0;
+            for (int i = 0; i < books.length; i++) {
+                if (i == 0 || books[i] != books[i - 1]) {
+                    books[distinct++] = books[i];
+                }
+            }
+            books = Arrays.copyOf(books, distinct);
+            lines.bookCount = distinct;
+
+            // Orders with a single book add nothing; very large ones (bulk purchases) mostly add noise
+            int[] orderStart = new int[16];
+            int[] orderBooks = new int[lines.size];
+            int orders = 0;
+            int written = 0;
+            for (int from = 0; from < lines.size; ) {
+                int to = from;
+                while (to < lines.size && lines.orderIds[to] == lines.orderIds[from]) {
+                    to++;
+                }
+                int begin = written;
+                for (int i = from; i < to; i++) {
+                    // Lines are sorted by book within an order, so repeated books are adjacent
+                    if (i == from || lines.bookIds[i] != lines.bookIds[i - 1]) {
+                        orderBooks[written++] = Arrays.binarySearch(books, lines.bookIds[i]);
+                    }
+                }
+                int count = written - begin;
+                if (count < 2 || count > maxItemsPerOrder) {
+                    written = begin;
+                } else {
+                    if (orders + 2 > orderStart.length) {
+                        orderStart = Arrays.copyOf(orderStart, orderStart.length * 2);
+                    }
+                    orderStart[orders] = begin;
+                    orders++;
+                    orderStart[orders] = written;
+                }
+                from = to;
+            }
+            orderStart = Arrays.copyOf(orderStart, orders + 1);
+
+            int[] bookStart = new int[books.length + 1];
+            for (int i = 0; i < written; i++) {
+                bookStart[orderBooks[i] + 1]++;
+            }
+            for (int b = 0; b < books.length; b++) {
+                bookStart[b + 1] += bookStart[b];
+            }
+            int[] bookOrders = new int[written];
+            int[] fill = Arrays.copyOf(bookStart, books.length);
+            for (int o = 0; o < orders; o++) {
+                for (int i = orderStart[o]; i < orderStart[o + 1]; i++) {
+                    bookOrders[fill[orderBooks[i]]++] = o;
+                }
+            }
+            return new Graph(books, orderStart, Arrays.copyOf(orderBooks, written), bookStart, bookOrders);
+        }
+    }
+
+    private static final class Scratch {
+        final int[] counts;
+        final int[] touched;
+        final long[] bestIds;
+        final int[] bestCounts;
+
+        Scratch(int books, int topK) {
+            this.counts = new int[books];
+            this.touched = new int[books];
+            this.bestIds = new long[topK];
+            this.bestCounts = new int[topK];
+        }
+    }
+
+    /**
+     * Computes the neighbours of the books in {@code [from, to)}, splitting the range until it is small.
+     */
+    private static final class BookRange extends RecursiveAction {
+        private final Graph graph;
+        private final CoPurchaseIndex.Neighbours[] result;
+        private final ThreadLocal<Scratch> scratch;
+        private final int topK;
+        private final int from;
+        private final int to;
+
+        BookRange(Graph graph, CoPurchaseIndex.Neighbours[] result, ThreadLocal<Scratch> scratch, int topK, int from, int to) {
+            this.graph = graph;
+            this.result = result;
+            this.scratch = scratch;
+            this.topK = topK;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BOOKS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BookRange(graph, result, scratch, topK, from, mid),
+                        new BookRange(graph, result, scratch, topK, mid, to));
+                return;
+            }
+            Scratch local = scratch.get();
+            int[] counts = local.counts;
+            int[] touched = local.touched;
+            long[] bestIds = local.bestIds;
+            int[] bestCounts = local.bestCounts;
+            for (int b = from; b < to; b++) {
+                int touchedCount = 0;
+                for (int i = graph.bookStart[b]; i < graph.bookStart[b + 1]; i++) {
+                    int order = graph.bookOrders[i];
+                    for (int j = graph.orderStart[order]; j < graph.orderStart[order + 1]; j++) {
+                        int other = graph.orderBooks[j];
+                        if (other != b && counts[other]++ == 0) {
+                            touched[touchedCount++] = other;
+                        }
+                    }
+                }
+                if (touchedCount == 0) {
+                    continue;
+                }
+                // Keep the best topK by count (ties: lower book id first), then reset the counters we used
+                int kept = 0;
+                for (int t = 0; t < touchedCount; t++) {
+                    int other = touched[t];
+                    int count = counts[other];
+                    counts[other] = 0;
+                    long id = graph.books[other];
+                    if (kept == topK && !better(count, id, bestCounts[kept - 1], bestIds[kept - 1])) {
+                        continue;
+                    }
+                    int i = kept < topK ? kept++ : kept - 1;
+                    while (i > 0 && better(count, id, bestCounts[i - 1], bestIds[i - 1])) {
+                        bestCounts[i] = bestCounts[i - 1];
+                        bestIds[i] = bestIds[i - 1];
+                        i--;
+                    }
+                    bestCounts[i] = count;
+                    bestIds[i] = id;
+                }
+                CoPurchaseIndex.Neighbours neighbours = new CoPurchaseIndex.Neighbours(topK);
+                for (int i = 0; i < kept; i++) {
+                    neighbours.append(bestIds[i], bestCounts[i]);
+                }
+                result[b] = neighbours;
+            }
+        }
+
+        private static boolean better(int count, long id, int otherCount, long otherId) {
+            return count > otherCount || (count == otherCount && id < otherId);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.dto.BookFilterDTO;
+import com.org.bookstore_backend.dto.BookSortField;
+import jakarta.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A compiled catalog query for one predicate shape: which filters are present, the sort and whether
+ * it continues after a keyset cursor. The JPQL text depends only on the shape, never on the values,
+ * so plans are cached per shape by {@link BookRepoCustomImpl} and Hibernate's own query plan cache
+ * can reuse the parsed SQL across requests.
+ * <p>
+ * Plans select only (id, sort key). Rows are then hydrated with one fetch-joined query per page,
+ * so no combination of filters loads authors or publishers lazily.
+ */
+final class BookQueryPlan {
+
+    // LIKE patterns escape %, _ and ! with '!'
+    private static final char LIKE_ESCAPE = '!';
+
+    enum Criterion {
+        SEARCH("(lower(b.title) like :search escape '!' or exists "
+                + "(select 1 from b.authors sa where lower(sa.name) like :search escape '!'))",
+                "search", f -> BookFilterDTO.hasText(f.getSearch()) ? contains(f.getSearch()) : null),
+        TITLE("lower(b.title) like :title escape '!'",
+                "title", f -> BookFilterDTO.hasText(f.getTitle()) ? contains(f.getTitle()) : null),
+        CATEGORY("lower(b.genre) = :category",
+                "category", f -> BookFilterDTO.hasText(f.getCategory()) ? f.getCategory().trim().toLowerCase(Locale.ROOT) : null),
+        AUTHOR("exists (select 1 from b.authors a where lower(a.name) like :author escape '!')",
+                "author", f -> BookFilterDTO.hasText(f.getAuthor()) ? contains(f.getAuthor()) : null),
+        PUBLISHER("lower(b.publisher.name) like :publisher escape '!'",
+                "publisher", f -> BookFilterDTO.hasText(f.getPublisher()) ? contains(f.getPublisher()) : null),
+        MIN_PRICE("b.price >= :minPrice", "minPrice", BookFilterDTO::getMinPrice),
+        MAX_PRICE("b.price <= :maxPrice", "maxPrice", BookFilterDTO::getMaxPrice),
+        MIN_YEAR("b.publicationYear >= :minYear", "minYear", BookFilterDTO::getMinYear),
+        MAX_YEAR("b.publicationYear <= :maxYear", "maxYear", BookFilterDTO::getMaxYear),
+        MIN_QUANTITY("b.quantity >= :minQuantity", "minQuantity", BookFilterDTO::getMinQuantity),
+        MAX_QUANTITY("b.quantity <= :maxQuantity", "maxQuantity", BookFilterDTO::getMaxQuantity),
+        AVAILABLE("b.isAvailable = :available", "available", BookFilterDTO::getAvailable),
+        ISBN("b.isbn = :isbn", "isbn", f -> BookFilterDTO.hasText(f.getIsbn()) ? f.getIsbn().trim() : null);
+
+        private final String jpql;
+        private final String parameter;
+        private final Function<BookFilterDTO, Object> value;
+
+        Criterion(String jpql, String parameter, Function<BookFilterDTO, Object> value) {
+            this.jpql = jpql;
+            this.parameter = parameter;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Cache key: everything that changes the JPQL text, nothing that only changes bound values.
+     */
+    record Shape(Set<Criterion> criteria, BookSortField sortField, boolean descending, boolean seek) {
+
+        static Shape of(BookFilterDTO filter, BookSortField sortField, boolean descending, boolean seek) {
+            EnumSet<Criterion> criteria = EnumSet.noneOf(Criterion.class);
+            for (Criterion criterion : Criterion.values()) {
+                if (criterion.value.apply(filter) != null) {
+                    criteria.add(criterion);
+                }
+            }
+            return new Shape(criteria, sortField, descending, seek);
+        }
+    }
+
+    private final Shape shape;
+    private final String jpql;
+
+    private BookQueryPlan(Shape shape, String jpql) {
+        this.shape = shape;
+        this.jpql = jpql;
+    }
+
+    static BookQueryPlan compile(Shape shape) {
+        String key = "b." + shape.sortField().getAttribute();
+        String dir = shape.descending() ? "desc" : "asc";
+        String cmp = shape.descending() ? "<" : ">";
+
+        List<String> where = new ArrayList<>();
+        for (Criterion criterion : shape.criteria()) {
+            where.add(criterion.jpql);
+        }
+        if (shape.seek()) {
+            // (key, id) > (:afterValue, :afterId) written out, since JPQL has no row-value comparison
+            where.add("(" + key + " " + cmp + " :afterValue or (" + key + " = :afterValue and b.id " + cmp + " :afterId))");
+        }
+
+        StringBuilder sb = new StringBuilder("select b.id, ").append(key).append(" from Book b");
+        if (!where.isEmpty()) {
+            sb.append(" where ").append(String.join(" and ", where));
+        }
+        sb.append(" order by ").append(key).append(' ').append(dir).append(", b.id ").append(dir);
+        return new BookQueryPlan(shape, sb.toString());
+    }
+
+    String getJpql() {
+        return jpql;
+    }
+
+    void bind(TypedQuery<Object[]> query, BookFilterDTO filter, Object afterValue, Long afterId) {
+        for (Criterion criterion : shape.criteria()) {
+            query.setParameter(criterion.parameter, criterion.value.apply(filter));
+        }
+        if (shape.seek()) {
+            query.setParameter("afterValue", afterValue);
+            query.setParameter("afterId", afterId);
+        }
+    }
+
+    private static String contains(String text) {
+        StringBuilder sb = new StringBuilder("%");
+        for (char c : text.trim().toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.append('%').toString();
+    }
+}
@@ -1,53 +1,113 @@
 package com.org.bookstore_backend.repo;
+import com.org.bookstore_backend.dto.GenreCountDTO;
 import com.org.bookstore_backend.model.Book;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Repository
-public interface BookRepo extends JpaRepository<Book, Long> {
+public interface BookRepo extends JpaRepository<Book, Long>, BookRepoCustom {
+
+    // Select and group-by clauses shared by the findViews* queries: one row per book with its publisher name and
+    // author names aggregated (see BookView), so list reads never load Book entities or their lazy associations
+    String BOOK_VIEW_SELECT = "select new com.org.bookstore_backend.repo.BookView("
+            + "b.id, b.title, b.description, b.isbn, b.publicationYear, b.imageUrl, b.genre, b.price, b.quantity, "
+            + "b.isAvailable, p.name, listagg(a.name, '" + BookView.AUTHOR_SEPARATOR + "') within group (order by a.name)) "
+            + "from Book b left join b.publisher p left join b.authors a ";
+    String BOOK_VIEW_GROUP_BY = " group by b.id, b.title, b.description, b.isbn, b.publicationYear, b.imageUrl, "
+            + "b.genre, b.price, b.quantity, b.isAvailable, p.name";
 
     // Fetch all books with authors and publisher eagerly to avoid N+1 problem
     @EntityGraph(attributePaths = {"authors", "publisher"})
     List<Book> findAll();
 
-    // Existing methods and their updates for consistency:
+    // Genre counts per exact spelling straight from the table; only used until BookGenreRegistry has been built
+    @Query("select new com.org.bookstore_backend.dto.GenreCountDTO(b.genre, count(b), "
+            + "sum(case when b.isAvailable = true and b.quantity > 0 then 1L else 0L end)) "
+            + "from Book b where b.genre is not null and trim(b.genre) <> '' group by b.genre")
+    List<GenreCountDTO> countByGenreSpelling();
+
+    /**
+     * Genre counts grouped the way BookGenreRegistry groups them: by {@code lower(trim(genre))}, blank genres left
+     * out, each group shown with its most common spelling (the alphabetically first one on a tie).
+     */
+    default List<GenreCountDTO> countByGenre() {
+        Map<String, List<GenreCountDTO>> groups = new TreeMap<>();
+        for (GenreCountDTO spelling : countByGenreSpelling()) {
+            groups.computeIfAbsent(spelling.getName().trim().toLowerCase(Locale.ROOT), key -> new ArrayList<>()).add(spelling);
+        }
+        List<GenreCountDTO> result = new ArrayList<>(groups.size());
+        for (List<GenreCountDTO> spellings : groups.values()) {
+            GenreCountDTO shown = spellings.stream()
+                    .min(Comparator.comparingLong(GenreCountDTO::getBookCount).reversed()
+                            .thenComparing(GenreCountDTO::getName))
+                    .orElseThrow();
+            result.add(new GenreCountDTO(shown.getName().trim(),
+                    spellings.stream().mapToLong(GenreCountDTO::getBookCount).sum(),
+                    spellings.stream().mapToLong(GenreCountDTO::getInStockCount).sum()));
+        }
+        return result;
+    }
+
+    // --- Read-only projections (one statement per call) ---
+
+    @Query(BOOK_VIEW_SELECT + BOOK_VIEW_GROUP_BY)
+    List<BookView> findAllViews();
+
+    // Hydrates a page of search or filter hits; callers restore the order of the ids themselves
+    @Query(BOOK_VIEW_SELECT + "where b.id in :ids" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(BOOK_VIEW_SELECT + "where p.name = :name" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByPublisherName(@Param("name") String name);
+
+    // EXISTS rather than filtering the author join, which would drop the co-authors from the aggregated names
+    @Query(BOOK_VIEW_SELECT + "where exists (select 1 from Book fb join fb.authors fa where fb = b and fa.name = :name)"
+            + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByAuthorName(@Param("name") String name);
+
+    @Query(BOOK_VIEW_SELECT + "where lower(b.title) like lower(concat('%', :title, '%'))" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByTitleContaining(@Param("title") String title);
+
+    @Query(BOOK_VIEW_SELECT + "where lower(b.genre) = lower(:genre)" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByGenre(@Param("genre") String genre);
 
-    List<Book> findByPublisher_Name(String name); // Finds by publisher name
-    List<Book> findByAuthors_Name(String name);   // Finds by author name
+    @Query(BOOK_VIEW_SELECT + "where b.isAvailable = :available" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByAvailability(@Param("available") boolean available);
 
-    List<Book> findByTitleContainingIgnoreCase(String title); // Finds by title (case-insensitive)
-    List<Book> findByGenreIgnoreCase(String genre);           // Finds by genre (case-insensitive)
-    List<Book> findByIsAvailable(boolean isAvailable);        // Finds by availability
+    @Query(BOOK_VIEW_SELECT + "where b.publicationYear = :year" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByPublicationYear(@Param("year") int year);
 
-    List<Book> findByPublicationYear(int publicationYear);
-    List<Book> findByPriceBetween(double minPrice, double maxPrice);
-    List<Book> findByQuantityGreaterThan(int quantity);
-    List<Book> findByIsbn(String isbn);
-    List<Book> findByImageUrl(String imageUrl);
+    @Query(BOOK_VIEW_SELECT + "where b.price between :minPrice and :maxPrice" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByPriceBetween(@Param("minPrice") double minPrice, @Param("maxPrice") double maxPrice);
 
-    // ⭐ CORRECTED METHOD NAME: This method now explicitly reflects the OR logic for search by title OR author name.
-    // This is used when only 'search' parameter is provided in getAllBooks.
-    List<Book> findByTitleContainingIgnoreCaseOrAuthors_NameContainingIgnoreCase(String titleSearch, String authorNameSearch);
+    @Query(BOOK_VIEW_SELECT + "where b.quantity > :quantity" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByQuantityGreaterThan(@Param("quantity") int quantity);
 
+    @Query(BOOK_VIEW_SELECT + "where b.isbn = :isbn" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByIsbn(@Param("isbn") String isbn);
 
-    // Combined search methods (ensure these are present and match your service calls)
-    List<Book> findByTitleContainingIgnoreCaseAndPublisher_NameContainingIgnoreCase(String title, String publisherName);
-    List<Book> findByTitleContainingIgnoreCaseAndGenre(String title, String genre);
-    List<Book> findByTitleContainingIgnoreCaseAndPublicationYear(String title, int publicationYear);
-    List<Book> findByTitleContainingIgnoreCaseAndPrice(String title, double price);
-    List<Book> findByTitleContainingIgnoreCaseAndQuantity(String title, int quantity);
+    @Query(BOOK_VIEW_SELECT + "where b.imageUrl = :imageUrl" + BOOK_VIEW_GROUP_BY)
+    List<BookView> findViewsByImageUrl(@Param("imageUrl") String imageUrl);
 
+    // Null when the book has no image or does not exist
+    @Query("select b.imageUrl from Book b where b.id = :id")
+    String findImageUrlById(@Param("id") Long id);
 
-    // ⭐ NEW METHOD REQUIRED FOR getAllBooks FILTERING (from BookServiceImpl):
-    // This method handles cases where both category AND a search term (for title OR author name) are present.
-    List<Book> findByGenreIgnoreCaseAndTitleContainingIgnoreCaseOrGenreIgnoreCaseAndAuthors_NameContainingIgnoreCase(
-            String genreForTitle, String titleSearch, String genreForAuthor, String authorNameSearch);
+    // --- Entity finders; callers only read the book's own columns or write it back ---
 
-    //Collection<Object> findByTitleContainingIgnoreCaseAndAuthors_NameContainingIgnoreCase(String title, String authorName);
+    List<Book> findByTitleContainingIgnoreCase(String title); // Suggestion fallback (titles only)
+    List<Book> findByIsbn(String isbn);                       // CSV import upsert
 
-    List<Book> findByTitleContainingIgnoreCaseAndAuthors_NameContainingIgnoreCase(String title, String authorName);
+    // Combinations of the predicates above (and sorting/paging) go through findFilteredKeys in BookRepoCustom
 }
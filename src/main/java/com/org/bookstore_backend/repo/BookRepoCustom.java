@@ -0,0 +1,31 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.dto.BookFilterDTO;
+import com.org.bookstore_backend.dto.BookSortField;
+
+import java.util.List;
+
+/**
+ * Hand-written queries for BookRepo that cannot be expressed as derived finders.
+ * Implemented by {@link BookRepoCustomImpl} and mixed into BookRepo by Spring Data.
+ */
+public interface BookRepoCustom {
+
+    /**
+     * Keyset (seek) pagination over the books matching {@code filter}: returns the next {@code limit} book IDs
+     * ordered by (sortField, id) that come strictly after ({@code afterValue}, {@code afterId}). Only the sort
+     * key and id are selected, so the cost does not grow with how deep the client has paged.
+     *
+     * @param afterValue sort key of the last row of the previous page, null for the first page
+     * @param afterId    id of the last row of the previous page, null for the first page
+     * @param limit      maximum number of keys, or 0 for all matching books
+     */
+    List<BookKey> findFilteredKeys(BookFilterDTO filter, BookSortField sortField, boolean descending,
+                                   Object afterValue, Long afterId, int limit);
+
+    /**
+     * A book id together with the value of the column the page was sorted by.
+     */
+    record BookKey(Long id, Object sortValue) {
+    }
+}
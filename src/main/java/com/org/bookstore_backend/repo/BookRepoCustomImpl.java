@@ -0,0 +1,50 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.dto.BookFilterDTO;
+import com.org.bookstore_backend.dto.BookSortField;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BookRepoCustomImpl implements BookRepoCustom {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookRepoCustomImpl.class);
+
+    // At most 2^13 criteria combinations x 3 sorts x 2 directions x 2 (seek or not); in practice a few dozen
+    private final Map<BookQueryPlan.Shape, BookQueryPlan> planCache = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<BookKey> findFilteredKeys(BookFilterDTO filter, BookSortField sortField, boolean descending,
+                                          Object afterValue, Long afterId, int limit) {
+        boolean seek = afterValue != null && afterId != null;
+        BookQueryPlan plan = planCache.computeIfAbsent(
+                BookQueryPlan.Shape.of(filter, sortField, descending, seek),
+                shape -> {
+                    BookQueryPlan compiled = BookQueryPlan.compile(shape);
+                    logger.debug("Compiled book query plan for {}: {}", shape, compiled.getJpql());
+                    return compiled;
+                });
+
+        TypedQuery<Object[]> query = entityManager.createQuery(plan.getJpql(), Object[].class);
+        plan.bind(query, filter, afterValue, afterId);
+        if (limit > 0) {
+            query.setMaxResults(limit);
+        }
+        List<Object[]> rows = query.getResultList();
+        List<BookKey> keys = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            keys.add(new BookKey((Long) row[0], row[1]));
+        }
+        return keys;
+    }
+}
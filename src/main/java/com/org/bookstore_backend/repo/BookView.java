@@ -0,0 +1,59 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.images.ImageVariant;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Read-only row of the {@code findViews*} queries in {@link BookRepo}: the book columns, the publisher name
+ * and every author name of the book aggregated into one string, so a whole list is read in one statement
+ * without loading entities or touching lazy associations.
+ */
+public record BookView(Long id,
+                       String title,
+                       String description,
+                       String isbn,
+                       Integer publicationYear,
+                       String imageUrl,
+                       String genre,
+                       Double price,
+                       Integer quantity,
+                       Boolean available,
+                       String publisherName,
+                       String authorNames) {
+
+    /**
+     * Separator used by {@code listagg} in the view queries; a control character no author name contains.
+     */
+    public static final String AUTHOR_SEPARATOR = "\u001f";
+
+    public BookDTO toDTO() {
+        return BookDTO.builder()
+                .id(id)
+                .title(title)
+                .description(description)
+                .isbn(isbn)
+                .publicationYear(publicationYear != null ? publicationYear : 0)
+                .imageUrl(imageUrl)
+                .imageVariants(ImageVariant.urlsFor(imageUrl))
+                .genre(genre)
+                .price(price != null ? price : 0)
+                .quantity(quantity != null ? quantity : 0)
+                .isAvailable(Boolean.TRUE.equals(available))
+                .publisherName(publisherName)
+                .authorNames(splitAuthors(authorNames))
+                .build();
+    }
+
+    private static Set<String> splitAuthors(String authorNames) {
+        if (authorNames == null || authorNames.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, authorNames.split(AUTHOR_SEPARATOR));
+        return names;
+    }
+}
@@ -0,0 +1,14 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.model.CatalogChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CatalogChangeRepo extends JpaRepository<CatalogChange, Long> {
+
+    List<CatalogChange> findByVersionGreaterThanOrderByVersionAsc(Long version, Pageable pageable);
+}
@@ -0,0 +1,9 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.model.CatalogFeedState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CatalogFeedStateRepo extends JpaRepository<CatalogFeedState, Long> {
+}
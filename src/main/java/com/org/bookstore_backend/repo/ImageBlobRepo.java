@@ -0,0 +1,22 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.model.ImageBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ImageBlobRepo extends JpaRepository<ImageBlob, String> {
+
+    @Modifying
+    @Query("update ImageBlob b set b.refCount = b.refCount + :delta where b.objectKey = :objectKey")
+    int adjustRefCount(@Param("objectKey") String objectKey, @Param("delta") int delta);
+
+    @Modifying
+    @Query("update ImageBlob b set b.lastUploadedAt = :at where b.contentHash = :contentHash")
+    int touch(@Param("contentHash") String contentHash, @Param("at") LocalDateTime at);
+}
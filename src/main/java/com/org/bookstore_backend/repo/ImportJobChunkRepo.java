@@ -0,0 +1,16 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.model.ImportJobChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImportJobChunkRepo extends JpaRepository<ImportJobChunk, Long> {
+
+    @Query("select c.chunkIndex from ImportJobChunk c where c.jobId = :jobId")
+    List<Integer> findChunkIndexesByJobId(@Param("jobId") Long jobId);
+}
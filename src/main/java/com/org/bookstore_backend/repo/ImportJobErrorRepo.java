@@ -0,0 +1,13 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.model.ImportJobError;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImportJobErrorRepo extends JpaRepository<ImportJobError, Long> {
+
+    List<ImportJobError> findTop100ByJobIdOrderByLineNumberAsc(Long jobId);
+}
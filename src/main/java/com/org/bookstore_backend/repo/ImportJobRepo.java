@@ -0,0 +1,17 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.model.ImportJob;
+import com.org.bookstore_backend.model.ImportJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImportJobRepo extends JpaRepository<ImportJob, Long> {
+
+    List<ImportJob> findByStatusInOrderByIdAsc(Collection<ImportJobStatus> statuses);
+
+    List<ImportJob> findTop20ByOrderByIdDesc();
+}
@@ -0,0 +1,140 @@
+package com.org.bookstore_backend.search;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Base class for in-memory views of the book catalog.
+ * <p>
+ * Subclasses only describe how to add and remove a single book from their state {@code S}.
+ * This class takes care of locking, of applying committed {@link BookCatalogEvent}s (raised on this node, or
+ * rebuilt from another node's invalidation by {@link CatalogIndexLoader}) and of swapping
+ * in a freshly built state after a full rebuild (see {@link CatalogIndexLoader}) without losing the
+ * writes that happened while the catalog was being read.
+ */
+public abstract class AbstractCatalogIndex<S> {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private S state = newState();
+    private boolean ready = false;
+    // Changes that arrive while a rebuild is reading the catalog; replayed on top of the new state
+    private List<BookCatalogEvent> pendingDuringRebuild = null;
+
+    protected abstract S newState();
+
+    protected abstract void add(S state, BookDTO book);
+
+    protected abstract void remove(S state, Long bookId);
+
+    /**
+     * Human readable name used in log messages.
+     */
+    public abstract String name();
+
+    /**
+     * Called under the write lock after every change to the state, for subclasses that cache derived results.
+     */
+    protected void changed() {
+    }
+
+    // Ahead of the cache invalidation broadcast, so nothing re-rendered after it sees the index before the change
+    @Order(0)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogEvent(BookCatalogEvent event) {
+        applyChange(event);
+    }
+
+    void applyChange(BookCatalogEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(state, event);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(event);
+            }
+            changed();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true once the initial build has completed; until then callers should use the database.
+     */
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void completeRebuild(List<BookDTO> books) {
+        S fresh = newState();
+        for (BookDTO book : books) {
+            add(fresh, book);
+        }
+        lock.writeLock().lock();
+        try {
+            if (pendingDuringRebuild != null) {
+                for (BookCatalogEvent event : pendingDuringRebuild) {
+                    apply(fresh, event);
+                }
+            }
+            pendingDuringRebuild = null;
+            state = fresh;
+            ready = true;
+            changed();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void abortRebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    protected <R> R read(Function<S, R> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(state);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(S target, BookCatalogEvent event) {
+        switch (event.getType()) {
+            case CREATED, UPDATED -> {
+                if (event.getBook() != null && event.getBook().getId() != null) {
+                    remove(target, event.getBookId());
+                    add(target, event.getBook());
+                }
+            }
+            case DELETED -> remove(target, event.getBookId());
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.org.bookstore_backend.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.dto.FacetCountDTO;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Facet counts (genre, publisher, publication decade, price band, availability) for any result set.
+ * <p>
+ * For every facet value the index keeps a compressed bitmap (RoaringBitmap) of the ids of the books
+ * carrying it. Counting a result set is then one {@code andCardinality} per facet value instead of
+ * a GROUP BY query per facet.
+ * <p>
+ * Result sets that only the database can select (text and range filters) are counted once per filter: the counts
+ * are cached by the filter's predicates, up to {@code books.facets.filter-cache-size} filters, and are valid
+ * until the index next changes. Paging through one filtered listing then loads its ids once, not on every page.
+ */
+@Component
+public class BookFacetIndex extends AbstractCatalogIndex<BookFacetIndex.Facets> {
+
+    public static final int DEFAULT_MAX_VALUES = 20;
+
+    private static final double[] PRICE_BAND_UPPER_BOUNDS = {10, 25, 50, 100};
+
+    // Counts of filtered result sets, by filter predicates; entries of an older generation are stale
+    private final Cache<Object, CachedCounts> filteredCounts;
+    private final AtomicLong generation = new AtomicLong();
+
+    public enum Facet {
+        GENRE("genre", false),
+        PUBLISHER("publisher", false),
+        PUBLICATION_DECADE("publicationDecade", true),
+        PRICE_BAND("priceBand", true),
+        AVAILABILITY("availability", true);
+
+        private final String key;
+        // Natural order (price bands, decades) instead of most-frequent-first
+        private final boolean ordered;
+
+        Facet(String key, boolean ordered) {
+            this.key = key;
+            this.ordered = ordered;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    public BookFacetIndex(@Value("${books.facets.filter-cache-size:1000}") int filterCacheSize) {
+        this.filteredCounts = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, filterCacheSize))
+                .build();
+    }
+
+    @Override
+    protected Facets newState() {
+        return new Facets();
+    }
+
+    @Override
+    protected void add(Facets facets, BookDTO book) {
+        int id = toBitmapId(book.getId());
+        if (id < 0) {
+            return;
+        }
+        EnumMap<Facet, String> values = valuesOf(book);
+        for (Map.Entry<Facet, String> e : values.entrySet()) {
+            facets.byFacet.get(e.getKey())
+                    .computeIfAbsent(sortKey(e.getKey(), e.getValue()), k -> new FacetValue(e.getValue()))
+                    .ids.add(id);
+        }
+        facets.all.add(id);
+        facets.bookValues.put(id, values);
+    }
+
+    @Override
+    protected void remove(Facets facets, Long bookId) {
+        int id = toBitmapId(bookId);
+        EnumMap<Facet, String> values = id < 0 ? null : facets.bookValues.remove(id);
+        if (values == null) {
+            return;
+        }
+        for (Map.Entry<Facet, String> e : values.entrySet()) {
+            Map<String, FacetValue> byValue = facets.byFacet.get(e.getKey());
+            String key = sortKey(e.getKey(), e.getValue());
+            FacetValue value = byValue.get(key);
+            if (value != null) {
+                value.ids.remove(id);
+                if (value.ids.isEmpty()) {
+                    byValue.remove(key);
+                }
+            }
+        }
+        facets.all.remove(id);
+    }
+
+    @Override
+    protected void changed() {
+        generation.incrementAndGet();
+        filteredCounts.invalidateAll();
+    }
+
+    @Override
+    public String name() {
+        return "book facet index";
+    }
+
+    /**
+     * Facet counts over the given books.
+     *
+     * @param bookIds the result set, or null for the whole catalog
+     */
+    public Map<String, List<FacetCountDTO>> counts(Collection<Long> bookIds, int maxValuesPerFacet) {
+        RoaringBitmap hits = null;
+        if (bookIds != null) {
+            hits = new RoaringBitmap();
+            for (Long bookId : bookIds) {
+                int id = toBitmapId(bookId);
+                if (id >= 0) {
+                    hits.add(id);
+                }
+            }
+        }
+        RoaringBitmap resultSet = hits;
+        return read(facets -> count(facets, resultSet != null ? resultSet : facets.all, maxValuesPerFacet));
+    }
+
+    /**
+     * Facet counts over a result set that only the caller can select, computed once per {@code filterKey} while
+     * the index does not change.
+     *
+     * @param filterKey value-based key of the predicates that select the result set
+     * @param bookIds   loads the ids of the result set; only called when the counts are not cached
+     * @return the counts, shared with other callers: not to be modified
+     */
+    public Map<String, List<FacetCountDTO>> countsFor(Object filterKey, Supplier<? extends Collection<Long>> bookIds,
+                                                      int maxValuesPerFacet) {
+        List<Object> key = List.of(filterKey, maxValuesPerFacet);
+        // Read before the ids are loaded: a change while they load leaves the entry stale instead of wrong
+        long current = generation.get();
+        CachedCounts cached = filteredCounts.getIfPresent(key);
+        if (cached != null && cached.generation() == current) {
+            return cached.counts();
+        }
+        Map<String, List<FacetCountDTO>> counts = counts(bookIds.get(), maxValuesPerFacet);
+        filteredCounts.put(key, new CachedCounts(current, counts));
+        return counts;
+    }
+
+    /**
+     * Facet counts over all books of one genre, without materializing the id list.
+     */
+    public Map<String, List<FacetCountDTO>> countsForGenre(String genre, int maxValuesPerFacet) {
+        String key = sortKey(Facet.GENRE, genre.trim());
+        return read(facets -> {
+            FacetValue value = facets.byFacet.get(Facet.GENRE).get(key);
+            return count(facets, value != null ? value.ids : new RoaringBitmap(), maxValuesPerFacet);
+        });
+    }
+
+    /**
+     * Ids of the books carrying a facet value, as a copy the caller may freely combine with other bitmaps.
+     */
+    public RoaringBitmap booksWith(Facet facet, String value) {
+        String key = sortKey(facet, value.trim());
+        return read(facets -> {
+            FacetValue fv = facets.byFacet.get(facet).get(key);
+            return fv != null ? fv.ids.clone() : new RoaringBitmap();
+        });
+    }
+
+    private static Map<String, List<FacetCountDTO>> count(Facets facets, RoaringBitmap hits, int maxValuesPerFacet) {
+        Map<String, List<FacetCountDTO>> result = new LinkedHashMap<>();
+        for (Facet facet : Facet.values()) {
+            List<FacetCountDTO> counts = new ArrayList<>();
+            List<String> keys = new ArrayList<>(facets.byFacet.get(facet).keySet());
+            if (facet.ordered) {
+                keys.sort(Comparator.naturalOrder());
+            }
+            for (String key : keys) {
+                FacetValue value = facets.byFacet.get(facet).get(key);
+                int count = RoaringBitmap.andCardinality(value.ids, hits);
+                if (count > 0) {
+                    counts.add(new FacetCountDTO(value.label, count));
+                }
+            }
+            if (!facet.ordered) {
+                counts.sort(Comparator.comparingInt(FacetCountDTO::getCount).reversed()
+                        .thenComparing(FacetCountDTO::getValue, String.CASE_INSENSITIVE_ORDER));
+            }
+            result.put(facet.key, counts.size() > maxValuesPerFacet ? new ArrayList<>(counts.subList(0, maxValuesPerFacet)) : counts);
+        }
+        return result;
+    }
+
+    private static EnumMap<Facet, String> valuesOf(BookDTO book) {
+        EnumMap<Facet, String> values = new EnumMap<>(Facet.class);
+        if (book.getGenre() != null && !book.getGenre().isBlank()) {
+            values.put(Facet.GENRE, book.getGenre().trim());
+        }
+        if (book.getPublisherName() != null && !book.getPublisherName().isBlank()) {
+            values.put(Facet.PUBLISHER, book.getPublisherName().trim());
+        }
+        if (book.getPublicationYear() > 0) {
+            values.put(Facet.PUBLICATION_DECADE, decadeOf(book.getPublicationYear()));
+        }
+        values.put(Facet.PRICE_BAND, priceBandOf(book.getPrice()));
+        values.put(Facet.AVAILABILITY, book.isAvailable() && book.getQuantity() > 0 ? "In stock" : "Out of stock");
+        return values;
+    }
+
+    public static String decadeOf(int year) {
+        return year < 1900 ? "Before 1900" : (year / 10 * 10) + "s";
+    }
+
+    public static String priceBandOf(double price) {
+        double lower = 0;
+        for (double upper : PRICE_BAND_UPPER_BOUNDS) {
+            if (price < upper) {
+                return (int) lower + "-" + (int) upper;
+            }
+            lower = upper;
+        }
+        return (int) lower + "+";
+    }
+
+    /**
+     * Map key for a facet value: case-insensitive for free text, zero-padded so price bands sort numerically.
+     */
+    private static String sortKey(Facet facet, String value) {
+        return switch (facet) {
+            case GENRE, PUBLISHER -> TextAnalyzer.normalize(value);
+            case PRICE_BAND -> String.format("%06d", Integer.parseInt(value.replaceAll("[^0-9].*$", "")));
+            case PUBLICATION_DECADE -> value.startsWith("Before") ? "0000" : value;
+            case AVAILABILITY -> value;
+        };
+    }
+
+    private static int toBitmapId(Long bookId) {
+        // Roaring bitmaps hold 32-bit values; IDENTITY ids stay far below that in practice
+        return bookId != null && bookId >= 0 && bookId <= Integer.MAX_VALUE ? bookId.intValue() : -1;
+    }
+
+    private record CachedCounts(long generation, Map<String, List<FacetCountDTO>> counts) {
+    }
+
+    private static final class FacetValue {
+        private final String label;
+        private final RoaringBitmap ids = new RoaringBitmap();
+
+        FacetValue(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Not thread-safe on its own; guarded by the base class lock.
+     */
+    static final class Facets {
+        private final EnumMap<Facet, Map<String, FacetValue>> byFacet = new EnumMap<>(Facet.class);
+        private final Map<Integer, EnumMap<Facet, String>> bookValues = new HashMap<>();
+        private final RoaringBitmap all = new RoaringBitmap();
+
+        Facets() {
+            for (Facet facet : Facet.values()) {
+                byFacet.put(facet, new HashMap<>());
+            }
+        }
+    }
+}
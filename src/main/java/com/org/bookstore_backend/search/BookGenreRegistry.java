@@ -0,0 +1,132 @@
+package com.org.bookstore_backend.search;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.dto.GenreCountDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Every genre in the catalog with its book and in-stock counts, maintained incrementally from
+ * committed catalog events so the genre dropdown never has to read the books table.
+ * <p>
+ * {@link #genres()} lists every distinct spelling as stored. {@link #genreCounts()} groups genres
+ * case-insensitively (as all catalog filters match them) and shows the most common spelling of a group.
+ */
+@Component
+public class BookGenreRegistry extends AbstractCatalogIndex<BookGenreRegistry.Registry> {
+
+    @Override
+    protected Registry newState() {
+        return new Registry();
+    }
+
+    @Override
+    protected void add(Registry registry, BookDTO book) {
+        if (book.getGenre() == null || book.getGenre().isBlank()) {
+            return;
+        }
+        Membership membership = new Membership(book.getGenre(), book.isAvailable() && book.getQuantity() > 0);
+        registry.books.put(book.getId(), membership);
+        registry.genres.computeIfAbsent(keyOf(membership.spelling), k -> new GenreCounts())
+                .add(membership, 1);
+    }
+
+    @Override
+    protected void remove(Registry registry, Long bookId) {
+        Membership membership = registry.books.remove(bookId);
+        if (membership == null) {
+            return;
+        }
+        String key = keyOf(membership.spelling);
+        GenreCounts counts = registry.genres.get(key);
+        if (counts != null) {
+            counts.add(membership, -1);
+            if (counts.books <= 0) {
+                registry.genres.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "genre registry";
+    }
+
+    /**
+     * @return every distinct genre exactly as spelled on the books, in alphabetical order
+     */
+    public List<String> genres() {
+        return read(registry -> {
+            List<String> names = new ArrayList<>(registry.genres.size());
+            for (GenreCounts counts : registry.genres.values()) {
+                names.addAll(new TreeSet<>(counts.spellings.keySet()));
+            }
+            return names;
+        });
+    }
+
+    /**
+     * @return every genre with its book and in-stock counts, in alphabetical order
+     */
+    public List<GenreCountDTO> genreCounts() {
+        return read(registry -> {
+            List<GenreCountDTO> result = new ArrayList<>(registry.genres.size());
+            for (GenreCounts counts : registry.genres.values()) {
+                result.add(new GenreCountDTO(counts.displayName(), counts.books, counts.inStock));
+            }
+            return result;
+        });
+    }
+
+    private static String keyOf(String genre) {
+        return genre.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Membership(String spelling, boolean inStock) {
+    }
+
+    private static final class GenreCounts {
+        long books;
+        long inStock;
+        // spelling -> number of books using it
+        final Map<String, Integer> spellings = new HashMap<>(2);
+
+        void add(Membership membership, int delta) {
+            books += delta;
+            if (membership.inStock) {
+                inStock += delta;
+            }
+            spellings.merge(membership.spelling, delta, Integer::sum);
+            spellings.values().removeIf(count -> count <= 0);
+        }
+
+        String displayName() {
+            String best = null;
+            int bestCount = 0;
+            for (Map.Entry<String, Integer> e : spellings.entrySet()) {
+                if (e.getValue() > bestCount || (e.getValue() == bestCount && e.getKey().compareTo(best) < 0)) {
+                    best = e.getKey();
+                    bestCount = e.getValue();
+                }
+            }
+            return best.trim();
+        }
+    }
+
+    /**
+     * Not thread-safe on its own; guarded by the base class lock.
+     */
+    static final class Registry {
+        // lower-cased genre -> counts, sorted for display
+        private final TreeMap<String, GenreCounts> genres = new TreeMap<>();
+        // book id -> the genre and stock state it was counted with, needed to undo it on update/delete
+        private final Map<Long, Membership> books = new HashMap<>();
+    }
+}
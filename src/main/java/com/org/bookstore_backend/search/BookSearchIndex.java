@@ -0,0 +1,206 @@
+package com.org.bookstore_backend.search;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the book catalog (title, author names, publisher, genre and ISBN).
+ * Results are ranked with BM25 over a field-weighted term frequency, so a title hit outranks a
+ * publisher hit. The index is built once at startup and then kept current through
+ * {@link BookCatalogEvent}s published after each committed catalog write.
+ */
+@Component
+public class BookSearchIndex extends AbstractCatalogIndex<BookSearchIndex.Segment> {
+
+    // BM25 parameters (standard defaults)
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Field weights: how much a single occurrence in each field contributes to the term frequency
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float AUTHOR_WEIGHT = 2.0f;
+    private static final float ISBN_WEIGHT = 2.0f;
+    private static final float PUBLISHER_WEIGHT = 1.0f;
+    private static final float GENRE_WEIGHT = 1.0f;
+
+    // A query token also matches indexed terms it is a prefix of ("tolk" -> "tolkien"), at a discount
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final double PREFIX_MATCH_FACTOR = 0.7;
+
+    @Override
+    protected Segment newState() {
+        return new Segment();
+    }
+
+    @Override
+    protected void add(Segment segment, BookDTO book) {
+        segment.add(book);
+    }
+
+    @Override
+    protected void remove(Segment segment, Long bookId) {
+        segment.remove(bookId);
+    }
+
+    @Override
+    public String name() {
+        return "book search index";
+    }
+
+    public int size() {
+        return read(s -> s.docs.size());
+    }
+
+    /**
+     * Runs a conjunctive search: every query token must match the book (exactly or as a prefix).
+     *
+     * @param query free text typed by the user
+     * @param genre optional genre filter (case-insensitive), may be null
+     * @return matching book IDs, best match first
+     */
+    public List<Long> search(String query, String genre) {
+        List<String> tokens = TextAnalyzer.tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        String genreFilter = (genre != null && !genre.isBlank()) ? TextAnalyzer.normalize(genre.trim()) : null;
+
+        return read(s -> {
+            List<Map<Long, Double>> perToken = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                Map<Long, Double> scores = s.scoreToken(token);
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+                perToken.add(scores);
+            }
+            // Intersect starting from the most selective token
+            perToken.sort(Comparator.comparingInt(Map::size));
+            Map<Long, Double> result = new HashMap<>(perToken.get(0));
+            for (int i = 1; i < perToken.size() && !result.isEmpty(); i++) {
+                Map<Long, Double> next = perToken.get(i);
+                result.entrySet().removeIf(e -> !next.containsKey(e.getKey()));
+                result.replaceAll((id, score) -> score + next.get(id));
+            }
+            if (genreFilter != null) {
+                result.keySet().removeIf(id -> !genreFilter.equals(s.docs.get(id).genre));
+            }
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(result.entrySet());
+            ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+            List<Long> ids = new ArrayList<>(ranked.size());
+            for (Map.Entry<Long, Double> e : ranked) {
+                ids.add(e.getKey());
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * One generation of the index. Not thread-safe on its own; guarded by the base class lock.
+     */
+    static final class Segment {
+        private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+        private final Map<Long, IndexedBook> docs = new HashMap<>();
+        private double totalLength = 0;
+
+        void add(BookDTO book) {
+            if (book == null || book.getId() == null) {
+                return;
+            }
+            remove(book.getId());
+
+            Map<String, Float> termWeights = new HashMap<>();
+            addField(termWeights, book.getTitle(), TITLE_WEIGHT);
+            if (book.getAuthorNames() != null) {
+                for (String author : book.getAuthorNames()) {
+                    addField(termWeights, author, AUTHOR_WEIGHT);
+                }
+            }
+            addField(termWeights, book.getPublisherName(), PUBLISHER_WEIGHT);
+            addField(termWeights, book.getGenre(), GENRE_WEIGHT);
+            addField(termWeights, book.getIsbn(), ISBN_WEIGHT);
+            String compactIsbn = TextAnalyzer.compactIsbn(book.getIsbn());
+            if (!compactIsbn.isEmpty()) {
+                termWeights.merge(compactIsbn, ISBN_WEIGHT, Float::sum);
+            }
+
+            float length = 0;
+            for (Map.Entry<String, Float> e : termWeights.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(book.getId(), e.getValue());
+                length += e.getValue();
+            }
+            String genre = book.getGenre() != null ? TextAnalyzer.normalize(book.getGenre().trim()) : null;
+            docs.put(book.getId(), new IndexedBook(termWeights.keySet().toArray(new String[0]), length, genre));
+            totalLength += length;
+        }
+
+        void remove(Long bookId) {
+            IndexedBook old = docs.remove(bookId);
+            if (old == null) {
+                return;
+            }
+            for (String term : old.terms) {
+                Map<Long, Float> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(bookId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= old.length;
+        }
+
+        /**
+         * Best BM25 contribution of a single query token per matching book.
+         */
+        Map<Long, Double> scoreToken(String token) {
+            Map<Long, Double> scores = new HashMap<>();
+            int expansions = 0;
+            for (Map.Entry<String, Map<Long, Float>> entry : postings.tailMap(token, true).entrySet()) {
+                String term = entry.getKey();
+                if (!term.startsWith(token) || expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                double factor = term.length() == token.length() ? 1.0 : PREFIX_MATCH_FACTOR;
+                Map<Long, Float> posting = entry.getValue();
+                double idf = idf(posting.size());
+                for (Map.Entry<Long, Float> p : posting.entrySet()) {
+                    double score = factor * bm25(idf, p.getValue(), docs.get(p.getKey()).length);
+                    scores.merge(p.getKey(), score, Math::max);
+                }
+            }
+            return scores;
+        }
+
+        private double idf(int docFreq) {
+            int n = docs.size();
+            return Math.log(1 + (n - docFreq + 0.5) / (docFreq + 0.5));
+        }
+
+        private double bm25(double idf, float tf, float length) {
+            double avgLength = docs.isEmpty() ? 1 : totalLength / docs.size();
+            double norm = K1 * (1 - B + B * length / avgLength);
+            return idf * (tf * (K1 + 1)) / (tf + norm);
+        }
+
+        private static void addField(Map<String, Float> termWeights, String text, float weight) {
+            for (String token : TextAnalyzer.tokenize(text)) {
+                termWeights.merge(token, weight, Float::sum);
+            }
+        }
+    }
+
+    private record IndexedBook(String[] terms, float length, String genre) {
+    }
+}
@@ -0,0 +1,472 @@
+package com.org.bookstore_backend.search;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typeahead over book titles and author names.
+ * <p>
+ * Suggestions live in a path-compressed prefix tree (radix tree). Every node caches the top-K
+ * suggestions of its subtree ordered by popularity, so answering a prefix is a walk down at most
+ * {@code prefix.length()} edges followed by returning an already sorted array - no subtree scan.
+ * Popularity is the number of books a suggestion stands for (an author with many titles ranks first).
+ * <p>
+ * Besides the full text, every suggestion is also reachable from each of its later words, so
+ * "tolk" finds "J.R.R. Tolkien" and "hobb" finds "The Hobbit".
+ */
+@Component
+public class BookSuggestionIndex extends AbstractCatalogIndex<BookSuggestionIndex.Trie> {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    // Keys are cut at this length; nobody types 40 characters into a typeahead box
+    private static final int MAX_KEY_LENGTH = 40;
+
+    public BookSuggestionIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("books.suggestions.memory.bytes", this, index -> index.read(Trie::estimatedBytes))
+                .description("Estimated heap used by the typeahead prefix tree")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("books.suggestions.entries", this, index -> index.read(trie -> trie.entries.size()))
+                .description("Distinct titles and author names in the typeahead prefix tree")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected Trie newState() {
+        return new Trie();
+    }
+
+    @Override
+    protected void add(Trie trie, BookDTO book) {
+        Set<String> texts = suggestionTexts(book);
+        trie.booksToTexts.put(book.getId(), texts.toArray(new String[0]));
+        for (String text : texts) {
+            trie.increment(text);
+        }
+    }
+
+    @Override
+    protected void remove(Trie trie, Long bookId) {
+        String[] texts = trie.booksToTexts.remove(bookId);
+        if (texts != null) {
+            for (String text : texts) {
+                trie.decrement(text);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "book suggestion trie";
+    }
+
+    /**
+     * @param prefix what the user has typed so far
+     * @param limit  maximum number of suggestions, capped at {@link #MAX_SUGGESTIONS}
+     * @return titles and author names starting with (a word starting with) the prefix, most popular first
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = toKey(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int max = Math.min(limit, MAX_SUGGESTIONS);
+        return read(trie -> {
+            Entry[] top = trie.topFor(key);
+            List<String> result = new ArrayList<>(Math.min(max, top.length));
+            for (int i = 0; i < top.length && result.size() < max; i++) {
+                result.add(top[i].text);
+            }
+            return result;
+        });
+    }
+
+    public long estimatedMemoryBytes() {
+        return read(Trie::estimatedBytes);
+    }
+
+    private static Set<String> suggestionTexts(BookDTO book) {
+        Set<String> texts = new LinkedHashSet<>();
+        if (book.getTitle() != null && !book.getTitle().isBlank()) {
+            texts.add(book.getTitle().trim());
+        }
+        if (book.getAuthorNames() != null) {
+            for (String author : book.getAuthorNames()) {
+                if (author != null && !author.isBlank()) {
+                    texts.add(author.trim());
+                }
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Normalized lookup key: analyzer tokens joined by single spaces, truncated.
+     */
+    static String toKey(String text) {
+        String key = String.join(" ", TextAnalyzer.tokenize(text));
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    /**
+     * Every word-start suffix of the normalized text: "the hobbit" -> ["the hobbit", "hobbit"].
+     */
+    private static Set<String> keysFor(String text) {
+        List<String> tokens = TextAnalyzer.tokenize(text);
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String key = String.join(" ", tokens.subList(i, tokens.size()));
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+        }
+        return keys;
+    }
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final Comparator<Entry> BY_POPULARITY = Comparator
+            .comparingInt((Entry e) -> e.weight).reversed()
+            .thenComparing(e -> e.text);
+
+    /**
+     * An immutable suggestion; a weight change is modelled as remove + insert of a new Entry.
+     */
+    private record Entry(String text, int weight) {
+    }
+
+    private static final class Node {
+        char[] label;
+        Node[] children = NO_CHILDREN;
+        Entry[] terminals = NO_ENTRIES;
+        Entry[] top = NO_ENTRIES;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        int childIndex(char c) {
+            int lo = 0;
+            int hi = children.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char k = children[mid].label[0];
+                if (k < c) {
+                    lo = mid + 1;
+                } else if (k > c) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+    }
+
+    /**
+     * The prefix tree plus the bookkeeping needed to maintain it incrementally.
+     * Not thread-safe on its own; guarded by the base class lock.
+     */
+    static final class Trie {
+        private final Node root = new Node(new char[0]);
+        // display text -> current entry (text and popularity)
+        private final Map<String, Entry> entries = new HashMap<>();
+        // book id -> display texts it contributed, needed to undo them on update/delete
+        private final Map<Long, String[]> booksToTexts = new HashMap<>();
+        private long nodeCount = 1;
+        private long labelChars = 0;
+        private long entrySlots = 0;
+        private long textChars = 0;
+
+        void increment(String text) {
+            Entry old = entries.get(text);
+            Entry updated = new Entry(text, old == null ? 1 : old.weight + 1);
+            for (String key : keysFor(text)) {
+                List<Node> path = old == null ? insertPath(key) : findPath(key);
+                if (path == null) {
+                    continue;
+                }
+                Node leaf = path.get(path.size() - 1);
+                if (old != null) {
+                    leaf.terminals = without(leaf.terminals, old);
+                    entrySlots--;
+                }
+                leaf.terminals = append(leaf.terminals, updated);
+                entrySlots++;
+                promote(path, updated);
+            }
+            entries.put(text, updated);
+            if (old == null) {
+                textChars += text.length();
+            }
+        }
+
+        void decrement(String text) {
+            Entry old = entries.get(text);
+            if (old == null) {
+                return;
+            }
+            Entry updated = old.weight > 1 ? new Entry(text, old.weight - 1) : null;
+            for (String key : keysFor(text)) {
+                List<Node> path = findPath(key);
+                if (path == null) {
+                    continue;
+                }
+                Node leaf = path.get(path.size() - 1);
+                leaf.terminals = without(leaf.terminals, old);
+                entrySlots--;
+                if (updated != null) {
+                    leaf.terminals = append(leaf.terminals, updated);
+                    entrySlots++;
+                } else {
+                    prune(path);
+                }
+                demote(path, text);
+            }
+            if (updated != null) {
+                entries.put(text, updated);
+            } else {
+                entries.remove(text);
+                textChars -= text.length();
+            }
+        }
+
+        Entry[] topFor(String key) {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                int idx = node.childIndex(key.charAt(i));
+                if (idx < 0) {
+                    return NO_ENTRIES;
+                }
+                Node child = node.children[idx];
+                int j = 0;
+                while (j < child.label.length && i < key.length()) {
+                    if (child.label[j] != key.charAt(i)) {
+                        return NO_ENTRIES;
+                    }
+                    j++;
+                    i++;
+                }
+                node = child;
+            }
+            return node.top;
+        }
+
+        /**
+         * Root-to-node path for an existing key, or null if the key is not in the tree.
+         */
+        private List<Node> findPath(String key) {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            path.add(node);
+            int i = 0;
+            while (i < key.length()) {
+                int idx = node.childIndex(key.charAt(i));
+                if (idx < 0) {
+                    return null;
+                }
+                node = node.children[idx];
+                if (i + node.label.length > key.length()
+                        || !key.regionMatches(i, new String(node.label), 0, node.label.length)) {
+                    return null;
+                }
+                i += node.label.length;
+                path.add(node);
+            }
+            return path;
+        }
+
+        /**
+         * Root-to-node path for a key, creating and splitting nodes as needed.
+         */
+        private List<Node> insertPath(String key) {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            path.add(node);
+            int i = 0;
+            while (i < key.length()) {
+                int idx = node.childIndex(key.charAt(i));
+                if (idx < 0) {
+                    Node leaf = new Node(key.substring(i).toCharArray());
+                    nodeCount++;
+                    labelChars += leaf.label.length;
+                    insertChild(node, -(idx + 1), leaf);
+                    path.add(leaf);
+                    return path;
+                }
+                Node child = node.children[idx];
+                int common = 0;
+                while (common < child.label.length && i + common < key.length()
+                        && child.label[common] == key.charAt(i + common)) {
+                    common++;
+                }
+                if (common < child.label.length) {
+                    // Split the edge: node -> mid(label[0..common]) -> child(label[common..])
+                    Node mid = new Node(Arrays.copyOfRange(child.label, 0, common));
+                    child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                    mid.children = new Node[]{child};
+                    mid.top = child.top;
+                    entrySlots += mid.top.length;
+                    nodeCount++;
+                    node.children[idx] = mid;
+                    child = mid;
+                }
+                node = child;
+                path.add(node);
+                i += common;
+            }
+            return path;
+        }
+
+        /**
+         * Drops leaves at the end of the path that no longer hold anything.
+         */
+        private void prune(List<Node> path) {
+            for (int p = path.size() - 1; p > 0; p--) {
+                Node n = path.get(p);
+                if (n.terminals.length > 0 || n.children.length > 0) {
+                    break;
+                }
+                removeChild(path.get(p - 1), n);
+                entrySlots -= n.top.length;
+                nodeCount--;
+                labelChars -= n.label.length;
+                path.remove(p);
+            }
+        }
+
+        /**
+         * An entry became more popular: an O(K) sorted insert into each top-K list on the path.
+         */
+        private void promote(List<Node> path, Entry entry) {
+            for (int p = path.size() - 1; p >= 0; p--) {
+                Node n = path.get(p);
+                Entry[] top = n.top;
+                int existing = indexOfText(top, entry.text);
+                List<Entry> list = new ArrayList<>(Arrays.asList(top));
+                if (existing >= 0) {
+                    list.remove(existing);
+                }
+                int at = 0;
+                while (at < list.size() && BY_POPULARITY.compare(list.get(at), entry) < 0) {
+                    at++;
+                }
+                if (at >= MAX_SUGGESTIONS) {
+                    continue;
+                }
+                list.add(at, entry);
+                if (list.size() > MAX_SUGGESTIONS) {
+                    list.remove(list.size() - 1);
+                }
+                entrySlots += list.size() - top.length;
+                n.top = list.toArray(NO_ENTRIES);
+            }
+        }
+
+        /**
+         * An entry lost popularity or disappeared: only nodes whose top-K contained it can change, and those
+         * are rebuilt bottom-up from their own terminals and their children's (already updated) top-K.
+         */
+        private void demote(List<Node> path, String text) {
+            for (int p = path.size() - 1; p >= 0; p--) {
+                Node n = path.get(p);
+                if (indexOfText(n.top, text) < 0) {
+                    continue;
+                }
+                List<Entry> candidates = new ArrayList<>(n.terminals.length + n.children.length * MAX_SUGGESTIONS);
+                candidates.addAll(Arrays.asList(n.terminals));
+                for (Node child : n.children) {
+                    candidates.addAll(Arrays.asList(child.top));
+                }
+                candidates.sort(BY_POPULARITY);
+                List<Entry> top = new ArrayList<>(MAX_SUGGESTIONS);
+                Set<String> seen = new HashSet<>();
+                for (Entry e : candidates) {
+                    // The same suggestion can reach a subtree through several of its word-suffix keys
+                    if (seen.add(e.text)) {
+                        top.add(e);
+                        if (top.size() == MAX_SUGGESTIONS) {
+                            break;
+                        }
+                    }
+                }
+                entrySlots += top.size() - n.top.length;
+                n.top = top.toArray(NO_ENTRIES);
+            }
+        }
+
+        private static int indexOfText(Entry[] entries, String text) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].text.equals(text)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static void insertChild(Node parent, int at, Node child) {
+            Node[] children = new Node[parent.children.length + 1];
+            System.arraycopy(parent.children, 0, children, 0, at);
+            children[at] = child;
+            System.arraycopy(parent.children, at, children, at + 1, parent.children.length - at);
+            parent.children = children;
+        }
+
+        private static void removeChild(Node parent, Node child) {
+            int idx = parent.childIndex(child.label[0]);
+            if (idx < 0) {
+                return;
+            }
+            Node[] children = new Node[parent.children.length - 1];
+            System.arraycopy(parent.children, 0, children, 0, idx);
+            System.arraycopy(parent.children, idx + 1, children, idx, parent.children.length - idx - 1);
+            parent.children = children;
+        }
+
+        private static Entry[] append(Entry[] entries, Entry entry) {
+            Entry[] result = Arrays.copyOf(entries, entries.length + 1);
+            result[entries.length] = entry;
+            return result;
+        }
+
+        private static Entry[] without(Entry[] entries, Entry entry) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] == entry) {
+                    Entry[] result = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, result, 0, i);
+                    System.arraycopy(entries, i + 1, result, i, entries.length - i - 1);
+                    return result;
+                }
+            }
+            return entries;
+        }
+
+        /**
+         * Rough shallow-size estimate (compressed oops): node objects and their arrays, plus the
+         * suggestion entries and their strings.
+         */
+        long estimatedBytes() {
+            long nodes = nodeCount * (16 + 4 * 4)                  // object header + 4 references
+                    + nodeCount * 3 * 16                            // headers of label/children/top arrays
+                    + labelChars * 2                                // label chars
+                    + (nodeCount - 1) * 4                           // child references
+                    + entrySlots * 4;                               // terminal and top-K references
+            long strings = entries.size() * (16L + 4 + 4 + 24 + 16) + textChars;   // Entry + String + byte[]
+            long books = booksToTexts.size() * 64L;
+            return nodes + strings + books;
+        }
+    }
+}
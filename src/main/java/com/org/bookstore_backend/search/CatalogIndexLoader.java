@@ -0,0 +1,96 @@
+package com.org.bookstore_backend.search;
+
+import com.org.bookstore_backend.cache.BookCacheInvalidationBus;
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import com.org.bookstore_backend.repo.BookRepo;
+import com.org.bookstore_backend.repo.BookView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Builds every {@link AbstractCatalogIndex} from a single read of the catalog once the application is up,
+ * so adding another in-memory view does not add another full table scan at startup.
+ * <p>
+ * Changes committed on this node reach the indexes as {@link BookCatalogEvent}s; changes committed on another node
+ * only arrive as a {@link BookCacheInvalidationEvent}, upon which the book is read again once and applied to every
+ * index (or removed, if it is gone).
+ */
+@Component
+public class CatalogIndexLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndexLoader.class);
+
+    private final BookRepo bookRepository;
+    private final List<AbstractCatalogIndex<?>> indexes;
+    private final BookCacheInvalidationBus invalidationBus;
+
+    public CatalogIndexLoader(BookRepo bookRepository,
+                              List<AbstractCatalogIndex<?>> indexes,
+                              BookCacheInvalidationBus invalidationBus) {
+        this.bookRepository = bookRepository;
+        this.indexes = indexes;
+        this.invalidationBus = invalidationBus;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildAll();
+    }
+
+    // Ahead of CatalogVersion, which bumps the ETag once the indexes have the change
+    @Order(0)
+    @EventListener
+    public void onInvalidation(BookCacheInvalidationEvent event) {
+        // Null for category changes, which no index holds; local changes were applied from their BookCatalogEvent
+        if (event.getBookId() == null || invalidationBus.isLocal(event)) {
+            return;
+        }
+        BookCatalogEvent change;
+        try {
+            change = bookRepository.findViewsByIdIn(List.of(event.getBookId())).stream()
+                    .findFirst()
+                    .map(view -> BookCatalogEvent.updated(view.toDTO()))
+                    .orElseGet(() -> BookCatalogEvent.deleted(event.getBookId()));
+        } catch (Exception e) {
+            logger.error("Failed to read book {} changed on node {}, indexes keep the old state: {}",
+                    event.getBookId(), event.getOriginNode(), e.getMessage(), e);
+            return;
+        }
+        indexes.forEach(index -> index.applyChange(change));
+    }
+
+    /**
+     * Re-reads the whole catalog and atomically swaps a freshly built state into every index.
+     */
+    public void rebuildAll() {
+        long start = System.currentTimeMillis();
+        indexes.forEach(AbstractCatalogIndex::beginRebuild);
+
+        List<BookDTO> books;
+        try {
+            books = bookRepository.findAllViews().stream()
+                    .map(BookView::toDTO)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            logger.error("Failed to load catalog for in-memory indexes, falling back to database queries: {}", e.getMessage(), e);
+            indexes.forEach(AbstractCatalogIndex::abortRebuild);
+            return;
+        }
+
+        for (AbstractCatalogIndex<?> index : indexes) {
+            long indexStart = System.currentTimeMillis();
+            index.completeRebuild(books);
+            logger.info("Built {} over {} books in {} ms", index.name(), books.size(), System.currentTimeMillis() - indexStart);
+        }
+        logger.info("Catalog indexes ready in {} ms", System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,34 @@
+package com.org.bookstore_backend.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Cover images served from the local image directory ({@code app.local-images.directory}) under
+ * {@code app.local-images.url-prefix}.
+ */
+public interface BookImageService {
+
+    /**
+     * A file of the local image directory, as known to the in-memory index.
+     *
+     * @param etag strong entity tag derived from the file content, quoted
+     */
+    record LocalImage(String name, Path path, long size, String contentType, String etag) {
+    }
+
+    /**
+     * Looks the image up in the in-memory index, without touching the file system.
+     *
+     * @return empty if there is no such image
+     */
+    Optional<LocalImage> findLocalImage(String fileName);
+
+    /**
+     * Copies {@code length} bytes of the image starting at {@code start} to {@code out}, letting the kernel move
+     * the bytes where the target allows it.
+     */
+    void transfer(LocalImage image, long start, long length, OutputStream out) throws IOException;
+}
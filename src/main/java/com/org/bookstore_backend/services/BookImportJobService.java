@@ -0,0 +1,31 @@
+package com.org.bookstore_backend.services;
+
+import com.org.bookstore_backend.dto.ImportJobDTO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Asynchronous bulk catalog imports: the upload is spooled to disk and imported in the background in
+ * checkpointed chunks, so an import survives a restart and resumes where it stopped.
+ */
+public interface BookImportJobService {
+
+    /**
+     * Spools the CSV and queues it for import.
+     *
+     * @return the queued job
+     */
+    ImportJobDTO submit(MultipartFile file, String submittedBy) throws IOException;
+
+    /**
+     * @return progress, rate and the first failed rows of the job
+     */
+    ImportJobDTO getJob(Long id);
+
+    /**
+     * @return the most recent jobs, newest first, without their failed rows
+     */
+    List<ImportJobDTO> getRecentJobs();
+}
@@ -3,6 +3,7 @@ package com.org.bookstore_backend.services;
 import com.org.bookstore_backend.dto.*;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -26,8 +27,34 @@ public interface BookService {
 
     List<BookDTO> getAllBooks();
 
+    /**
+     * Bounded, cursor-paginated catalog listing. Without a search term the page is ordered by
+     * (sort, id) and fetched with a keyset seek; with a search term it is ordered by relevance.
+     *
+     * @param sort      title, price or publicationYear (defaults to title)
+     * @param direction asc or desc (defaults to asc)
+     * @param size      requested page size, clamped to the allowed range
+     * @param cursor    the {@code nextCursor} of the previous page, null for the first page
+     * @param includeFacets whether to add facet counts over the whole result set
+     */
+    BookPageDTO getBookPage(String category, String search, String sort, String direction, Integer size, String cursor,
+                            boolean includeFacets);
+
+    /**
+     * Counts per genre, publisher, publication decade, price band and availability for the books
+     * matching the given category and search term.
+     */
+    Map<String, List<FacetCountDTO>> getFacetCounts(String category, String search);
+
     BookDTO getBookById(Long id);
 
+    /**
+     * Like {@link #getBookById} for many books, with one query for all books that are not in the near cache.
+     *
+     * @return the books that exist, by id
+     */
+    Map<Long, BookDTO> getBooksByIds(Collection<Long> ids);
+
     void deleteBook(Long id);
 
     /**
@@ -49,6 +76,19 @@ public interface BookService {
 
     List<BookDTO> searchAndFilterBooks(String searchTerm, String categoryName, String authorName, String publisherName);
 
+    /**
+     * Every book matching the filter, ordered by title. Any combination of predicates runs as a single
+     * query plus one fetch-joined load of the matching rows.
+     */
+    List<BookDTO> searchAndFilterBooks(BookFilterDTO filter);
+
+    /**
+     * Bounded, keyset-paginated version of {@link #searchAndFilterBooks(BookFilterDTO)};
+     * parameters as for {@link #getBookPage}.
+     */
+    BookPageDTO filterBooks(BookFilterDTO filter, String sort, String direction, Integer size, String cursor,
+                            boolean includeFacets);
+
     // --- Other methods ---
 
     List<BookDTO> findByPublisherName(String publisherName);
@@ -88,6 +128,11 @@ public interface BookService {
     // ⭐ NEW: Method to get all unique book genres
     List<String> getAllGenres();
 
+    /**
+     * Every genre with the number of books in it and how many of those are in stock, in alphabetical order.
+     */
+    List<GenreCountDTO> getGenreCounts();
+
     PublisherDTO createPublisher(PublisherDTO publisherDto);
 
     List<AuthorDTO> getAllAuthors();
@@ -96,6 +141,43 @@ public interface BookService {
 
     List<String> getBookSuggestions(String query);
 
+    /**
+     * Books most often bought together with the given book ("customers also bought"), best first.
+     * Empty while the co-purchase model is still being built or if the book was never ordered with others.
+     */
+    List<BookDTO> getRelatedBooks(Long id, int limit);
+
+    /**
+     * Starts recomputing the co-purchase model from the whole order history.
+     *
+     * @return false if a rebuild is already running
+     */
+    boolean rebuildRelatedBooks();
+
+    /**
+     * Best selling books over the last {@code window} (1h, 24h or 7d), overall or within one genre, best first.
+     * With {@code sort} = trending, the books of the last 1h or 24h that sell fastest relative to the last 7d.
+     * Computed in memory from the stream of placed orders.
+     *
+     * @param window null for 7d, or 24h when trending
+     * @param sort   units (default) or trending
+     * @throws IllegalArgumentException for an unknown window or sort, or trending over 7d
+     */
+    List<RankedBookDTO> getBestsellers(String window, String genre, String sort, int limit);
+
+    /**
+     * Books created, updated or deleted after catalog version {@code since}, oldest change first, for clients that
+     * keep a local copy of the catalog. {@code since=0} returns the whole catalog.
+     */
+    CatalogChangesDTO getCatalogChanges(long since, int limit);
+
+    /**
+     * Sets the image URL of the book to an image that is already stored, e.g. one the client uploaded directly.
+     *
+     * @throws jakarta.persistence.EntityNotFoundException if there is no such book
+     */
+    BookDTO attachImage(Long id, String imageUrl);
+
     // Bulk CSV import
     Map<String, Object> importBooksFromCsv(MultipartFile file) throws IOException;
 }
\ No newline at end of file
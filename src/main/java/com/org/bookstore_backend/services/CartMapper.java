@@ -1,4 +1,6 @@
 package com.org.bookstore_backend.services;
+import com.org.bookstore_backend.cart.CartStore;
+import com.org.bookstore_backend.dto.BookDTO;
 import com.org.bookstore_backend.dto.BookMapper;
 import com.org.bookstore_backend.dto.CartDTO;
 import com.org.bookstore_backend.dto.CartItemDTO;
@@ -10,6 +12,8 @@ import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Named;
 
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 @Mapper(
@@ -33,6 +37,24 @@ public interface CartMapper {
     @Mapping(target = "bookPrice", source = "book.price")
     CartItemDTO toItemDto(CartItem cartItem);
 
+    // A cart line of the in-memory cart store, with the book details from the near cache
+    @Mapping(target = "bookId", source = "book.id")
+    @Mapping(target = "bookTitle", source = "book.title")
+    @Mapping(target = "bookImageUrl", source = "book.imageUrl")
+    @Mapping(target = "bookPrice", source = "book.price")
+    @Mapping(target = "quantity", source = "quantity")
+    CartItemDTO toStoredItemDto(BookDTO book, Integer quantity);
+
+    // The total is the store's running total, not a sum over the items
+    default CartDTO toDto(CartStore.CartView cart, List<CartItemDTO> items) {
+        return CartDTO.builder()
+                .id(cart.cartId())
+                .userId(cart.userId())
+                .cartItems(new LinkedHashSet<>(items))
+                .totalAmount(cart.total().doubleValue())
+                .build();
+    }
+
     @Mapping(target = "cart", ignore = true)
     @Mapping(target = "book", ignore = true)
     CartItem toItemEntity(CartItemDTO cartItemDTO);
@@ -1,6 +1,7 @@
 package com.org.bookstore_backend.services;
 
 import com.org.bookstore_backend.dto.CartDTO;
+import com.org.bookstore_backend.dto.CartOperationDTO;
 import com.org.bookstore_backend.model.CartItem;
 import com.org.bookstore_backend.model.User;
 import jakarta.validation.constraints.Min;
@@ -8,6 +9,7 @@ import jakarta.validation.constraints.NotNull;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Set;
 
 @Service
@@ -65,6 +67,16 @@ public interface CartService {
      */
     CartDTO clearCart(Long userId);
 
+    /**
+     * Applies the operations in order as one change of the user's cart: if any of them fails, the cart is left as
+     * it was.
+     *
+     * @param userId     The ID of the user.
+     * @param operations The changes to apply.
+     * @return The updated CartDTO.
+     */
+    CartDTO applyCartOperations(Long userId, List<CartOperationDTO> operations);
+
     /**
      * Retrieves the ID of the currently authenticated user from the security context.
      *
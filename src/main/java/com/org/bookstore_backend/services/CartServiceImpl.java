@@ -1,13 +1,13 @@
 package com.org.bookstore_backend.services;
+import com.org.bookstore_backend.cart.CartStore;
+import com.org.bookstore_backend.dto.BookDTO;
 import com.org.bookstore_backend.dto.CartDTO;
+import com.org.bookstore_backend.dto.CartItemDTO;
+import com.org.bookstore_backend.dto.CartOperationDTO;
 import com.org.bookstore_backend.model.Book;
-import com.org.bookstore_backend.model.Cart;
 import com.org.bookstore_backend.model.CartItem;
 import com.org.bookstore_backend.model.User;
 import com.org.bookstore_backend.repo.BookRepo;
-import com.org.bookstore_backend.repo.CartItemRepo;
-import com.org.bookstore_backend.repo.CartRepo;
-import com.org.bookstore_backend.repo.UserRepo;
 import com.org.bookstore_backend.services.impl.UserDetailsImpl;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
@@ -19,35 +19,40 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Optional;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Carts are read and changed in the {@link CartStore}, which writes them to the database on its own thread, so a
+ * cart request needs no transaction; book details come from the book near cache.
+ */
 @Service
-@Transactional
+@Transactional(Transactional.TxType.SUPPORTS)
 public class CartServiceImpl implements CartService {
 
     private static final Logger logger = LoggerFactory.getLogger(CartServiceImpl.class);
 
-    private final CartRepo cartRepository;
-    private final CartItemRepo cartItemRepository;
-    private final UserRepo userRepository;
+    private final CartStore cartStore;
+    private final BookService bookService;
     private final BookRepo bookRepository;
     private final CartMapper cartMapper;
 
     @Autowired
-    public CartServiceImpl(CartRepo cartRepository, CartItemRepo cartItemRepository,
-                           UserRepo userRepository, BookRepo bookRepository, CartMapper cartMapper) {
-        this.cartRepository = cartRepository;
-        this.cartItemRepository = cartItemRepository;
-        this.userRepository = userRepository;
+    public CartServiceImpl(CartStore cartStore, BookService bookService, BookRepo bookRepository, CartMapper cartMapper) {
+        this.cartStore = cartStore;
+        this.bookService = bookService;
         this.bookRepository = bookRepository;
         this.cartMapper = cartMapper;
     }
 
     /**
-     * Retrieves the cart for a given user. If no cart exists, a new one is created.
+     * Retrieves the cart for a given user. If no cart exists, an empty one is returned; it is stored once it has
+     * items.
      *
      * @param userId The ID of the user.
      * @return A CartDTO representing the user's cart.
@@ -55,21 +60,7 @@ public class CartServiceImpl implements CartService {
      */
     @Override
     public CartDTO getUserCart(Long userId) {
-        // 1. Find the user by their ID. Throws EntityNotFoundException if not found.
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + userId));
-
-        // 2. Find the cart associated with the user.
-        // .orElseGet() is used to create a new cart if one does not exist for the user.
-        Cart cart = cartRepository.findByUser_UserId(userId)
-                .orElseGet(() -> {
-                    logger.info("No cart found for user ID: {}. Creating a new cart.", userId);
-                    Cart newCart = Cart.builder().user(user).build();
-                    return cartRepository.save(newCart);
-                });
-
-        // 3. Map the found or newly created Cart entity to a CartDTO and return it.
-        return cartMapper.toDto(cart);
+        return toDto(cartStore.read(userId));
     }
 
     /**
@@ -88,47 +79,10 @@ public class CartServiceImpl implements CartService {
         if (quantity == null || quantity < 1) {
             throw new IllegalArgumentException("Quantity must be at least 1.");
         }
-
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + userId));
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new EntityNotFoundException("Book not found with ID: " + bookId));
-
-        Cart cart = cartRepository.findByUser_UserId(userId)
-                .orElseGet(() -> {
-                    Cart newCart = Cart.builder().user(user).build();
-                    return cartRepository.save(newCart);
-                });
-
-        Optional<CartItem> existingCartItemOptional = cartItemRepository.findByCartAndBook(cart, book);
-
-        CartItem cartItem;
-        if (existingCartItemOptional.isPresent()) {
-            cartItem = existingCartItemOptional.get();
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-            cartItemRepository.save(cartItem);
-        } else {
-            cartItem = CartItem.builder()
-                    .cart(cart)
-                    .book(book)
-                    .quantity(quantity)
-                    .build();
-            // Add to cart's collection explicitly for consistency and potential cascade operations
-            cart.addCartItem(cartItem);
-            cartItemRepository.save(cartItem); // Save the new cart item
-        }
-
-        // Save the cart to ensure its collection updates are flushed (if using cascade)
-        // This save might be redundant if cart.addCartItem handles the relationship and cartItemRepository.save(cartItem)
-        // correctly persists it, but it ensures the parent-child relationship is synchronized.
-        cartRepository.save(cart);
-
-        // Re-fetch the cart to ensure its collection is properly loaded for DTO mapping
-        // This is important if `cart.getCartItems()` is lazy-loaded.
-        Cart updatedCart = cartRepository.findByUser_UserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Cart not found after update attempt."));
-
-        return cartMapper.toDto(updatedCart);
+        // Throws EntityNotFoundException for unknown books
+        BookDTO book = bookService.getBookById(bookId);
+        return toDto(cartStore.update(userId, Map.of(bookId, BigDecimal.valueOf(book.getPrice())),
+                items -> items.merge(bookId, quantity, Integer::sum)));
     }
 
     @Override
@@ -147,36 +101,20 @@ public class CartServiceImpl implements CartService {
      * @param bookId      The ID of the book whose quantity is to be updated.
      * @param newQuantity The new quantity for the book. If <= 0, the item is removed.
      * @return A CartDTO representing the updated cart.
-     * @throws EntityNotFoundException if the user, book, cart, or cart item is not found.
+     * @throws EntityNotFoundException if the user or the cart item is not found.
      */
     @Override
     public CartDTO updateBookQuantityInCart(Long userId, Long bookId, int newQuantity) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + userId));
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new EntityNotFoundException("Book not found with ID: " + bookId));
-
-        Cart cart = cartRepository.findByUser_UserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Cart not found for user ID: " + userId));
-
-        CartItem cartItem = cartItemRepository.findByCartAndBook(cart, book)
-                .orElseThrow(() -> new EntityNotFoundException("Book not found in cart for book ID: " + bookId));
-
-        if (newQuantity <= 0) {
-            cart.removeCartItem(cartItem); // Remove from cart's collection
-            cartItemRepository.delete(cartItem); // Delete the individual item
-        } else {
-            cartItem.setQuantity(newQuantity);
-            cartItemRepository.save(cartItem);
-        }
-
-        // Save the cart to ensure orphan removal (if configured) or collection updates are flushed
-        cartRepository.save(cart);
-
-        // Re-fetch to ensure the DTO reflects the most current state (especially if collection is lazy)
-        Cart updatedCart = cartRepository.findByUser_UserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Cart not found after update."));
-        return cartMapper.toDto(updatedCart);
+        return toDto(cartStore.update(userId, items -> {
+            if (!items.containsKey(bookId)) {
+                throw new EntityNotFoundException("Book not found in cart for book ID: " + bookId);
+            }
+            if (newQuantity <= 0) {
+                items.remove(bookId);
+            } else {
+                items.put(bookId, newQuantity);
+            }
+        }));
     }
 
     /**
@@ -185,31 +123,15 @@ public class CartServiceImpl implements CartService {
      * @param userId The ID of the user.
      * @param bookId The ID of the book to remove.
      * @return A CartDTO representing the updated cart.
-     * @throws EntityNotFoundException if the user, book, cart, or cart item is not found.
+     * @throws EntityNotFoundException if the user or the cart item is not found.
      */
     @Override
     public CartDTO removeBookFromCart(Long userId, Long bookId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + userId));
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new EntityNotFoundException("Book not found with ID: " + bookId));
-
-        Cart cart = cartRepository.findByUser_UserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Cart not found for user ID: " + userId));
-
-        CartItem cartItem = cartItemRepository.findByCartAndBook(cart, book)
-                .orElseThrow(() -> new EntityNotFoundException("Book not found in cart for book ID: " + bookId));
-
-        cart.removeCartItem(cartItem); // Remove from cart's collection
-        cartItemRepository.delete(cartItem); // Delete the individual item
-
-        // Save the cart to ensure orphan removal (if configured) or collection updates are flushed
-        cartRepository.save(cart);
-
-        // Re-fetch to ensure the DTO reflects the most current state (especially if collection is lazy)
-        Cart updatedCart = cartRepository.findByUser_UserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Cart not found after removal."));
-        return cartMapper.toDto(updatedCart);
+        return toDto(cartStore.update(userId, items -> {
+            if (items.remove(bookId) == null) {
+                throw new EntityNotFoundException("Book not found in cart for book ID: " + bookId);
+            }
+        }));
     }
 
     /**
@@ -217,26 +139,76 @@ public class CartServiceImpl implements CartService {
      *
      * @param userId The ID of the user.
      * @return A CartDTO representing the cleared cart.
-     * @throws EntityNotFoundException if the cart is not found for the user.
+     * @throws EntityNotFoundException if the user is not found.
      */
     @Override
     public CartDTO clearCart(Long userId) {
-        Cart cart = cartRepository.findByUser_UserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Cart not found for user ID: " + userId));
+        return toDto(cartStore.clear(userId));
+    }
 
-        // Use a temporary set to avoid ConcurrentModificationException if iterating and modifying
-        Set<CartItem> itemsToClear = new HashSet<>(cart.getCartItems());
-        for (CartItem item : itemsToClear) {
-            cart.removeCartItem(item); // Remove from cart's collection
-            cartItemRepository.delete(item); // Delete the individual item
+    /**
+     * Applies a batch of cart changes as a single update of the in-memory cart, so the batch is journaled as one
+     * record and written in the next flush; the books to add are checked with one lookup.
+     *
+     * @throws IllegalArgumentException if an operation lacks a valid quantity.
+     * @throws EntityNotFoundException  if the user or a book to add is not found, or a book to update or remove is
+     *                                  not in the cart.
+     */
+    @Override
+    public CartDTO applyCartOperations(Long userId, List<CartOperationDTO> operations) {
+        Set<Long> added = new LinkedHashSet<>();
+        for (CartOperationDTO operation : operations) {
+            if (operation.getAction() == null || operation.getBookId() == null) {
+                throw new IllegalArgumentException("Every operation needs an action and a book ID.");
+            }
+            switch (operation.getAction()) {
+                case ADD -> {
+                    if (operation.getQuantity() == null || operation.getQuantity() < 1) {
+                        throw new IllegalArgumentException("Quantity must be at least 1.");
+                    }
+                    added.add(operation.getBookId());
+                }
+                case UPDATE -> {
+                    if (operation.getQuantity() == null) {
+                        throw new IllegalArgumentException("Quantity is mandatory");
+                    }
+                }
+                case REMOVE -> {
+                }
+            }
         }
-        // Save the cart to reflect the cleared collection (if needed for orphanRemoval configuration)
-        cartRepository.save(cart);
-
-        // Re-fetch to ensure the DTO reflects the most current state (empty cart)
-        Cart updatedCart = cartRepository.findByUser_UserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Cart not found after clear."));
-        return cartMapper.toDto(updatedCart);
+        Map<Long, BookDTO> books = bookService.getBooksByIds(added);
+        Map<Long, BigDecimal> prices = new HashMap<>();
+        for (Long bookId : added) {
+            BookDTO book = books.get(bookId);
+            if (book == null) {
+                throw new EntityNotFoundException("Book not found with ID: " + bookId);
+            }
+            prices.put(bookId, BigDecimal.valueOf(book.getPrice()));
+        }
+        return toDto(cartStore.update(userId, prices, items -> {
+            for (CartOperationDTO operation : operations) {
+                Long bookId = operation.getBookId();
+                switch (operation.getAction()) {
+                    case ADD -> items.merge(bookId, operation.getQuantity(), Integer::sum);
+                    case UPDATE -> {
+                        if (!items.containsKey(bookId)) {
+                            throw new EntityNotFoundException("Book not found in cart for book ID: " + bookId);
+                        }
+                        if (operation.getQuantity() <= 0) {
+                            items.remove(bookId);
+                        } else {
+                            items.put(bookId, operation.getQuantity());
+                        }
+                    }
+                    case REMOVE -> {
+                        if (items.remove(bookId) == null) {
+                            throw new EntityNotFoundException("Book not found in cart for book ID: " + bookId);
+                        }
+                    }
+                }
+            }
+        }));
     }
 
     /**
@@ -261,20 +233,20 @@ public class CartServiceImpl implements CartService {
     /**
      * Retrieves all cart items for a given user.
      *
-     * @param currentUser The User entity for whom to retrieve cart items.
-     * @return A Set of CartItem entities belonging to the user's cart, or an empty set if no cart is found.
+     * @param currentUser The User for whom to retrieve cart items.
+     * @return A Set of (detached) CartItems of the user's cart, or an empty set if the cart is empty.
      */
     @Override
     public Set<CartItem> getCartItems(User currentUser) {
-        // Find the cart for the current user using their ID
-        Optional<Cart> cartOptional = cartRepository.findByUser_UserId(currentUser.getUserId());
-
-        if (cartOptional.isPresent()) {
-            Cart cart = cartOptional.get();
-            // Ensure cart items are loaded if they are lazy-loaded. Accessing the collection usually triggers it.
-            return new HashSet<>(cart.getCartItems());
+        Map<Long, Integer> items = cartStore.read(currentUser.getUserId()).items();
+        if (items.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<CartItem> cartItems = new HashSet<>();
+        for (Book book : bookRepository.findAllById(items.keySet())) {
+            cartItems.add(CartItem.builder().book(book).quantity(items.get(book.getId())).build());
         }
-        return Collections.emptySet();
+        return cartItems;
     }
 
     /**
@@ -286,17 +258,26 @@ public class CartServiceImpl implements CartService {
      */
     @Override
     public BigDecimal calculateTotalAmount(Long userId) {
-        // Verify user existence, though `getCartItems` would also implicitly do this if a cart is expected.
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + userId));
+        // Kept up to date by the store on every change and price change
+        return cartStore.read(userId).total();
+    }
 
-        Set<CartItem> cartItems = getCartItems(user);
+    private CartDTO toDto(CartStore.CartView cart) {
+        return cartMapper.toDto(cart, itemsOf(cart));
+    }
 
-        if (cartItems.isEmpty()) {
-            return BigDecimal.ZERO;
+    private List<CartItemDTO> itemsOf(CartStore.CartView cart) {
+        Map<Long, BookDTO> books = bookService.getBooksByIds(cart.items().keySet());
+        List<CartItemDTO> items = new ArrayList<>(cart.items().size());
+        for (Map.Entry<Long, Integer> item : cart.items().entrySet()) {
+            BookDTO book = books.get(item.getKey());
+            if (book == null) {
+                // Deleted since it was added; the store drops it once the deletion is seen
+                logger.debug("Skipping deleted book {} in the cart of user {}", item.getKey(), cart.userId());
+                continue;
+            }
+            items.add(cartMapper.toStoredItemDto(book, item.getValue()));
         }
-        return cartItems.stream()
-                .map(item -> BigDecimal.valueOf(item.getBook().getPrice()).multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return items;
     }
 }
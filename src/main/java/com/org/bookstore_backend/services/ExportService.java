@@ -0,0 +1,50 @@
+package com.org.bookstore_backend.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming exports of whole tables for admins. Rows are read through a forward-only cursor and written to the
+ * output as they arrive, so memory use does not grow with the size of the catalog or the order history.
+ */
+public interface ExportService {
+
+    enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * @throws IllegalArgumentException for anything but {@code ndjson} or {@code csv}
+         */
+        public static Format of(String value) {
+            return Format.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    /**
+     * Writes every book with its publisher and authors. The CSV uses the columns of the bulk import, so an export
+     * can be edited and uploaded again.
+     */
+    void exportBooks(Format format, OutputStream out) throws IOException;
+
+    /**
+     * Writes every order with its customer and items: one JSON object per order, or one CSV line per order item.
+     */
+    void exportOrders(Format format, OutputStream out) throws IOException;
+}
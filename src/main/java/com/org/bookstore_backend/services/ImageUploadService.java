@@ -0,0 +1,30 @@
+package com.org.bookstore_backend.services;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.dto.ImageUploadRequestDTO;
+import com.org.bookstore_backend.dto.ImageUploadTicketDTO;
+
+import java.io.IOException;
+
+/**
+ * Cover images uploaded by the client straight to object storage, in two steps: {@link #issueTicket} signs an
+ * upload URL, the client uploads to it, and {@link #commit} checks the stored object and sets it as the book's
+ * image. The image bytes never pass through this server.
+ */
+public interface ImageUploadService {
+
+    /**
+     * @throws IllegalArgumentException if the image is too large
+     */
+    ImageUploadTicketDTO issueTicket(ImageUploadRequestDTO request);
+
+    /**
+     * Makes the uploaded object the image of the book.
+     *
+     * @param key the key of a ticket
+     * @throws IllegalArgumentException if the key was not issued by {@link #issueTicket}, nothing was uploaded
+     *                                  to it, or the upload is not an acceptable image
+     * @throws jakarta.persistence.EntityNotFoundException if there is no such book
+     */
+    BookDTO commit(Long bookId, String key) throws IOException;
+}
@@ -1,83 +1,435 @@
 package com.org.bookstore_backend.services;
+import com.org.bookstore_backend.cache.S3ObjectDiskCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Object storage for images, on the async S3 client.
+ * <p>
+ * Uploads stream the request body into the client, which sends objects above
+ * {@code cloud.aws.s3.multipart-threshold} as parallel multipart parts, so the heap only ever holds the parts in
+ * flight. Downloads are streamed to the caller's output with a fixed buffer. Every transfer is recorded in the
+ * {@code s3.transfer.*} metrics, tagged with the operation. Downloads go through the {@link S3ObjectDiskCache},
+ * so hot objects are read from local disk. Set {@code cloud.aws.s3.endpoint} (and usually
+ * {@code cloud.aws.s3.path-style-access}) to run against an S3-compatible store such as MinIO.
+ */
 @Service
 public class S3Service {
 
-    private final S3Client s3Client;
+    // Copy buffer for downloads; the async client itself buffers at most a few chunks ahead of the reader
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
 
-   // @Value("${cloud.aws.s3.bucket-name}")
+    private final S3AsyncClient s3AsyncClient;
+    private final S3Presigner s3Presigner;
+    private final S3ObjectDiskCache diskCache;
+    private final ExecutorService uploadReaders;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cloud.aws.s3.bucket-name:}")
     private String bucketName;
 
-    public S3Service(S3Client s3Client) {
-        this.s3Client = s3Client;
+    @Value("${cloud.aws.s3.endpoint:}")
+    private String endpoint;
+
+    public S3Service(S3AsyncClient s3AsyncClient,
+                     S3Presigner s3Presigner,
+                     S3ObjectDiskCache diskCache,
+                     MeterRegistry meterRegistry,
+                     @Value("${cloud.aws.s3.upload-threads:4}") int uploadThreads) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.s3Presigner = s3Presigner;
+        this.diskCache = diskCache;
+        this.meterRegistry = meterRegistry;
+        // Read upload bodies (blocking servlet streams) and feed them to the non-blocking client
+        AtomicInteger threadCount = new AtomicInteger();
+        this.uploadReaders = Executors.newFixedThreadPool(Math.max(1, uploadThreads), runnable -> {
+            Thread thread = new Thread(runnable, "s3-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        uploadReaders.shutdownNow();
+    }
+
+    /**
+     * Receives the body of a download once its metadata is known, e.g. to set response headers first.
+     */
+    @FunctionalInterface
+    public interface DownloadTarget {
+        OutputStream open(GetObjectResponse object) throws IOException;
     }
 
     /**
-     * Uploads a MultipartFile to the configured S3 bucket with a unique key.
+     * Uploads a MultipartFile to the configured S3 bucket under a key derived from its content
+     * ({@code blobs/<sha256>.<ext>}). Content that is already stored is not transferred again.
      *
      * @param file The MultipartFile to upload.
      * @return The public URL of the uploaded file.
      * @throws IOException If an I/O error occurs during file processing.
      */
     public String uploadFile(MultipartFile file) throws IOException {
-        String originalFilename = file.getOriginalFilename();
-        String fileExtension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
+        String key = "blobs/" + sha256Hex(file) + extensionOf(file.getOriginalFilename());
+        if (exists(key)) {
+            return urlFor(key);
+        }
+        return uploadFile(file, key);
+    }
+
+    /**
+     * @return whether an object is stored under the key (one HEAD request)
+     */
+    public boolean exists(String key) throws IOException {
+        return head(key) != null;
+    }
+
+    /**
+     * @return the object's metadata, or null if there is no object under the key
+     */
+    public HeadObjectResponse head(String key) throws IOException {
+        HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .checksumMode(ChecksumMode.ENABLED)
+                .build();
+        try {
+            return s3AsyncClient.headObject(headObjectRequest).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking " + key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NoSuchKeyException
+                    || (e.getCause() instanceof S3Exception s3Exception && s3Exception.statusCode() == 404)) {
+                return null;
+            }
+            throw new IOException("Failed to check " + key + " in S3: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public void delete(String key) throws IOException {
+        DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        join(s3AsyncClient.deleteObject(deleteObjectRequest), key);
+        diskCache.invalidate(key);
+    }
+
+    /**
+     * Lists every object under the prefix, one page of up to 1000 at a time, so the listing is never held in
+     * memory as a whole.
+     */
+    public void listObjects(String prefix, Consumer<S3Object> consumer) throws IOException {
+        String continuationToken = null;
+        do {
+            ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(prefix)
+                    .continuationToken(continuationToken)
+                    .build();
+            ListObjectsV2Response page = join(s3AsyncClient.listObjectsV2(listRequest), prefix);
+            page.contents().forEach(consumer);
+            continuationToken = Boolean.TRUE.equals(page.isTruncated()) ? page.nextContinuationToken() : null;
+        } while (continuationToken != null);
+    }
+
+    /**
+     * Deletes up to 1000 objects in one request.
+     *
+     * @return the keys that could not be deleted
+     */
+    public List<String> deleteObjects(List<String> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder()
+                        .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                        .quiet(true)
+                        .build())
+                .build();
+        DeleteObjectsResponse response = join(s3AsyncClient.deleteObjects(deleteObjectsRequest), keys.get(0));
+        keys.forEach(diskCache::invalidate);
+        return response.errors().stream().map(S3Error::key).toList();
+    }
+
+    /**
+     * Signs a URL the client can PUT the object to directly, so the bytes never pass through this server. The
+     * client must send the returned signed headers; S3 rejects the upload if its content does not match
+     * {@code sha256Base64}.
+     */
+    public PresignedPutObjectRequest presignUpload(String key, String contentType, String sha256Base64, Duration validity) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .checksumSHA256(sha256Base64)
+                .build();
+        return s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(validity)
+                .putObjectRequest(putObjectRequest)
+                .build());
+    }
+
+    /**
+     * Hex SHA-256 of the file's content; MultipartFiles are spooled by the container, so reading them again for
+     * the upload is a local read.
+     */
+    public static String sha256Hex(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+        try (InputStream in = file.getInputStream()) {
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return the lower-case extension of the file name including the dot, or "" if it has no plain extension
+     */
+    public static String extensionOf(String fileName) {
+        if (fileName == null) {
+            return "";
         }
-        // Create a unique file name to prevent conflicts
-        String key = UUID.randomUUID().toString() + fileExtension;
+        int dot = fileName.lastIndexOf('.');
+        String extension = dot >= 0 ? fileName.substring(dot + 1) : "";
+        return extension.matches("[A-Za-z0-9]{1,10}") ? "." + extension.toLowerCase(Locale.ROOT) : "";
+    }
 
+    /**
+     * Uploads a MultipartFile to the configured S3 bucket under the given key, in parallel parts when it is large.
+     *
+     * @return The public URL of the uploaded file.
+     */
+    public String uploadFile(MultipartFile file, String key) throws IOException {
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
                 .contentType(file.getContentType())
+                .contentLength(file.getSize())
                 .build();
 
-        // Upload the file to S3
-        s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+        try (InputStream in = file.getInputStream()) {
+            AsyncRequestBody body = AsyncRequestBody.fromInputStream(in, file.getSize(), uploadReaders);
+            await("upload", file.getSize(), () -> s3AsyncClient.putObject(putObjectRequest, body), key);
+        }
+        diskCache.invalidate(key);
 
         // Return the public URL of the uploaded file
+        return urlFor(key);
+    }
+
+    /**
+     * Uploads generated content (e.g. a resized image) under the given key.
+     *
+     * @return The public URL of the uploaded object.
+     */
+    public String uploadBytes(String key, byte[] content, String contentType) throws IOException {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build();
+        await("upload", content.length,
+                () -> s3AsyncClient.putObject(putObjectRequest, AsyncRequestBody.fromBytes(content)), key);
+        diskCache.invalidate(key);
+        return urlFor(key);
+    }
+
+    public String urlFor(String key) {
+        if (!endpoint.isBlank()) {
+            return endpoint.replaceAll("/+$", "") + "/" + bucketName + "/" + key;
+        }
         return "https://" + bucketName + ".s3.amazonaws.com/" + key;
     }
 
     /**
-     * Downloads a file from the S3 bucket and returns its content as a byte array.
+     * @return the key of an URL returned by {@link #urlFor}, or null for any other URL
+     */
+    public String keyOf(String url) {
+        String prefix = urlFor("");
+        if (url == null || !url.startsWith(prefix) || url.length() == prefix.length()) {
+            return null;
+        }
+        return url.substring(prefix.length());
+    }
+
+    /**
+     * Streams an object to the output returned by {@code target}: from the local disk cache when it is there,
+     * otherwise from S3 through the cache.
      *
-     * @param key The key (filename) of the object to download in S3.
-     * @return A byte array containing the file's content.
-     * @throws IOException If an I/O error occurs during file download.
-     * @throws NoSuchKeyException If the specified key does not exist in the bucket.
+     * @return the metadata of the object
+     * @throws FileNotFoundException If the specified key does not exist in the bucket.
      */
-    public byte[] downloadFile(String key) throws IOException {
+    public GetObjectResponse download(String key, DownloadTarget target) throws IOException {
+        if (diskCache.isEnabled()) {
+            S3ObjectDiskCache.CachedObject cached = diskCache.get(key, cacheTarget -> fetch(key, cacheTarget));
+            if (cached != null) {
+                OutputStream out = target.open(cached.metadata());
+                WritableByteChannel channel = Channels.newChannel(out);
+                ByteBuffer data = cached.data();
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                out.flush();
+                return cached.metadata();
+            }
+        }
+        return fetch(key, target);
+    }
+
+    /**
+     * Streams an object from S3 to the output returned by {@code target}, through a fixed-size buffer.
+     */
+    private GetObjectResponse fetch(String key, DownloadTarget target) throws IOException {
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
                 .build();
 
-        try {
-            ResponseInputStream<GetObjectResponse> s3Object = s3Client.getObject(getObjectRequest);
-            byte[] content = s3Object.readAllBytes();
-            s3Object.close();
-            return content;
-        } catch (NoSuchKeyException e) {
-            throw new IOException("File not found in S3 bucket: " + key, e);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ResponseInputStream<GetObjectResponse> in = join(
+                s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBlockingInputStream()), key);
+        long bytes = 0;
+        try (in) {
+            OutputStream out = target.open(in.response());
+            byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+                bytes += read;
+            }
+            out.flush();
         } catch (IOException e) {
-            throw new IOException("Failed to download file from S3: " + key, e);
+            // Stop fetching the rest of the object, e.g. when the client went away
+            in.abort();
+            throw e;
         }
+        record("download", sample, bytes);
+        return in.response();
+    }
 
+    /**
+     * Downloads a file from the S3 bucket and returns its content as a byte array. Only for small objects; use
+     * {@link #download(String, DownloadTarget)} to stream.
+     *
+     * @param key The key (filename) of the object to download in S3.
+     * @return A byte array containing the file's content.
+     * @throws IOException If an I/O error occurs during file download.
+     * @throws FileNotFoundException If the specified key does not exist in the bucket.
+     */
+    public byte[] downloadFile(String key) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        download(key, object -> content);
+        return content.toByteArray();
+    }
+
+    /**
+     * Starts the transfer and waits for it. The transfer is started here, after the timer, since the async client
+     * begins sending as soon as the future is created.
+     */
+    private void await(String operation, long bytes, Supplier<CompletableFuture<?>> transfer, String key) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        join(transfer.get(), key);
+        record(operation, sample, bytes);
+    }
+
+    private <T> T join(CompletableFuture<T> transfer, String key) throws IOException {
+        try {
+            return transfer.get();
+        } catch (InterruptedException e) {
+            transfer.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during S3 transfer of " + key);
+        } catch (ExecutionException e) {
+            meterRegistry.counter("s3.transfer.failures").increment();
+            if (e.getCause() instanceof NoSuchKeyException) {
+                throw new FileNotFoundException("File not found in S3 bucket: " + key);
+            }
+            throw new IOException("S3 transfer failed for " + key + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void record(String operation, Timer.Sample sample, long bytes) {
+        long nanos = sample.stop(Timer.builder("s3.transfer.duration")
+                .description("Duration of S3 transfers")
+                .tag("operation", operation)
+                .register(meterRegistry));
+        Counter.builder("s3.transfer.bytes")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment(bytes);
+        if (nanos > 0) {
+            DistributionSummary.builder("s3.transfer.throughput")
+                    .description("Throughput of single S3 transfers")
+                    .baseUnit("bytes_per_second")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .record(bytes * (double) TimeUnit.SECONDS.toNanos(1) / nanos);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,526 @@
+package com.org.bookstore_backend.services.impl;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import com.org.bookstore_backend.images.ImageVariant;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk CSV import of books, written with plain JDBC batches instead of one JPA {@code save} per row.
+ * <p>
+ * The upload is parsed as a stream and cut into chunks of {@code books.import.chunk-size} rows. Publishers,
+ * authors and existing ISBNs are looked up in dictionaries loaded once per import; names that are missing are
+ * inserted in one batch per chunk. Each chunk of books is then upserted in its own transaction by one of
+ * {@code books.import.writer-threads} writers. If a chunk fails, its rows are retried one by one so only the
+ * bad rows are counted as failed.
+ */
+@Component
+public class BookCsvImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookCsvImporter.class);
+
+    static final String[] HEADER = {
+            "title", "description", "isbn", "publicationYear", "genre", "price", "quantity", "isAvailable", "publisher", "authors"
+    };
+
+    private static final String INSERT_BOOK = "insert into books (book_title, description, isbn, publication_year, genre, "
+            + "price, quantity, is_available, publisher_id) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_BOOK = "update books set book_title = ?, description = ?, isbn = ?, publication_year = ?, "
+            + "genre = ?, price = ?, quantity = ?, is_available = ?, publisher_id = ? where id = ?";
+    private static final String DELETE_BOOK_AUTHORS = "delete from book_authors where book_id = ?";
+    private static final String INSERT_BOOK_AUTHOR = "insert into book_authors (book_id, author_id) values (?, ?)";
+    private static final String INSERT_PUBLISHER = "insert into publishers (publisher_name) values (?)";
+    private static final String INSERT_AUTHOR = "insert into authors (author_name) values (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final int chunkSize;
+    private final int writerThreads;
+
+    public BookCsvImporter(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           ApplicationEventPublisher applicationEventPublisher,
+                           @Value("${books.import.chunk-size:1000}") int chunkSize,
+                           @Value("${books.import.writer-threads:4}") int writerThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.writerThreads = Math.max(1, writerThreads);
+    }
+
+    /**
+     * Imports every row of the CSV, creating books with an unknown ISBN and updating the others.
+     *
+     * @return the number of books created and updated and of rows that could not be imported
+     */
+    public Map<String, Object> importCsv(InputStream input) throws IOException {
+        return importCsv(input, new ImportProgress() {
+        });
+    }
+
+    /**
+     * Imports the CSV, skipping the chunks {@code progress} reports as already committed and reporting every
+     * chunk it commits. Chunk {@code k} always holds CSV records {@code k * chunkSize + 1} to
+     * {@code (k + 1) * chunkSize}, so a re-run over the same file lines up with an earlier, interrupted one.
+     *
+     * @return the counts of this run only; chunks skipped as committed are not included
+     */
+    public Map<String, Object> importCsv(InputStream input, ImportProgress progress) throws IOException {
+        long start = System.currentTimeMillis();
+        Counters counters = new Counters();
+        Dictionaries dictionaries = loadDictionaries();
+
+        // Bounded queue + caller-runs: the parser slows down to the writers' pace instead of buffering the file
+        ThreadPoolExecutor writers = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(writerThreads), new ThreadPoolExecutor.CallerRunsPolicy());
+        List<Future<?>> inFlight = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+            CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
+                    .setHeader(HEADER)
+                    .setSkipHeaderRecord(true)
+                    .build();
+            Chunk chunk = null;
+            for (CSVRecord record : csvFormat.parse(reader)) {
+                int index = (int) ((record.getRecordNumber() - 1) / chunkSize);
+                if (chunk == null || chunk.index != index) {
+                    if (chunk != null) {
+                        dispatch(chunk, dictionaries, counters, progress, writers, inFlight);
+                    }
+                    chunk = progress.isChunkCommitted(index) ? null : new Chunk(index);
+                    if (chunk == null) {
+                        continue;
+                    }
+                }
+                chunk.records++;
+                try {
+                    chunk.rows.add(new CsvRow(record));
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to parse CSV row {}: {}", record.getRecordNumber(), e.getMessage());
+                    chunk.errors.add(new RowError(record.getRecordNumber(), "Invalid row: " + e.getMessage()));
+                }
+            }
+            if (chunk != null) {
+                dispatch(chunk, dictionaries, counters, progress, writers, inFlight);
+            }
+            awaitAll(inFlight);
+        } finally {
+            writers.shutdown();
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        int rows = counters.created.get() + counters.updated.get() + counters.failed.get();
+        logger.info("Imported {} CSV rows in {} ms ({} rows/s): {} created, {} updated, {} failed",
+                rows, elapsed, rows * 1000L / elapsed, counters.created.get(), counters.updated.get(), counters.failed.get());
+        return Map.of(
+                "created", counters.created.get(),
+                "updated", counters.updated.get(),
+                "failed", counters.failed.get()
+        );
+    }
+
+    /**
+     * Resolves names and ISBNs of a chunk on the parsing thread (so publishers and authors are only inserted by one thread)
+     * and hands the book writes to a writer.
+     */
+    private void dispatch(Chunk chunk, Dictionaries dictionaries, Counters counters, ImportProgress progress,
+                          ThreadPoolExecutor writers, List<Future<?>> inFlight) throws IOException {
+        try {
+            insertMissingNames(chunk.rows, dictionaries);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to create publishers/authors for {} CSV rows: {}", chunk.rows.size(), e.getMessage());
+            chunk.rows.forEach(row -> chunk.errors.add(new RowError(row.line, "Publisher/author could not be created")));
+            chunk.rows.clear();
+        }
+
+        // A later row with the same ISBN updates the book created by an earlier one
+        Map<String, CsvRow> byIsbn = new LinkedHashMap<>();
+        List<CsvRow> withoutIsbn = new ArrayList<>();
+        for (CsvRow row : chunk.rows) {
+            if (row.isbn.isBlank()) {
+                withoutIsbn.add(row);
+            } else if (byIsbn.put(row.isbn, row) != null) {
+                chunk.collapsed++;
+            }
+        }
+        // An ISBN still being inserted by another writer is not in the dictionary yet; wait for it
+        if (byIsbn.keySet().stream().anyMatch(dictionaries.pendingIsbns::contains)) {
+            awaitAll(inFlight);
+        }
+
+        List<CsvRow> rows = new ArrayList<>(byIsbn.values());
+        rows.addAll(withoutIsbn);
+        for (CsvRow row : rows) {
+            row.publisherId = dictionaries.publishers.get(row.publisherName);
+            row.authorIds = row.authorNames.stream().map(dictionaries.authors::get).collect(Collectors.toList());
+            ExistingBook existing = row.isbn.isBlank() ? null : dictionaries.books.get(row.isbn);
+            if (existing != null) {
+                row.bookId = existing.id();
+                row.imageUrl = existing.imageUrl();
+            } else if (!row.isbn.isBlank()) {
+                dictionaries.pendingIsbns.add(row.isbn);
+            }
+        }
+        chunk.rows.clear();
+        chunk.rows.addAll(rows);
+        inFlight.removeIf(Future::isDone);
+        inFlight.add(writers.submit(() -> writeChunk(chunk, dictionaries, counters, progress)));
+    }
+
+    private void writeChunk(Chunk chunk, Dictionaries dictionaries, Counters counters, ImportProgress progress) {
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                upsert(chunk.rows);
+                progress.chunkCommitted(chunk.index, chunk.result(chunk.rows));
+            });
+            record(chunk.rows, dictionaries);
+        } catch (DataAccessException | TransactionException e) {
+            logger.warn("Batch of {} CSV rows failed ({}), retrying row by row", chunk.rows.size(), e.getMessage());
+            List<CsvRow> written = new ArrayList<>(chunk.rows.size());
+            for (CsvRow row : chunk.rows) {
+                row.resetAfterRollback();
+                try {
+                    chunkTransaction.executeWithoutResult(status -> upsert(List.of(row)));
+                    record(List.of(row), dictionaries);
+                    written.add(row);
+                } catch (DataAccessException | TransactionException rowEx) {
+                    logger.warn("Failed to import CSV row {}: {}", row.line, rowEx.getMessage());
+                    chunk.errors.add(new RowError(row.line, rowEx.getMostSpecificCause().getMessage()));
+                }
+            }
+            // Not atomic with the rows above: if the process dies here the chunk is redone as updates on resume
+            chunkTransaction.executeWithoutResult(status -> progress.chunkCommitted(chunk.index, chunk.result(written)));
+        } finally {
+            chunk.rows.forEach(row -> dictionaries.pendingIsbns.remove(row.isbn));
+        }
+        ChunkResult result = chunk.lastResult;
+        counters.created.addAndGet(result.created());
+        counters.updated.addAndGet(result.updated());
+        counters.failed.addAndGet(result.failed());
+    }
+
+    /**
+     * Writes the rows in the current transaction: one batch each for inserts, updates, unlinking and linking
+     * authors. Catalog events are raised here so listeners see them once the chunk commits.
+     */
+    private void upsert(List<CsvRow> rows) {
+        List<CsvRow> inserts = rows.stream().filter(row -> row.bookId == null).collect(Collectors.toList());
+        List<CsvRow> updates = rows.stream().filter(row -> row.bookId != null).collect(Collectors.toList());
+
+        if (!inserts.isEmpty()) {
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_BOOK, new String[]{"id"}),
+                    rowSetter(inserts, false), keys);
+            List<Map<String, Object>> generated = keys.getKeyList();
+            for (int i = 0; i < inserts.size(); i++) {
+                inserts.get(i).bookId = ((Number) generated.get(i).get("id")).longValue();
+                inserts.get(i).created = true;
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_BOOK, rowSetter(updates, true));
+            jdbcTemplate.batchUpdate(DELETE_BOOK_AUTHORS, updates, updates.size(),
+                    (ps, row) -> ps.setLong(1, row.bookId));
+        }
+
+        List<long[]> links = new ArrayList<>();
+        for (CsvRow row : rows) {
+            for (Long authorId : new LinkedHashSet<>(row.authorIds)) {
+                links.add(new long[]{row.bookId, authorId});
+            }
+        }
+        if (!links.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_BOOK_AUTHOR, links, links.size(), (ps, link) -> {
+                ps.setLong(1, link[0]);
+                ps.setLong(2, link[1]);
+            });
+        }
+
+        for (CsvRow row : rows) {
+            BookDTO book = row.toDTO();
+            applicationEventPublisher.publishEvent(row.created ? BookCatalogEvent.created(book) : BookCatalogEvent.updated(book));
+        }
+    }
+
+    private void record(List<CsvRow> rows, Dictionaries dictionaries) {
+        for (CsvRow row : rows) {
+            if (row.created && !row.isbn.isBlank()) {
+                dictionaries.books.put(row.isbn, new ExistingBook(row.bookId, null));
+            }
+        }
+    }
+
+    private static BatchPreparedStatementSetter rowSetter(List<CsvRow> rows, boolean withId) {
+        return new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                CsvRow row = rows.get(i);
+                ps.setString(1, row.title);
+                ps.setString(2, row.description);
+                ps.setString(3, row.isbn);
+                ps.setInt(4, row.publicationYear);
+                ps.setString(5, row.genre);
+                ps.setDouble(6, row.price);
+                ps.setInt(7, row.quantity);
+                ps.setBoolean(8, row.available);
+                ps.setLong(9, row.publisherId);
+                if (withId) {
+                    ps.setLong(10, row.bookId);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        };
+    }
+
+    /**
+     * Inserts the publishers and authors of the chunk that do not exist yet, one batch each, and adds them to
+     * the dictionaries. Runs in its own short transaction so a failing book chunk does not undo shared names.
+     */
+    private void insertMissingNames(List<CsvRow> rows, Dictionaries dictionaries) {
+        List<String> publishers = new ArrayList<>(rows.stream()
+                .map(row -> row.publisherName)
+                .filter(name -> !dictionaries.publishers.containsKey(name))
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        List<String> authors = new ArrayList<>(rows.stream()
+                .flatMap(row -> row.authorNames.stream())
+                .filter(name -> !dictionaries.authors.containsKey(name))
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        if (publishers.isEmpty() && authors.isEmpty()) {
+            return;
+        }
+        chunkTransaction.executeWithoutResult(status -> {
+            dictionaries.publishers.putAll(insertNames(INSERT_PUBLISHER, publishers));
+            dictionaries.authors.putAll(insertNames(INSERT_AUTHOR, authors));
+        });
+    }
+
+    private Map<String, Long> insertNames(String sql, List<String> names) {
+        if (names.isEmpty()) {
+            return Map.of();
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(sql, new String[]{"id"}), new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, names.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return names.size();
+            }
+        }, keys);
+        Map<String, Long> ids = new ConcurrentHashMap<>();
+        List<Map<String, Object>> generated = keys.getKeyList();
+        for (int i = 0; i < names.size(); i++) {
+            ids.put(names.get(i), ((Number) generated.get(i).get("id")).longValue());
+        }
+        return ids;
+    }
+
+    private Dictionaries loadDictionaries() {
+        Dictionaries dictionaries = new Dictionaries();
+        jdbcTemplate.query("select id, publisher_name from publishers", rs -> {
+            dictionaries.publishers.putIfAbsent(rs.getString(2), rs.getLong(1));
+        });
+        jdbcTemplate.query("select id, author_name from authors order by id", rs -> {
+            dictionaries.authors.putIfAbsent(rs.getString(2), rs.getLong(1));
+        });
+        jdbcTemplate.query("select id, isbn, image_url from books", rs -> {
+            dictionaries.books.put(rs.getString(2), new ExistingBook(rs.getLong(1), rs.getString(3)));
+        });
+        return dictionaries;
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            futures.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("CSV import failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Checkpointing hooks for resumable imports.
+     */
+    public interface ImportProgress {
+
+        default boolean isChunkCommitted(int chunkIndex) {
+            return false;
+        }
+
+        /**
+         * Called inside the transaction that commits the chunk, so whatever is recorded here commits with it.
+         */
+        default void chunkCommitted(int chunkIndex, ChunkResult result) {
+        }
+    }
+
+    /**
+     * Outcome of one chunk: how many CSV records it covered and what happened to them.
+     */
+    public record ChunkResult(int records, int created, int updated, int failed, List<RowError> errors) {
+    }
+
+    /**
+     * A CSV record that could not be imported; {@code line} is the record number (1 = first data row).
+     */
+    public record RowError(long line, String message) {
+    }
+
+    private static final class Chunk {
+        final int index;
+        final List<CsvRow> rows = new ArrayList<>();
+        // Filled by the parser, then by the writer when it retries row by row
+        final List<RowError> errors = new CopyOnWriteArrayList<>();
+        int records;
+        int collapsed;
+        ChunkResult lastResult;
+
+        Chunk(int index) {
+            this.index = index;
+        }
+
+        ChunkResult result(List<CsvRow> written) {
+            int created = (int) written.stream().filter(row -> row.created).count();
+            lastResult = new ChunkResult(records, created, written.size() - created + collapsed, errors.size(),
+                    List.copyOf(errors));
+            return lastResult;
+        }
+    }
+
+    private static final class Dictionaries {
+        final Map<String, Long> publishers = new ConcurrentHashMap<>();
+        final Map<String, Long> authors = new ConcurrentHashMap<>();
+        final Map<String, ExistingBook> books = new ConcurrentHashMap<>();
+        // ISBNs of new books handed to a writer but not committed yet
+        final Set<String> pendingIsbns = ConcurrentHashMap.newKeySet();
+    }
+
+    private record ExistingBook(Long id, String imageUrl) {
+    }
+
+    private static final class Counters {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger updated = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+    }
+
+    private static final class CsvRow {
+        final long line;
+        final String title;
+        final String description;
+        final String isbn;
+        final int publicationYear;
+        final String genre;
+        final double price;
+        final int quantity;
+        final boolean available;
+        final String publisherName;
+        final List<String> authorNames;
+
+        Long publisherId;
+        List<Long> authorIds;
+        Long bookId;
+        String imageUrl;
+        boolean created;
+
+        CsvRow(CSVRecord record) {
+            line = record.getRecordNumber();
+            title = record.get("title").trim();
+            description = record.get("description").trim();
+            isbn = record.get("isbn").trim();
+            publicationYear = Integer.parseInt(record.get("publicationYear").trim());
+            genre = record.get("genre").trim();
+            price = Double.parseDouble(record.get("price").trim());
+            quantity = Integer.parseInt(record.get("quantity").trim());
+            available = Boolean.parseBoolean(record.get("isAvailable").trim());
+            publisherName = record.get("publisher").trim();
+            authorNames = Arrays.stream(record.get("authors").split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .distinct()
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * Forgets the id generated by a batch insert that was rolled back.
+         */
+        void resetAfterRollback() {
+            if (created) {
+                bookId = null;
+                created = false;
+            }
+        }
+
+        BookDTO toDTO() {
+            return BookDTO.builder()
+                    .id(bookId)
+                    .title(title)
+                    .description(description)
+                    .isbn(isbn)
+                    .publicationYear(publicationYear)
+                    .imageUrl(imageUrl)
+                    .imageVariants(ImageVariant.urlsFor(imageUrl))
+                    .genre(genre)
+                    .price(price)
+                    .quantity(quantity)
+                    .isAvailable(available)
+                    .publisherName(publisherName)
+                    .authorNames(new HashSet<>(authorNames))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.org.bookstore_backend.services.impl;
+
+import com.org.bookstore_backend.services.BookImageService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedWatchServiceException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves cover images from the local image directory.
+ * <p>
+ * The directory is listed once on startup into an in-memory index (name, size, content type) and kept current by
+ * a {@link WatchService}, so a request never stats the file system. The ETag of a file is a SHA-256 of its content,
+ * computed on first request and kept until the file changes. Lookups go by exact file name in the index, so a
+ * request can never reach a file outside the directory.
+ */
+@Service
+@ConditionalOnProperty(name = "app.local-images.enabled", havingValue = "true", matchIfMissing = true)
+public class BookImageServiceImpl implements BookImageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookImageServiceImpl.class);
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private WatchService watchService;
+
+    public BookImageServiceImpl(@Value("${app.local-images.directory:./images}") String directory) {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!Files.isDirectory(directory)) {
+            logger.warn("Local image directory {} does not exist; no local images will be served", directory);
+            return;
+        }
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            logger.warn("Cannot watch local image directory {}, changes need a restart: {}", directory, e.getMessage());
+            watchService = null;
+        }
+        // Register the watch before listing, so a file added in between is not missed
+        rescan();
+        if (watchService != null) {
+            Thread thread = new Thread(this::watch, "local-image-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    @Override
+    public Optional<LocalImage> findLocalImage(String fileName) {
+        Entry entry = index.get(fileName);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        String etag = entry.etag;
+        if (etag == null) {
+            try {
+                etag = entry.etag = hash(entry.path);
+            } catch (NoSuchFileException e) {
+                // Deleted before the watcher caught up
+                index.remove(fileName, entry);
+                return Optional.empty();
+            } catch (IOException e) {
+                logger.warn("Cannot read local image {}: {}", entry.path, e.getMessage());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(new LocalImage(fileName, entry.path, entry.size, entry.contentType, etag));
+    }
+
+    @Override
+    public void transfer(LocalImage image, long start, long length, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    // The file was truncated after it was indexed
+                    throw new EOFException("Local image " + image.name() + " is shorter than indexed");
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private void rescan() {
+        Map<String, Entry> found = new ConcurrentHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Entry entry = entryFor(file);
+                if (entry != null) {
+                    found.put(file.getFileName().toString(), entry);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to list local image directory {}: {}", directory, e.getMessage());
+            return;
+        }
+        index.keySet().retainAll(found.keySet());
+        // Keep the hash of files that did not change
+        found.forEach((name, entry) -> index.merge(name, entry, (old, fresh) -> old.sameFileAs(fresh) ? old : fresh));
+        logger.info("Indexed {} local images in {}", index.size(), directory);
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    rescan();
+                    continue;
+                }
+                String name = event.context().toString();
+                Entry entry = event.kind() == StandardWatchEventKinds.ENTRY_DELETE ? null : entryFor(directory.resolve(name));
+                if (entry == null) {
+                    index.remove(name);
+                } else {
+                    index.put(name, entry);
+                }
+            }
+            if (!key.reset()) {
+                logger.warn("Local image directory {} is no longer accessible", directory);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return null for anything that is not a readable regular file
+     */
+    private static Entry entryFor(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            String contentType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                    .toString();
+            return new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis(), contentType);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        // 128 bits are plenty to tell versions of one file apart
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    private static final class Entry {
+        final Path path;
+        final long size;
+        final long lastModified;
+        final String contentType;
+        volatile String etag;
+
+        Entry(Path path, long size, long lastModified, String contentType) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+        }
+
+        boolean sameFileAs(Entry other) {
+            return size == other.size && lastModified == other.lastModified;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.org.bookstore_backend.services.impl;
+
+import com.org.bookstore_backend.dto.ImportJobDTO;
+import com.org.bookstore_backend.dto.ImportJobErrorDTO;
+import com.org.bookstore_backend.exception.ResourceNotFoundException;
+import com.org.bookstore_backend.model.ImportJob;
+import com.org.bookstore_backend.model.ImportJobStatus;
+import com.org.bookstore_backend.repo.ImportJobChunkRepo;
+import com.org.bookstore_backend.repo.ImportJobErrorRepo;
+import com.org.bookstore_backend.repo.ImportJobRepo;
+import com.org.bookstore_backend.services.BookImportJobService;
+import com.org.bookstore_backend.services.impl.BookCsvImporter.ChunkResult;
+import com.org.bookstore_backend.services.impl.BookCsvImporter.ImportProgress;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Background CSV imports, spooled to {@code books.import.spool-dir} and resumable from their last committed chunk.
+ * <p>
+ * Spool files are node-local, so the directory must be on a persistent volume: startup fails when it is not set or
+ * not writable. The node holding a job's spool file renews the job's heartbeat every
+ * {@code books.import.heartbeat-interval} while it is queued or running there. A job whose spool file is not on this
+ * node and whose heartbeat is older than {@value #STALE_AFTER_HEARTBEATS} intervals has no node left to finish it,
+ * and is marked FAILED so clients polling it get a final status.
+ */
+@Service
+public class BookImportJobServiceImpl implements BookImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookImportJobServiceImpl.class);
+
+    // Failed rows stored per chunk; a file that is wrong on every line does not need 100k error rows
+    private static final int MAX_ERRORS_PER_CHUNK = 100;
+
+    static final int STALE_AFTER_HEARTBEATS = 4;
+
+    private final BookCsvImporter bookCsvImporter;
+    private final ImportJobRepo importJobRepo;
+    private final ImportJobChunkRepo importJobChunkRepo;
+    private final ImportJobErrorRepo importJobErrorRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final Path spoolDirectory;
+    private final Duration heartbeatInterval;
+    private final ExecutorService workers;
+    // Jobs queued or running on this node; their heartbeat is renewed
+    private final Set<Long> ownJobs = ConcurrentHashMap.newKeySet();
+
+    public BookImportJobServiceImpl(BookCsvImporter bookCsvImporter,
+                                    ImportJobRepo importJobRepo,
+                                    ImportJobChunkRepo importJobChunkRepo,
+                                    ImportJobErrorRepo importJobErrorRepo,
+                                    JdbcTemplate jdbcTemplate,
+                                    @Value("${books.import.spool-dir}") String spoolDirectory,
+                                    @Value("${books.import.max-concurrent-jobs:2}") int maxConcurrentJobs,
+                                    @Value("${books.import.heartbeat-interval:30s}") Duration heartbeatInterval) {
+        this.bookCsvImporter = bookCsvImporter;
+        this.importJobRepo = importJobRepo;
+        this.importJobChunkRepo = importJobChunkRepo;
+        this.importJobErrorRepo = importJobErrorRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.spoolDirectory = Paths.get(spoolDirectory);
+        this.heartbeatInterval = heartbeatInterval;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, maxConcurrentJobs), runnable -> {
+            Thread thread = new Thread(runnable, "book-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void checkSpoolDirectory() throws IOException {
+        Files.createDirectories(spoolDirectory);
+        if (!Files.isWritable(spoolDirectory)) {
+            throw new IllegalStateException("books.import.spool-dir " + spoolDirectory + " is not writable");
+        }
+    }
+
+    @Override
+    public ImportJobDTO submit(MultipartFile file, String submittedBy) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IOException("Empty file");
+        }
+        Files.createDirectories(spoolDirectory);
+        Path spooled = spoolDirectory.resolve(UUID.randomUUID() + ".csv");
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, spooled);
+        }
+
+        ImportJob job = importJobRepo.save(ImportJob.builder()
+                .status(ImportJobStatus.QUEUED)
+                .fileName(file.getOriginalFilename())
+                .spoolPath(spooled.toString())
+                .submittedBy(submittedBy)
+                .submittedAt(LocalDateTime.now())
+                .heartbeatAt(LocalDateTime.now())
+                .build());
+        logger.info("Queued import job {} for {} ({} bytes)", job.getId(), file.getOriginalFilename(), file.getSize());
+        Long jobId = job.getId();
+        ownJobs.add(jobId);
+        workers.submit(() -> run(jobId));
+        return toDTO(job, false);
+    }
+
+    @Override
+    public ImportJobDTO getJob(Long id) {
+        ImportJob job = importJobRepo.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Import job not found with ID: " + id));
+        return toDTO(job, true);
+    }
+
+    @Override
+    public List<ImportJobDTO> getRecentJobs() {
+        return importJobRepo.findTop20ByOrderByIdDesc().stream()
+                .map(job -> toDTO(job, false))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Picks up jobs that were queued or running when the application stopped, skipping their committed chunks,
+     * and fails the jobs no node can finish.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (ImportJob job : importJobRepo.findByStatusInOrderByIdAsc(List.of(ImportJobStatus.QUEUED, ImportJobStatus.RUNNING))) {
+            // Spool files are node-local; a job spooled by another node is left to that node while it is alive
+            if (Files.exists(Paths.get(job.getSpoolPath())) && ownJobs.add(job.getId())) {
+                logger.info("Resuming import job {} after {} committed chunks", job.getId(), job.getChunksCommitted());
+                Long jobId = job.getId();
+                renewHeartbeat(jobId, LocalDateTime.now());
+                workers.submit(() -> run(jobId));
+            }
+        }
+        failAbandonedJobs();
+    }
+
+    /**
+     * Renews the heartbeat of this node's jobs and fails the jobs whose node went away with their spool file.
+     */
+    @Scheduled(fixedDelayString = "${books.import.heartbeat-interval:30s}")
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        ownJobs.forEach(jobId -> renewHeartbeat(jobId, now));
+        failAbandonedJobs();
+    }
+
+    void failAbandonedJobs() {
+        LocalDateTime staleBefore = LocalDateTime.now().minus(heartbeatInterval.multipliedBy(STALE_AFTER_HEARTBEATS));
+        for (ImportJob job : importJobRepo.findByStatusInOrderByIdAsc(List.of(ImportJobStatus.QUEUED, ImportJobStatus.RUNNING))) {
+            if (ownJobs.contains(job.getId()) || Files.exists(Paths.get(job.getSpoolPath()))) {
+                continue;
+            }
+            String message = "Spool file " + job.getSpoolPath() + " is gone and no node has reported progress since "
+                    + (job.getHeartbeatAt() != null ? job.getHeartbeatAt() : job.getSubmittedAt()) + "; upload the file again";
+            // Conditional, so a heartbeat renewed in the meantime (or another node failing it first) wins
+            int failed = jdbcTemplate.update("update import_jobs set status = ?, finished_at = ?, message = ? "
+                            + "where id = ? and status in (?, ?) and coalesce(heartbeat_at, submitted_at) < ?",
+                    ImportJobStatus.FAILED.name(), LocalDateTime.now(), truncate(message), job.getId(),
+                    ImportJobStatus.QUEUED.name(), ImportJobStatus.RUNNING.name(), staleBefore);
+            if (failed > 0) {
+                logger.warn("Import job {} failed: {}", job.getId(), message);
+            }
+        }
+    }
+
+    private void renewHeartbeat(Long jobId, LocalDateTime now) {
+        jdbcTemplate.update("update import_jobs set heartbeat_at = ? where id = ?", now, jobId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupted jobs stay RUNNING and are resumed on the next start
+        workers.shutdownNow();
+    }
+
+    private void run(Long jobId) {
+        ImportJob job = importJobRepo.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() == ImportJobStatus.COMPLETED || job.getStatus() == ImportJobStatus.FAILED) {
+            ownJobs.remove(jobId);
+            return;
+        }
+        Path spooled = Paths.get(job.getSpoolPath());
+        job.setStatus(ImportJobStatus.RUNNING);
+        job.setRunStartedAt(LocalDateTime.now());
+        job.setRowsAtRunStart(job.getRowsProcessed());
+        job.setHeartbeatAt(LocalDateTime.now());
+        importJobRepo.save(job);
+
+        Set<Integer> committed = new HashSet<>(importJobChunkRepo.findChunkIndexesByJobId(jobId));
+        try (InputStream in = Files.newInputStream(spooled)) {
+            bookCsvImporter.importCsv(in, new JobProgress(jobId, committed));
+            finish(jobId, ImportJobStatus.COMPLETED, null);
+            Files.deleteIfExists(spooled);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                logger.info("Import job {} interrupted by shutdown; it will resume on the next start", jobId);
+                return;
+            }
+            logger.error("Import job {} failed: {}", jobId, e.getMessage(), e);
+            finish(jobId, ImportJobStatus.FAILED, e.getMessage());
+        }
+        ownJobs.remove(jobId);
+    }
+
+    private void finish(Long jobId, ImportJobStatus status, String message) {
+        // Re-read: the counters were advanced by the chunk transactions, not through this entity
+        ImportJob job = importJobRepo.findById(jobId).orElseThrow();
+        job.setStatus(status);
+        job.setFinishedAt(LocalDateTime.now());
+        job.setMessage(truncate(message));
+        importJobRepo.save(job);
+        logger.info("Import job {} {}: {} rows, {} created, {} updated, {} failed", jobId, status,
+                job.getRowsProcessed(), job.getCreatedCount(), job.getUpdatedCount(), job.getFailedCount());
+    }
+
+    private ImportJobDTO toDTO(ImportJob job, boolean withErrors) {
+        double rate = 0;
+        if (job.getRunStartedAt() != null) {
+            LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+            long millis = Math.max(1, Duration.between(job.getRunStartedAt(), end).toMillis());
+            rate = (job.getRowsProcessed() - job.getRowsAtRunStart()) * 1000.0 / millis;
+        }
+        return ImportJobDTO.builder()
+                .id(job.getId())
+                .status(job.getStatus().name())
+                .fileName(job.getFileName())
+                .rowsProcessed(job.getRowsProcessed())
+                .created(job.getCreatedCount())
+                .updated(job.getUpdatedCount())
+                .failed(job.getFailedCount())
+                .rowsPerSecond(Math.round(rate * 10) / 10.0)
+                .submittedAt(job.getSubmittedAt())
+                .startedAt(job.getRunStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .message(job.getMessage())
+                .errors(withErrors
+                        ? importJobErrorRepo.findTop100ByJobIdOrderByLineNumberAsc(job.getId()).stream()
+                                .map(error -> new ImportJobErrorDTO(error.getLineNumber(), error.getMessage()))
+                                .collect(Collectors.toList())
+                        : null)
+                .build();
+    }
+
+    /**
+     * Records each chunk inside the transaction that commits its books.
+     */
+    private final class JobProgress implements ImportProgress {
+        private final Long jobId;
+        private final Set<Integer> committed;
+
+        JobProgress(Long jobId, Set<Integer> committed) {
+            this.jobId = jobId;
+            this.committed = committed;
+        }
+
+        @Override
+        public boolean isChunkCommitted(int chunkIndex) {
+            return committed.contains(chunkIndex);
+        }
+
+        @Override
+        public void chunkCommitted(int chunkIndex, ChunkResult result) {
+            jdbcTemplate.update("insert into import_job_chunks (job_id, chunk_index) values (?, ?)", jobId, chunkIndex);
+            jdbcTemplate.update("update import_jobs set rows_processed = rows_processed + ?, created_count = created_count + ?, "
+                            + "updated_count = updated_count + ?, failed_count = failed_count + ?, "
+                            + "chunks_committed = chunks_committed + 1, heartbeat_at = ? where id = ?",
+                    result.records(), result.created(), result.updated(), result.failed(), LocalDateTime.now(), jobId);
+            List<Object[]> errors = result.errors().stream()
+                    .limit(MAX_ERRORS_PER_CHUNK)
+                    .map(error -> new Object[]{jobId, error.line(), truncate(error.message())})
+                    .collect(Collectors.toList());
+            if (!errors.isEmpty()) {
+                jdbcTemplate.batchUpdate("insert into import_job_errors (job_id, line_number, message) values (?, ?, ?)", errors);
+            }
+        }
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -0,0 +1,110 @@
+package com.org.bookstore_backend.services.impl;
+
+import com.org.bookstore_backend.dto.BookSortField;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for the paginated catalog listing.
+ * <p>
+ * A keyset cursor remembers the (sort key, id) of the last row served, so the next page is a seek
+ * rather than an OFFSET scan. Search results are ranked in memory, so their cursor is simply the
+ * position in the ranked hit list. Both are base64url-encoded so clients treat them as opaque.
+ */
+final class BookPageCursor {
+
+    private static final String KEYSET = "k";
+    private static final String RANKED = "r";
+    private static final String SEPARATOR = "|";
+
+    private final BookSortField sortField;
+    private final boolean descending;
+    private final Object lastValue;
+    private final Long lastId;
+    private final int offset;
+
+    private BookPageCursor(BookSortField sortField, boolean descending, Object lastValue, Long lastId, int offset) {
+        this.sortField = sortField;
+        this.descending = descending;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+        this.offset = offset;
+    }
+
+    static BookPageCursor keyset(BookSortField sortField, boolean descending, Object lastValue, Long lastId) {
+        return new BookPageCursor(sortField, descending, lastValue, lastId, 0);
+    }
+
+    static BookPageCursor ranked(int offset) {
+        return new BookPageCursor(null, false, null, null, offset);
+    }
+
+    Object getLastValue() {
+        return lastValue;
+    }
+
+    Long getLastId() {
+        return lastId;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    String encode() {
+        String raw = sortField == null
+                ? RANKED + SEPARATOR + offset
+                : String.join(SEPARATOR, KEYSET, sortField.name(), descending ? "d" : "a",
+                String.valueOf(lastId), String.valueOf(lastValue));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a keyset cursor and checks that it was issued for the same sort.
+     */
+    static BookPageCursor decodeKeyset(String token, BookSortField sortField, boolean descending) {
+        String[] parts = decode(token).split("\\|", 5);
+        if (parts.length != 5 || !KEYSET.equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!sortField.name().equals(parts[1]) || descending != "d".equals(parts[2])) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+        try {
+            Long lastId = Long.valueOf(parts[3]);
+            Object lastValue = switch (sortField) {
+                case TITLE -> parts[4];
+                case PRICE -> Double.valueOf(parts[4]);
+                case PUBLICATION_YEAR -> Integer.valueOf(parts[4]);
+            };
+            return keyset(sortField, descending, lastValue, lastId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    static BookPageCursor decodeRanked(String token) {
+        String[] parts = decode(token).split("\\|", 2);
+        if (parts.length != 2 || !RANKED.equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            int offset = Integer.parseInt(parts[1]);
+            if (offset < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return ranked(offset);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static String decode(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -1,12 +1,31 @@
 package com.org.bookstore_backend.services.impl;
 import com.org.bookstore_backend.adapter_design.adapter.BookInputAdapter;
+import com.org.bookstore_backend.cache.BookDetailCache;
+import com.org.bookstore_backend.cart.CartStore;
 import com.org.bookstore_backend.dto.*;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import com.org.bookstore_backend.images.CoverImageService;
+import com.org.bookstore_backend.images.ImageBlobRegistry;
 import com.org.bookstore_backend.model.Author;
 import com.org.bookstore_backend.model.Book;
+import com.org.bookstore_backend.model.CatalogChange;
+import com.org.bookstore_backend.model.CatalogFeedState;
 import com.org.bookstore_backend.model.Publisher;
+import com.org.bookstore_backend.ranking.BestsellerRankings;
+import com.org.bookstore_backend.ranking.RankingWindow;
+import com.org.bookstore_backend.recommend.CoPurchaseIndex;
+import com.org.bookstore_backend.recommend.CoPurchaseRebuilder;
 import com.org.bookstore_backend.repo.AuthorRepo;
 import com.org.bookstore_backend.repo.BookRepo;
+import com.org.bookstore_backend.repo.BookRepoCustom.BookKey;
+import com.org.bookstore_backend.repo.BookView;
+import com.org.bookstore_backend.repo.CatalogChangeRepo;
+import com.org.bookstore_backend.repo.CatalogFeedStateRepo;
 import com.org.bookstore_backend.repo.PublisherRepo;
+import com.org.bookstore_backend.search.BookFacetIndex;
+import com.org.bookstore_backend.search.BookGenreRegistry;
+import com.org.bookstore_backend.search.BookSearchIndex;
+import com.org.bookstore_backend.search.BookSuggestionIndex;
 import com.org.bookstore_backend.services.BookService;
 import com.org.bookstore_backend.services.S3Service;
 import jakarta.persistence.EntityNotFoundException;
@@ -14,14 +33,22 @@ import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -31,13 +58,40 @@ import java.util.stream.Collectors;
 public class BookServiceImpl implements BookService {
     //injecting S3Service to handle file uploads
     private final S3Service s3Service;
+    private final CoverImageService coverImageService;
+    private final ImageBlobRegistry imageBlobRegistry;
+    private final CartStore cartStore;
 
     private final BookRepo bookRepository;
     private final BookMapper bookMapper; // Assuming BookMapper is correctly configured
     private final BookInputAdapter bookInputAdapter;
     private final PublisherRepo publisherRepository;
     private final AuthorRepo authorRepository;
-
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestionIndex bookSuggestionIndex;
+    private final BookFacetIndex bookFacetIndex;
+    private final BookGenreRegistry bookGenreRegistry;
+    private final BookDetailCache bookDetailCache;
+    private final BookCsvImporter bookCsvImporter;
+    private final CoPurchaseIndex coPurchaseIndex;
+    private final CoPurchaseRebuilder coPurchaseRebuilder;
+    private final BestsellerRankings bestsellerRankings;
+    private final CatalogChangeRepo catalogChangeRepository;
+    private final CatalogFeedStateRepo catalogFeedStateRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    // For the methods that do slow work (cover uploads) before they touch the database
+    private final TransactionTemplate bookTransaction;
+
+    // Max number of IDs per IN (...) clause when hydrating search hits
+    private static final int HYDRATION_BATCH_SIZE = 1000;
+
+    // Bounds for the paginated listing
+    private static final int DEFAULT_PAGE_SIZE = 24;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final int MAX_RELATED_BOOKS = 20;
+    private static final int MAX_BESTSELLERS = 50;
+    private static final int MAX_CATALOG_CHANGES = 1000;
 
     private static final Logger logger = LoggerFactory.getLogger(BookServiceImpl.class);
 
@@ -48,13 +102,45 @@ public class BookServiceImpl implements BookService {
             BookInputAdapter bookInputAdapter,
             PublisherRepo publisherRepository,
             AuthorRepo authorRepository,
-            S3Service s3Service) {
+            S3Service s3Service,
+            CoverImageService coverImageService,
+            ImageBlobRegistry imageBlobRegistry,
+            CartStore cartStore,
+            BookSearchIndex bookSearchIndex,
+            BookSuggestionIndex bookSuggestionIndex,
+            BookFacetIndex bookFacetIndex,
+            BookGenreRegistry bookGenreRegistry,
+            BookDetailCache bookDetailCache,
+            BookCsvImporter bookCsvImporter,
+            CoPurchaseIndex coPurchaseIndex,
+            CoPurchaseRebuilder coPurchaseRebuilder,
+            BestsellerRankings bestsellerRankings,
+            CatalogChangeRepo catalogChangeRepository,
+            CatalogFeedStateRepo catalogFeedStateRepository,
+            ApplicationEventPublisher applicationEventPublisher,
+            PlatformTransactionManager transactionManager) {
         this.bookRepository = bookRepository;
         this.bookMapper = bookMapper;
         this.bookInputAdapter = bookInputAdapter;
         this.publisherRepository = publisherRepository;
         this.authorRepository = authorRepository;
         this.s3Service = s3Service;
+        this.coverImageService = coverImageService;
+        this.imageBlobRegistry = imageBlobRegistry;
+        this.cartStore = cartStore;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookSuggestionIndex = bookSuggestionIndex;
+        this.bookFacetIndex = bookFacetIndex;
+        this.bookGenreRegistry = bookGenreRegistry;
+        this.bookDetailCache = bookDetailCache;
+        this.bookCsvImporter = bookCsvImporter;
+        this.coPurchaseIndex = coPurchaseIndex;
+        this.coPurchaseRebuilder = coPurchaseRebuilder;
+        this.bestsellerRankings = bestsellerRankings;
+        this.catalogChangeRepository = catalogChangeRepository;
+        this.catalogFeedStateRepository = catalogFeedStateRepository;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.bookTransaction = new TransactionTemplate(transactionManager);
     }
 
     // --- Book CRUD Operations with File Upload ---
@@ -67,92 +153,257 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED) // the cover is resized and uploaded before the transaction
     public BookDTO createBook(BookCreationDTO bookCreationDTO, MultipartFile imageFile) throws IOException {
         logger.info("Attempting to create a new book: {}", bookCreationDTO.getTitle());
 
+        // An upload whose book then fails to save is left to OrphanImageCollector
         String imageUrl = null;
         if (imageFile != null && !imageFile.isEmpty()) {
-            imageUrl = s3Service.uploadFile(imageFile);
+            imageUrl = coverImageService.upload(imageFile);
             logger.info("Image uploaded to S3. URL: {}", imageUrl);
         } else {
             logger.warn("No image file provided for the new book.");
         }
 
-        Book book = bookInputAdapter.adaptToNewBookEntity(bookCreationDTO, imageUrl);
-        Book savedBook = bookRepository.save(book);
-        logger.info("Successfully created book with ID: {}", savedBook.getId());
+        String savedImageUrl = imageUrl;
+        return bookTransaction.execute(status -> {
+            Book book = bookInputAdapter.adaptToNewBookEntity(bookCreationDTO, savedImageUrl);
+            Book savedBook = bookRepository.save(book);
+            if (savedImageUrl != null) {
+                imageBlobRegistry.retain(savedImageUrl);
+            }
+            logger.info("Successfully created book with ID: {}", savedBook.getId());
 
-        return bookMapper.toDTO(savedBook);
+            BookDTO created = bookMapper.toDTO(savedBook);
+            applicationEventPublisher.publishEvent(BookCatalogEvent.created(created));
+            return created;
+        });
     }
 
     @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED) // the cover is resized and uploaded before the transaction
     public BookDTO updateBook(Long id, BookUpdateDTO bookUpdateDTO, MultipartFile newImageFile) throws IOException {
         logger.info("Attempting to update book with ID: {}", id);
 
-        Book existingBook = bookRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Book not found with ID: " + id));
-
-        String newImageUrl = existingBook.getImageUrl();
+        if (!bookRepository.existsById(id)) {
+            throw new EntityNotFoundException("Book not found with ID: " + id);
+        }
+        String uploadedImageUrl = null;
         if (newImageFile != null && !newImageFile.isEmpty()) {
-            // Delete old image from S3 if it exists and is different (optional, but good practice)
-            // if (existingBook.getImageUrl() != null && !existingBook.getImageUrl().isEmpty()) {
-            //     s3Service.deleteFile(existingBook.getImageUrl()); // Implement S3Service.deleteFile
-            // }
-            newImageUrl = s3Service.uploadFile(newImageFile);
-            logger.info("New image uploaded to S3. URL: {}", newImageUrl);
-        } else if (bookUpdateDTO.isRemoveImage()) { // Assuming BookUpdateDTO has a boolean isRemoveImage()
-            // if image is explicitly requested to be removed
-            // if (existingBook.getImageUrl() != null && !existingBook.getImageUrl().isEmpty()) {
-            //     s3Service.deleteFile(existingBook.getImageUrl());
-            // }
-            newImageUrl = null;
+            // The old image is not deleted here: other books may share it, OrphanImageCollector removes it once unused
+            uploadedImageUrl = coverImageService.upload(newImageFile);
+            logger.info("New image uploaded to S3. URL: {}", uploadedImageUrl);
         }
 
+        String newImageFileUrl = uploadedImageUrl;
+        return bookTransaction.execute(status -> {
+            Book existingBook = bookRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException("Book not found with ID: " + id));
+
+            String oldImageUrl = existingBook.getImageUrl();
+            String newImageUrl = oldImageUrl;
+            if (newImageFileUrl != null) {
+                newImageUrl = newImageFileUrl;
+            } else if (bookUpdateDTO.isRemoveImage()) { // Assuming BookUpdateDTO has a boolean isRemoveImage()
+                // if image is explicitly requested to be removed
+                newImageUrl = null;
+            }
+
+            Book updatedBook = bookInputAdapter.adaptToExistingBookEntity(bookUpdateDTO, existingBook, newImageUrl);
+            Book savedBook = bookRepository.save(updatedBook);
+            if (!Objects.equals(oldImageUrl, newImageUrl)) {
+                // Re-uploading the same cover yields the same URL, so the counts only move when the image really changes
+                if (newImageUrl != null) {
+                    imageBlobRegistry.retain(newImageUrl);
+                }
+                if (oldImageUrl != null) {
+                    imageBlobRegistry.release(oldImageUrl);
+                }
+            }
+            logger.info("Successfully updated book with ID: {}", savedBook.getId());
+
+            BookDTO updated = bookMapper.toDTO(savedBook);
+            applicationEventPublisher.publishEvent(BookCatalogEvent.updated(updated));
+            return updated;
+        });
+    }
 
-        Book updatedBook = bookInputAdapter.adaptToExistingBookEntity(bookUpdateDTO, existingBook, newImageUrl);
-        Book savedBook = bookRepository.save(updatedBook);
-        logger.info("Successfully updated book with ID: {}", savedBook.getId());
+    @Override
+    public BookDTO attachImage(Long id, String imageUrl) {
+        Book book = bookRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Book not found with ID: " + id));
+        String oldImageUrl = book.getImageUrl();
+        if (Objects.equals(oldImageUrl, imageUrl)) {
+            return bookMapper.toDTO(book);
+        }
+        book.setImageUrl(imageUrl);
+        Book savedBook = bookRepository.save(book);
+        imageBlobRegistry.retain(imageUrl);
+        if (oldImageUrl != null) {
+            imageBlobRegistry.release(oldImageUrl);
+        }
+        logger.info("Attached image {} to book with ID: {}", imageUrl, id);
 
-        return bookMapper.toDTO(savedBook);
+        BookDTO updated = bookMapper.toDTO(savedBook);
+        applicationEventPublisher.publishEvent(BookCatalogEvent.updated(updated));
+        return updated;
     }
 
     // ⭐ Implementation for filtering books based on category and search term
     @Override
     public List<BookDTO> getAllBooks(String category, String search) {
         logger.info("Fetching books with category: '{}', search: '{}'", category, search);
-        List<Book> books;
 
         boolean hasCategory = category != null && !category.trim().isEmpty();
         boolean hasSearch = search != null && !search.trim().isEmpty();
 
-        if (hasCategory && hasSearch) {
-            // Search by category AND (title OR author name)
-            books = bookRepository.findByGenreIgnoreCaseAndTitleContainingIgnoreCaseOrGenreIgnoreCaseAndAuthors_NameContainingIgnoreCase(
-                    category, search, category, search
-            );
-        } else if (hasCategory) {
-            // Search by category only
-            books = bookRepository.findByGenreIgnoreCase(category);
-        } else if (hasSearch) {
-            // Search by title OR author name
-            books = bookRepository.findByTitleContainingIgnoreCaseOrAuthors_NameContainingIgnoreCase(search, search);
-        } else {
-            // No filters, return all books
-            books = bookRepository.findAll();
+        if (hasSearch && bookSearchIndex.isReady()) {
+            // Ranked in memory; the database is only used to load the matching rows
+            List<Long> hitIds = bookSearchIndex.search(search, hasCategory ? category : null);
+            return hydrateInOrder(hitIds);
         }
 
-        return books.stream()
-                .map(bookMapper::toDTO)
-                .collect(Collectors.toList());
+        if (hasCategory || hasSearch) {
+            return searchAndFilterBooks(BookFilterDTO.builder().category(category).search(search).build());
+        }
+        // No filters, return all books
+        return toDTOs(bookRepository.findAllViews());
     }
 
     @Override
-    public List<BookDTO> getAllBooks() {
+    public BookPageDTO getBookPage(String category, String search, String sort, String direction, Integer size, String cursor,
+                                   boolean includeFacets) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        boolean hasCategory = category != null && !category.trim().isEmpty();
+        boolean hasSearch = search != null && !search.trim().isEmpty();
+        boolean hasCursor = cursor != null && !cursor.isBlank();
+
+        if (hasSearch) {
+            // Relevance-ranked: the whole hit list is already in memory, so the cursor is a position in it
+            List<Long> hitIds = bookSearchIndex.isReady()
+                    ? bookSearchIndex.search(search, hasCategory ? category : null)
+                    : getAllBooks(category, search).stream().map(BookDTO::getId).collect(Collectors.toList());
+            int from = hasCursor ? Math.min(BookPageCursor.decodeRanked(cursor).getOffset(), hitIds.size()) : 0;
+            int to = Math.min(from + pageSize, hitIds.size());
+            boolean hasMore = to < hitIds.size();
+            return BookPageDTO.builder()
+                    .books(hydrateInOrder(hitIds.subList(from, to)))
+                    .nextCursor(hasMore ? BookPageCursor.ranked(to).encode() : null)
+                    .hasMore(hasMore)
+                    .size(pageSize)
+                    .sort("relevance")
+                    .direction("desc")
+                    .facets(includeFacets ? facetCountsFor(hitIds) : null)
+                    .build();
+        }
 
-        return bookRepository.findAll()
-                .stream()
-                .map(bookMapper::toDTO)
-                .collect(Collectors.toList());
+        return filterBooks(BookFilterDTO.builder().category(category).build(), sort, direction, size, cursor, includeFacets);
+    }
+
+    @Override
+    public BookPageDTO filterBooks(BookFilterDTO filter, String sort, String direction, Integer size, String cursor,
+                                   boolean includeFacets) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        BookSortField sortField = BookSortField.fromParam(sort);
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        BookPageCursor after = cursor != null && !cursor.isBlank()
+                ? BookPageCursor.decodeKeyset(cursor, sortField, descending)
+                : null;
+
+        // One extra row tells us whether another page exists without a COUNT(*)
+        List<BookKey> keys = bookRepository.findFilteredKeys(
+                filter, sortField, descending,
+                after != null ? after.getLastValue() : null,
+                after != null ? after.getLastId() : null,
+                pageSize + 1);
+        boolean hasMore = keys.size() > pageSize;
+        if (hasMore) {
+            keys = keys.subList(0, pageSize);
+        }
+        BookKey last = keys.isEmpty() ? null : keys.get(keys.size() - 1);
+
+        Map<String, List<FacetCountDTO>> facets = null;
+        if (includeFacets) {
+            // Facets describe the whole result set, not just this page. The ids of a filtered set are loaded once
+            // per filter and catalog change, not for every page
+            if (!filter.hasAttributeFilters() && !BookFilterDTO.hasText(filter.getSearch())) {
+                facets = getFacetCounts(filter.getCategory(), null);
+            } else if (bookFacetIndex.isReady()) {
+                facets = bookFacetIndex.countsFor(filter.predicateKey(), () -> filteredIds(filter),
+                        BookFacetIndex.DEFAULT_MAX_VALUES);
+            } else {
+                facets = Map.of();
+            }
+        }
+
+        return BookPageDTO.builder()
+                .books(hydrateInOrder(keys.stream().map(BookKey::id).collect(Collectors.toList())))
+                .nextCursor(hasMore ? BookPageCursor.keyset(sortField, descending, last.sortValue(), last.id()).encode() : null)
+                .hasMore(hasMore)
+                .size(pageSize)
+                .sort(sortField.getAttribute())
+                .direction(descending ? "desc" : "asc")
+                .facets(facets)
+                .build();
+    }
+
+    @Override
+    public Map<String, List<FacetCountDTO>> getFacetCounts(String category, String search) {
+        boolean hasCategory = category != null && !category.trim().isEmpty();
+        boolean hasSearch = search != null && !search.trim().isEmpty();
+        if (!bookFacetIndex.isReady()) {
+            return Map.of();
+        }
+        if (hasSearch) {
+            List<Long> hitIds = bookSearchIndex.isReady()
+                    ? bookSearchIndex.search(search, hasCategory ? category : null)
+                    : getAllBooks(category, search).stream().map(BookDTO::getId).collect(Collectors.toList());
+            return facetCountsFor(hitIds);
+        }
+        if (hasCategory) {
+            return bookFacetIndex.countsForGenre(category, BookFacetIndex.DEFAULT_MAX_VALUES);
+        }
+        return bookFacetIndex.counts(null, BookFacetIndex.DEFAULT_MAX_VALUES);
+    }
+
+    private Map<String, List<FacetCountDTO>> facetCountsFor(List<Long> bookIds) {
+        return bookFacetIndex.isReady()
+                ? bookFacetIndex.counts(bookIds, BookFacetIndex.DEFAULT_MAX_VALUES)
+                : Map.of();
+    }
+
+    /**
+     * Loads the given books (with authors and publisher) and returns them in the order of {@code ids}.
+     */
+    private List<BookDTO> hydrateInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BookDTO> byId = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, ids.size()));
+            for (BookView view : bookRepository.findViewsByIdIn(batch)) {
+                byId.put(view.id(), view.toDTO());
+            }
+        }
+        List<BookDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            BookDTO book = byId.get(id);
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    private static List<BookDTO> toDTOs(List<BookView> views) {
+        return views.stream().map(BookView::toDTO).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<BookDTO> getAllBooks() {
+        return toDTOs(bookRepository.findAllViews());
     }
 
     // --- Book Retrieval Methods ---
@@ -163,10 +414,30 @@ public class BookServiceImpl implements BookService {
     // that just calls bookRepository.findAll(). However, the current setup is more flexible.
 
     @Override
+    @Transactional(Transactional.TxType.SUPPORTS) // served from the near cache, which is hit on every cart read
     public BookDTO getBookById(Long id) {
-        return bookRepository.findById(id)
-                .map(bookMapper::toDTO)
-                .orElseThrow(() -> new EntityNotFoundException("Book not found with ID: " + id));
+        return bookDetailCache.get(id, bookId -> bookRepository.findViewsByIdIn(List.of(bookId)).stream()
+                .findFirst()
+                .map(BookView::toDTO)
+                .orElseThrow(() -> new EntityNotFoundException("Book not found with ID: " + bookId)));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Map<Long, BookDTO> getBooksByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return bookDetailCache.getAll(ids, missing -> {
+            List<Long> toLoad = new ArrayList<>(missing);
+            Map<Long, BookDTO> loaded = new HashMap<>(toLoad.size() * 2);
+            for (int from = 0; from < toLoad.size(); from += HYDRATION_BATCH_SIZE) {
+                for (BookView view : bookRepository.findViewsByIdIn(toLoad.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, toLoad.size())))) {
+                    loaded.put(view.id(), view.toDTO());
+                }
+            }
+            return loaded;
+        });
     }
 
     // --- Book Deletion ---
@@ -176,12 +447,15 @@ public class BookServiceImpl implements BookService {
         if (!bookRepository.existsById(id)) {
             throw new EntityNotFoundException("Book not found with ID: " + id);
         }
-        // ⭐ Optional: Delete image from S3 when book is deleted
-        // Book book = bookRepository.findById(id).get();
-        // if (book.getImageUrl() != null && !book.getImageUrl().isEmpty()) {
-        //     s3Service.deleteFile(book.getImageUrl());
-        // }
+        // The image itself is left to OrphanImageCollector, which deletes it once no book uses it
+        String imageUrl = bookRepository.findImageUrlById(id);
+        // cart_items references the book without a cascade
+        cartStore.deleteBookItems(id);
         bookRepository.deleteById(id);
+        if (imageUrl != null) {
+            imageBlobRegistry.release(imageUrl);
+        }
+        applicationEventPublisher.publishEvent(BookCatalogEvent.deleted(id));
         logger.info("Deleted book with ID: {}", id);
     }
 
@@ -202,7 +476,27 @@ public class BookServiceImpl implements BookService {
 
     @Override
     public List<BookDTO> searchAndFilterBooks(String searchTerm, String categoryName, String authorName, String publisherName) {
-        return List.of();
+        return searchAndFilterBooks(BookFilterDTO.builder()
+                .search(searchTerm)
+                .category(categoryName)
+                .author(authorName)
+                .publisher(publisherName)
+                .build());
+    }
+
+    @Override
+    public List<BookDTO> searchAndFilterBooks(BookFilterDTO filter) {
+        return hydrateInOrder(filteredIds(filter));
+    }
+
+    /**
+     * IDs of every book matching the filter, ordered by title.
+     */
+    private List<Long> filteredIds(BookFilterDTO filter) {
+        return bookRepository.findFilteredKeys(filter, BookSortField.TITLE, false, null, null, 0)
+                .stream()
+                .map(BookKey::id)
+                .collect(Collectors.toList());
     }
 
     // --- Search and Filtering Methods (Consider consolidating into getAllBooks) ---
@@ -215,100 +509,82 @@ public class BookServiceImpl implements BookService {
 
     @Override
     public List<BookDTO> findByPublisherName(String publisherName) {
-        return bookRepository.findByPublisher_Name(publisherName)
-                .stream()
-                .map(bookMapper::toDTO)
-                .collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByPublisherName(publisherName));
     }
 
     @Override
     public List<BookDTO> findByAuthorName(String authorName) {
-        return bookRepository.findByAuthors_Name(authorName)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByAuthorName(authorName));
     }
 
     @Override
     public List<BookDTO> findByTitleContaining(String title) {
-        return bookRepository.findByTitleContainingIgnoreCase(title)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByTitleContaining(title));
     }
 
     @Override
     public List<BookDTO> findByGenre(String genre) {
-        return bookRepository.findByGenreIgnoreCase(genre)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByGenre(genre));
     }
 
     @Override
     public List<BookDTO> findByIsAvailable(boolean isAvailable) {
-        return bookRepository.findByIsAvailable(isAvailable)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByAvailability(isAvailable));
     }
 
     @Override
     public List<BookDTO> findByPublicationYear(int publicationYear) {
-        return bookRepository.findByPublicationYear(publicationYear)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByPublicationYear(publicationYear));
     }
 
     @Override
     public List<BookDTO> findByPriceBetween(double minPrice, double maxPrice) {
-        return bookRepository.findByPriceBetween(minPrice, maxPrice)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByPriceBetween(minPrice, maxPrice));
     }
 
     @Override
     public List<BookDTO> findByQuantityGreaterThan(int quantity) {
-        return bookRepository.findByQuantityGreaterThan(quantity)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByQuantityGreaterThan(quantity));
     }
 
     @Override
     public List<BookDTO> findByIsbn(String isbn) {
-        return bookRepository.findByIsbn(isbn)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByIsbn(isbn));
     }
 
     @Override
     public List<BookDTO> findByImageUrl(String imageUrl) {
-        return bookRepository.findByImageUrl(imageUrl)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return toDTOs(bookRepository.findViewsByImageUrl(imageUrl));
     }
 
     @Override
     public List<BookDTO> findByTitleAndAuthorName(String title, String authorName) {
-        return bookRepository.findByTitleContainingIgnoreCaseAndAuthors_NameContainingIgnoreCase(title, authorName)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return searchAndFilterBooks(BookFilterDTO.builder().title(title).author(authorName).build());
     }
 
     @Override
     public List<BookDTO> findByTitleAndPublisherName(String title, String publisherName) {
-        return bookRepository.findByTitleContainingIgnoreCaseAndPublisher_NameContainingIgnoreCase(title, publisherName)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return searchAndFilterBooks(BookFilterDTO.builder().title(title).publisher(publisherName).build());
     }
 
     @Override
     public List<BookDTO> findByTitleAndGenre(String title, String genre) {
-        return bookRepository.findByTitleContainingIgnoreCaseAndGenre(title, genre)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return searchAndFilterBooks(BookFilterDTO.builder().title(title).category(genre).build());
     }
 
     @Override
     public List<BookDTO> findByTitleAndPublicationYear(String title, int publicationYear) {
-        return bookRepository.findByTitleContainingIgnoreCaseAndPublicationYear(title, publicationYear)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return searchAndFilterBooks(BookFilterDTO.builder().title(title).minYear(publicationYear).maxYear(publicationYear).build());
     }
 
     @Override
     public List<BookDTO> findByTitleAndPrice(String title, double price) {
-        return bookRepository.findByTitleContainingIgnoreCaseAndPrice(title, price)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return searchAndFilterBooks(BookFilterDTO.builder().title(title).minPrice(price).maxPrice(price).build());
     }
 
     @Override
     public List<BookDTO> findByTitleAndQuantity(String title, int quantity) {
-        return bookRepository.findByTitleContainingIgnoreCaseAndQuantity(title, quantity)
-                .stream().map(bookMapper::toDTO).collect(Collectors.toList());
+        return searchAndFilterBooks(BookFilterDTO.builder().title(title).minQuantity(quantity).maxQuantity(quantity).build());
     }
 
     // --- Methods for managing related entities ---
@@ -341,84 +617,134 @@ public class BookServiceImpl implements BookService {
 
     @Override
     public List<String> getBookSuggestions(String query) {
-        return List.of();
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        if (bookSuggestionIndex.isReady()) {
+            return bookSuggestionIndex.suggest(query, BookSuggestionIndex.MAX_SUGGESTIONS);
+        }
+        // Index still building at startup: fall back to a title scan
+        return bookRepository.findByTitleContainingIgnoreCase(query.trim())
+                .stream()
+                .map(Book::getTitle)
+                .distinct()
+                .limit(BookSuggestionIndex.MAX_SUGGESTIONS)
+                .collect(Collectors.toList());
     }
 
     @Override
     public List<String> getAllGenres() {
-        return bookRepository.findAll()
+        if (bookGenreRegistry.isReady()) {
+            return bookGenreRegistry.genres();
+        }
+        // Every spelling as stored, in the registry's order: by genre, then spelling
+        return bookRepository.countByGenreSpelling()
                 .stream()
-                .map(Book::getGenre)
-                .distinct() // Ensure only unique genres are returned
+                .map(GenreCountDTO::getName)
+                .sorted(Comparator.comparing((String name) -> name.trim().toLowerCase(Locale.ROOT))
+                        .thenComparing(Comparator.naturalOrder()))
                 .collect(Collectors.toList());
     }
 
     @Override
-    public Map<String, Object> importBooksFromCsv(org.springframework.web.multipart.MultipartFile file) throws IOException {
-        if (file == null || file.isEmpty()) {
-            throw new IOException("Empty file");
+    public List<GenreCountDTO> getGenreCounts() {
+        if (bookGenreRegistry.isReady()) {
+            return bookGenreRegistry.genreCounts();
+        }
+        return bookRepository.countByGenre();
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS) // ids come from memory and details from the near cache
+    public List<BookDTO> getRelatedBooks(Long id, int limit) {
+        long[] relatedIds = coPurchaseIndex.related(id, Math.min(limit, MAX_RELATED_BOOKS));
+        List<BookDTO> related = new ArrayList<>(relatedIds.length);
+        for (long relatedId : relatedIds) {
+            try {
+                related.add(getBookById(relatedId));
+            } catch (EntityNotFoundException e) {
+                // deleted while the model was being rebuilt
+            }
+        }
+        return related;
+    }
+
+    @Override
+    public boolean rebuildRelatedBooks() {
+        return coPurchaseRebuilder.rebuildInBackground();
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS) // rankings come from memory and details from the near cache
+    public List<RankedBookDTO> getBestsellers(String window, String genre, String sort, int limit) {
+        boolean trending = "trending".equalsIgnoreCase(sort);
+        if (!trending && sort != null && !sort.isBlank() && !"units".equalsIgnoreCase(sort)) {
+            throw new IllegalArgumentException("Unknown bestseller sort: " + sort);
         }
-        int created = 0;
-        int updated = 0;
-        int failed = 0;
-
-        try (var reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
-            var csvFormat = org.apache.commons.csv.CSVFormat.DEFAULT
-                    .withHeader("title", "description", "isbn", "publicationYear", "genre", "price", "quantity", "isAvailable", "publisher", "authors")
-                    .withSkipHeaderRecord();
-            for (var record : csvFormat.parse(reader)) {
+        RankingWindow rankingWindow = RankingWindow.of(window != null ? window : trending ? "24h" : "7d");
+        List<RankedBookDTO> bestsellers = new ArrayList<>();
+        if (trending) {
+            for (BestsellerRankings.Trend trend : bestsellerRankings.trending(rankingWindow, genre, Math.min(limit, MAX_BESTSELLERS))) {
                 try {
-                    String title = record.get("title").trim();
-                    String description = record.get("description").trim();
-                    String isbn = record.get("isbn").trim();
-                    int publicationYear = Integer.parseInt(record.get("publicationYear").trim());
-                    String genre = record.get("genre").trim();
-                    double price = Double.parseDouble(record.get("price").trim());
-                    int quantity = Integer.parseInt(record.get("quantity").trim());
-                    boolean isAvailable = Boolean.parseBoolean(record.get("isAvailable").trim());
-                    String publisherName = record.get("publisher").trim();
-                    String authorsCsv = record.get("authors");
-
-                    Publisher publisher = publisherRepository.findByName(publisherName)
-                            .orElseGet(() -> publisherRepository.save(Publisher.builder().name(publisherName).build()));
-
-                    List<Author> authors = java.util.Arrays.stream(authorsCsv.split(","))
-                            .map(String::trim)
-                            .filter(s -> !s.isEmpty())
-                            .map(name -> authorRepository.findByName(name)
-                                    .orElseGet(() -> authorRepository.save(Author.builder().name(name).build())))
-                            .collect(Collectors.toList());
-
-                    Optional<Book> existing = (isbn != null && !isbn.isBlank())
-                            ? bookRepository.findByIsbn(isbn).stream().findFirst()
-                            : Optional.empty();
-
-                    Book book = existing.orElseGet(Book::new);
-                    book.setTitle(title);
-                    book.setDescription(description);
-                    book.setIsbn(isbn);
-                    book.setPublicationYear(publicationYear);
-                    book.setGenre(genre);
-                    book.setPrice(price);
-                    book.setQuantity(quantity);
-                    book.setIsAvailable(isAvailable);
-                    book.setPublisher(publisher);
-                    book.setAuthors(new java.util.HashSet<>(authors));
-
-                    boolean isNew = book.getId() == null;
-                    bookRepository.save(book);
-                    if (isNew) created++; else updated++;
-                } catch (Exception rowEx) {
-                    logger.warn("Failed to import CSV row: {}", rowEx.getMessage());
-                    failed++;
+                    bestsellers.add(new RankedBookDTO(bestsellers.size() + 1, trend.units(), trend.score(), getBookById(trend.bookId())));
+                } catch (EntityNotFoundException e) {
+                    // sold in the window but deleted since
                 }
             }
+            return bestsellers;
         }
+        for (BestsellerRankings.Ranking ranking : bestsellerRankings.top(rankingWindow, genre, Math.min(limit, MAX_BESTSELLERS))) {
+            try {
+                bestsellers.add(new RankedBookDTO(bestsellers.size() + 1, ranking.units(), null, getBookById(ranking.bookId())));
+            } catch (EntityNotFoundException e) {
+                // sold in the window but deleted since
+            }
+        }
+        return bestsellers;
+    }
 
-        return java.util.Map.of(
-                "created", created,
-                "updated", updated,
-                "failed", failed
-        );
+    @Override
+    public CatalogChangesDTO getCatalogChanges(long since, int limit) {
+        CatalogFeedState state = catalogFeedStateRepository.findById(CatalogFeedState.ID)
+                .orElseGet(() -> new CatalogFeedState(CatalogFeedState.ID, 0, 0));
+        // since=0 is a full sync through the compacted log; a version past the current one comes from another database
+        if (since < 0 || (since > 0 && since < state.getCompactedThrough()) || since > state.getLastVersion()) {
+            return CatalogChangesDTO.builder()
+                    .version(state.getLastVersion())
+                    .resyncRequired(true)
+                    .upserted(List.of())
+                    .deleted(List.of())
+                    .build();
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_CATALOG_CHANGES));
+        List<CatalogChange> changes = catalogChangeRepository
+                .findByVersionGreaterThanOrderByVersionAsc(since, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+        List<Long> upsertedIds = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        for (CatalogChange change : changes) {
+            (change.getChangeType() == CatalogChange.Type.DELETE ? deletedIds : upsertedIds).add(change.getBookId());
+        }
+        // The state was read first, so every change up to its last version is already in the log
+        long version = changes.isEmpty() ? state.getLastVersion() : changes.get(changes.size() - 1).getVersion();
+        return CatalogChangesDTO.builder()
+                .version(version)
+                .hasMore(hasMore)
+                // A book deleted after its upsert was numbered is skipped here; its delete follows
+                .upserted(hydrateInOrder(upsertedIds))
+                .deleted(deletedIds)
+                .build();
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED) // each chunk commits on its own
+    public Map<String, Object> importBooksFromCsv(org.springframework.web.multipart.MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IOException("Empty file");
+        }
+        return bookCsvImporter.importCsv(file.getInputStream());
     }
-}
\ No newline at end of file
+}
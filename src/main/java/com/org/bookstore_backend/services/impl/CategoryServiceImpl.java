@@ -1,12 +1,14 @@
 package com.org.bookstore_backend.services.impl;
 
 import com.org.bookstore_backend.dto.CategoryDTO;
+import com.org.bookstore_backend.events.CategoryChangedEvent;
 import com.org.bookstore_backend.exception.DuplicateResourceException;
 import com.org.bookstore_backend.exception.ResourceNotFoundException;
 import com.org.bookstore_backend.model.Category;
 import com.org.bookstore_backend.repo.CategoryRepository; // Assuming this is the correct repository package
 import com.org.bookstore_backend.services.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -16,10 +18,12 @@ import java.util.stream.Collectors;
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     @Autowired // Good practice: constructor injection
-    public CategoryServiceImpl(CategoryRepository categoryRepository) {
+    public CategoryServiceImpl(CategoryRepository categoryRepository, ApplicationEventPublisher applicationEventPublisher) {
         this.categoryRepository = categoryRepository;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     // ⭐ Create Category: Ensures no duplicate names before saving.
@@ -32,6 +36,7 @@ public class CategoryServiceImpl implements CategoryService {
                 .name(categoryDTO.getName())
                 .build();
         Category savedCategory = categoryRepository.save(category);
+        applicationEventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getId()));
         return convertToDTO(savedCategory);
     }
 
@@ -64,6 +69,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         existingCategory.setName(categoryDTO.getName());
         Category updatedCategory = categoryRepository.save(existingCategory);
+        applicationEventPublisher.publishEvent(new CategoryChangedEvent(updatedCategory.getId()));
         return convertToDTO(updatedCategory);
     }
 
@@ -74,6 +80,7 @@ public class CategoryServiceImpl implements CategoryService {
             throw new ResourceNotFoundException("Category not found with ID: " + id);
         }
         categoryRepository.deleteById(id);
+        applicationEventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
 
     // Helper method to convert Entity to DTO: Essential for decoupling layers.
@@ -88,6 +95,10 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     public Category findOrCreateCategory(String categoryName) {
         return categoryRepository.findByName(categoryName)
-                .orElseGet(() -> categoryRepository.save(Category.builder().name(categoryName).build()));
+                .orElseGet(() -> {
+                    Category created = categoryRepository.save(Category.builder().name(categoryName).build());
+                    applicationEventPublisher.publishEvent(new CategoryChangedEvent(created.getId()));
+                    return created;
+                });
     }
 }
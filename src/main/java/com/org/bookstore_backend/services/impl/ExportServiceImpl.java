@@ -0,0 +1,409 @@
+package com.org.bookstore_backend.services.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.org.bookstore_backend.services.ExportService;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams books and orders straight from a JDBC cursor to the response.
+ * <p>
+ * Each export is a single query read with a forward-only, read-only result set and a fixed fetch size
+ * ({@code export.fetch-size}), inside a read-only transaction so that PostgreSQL actually uses a server-side
+ * cursor instead of sending the whole result at once. Rows are ordered by their parent id, so the authors of a
+ * book or the items of an order arrive next to each other and only the current book or order is ever held.
+ */
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportServiceImpl.class);
+
+    private static final String BOOKS_QUERY = "select b.id, b.book_title, b.description, b.isbn, b.publication_year, "
+            + "b.genre, b.price, b.quantity, b.is_available, b.image_url, p.publisher_name, a.author_name "
+            + "from books b join publishers p on p.id = b.publisher_id "
+            + "left join book_authors ba on ba.book_id = b.id "
+            + "left join authors a on a.id = ba.author_id "
+            + "order by b.id, a.author_name";
+
+    private static final String ORDERS_QUERY = "select o.id, o.order_number, o.order_date, o.order_status, "
+            + "o.payment_method, o.total_amount, o.shipping_address, u.user_id, u.username, u.email, "
+            + "oi.book_id, bk.book_title, oi.quantity, oi.price_at_purchase "
+            + "from orders o join users u on u.user_id = o.user_id "
+            + "left join order_items oi on oi.order_id = o.id "
+            + "left join books bk on bk.id = oi.book_id "
+            + "order by o.id, oi.id";
+
+    private static final String[] ORDER_HEADER = {
+            "orderId", "orderNumber", "orderDate", "status", "paymentMethod", "totalAmount", "shippingAddress",
+            "userId", "username", "email", "bookId", "bookTitle", "quantity", "priceAtPurchase"
+    };
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    public ExportServiceImpl(DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${export.fetch-size:500}") int fetchSize) {
+        // Own template: the fetch size must not leak into the application's shared JdbcTemplate
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(Math.max(1, fetchSize));
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void exportBooks(Format format, OutputStream out) throws IOException {
+        BookRows rows = format == Format.CSV ? new BookCsvRows(out) : new BookJsonRows(out);
+        stream(BOOKS_QUERY, rows, "books");
+    }
+
+    @Override
+    public void exportOrders(Format format, OutputStream out) throws IOException {
+        OrderRows rows = format == Format.CSV ? new OrderCsvRows(out) : new OrderJsonRows(out);
+        stream(ORDERS_QUERY, rows, "orders");
+    }
+
+    /**
+     * Runs the query on a forward-only cursor and hands each row to the writer. IO errors (typically the client
+     * going away) are tunnelled through the JDBC callback and rethrown, which also closes the cursor.
+     */
+    private void stream(String sql, ExportRows rows, String what) throws IOException {
+        long started = System.currentTimeMillis();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> cursorTemplate.query(con -> con.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), (RowCallbackHandler) rs -> {
+                try {
+                    rows.row(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            rows.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        logger.info("Exported {} {} in {} ms", rows.count(), what, System.currentTimeMillis() - started);
+    }
+
+    private abstract static class ExportRows {
+        private long count;
+
+        abstract void row(ResultSet rs) throws SQLException, IOException;
+
+        abstract void finish() throws IOException;
+
+        void counted() {
+            count++;
+        }
+
+        long count() {
+            return count;
+        }
+    }
+
+    // --- books ---
+
+    /**
+     * Collects the author rows of one book and writes the book when the next one starts.
+     */
+    private abstract static class BookRows extends ExportRows {
+        private BookLine current;
+
+        @Override
+        void row(ResultSet rs) throws SQLException, IOException {
+            long id = rs.getLong("id");
+            if (current == null || current.id != id) {
+                if (current != null) {
+                    write(current);
+                    counted();
+                }
+                int year = rs.getInt("publication_year");
+                Integer publicationYear = rs.wasNull() ? null : year;
+                current = new BookLine(id, rs.getString("book_title"), rs.getString("description"),
+                        rs.getString("isbn"), publicationYear, rs.getString("genre"),
+                        rs.getDouble("price"), rs.getInt("quantity"), rs.getBoolean("is_available"),
+                        rs.getString("image_url"), rs.getString("publisher_name"));
+            }
+            String author = rs.getString("author_name");
+            if (author != null) {
+                current.authors.add(author);
+            }
+        }
+
+        @Override
+        void finish() throws IOException {
+            if (current != null) {
+                write(current);
+                counted();
+            }
+            close();
+        }
+
+        abstract void write(BookLine book) throws IOException;
+
+        abstract void close() throws IOException;
+    }
+
+    private static final class BookLine {
+        final long id;
+        final String title;
+        final String description;
+        final String isbn;
+        final Integer publicationYear;
+        final String genre;
+        final double price;
+        final int quantity;
+        final boolean available;
+        final String imageUrl;
+        final String publisher;
+        final List<String> authors = new ArrayList<>(2);
+
+        BookLine(long id, String title, String description, String isbn, Integer publicationYear, String genre,
+                 double price, int quantity, boolean available, String imageUrl, String publisher) {
+            this.id = id;
+            this.title = title;
+            this.description = description;
+            this.isbn = isbn;
+            this.publicationYear = publicationYear;
+            this.genre = genre;
+            this.price = price;
+            this.quantity = quantity;
+            this.available = available;
+            this.imageUrl = imageUrl;
+            this.publisher = publisher;
+        }
+    }
+
+    private final class BookJsonRows extends BookRows {
+        private final JsonGenerator json;
+
+        BookJsonRows(OutputStream out) throws IOException {
+            this.json = ndjson(out);
+        }
+
+        @Override
+        void write(BookLine book) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("id", book.id);
+            json.writeStringField("title", book.title);
+            json.writeStringField("description", book.description);
+            json.writeStringField("isbn", book.isbn);
+            if (book.publicationYear == null) {
+                json.writeNullField("publicationYear");
+            } else {
+                json.writeNumberField("publicationYear", book.publicationYear);
+            }
+            json.writeStringField("genre", book.genre);
+            json.writeNumberField("price", book.price);
+            json.writeNumberField("quantity", book.quantity);
+            json.writeBooleanField("available", book.available);
+            json.writeStringField("imageUrl", book.imageUrl);
+            json.writeStringField("publisherName", book.publisher);
+            json.writeArrayFieldStart("authorNames");
+            for (String author : book.authors) {
+                json.writeString(author);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        void close() throws IOException {
+            json.close();
+        }
+    }
+
+    private static final class BookCsvRows extends BookRows {
+        private final CSVPrinter csv;
+
+        BookCsvRows(OutputStream out) throws IOException {
+            this.csv = csv(out, BookCsvImporter.HEADER);
+        }
+
+        @Override
+        void write(BookLine book) throws IOException {
+            // Same columns and author separator as BookCsvImporter; a null year is an empty field
+            csv.printRecord(book.title, book.description, book.isbn, book.publicationYear, book.genre, book.price,
+                    book.quantity, book.available, book.publisher, String.join(", ", book.authors));
+        }
+
+        @Override
+        void close() throws IOException {
+            csv.flush();
+        }
+    }
+
+    // --- orders ---
+
+    /**
+     * Orders are written as their rows arrive: the order fields when a new order id shows up, then one item per row.
+     */
+    private abstract static class OrderRows extends ExportRows {
+        private Long currentId;
+
+        @Override
+        void row(ResultSet rs) throws SQLException, IOException {
+            long id = rs.getLong("id");
+            boolean first = currentId == null || currentId != id;
+            if (first) {
+                if (currentId != null) {
+                    endOrder();
+                    counted();
+                }
+                currentId = id;
+            }
+            long bookId = rs.getLong("book_id");
+            boolean hasItem = !rs.wasNull();
+            row(rs, first, hasItem ? bookId : null);
+        }
+
+        @Override
+        void finish() throws IOException {
+            if (currentId != null) {
+                endOrder();
+                counted();
+            }
+            close();
+        }
+
+        abstract void row(ResultSet rs, boolean firstOfOrder, Long bookId) throws SQLException, IOException;
+
+        abstract void endOrder() throws IOException;
+
+        abstract void close() throws IOException;
+    }
+
+    private final class OrderJsonRows extends OrderRows {
+        private final JsonGenerator json;
+
+        OrderJsonRows(OutputStream out) throws IOException {
+            this.json = ndjson(out);
+        }
+
+        @Override
+        void row(ResultSet rs, boolean firstOfOrder, Long bookId) throws SQLException, IOException {
+            if (firstOfOrder) {
+                json.writeStartObject();
+                json.writeNumberField("id", rs.getLong("id"));
+                json.writeStringField("orderNumber", rs.getString("order_number"));
+                json.writeStringField("orderDate", isoTimestamp(rs.getTimestamp("order_date")));
+                json.writeStringField("status", rs.getString("order_status"));
+                json.writeStringField("paymentMethod", rs.getString("payment_method"));
+                writeDecimal("totalAmount", rs.getBigDecimal("total_amount"));
+                json.writeStringField("shippingAddress", rs.getString("shipping_address"));
+                json.writeObjectFieldStart("user");
+                json.writeNumberField("userId", rs.getLong("user_id"));
+                json.writeStringField("username", rs.getString("username"));
+                json.writeStringField("email", rs.getString("email"));
+                json.writeEndObject();
+                json.writeArrayFieldStart("books");
+            }
+            if (bookId != null) {
+                json.writeStartObject();
+                json.writeNumberField("bookId", bookId);
+                json.writeStringField("title", rs.getString("book_title"));
+                json.writeNumberField("quantity", rs.getInt("quantity"));
+                writeDecimal("priceAtPurchase", rs.getBigDecimal("price_at_purchase"));
+                json.writeEndObject();
+            }
+        }
+
+        private void writeDecimal(String field, BigDecimal value) throws IOException {
+            if (value == null) {
+                json.writeNullField(field);
+            } else {
+                json.writeNumberField(field, value);
+            }
+        }
+
+        @Override
+        void endOrder() throws IOException {
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        void close() throws IOException {
+            json.close();
+        }
+    }
+
+    private static final class OrderCsvRows extends OrderRows {
+        private final CSVPrinter csv;
+
+        OrderCsvRows(OutputStream out) throws IOException {
+            this.csv = csv(out, ORDER_HEADER);
+        }
+
+        @Override
+        void row(ResultSet rs, boolean firstOfOrder, Long bookId) throws SQLException, IOException {
+            csv.printRecord(rs.getLong("id"), rs.getString("order_number"), isoTimestamp(rs.getTimestamp("order_date")),
+                    rs.getString("order_status"), rs.getString("payment_method"), rs.getBigDecimal("total_amount"),
+                    rs.getString("shipping_address"), rs.getLong("user_id"), rs.getString("username"),
+                    rs.getString("email"), bookId, bookId != null ? rs.getString("book_title") : null,
+                    bookId != null ? rs.getInt("quantity") : null,
+                    bookId != null ? rs.getBigDecimal("price_at_purchase") : null);
+        }
+
+        @Override
+        void endOrder() {
+        }
+
+        @Override
+        void close() throws IOException {
+            csv.flush();
+        }
+    }
+
+    // --- output ---
+
+    /**
+     * Generator for one JSON document per line; the caller's stream is flushed on close but left open.
+     */
+    private JsonGenerator ndjson(OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+        return json;
+    }
+
+    private static CSVPrinter csv(OutputStream out, String[] header) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        return new CSVPrinter(writer, CSVFormat.DEFAULT.builder()
+                .setHeader(header)
+                .setAutoFlush(false)
+                .build());
+    }
+
+    private static String isoTimestamp(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime().toString() : null;
+    }
+}
@@ -0,0 +1,153 @@
+package com.org.bookstore_backend.services.impl;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.dto.ImageUploadRequestDTO;
+import com.org.bookstore_backend.dto.ImageUploadTicketDTO;
+import com.org.bookstore_backend.images.ImageBlobRegistry;
+import com.org.bookstore_backend.model.ImageBlob;
+import com.org.bookstore_backend.services.BookService;
+import com.org.bookstore_backend.services.ImageUploadService;
+import com.org.bookstore_backend.services.S3Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Direct uploads are stored content-addressed under {@code blobs/<sha256>.<ext>}, like server-side uploads
+ * without variants. The signed URL requires the SHA-256 checksum header, so the object store itself refuses
+ * content that does not match the key.
+ * <p>
+ * Deliberately not transactional: the object store is contacted before the first query of the request, because
+ * with open-in-view the connection of that query stays with the request until it completes. Only
+ * {@link BookService#attachImage} runs in a (short) transaction.
+ */
+@Service
+public class ImageUploadServiceImpl implements ImageUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageUploadServiceImpl.class);
+
+    private static final Pattern UPLOAD_KEY = Pattern.compile("blobs/([0-9a-f]{64})(\\.[a-z0-9]{1,10})?");
+    private static final Pattern STORED_COVER_KEY = Pattern.compile("covers/([0-9a-f]{64})/original(\\.[a-z0-9]{1,10})?");
+
+    private final S3Service s3Service;
+    private final ImageBlobRegistry imageBlobRegistry;
+    private final BookService bookService;
+    private final Duration validity;
+    private final long maxSize;
+
+    public ImageUploadServiceImpl(S3Service s3Service,
+                                  ImageBlobRegistry imageBlobRegistry,
+                                  BookService bookService,
+                                  @Value("${cloud.aws.s3.direct-upload.validity:15m}") Duration validity,
+                                  @Value("${cloud.aws.s3.direct-upload.max-size:10MB}") DataSize maxSize) {
+        this.s3Service = s3Service;
+        this.imageBlobRegistry = imageBlobRegistry;
+        this.bookService = bookService;
+        this.validity = validity;
+        this.maxSize = maxSize.toBytes();
+    }
+
+    @Override
+    public ImageUploadTicketDTO issueTicket(ImageUploadRequestDTO request) {
+        if (request.getContentLength() > maxSize) {
+            throw new IllegalArgumentException("Images can be at most " + maxSize + " bytes");
+        }
+        String contentHash = request.getSha256().toLowerCase(Locale.ROOT);
+        Optional<ImageBlob> known = imageBlobRegistry.find(contentHash);
+        if (known.isPresent()) {
+            // Counts as an upload, so the orphaned image collector leaves the blob alone until it is committed
+            imageBlobRegistry.recordUpload(contentHash, known.get().getObjectKey(), known.get().getSize(),
+                    known.get().getContentType());
+            return ImageUploadTicketDTO.builder()
+                    .key(known.get().getObjectKey())
+                    .alreadyStored(true)
+                    .build();
+        }
+
+        String key = "blobs/" + contentHash + S3Service.extensionOf(request.getFileName());
+        PresignedPutObjectRequest presigned = s3Service.presignUpload(key, request.getContentType(),
+                base64Of(contentHash), validity);
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : presigned.signedHeaders().entrySet()) {
+            // The client sets Host itself
+            if (!header.getKey().equalsIgnoreCase(HttpHeaders.HOST)) {
+                headers.put(header.getKey(), String.join(",", header.getValue()));
+            }
+        }
+        return ImageUploadTicketDTO.builder()
+                .key(key)
+                .alreadyStored(false)
+                .uploadUrl(presigned.url().toString())
+                .method(presigned.httpRequest().method().name())
+                .headers(headers)
+                .expiresAt(presigned.expiration())
+                .build();
+    }
+
+    @Override
+    public BookDTO commit(Long bookId, String key) throws IOException {
+        Matcher storedCover = STORED_COVER_KEY.matcher(key);
+        if (storedCover.matches()) {
+            // Only handed out for content the registry knows, so there is nothing to check in the bucket
+            if (!isRegistered(storedCover.group(1), key)) {
+                throw new IllegalArgumentException("Unknown image " + key);
+            }
+            return bookService.attachImage(bookId, s3Service.urlFor(key));
+        }
+        Matcher upload = UPLOAD_KEY.matcher(key);
+        if (!upload.matches()) {
+            throw new IllegalArgumentException("Not an upload key: " + key);
+        }
+        String contentHash = upload.group(1);
+
+        HeadObjectResponse object = s3Service.head(key);
+        if (object == null) {
+            throw new IllegalArgumentException("Nothing has been uploaded to " + key);
+        }
+        String checksum = object.checksumSHA256();
+        if (checksum != null && !checksum.equals(base64Of(contentHash))) {
+            throw new IllegalArgumentException("Content of " + key + " does not match its key");
+        }
+        String contentType = object.contentType();
+        if (object.contentLength() > maxSize || contentType == null || !contentType.startsWith("image/")) {
+            // Signed URLs cannot limit the size, so oversized or mislabelled uploads are removed here
+            s3Service.delete(key);
+            throw new IllegalArgumentException("Upload " + key + " is not an image of at most " + maxSize + " bytes");
+        }
+        // Server-side uploads carry no checksum; the registry vouches for those
+        if (checksum == null && !isRegistered(contentHash, key)) {
+            throw new IllegalArgumentException("Content of " + key + " cannot be verified");
+        }
+
+        imageBlobRegistry.recordUpload(contentHash, key, object.contentLength(), contentType);
+        logger.info("Committing direct upload {} ({} bytes) to book {}", key, object.contentLength(), bookId);
+        return bookService.attachImage(bookId, s3Service.urlFor(key));
+    }
+
+    private boolean isRegistered(String contentHash, String key) {
+        return imageBlobRegistry.find(contentHash)
+                .map(blob -> blob.getObjectKey().equals(key))
+                .orElse(false);
+    }
+
+    private static String base64Of(String hexHash) {
+        return Base64.getEncoder().encodeToString(HexFormat.of().parseHex(hexHash));
+    }
+}
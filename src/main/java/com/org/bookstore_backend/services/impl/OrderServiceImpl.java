@@ -1,11 +1,14 @@
 package com.org.bookstore_backend.services.impl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.org.bookstore_backend.cart.CartStore;
 import com.org.bookstore_backend.dto.OrderDTO;
 import com.org.bookstore_backend.dto.OrderMapper;
 import com.org.bookstore_backend.dto.OrderRequestDTO;
 import com.org.bookstore_backend.events.DomainEvent;
 import com.org.bookstore_backend.events.EventPublisher;
+import com.org.bookstore_backend.events.OrderPlacedEvent;
 import com.org.bookstore_backend.model.*;
-import com.org.bookstore_backend.repo.CartRepo;
+import com.org.bookstore_backend.repo.BookRepo;
 import com.org.bookstore_backend.repo.OrderRepo;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,17 +16,22 @@ import com.org.bookstore_backend.repo.UserRepo;
 import com.org.bookstore_backend.services.NotificationService;
 import com.org.bookstore_backend.services.KafkaNotificationService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import com.org.bookstore_backend.services.OrderService;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 // PDFBox
@@ -43,27 +51,33 @@ public class OrderServiceImpl implements OrderService {
     private static final Logger logger = LoggerFactory.getLogger(OrderServiceImpl.class);
 
     private final OrderRepo orderRepository;
-    private final CartRepo cartRepository;
+    private final CartStore cartStore;
+    private final BookRepo bookRepository;
     private final UserRepo userRepository;
     private final OrderMapper orderMapper;
     private final EventPublisher eventPublisher;
     private final NotificationService notificationService;
     private final KafkaNotificationService kafkaNotificationService;
     private final boolean kafkaEnabled;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final ObjectMapper objectMapper;
 
     private static final List<String> VALID_ORDER_STATUS_NAMES = Arrays.stream(OrderStatus.values())
             .map(Enum::name)
             .collect(Collectors.toList());
 
-    public OrderServiceImpl(OrderRepo orderRepository, CartRepo cartRepository, UserRepo userRepository, OrderMapper orderMapper, EventPublisher eventPublisher, NotificationService notificationService, KafkaNotificationService kafkaNotificationService, @Value("${spring.kafka.enabled:true}") boolean kafkaEnabled) {
+    public OrderServiceImpl(OrderRepo orderRepository, CartStore cartStore, BookRepo bookRepository, UserRepo userRepository, OrderMapper orderMapper, EventPublisher eventPublisher, NotificationService notificationService, KafkaNotificationService kafkaNotificationService, @Value("${spring.kafka.enabled:true}") boolean kafkaEnabled, ApplicationEventPublisher applicationEventPublisher, ObjectMapper objectMapper) {
         this.orderRepository = orderRepository;
-        this.cartRepository = cartRepository;
+        this.cartStore = cartStore;
+        this.bookRepository = bookRepository;
         this.userRepository = userRepository;
         this.orderMapper = orderMapper;
         this.eventPublisher = eventPublisher;
         this.notificationService = notificationService;
         this.kafkaNotificationService = kafkaNotificationService;
         this.kafkaEnabled = kafkaEnabled;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.objectMapper = objectMapper;
     }
 
     @Override
@@ -72,10 +86,8 @@ public class OrderServiceImpl implements OrderService {
         User user = userRepository.findById(orderRequest.getUserId())
                 .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + orderRequest.getUserId()));
 
-        Cart cart = cartRepository.findByUser_UserId(orderRequest.getUserId())
-                .orElseThrow(() -> new IllegalStateException("Cart not found for user ID: " + orderRequest.getUserId()));
-
-        if (cart.getCartItems().isEmpty()) {
+        Map<Long, Integer> cartItems = cartStore.read(user.getUserId()).items();
+        if (cartItems.isEmpty()) {
             throw new IllegalStateException("Cannot place an order with an empty cart.");
         }
 
@@ -89,26 +101,40 @@ public class OrderServiceImpl implements OrderService {
                 .orderNumber("ORD-" + System.currentTimeMillis())
                 .build();
 
-        for (CartItem cartItem : cart.getCartItems()) {
+        for (Book book : bookRepository.findAllById(cartItems.keySet())) {
             OrderItem orderItem = OrderItem.builder()
                     .order(order)
-                    .book(cartItem.getBook())
-                    .quantity(cartItem.getQuantity())
-                    .priceAtPurchase(BigDecimal.valueOf(cartItem.getBook().getPrice()))
+                    .book(book)
+                    .quantity(cartItems.get(book.getId()))
+                    .priceAtPurchase(BigDecimal.valueOf(book.getPrice()))
                     .build();
             order.addOrderItem(orderItem);
         }
+        if (order.getOrderItems().isEmpty()) {
+            throw new IllegalStateException("Cannot place an order with an empty cart.");
+        }
 
         Order savedOrder = orderRepository.save(order);
-        cartRepository.delete(cart);
+        Map<Long, Integer> ordered = savedOrder.getOrderItems().stream()
+                .collect(Collectors.toMap(item -> item.getBook().getId(), OrderItem::getQuantity, Integer::sum));
+        removeFromCartAfterCommit(user.getUserId(), ordered);
         logger.info("Order placed successfully with ID: {}", savedOrder.getOrderId());
+        List<OrderPlacedEvent.Item> items = savedOrder.getOrderItems().stream()
+                .map(item -> new OrderPlacedEvent.Item(item.getBook().getId(), item.getQuantity(), item.getBook().getGenre()))
+                .collect(Collectors.toList());
+        OrderPlacedEvent placed = new OrderPlacedEvent(savedOrder.getOrderId(), items);
+        applicationEventPublisher.publishEvent(placed);
         try {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("orderNumber", savedOrder.getOrderNumber());
+            payload.put("bookIds", placed.getBookIds());
+            payload.put("items", items);
             DomainEvent ev = DomainEvent.builder()
                     .type("ORDER_CREATED")
                     .aggregateType("order")
                     .aggregateId(String.valueOf(savedOrder.getOrderId()))
                     .occurredAt(System.currentTimeMillis())
-                    .payloadJson("{\"orderNumber\":\"" + savedOrder.getOrderNumber() + "\"}")
+                    .payloadJson(objectMapper.writeValueAsString(payload))
                     .build();
             eventPublisher.publish("orders.events", ev);
         } catch (Exception ignore) {}
@@ -129,6 +155,29 @@ public class OrderServiceImpl implements OrderService {
         return orderMapper.toDto(savedOrder);
     }
 
+    /**
+     * Takes the ordered quantities out of the cart once the order is committed; a rolled back order leaves the cart
+     * as it was. Only what was ordered goes: books added to the cart while the order was being placed, or more
+     * copies of an ordered one, stay in it.
+     */
+    private void removeFromCartAfterCommit(Long userId, Map<Long, Integer> ordered) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            removeFromCart(userId, ordered);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                removeFromCart(userId, ordered);
+            }
+        });
+    }
+
+    private void removeFromCart(Long userId, Map<Long, Integer> ordered) {
+        cartStore.update(userId, items -> ordered.forEach((bookId, quantity) ->
+                items.computeIfPresent(bookId, (id, inCart) -> inCart > quantity ? inCart - quantity : null)));
+    }
+
     @Override
     public OrderDTO updateOrderStatus(Long id, String newStatus) {
         logger.info("Attempting to update order status for order ID: {} to: {}", id, newStatus);
@@ -0,0 +1,142 @@
+package com.org.bookstore_backend.cart;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static Map<Long, Integer> items(long bookId, int quantity) {
+        return Map.of(bookId, quantity);
+    }
+
+    private static Map<Long, Map<Long, Integer>> itemsOf(Map<Long, CartJournal.JournaledCart> carts) {
+        Map<Long, Map<Long, Integer>> items = new HashMap<>();
+        carts.forEach((userId, cart) -> items.put(userId, cart.items()));
+        return items;
+    }
+
+    private Map<Long, Map<Long, Integer>> replay() throws IOException {
+        try (CartJournal journal = new CartJournal(directory)) {
+            return itemsOf(journal.replay());
+        }
+    }
+
+    private Path onlyFileWithRecords() throws IOException {
+        try (var files = Files.list(directory)) {
+            List<Path> nonEmpty = files.filter(file -> file.toFile().length() > 0).toList();
+            assertThat(nonEmpty).hasSize(1);
+            return nonEmpty.get(0);
+        }
+    }
+
+    @Test
+    void replaysTheLastStateOfEachCart() throws IOException {
+        try (CartJournal journal = new CartJournal(directory)) {
+            journal.append(1, 0, items(10, 1));
+            journal.append(2, 0, items(20, 2));
+            journal.append(1, 0, items(11, 3));
+        }
+
+        Map<Long, Map<Long, Integer>> carts = replay();
+
+        assertThat(carts).isEqualTo(Map.of(1L, items(11, 3), 2L, items(20, 2)));
+    }
+
+    @Test
+    void keepsTheVersionTheLastStateWasMadeOver() throws IOException {
+        try (CartJournal journal = new CartJournal(directory)) {
+            journal.append(1, 3, items(10, 1));
+            journal.append(1, 4, items(10, 2));
+        }
+
+        try (CartJournal journal = new CartJournal(directory)) {
+            assertThat(journal.replay()).isEqualTo(Map.of(1L, new CartJournal.JournaledCart(4, items(10, 2))));
+        }
+    }
+
+    @Test
+    void ignoresATornLastRecord() throws IOException {
+        try (CartJournal journal = new CartJournal(directory)) {
+            journal.append(1, 0, items(10, 1));
+            journal.append(1, 0, items(10, 5));
+        }
+        // A crash in the middle of the second append
+        Path file = onlyFileWithRecords();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 7);
+        }
+
+        Map<Long, Map<Long, Integer>> carts = replay();
+
+        assertThat(carts).isEqualTo(Map.of(1L, items(10, 1)));
+    }
+
+    @Test
+    void ignoresACorruptLastRecord() throws IOException {
+        try (CartJournal journal = new CartJournal(directory)) {
+            journal.append(1, 0, items(10, 1));
+            journal.append(2, 0, items(20, 2));
+        }
+        // Flip a bit in the quantity of the last record, so its length still reads fine but the CRC does not match
+        Path file = onlyFileWithRecords();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(file, bytes);
+
+        Map<Long, Map<Long, Integer>> carts = replay();
+
+        assertThat(carts).isEqualTo(Map.of(1L, items(10, 1)));
+    }
+
+    @Test
+    void keepsTheRecordsWrittenAfterAReopenOnATornFile() throws IOException {
+        try (CartJournal journal = new CartJournal(directory)) {
+            journal.append(1, 0, items(10, 1));
+            journal.append(2, 0, items(20, 2));
+        }
+        Path file = onlyFileWithRecords();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        // A restarted node appends to a new file, not behind the partial record
+        try (CartJournal journal = new CartJournal(directory)) {
+            assertThat(itemsOf(journal.replay())).isEqualTo(Map.of(1L, items(10, 1)));
+            journal.append(2, 0, items(21, 4));
+        }
+
+        Map<Long, Map<Long, Integer>> carts = replay();
+
+        assertThat(carts).isEqualTo(Map.of(1L, items(10, 1), 2L, items(21, 4)));
+    }
+
+    @Test
+    void forgetsRotatedFilesOnceDeleted() throws IOException {
+        try (CartJournal journal = new CartJournal(directory)) {
+            journal.append(1, 0, items(10, 1));
+            List<Path> sealed = journal.rotate();
+            journal.append(2, 0, items(20, 2));
+            journal.delete(sealed);
+
+            assertThat(sealed).hasSize(1);
+        }
+
+        Map<Long, Map<Long, Integer>> carts = replay();
+
+        assertThat(carts).isEqualTo(Map.of(2L, items(20, 2)));
+    }
+}
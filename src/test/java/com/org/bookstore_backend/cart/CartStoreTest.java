@@ -0,0 +1,349 @@
+package com.org.bookstore_backend.cart;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CartStoreTest {
+
+    @TempDir
+    Path journalDirectory;
+
+    private EmbeddedDatabase database;
+    private HookedJdbcTemplate jdbcTemplate;
+    private CartStore store;
+    private final ExecutorService otherThread = Executors.newSingleThreadExecutor();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new HookedJdbcTemplate(database);
+        jdbcTemplate.execute("create table users (user_id bigint primary key)");
+        jdbcTemplate.execute("create table books (id bigint primary key, price double precision not null)");
+        jdbcTemplate.execute("create table carts (id bigint generated by default as identity primary key, "
+                + "user_id bigint not null unique references users (user_id), version bigint default 0 not null)");
+        jdbcTemplate.execute("create table cart_items (cart_id bigint not null references carts (id), "
+                + "book_id bigint not null references books (id), quantity int not null, primary key (cart_id, book_id))");
+        jdbcTemplate.update("insert into users (user_id) values (1), (2)");
+        jdbcTemplate.update("insert into books (id, price) values (1, 10.0), (2, 2.5), (3, 7.0)");
+        store = newStore();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        otherThread.shutdownNow();
+        store.stop();
+        database.shutdown();
+    }
+
+    // Flushes and evicts only when a test says so (or stops the store); any clean cart is idle enough to be evicted
+    private CartStore newStore() throws IOException {
+        CartStore cartStore = new CartStore(jdbcTemplate, new DataSourceTransactionManager(database),
+                new SimpleMeterRegistry(), 4, journalDirectory.toString(), Duration.ofHours(1), Duration.ZERO, Duration.ZERO);
+        cartStore.start();
+        return cartStore;
+    }
+
+    private static BigDecimal price(double price) {
+        return BigDecimal.valueOf(price);
+    }
+
+    // The total as it would be computed from scratch, from the prices in the database
+    private BigDecimal sumOfItems(CartStore.CartView cart) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> item : cart.items().entrySet()) {
+            Double unit = jdbcTemplate.queryForObject("select price from books where id = ?", Double.class, item.getKey());
+            sum = sum.add(BigDecimal.valueOf(unit).multiply(BigDecimal.valueOf(item.getValue())));
+        }
+        return sum;
+    }
+
+    private List<Integer> storedQuantity(long userId, long bookId) {
+        return jdbcTemplate.queryForList("select ci.quantity from cart_items ci join carts c on c.id = ci.cart_id "
+                + "where c.user_id = ? and ci.book_id = ?", Integer.class, userId, bookId);
+    }
+
+    private long storedVersion(long userId) {
+        return jdbcTemplate.queryForObject("select version from carts where user_id = ?", Long.class, userId);
+    }
+
+    // What another node's flush does: change the stored items and raise the version
+    private void writeOnAnotherNode(long userId, long bookId, int quantity) {
+        List<Long> cartIds = jdbcTemplate.queryForList("select id from carts where user_id = ?", Long.class, userId);
+        if (cartIds.isEmpty()) {
+            jdbcTemplate.update("insert into carts (user_id, version) values (?, 0)", userId);
+            cartIds = jdbcTemplate.queryForList("select id from carts where user_id = ?", Long.class, userId);
+        }
+        long cartId = cartIds.get(0);
+        jdbcTemplate.update("merge into cart_items (cart_id, book_id, quantity) key (cart_id, book_id) values (?, ?, ?)",
+                cartId, bookId, quantity);
+        jdbcTemplate.update("update carts set version = version + 1 where id = ?", cartId);
+    }
+
+    // Runs the task on another thread and waits for it, as a concurrent request would
+    private <T> T inAnotherThread(Callable<T> task) {
+        try {
+            return otherThread.submit(task).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Lets a test step in while the store is in the middle of a database call
+    private static final class HookedJdbcTemplate extends JdbcTemplate {
+
+        volatile Runnable beforeBatch;
+        volatile Runnable afterQuery;
+
+        HookedJdbcTemplate(EmbeddedDatabase database) {
+            super(database);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            Runnable hook = beforeBatch;
+            beforeBatch = null;
+            if (hook != null) {
+                hook.run();
+            }
+            return super.batchUpdate(sql, batchArgs);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            super.query(sql, rch, args);
+            Runnable hook = afterQuery;
+            afterQuery = null;
+            if (hook != null) {
+                hook.run();
+            }
+        }
+    }
+
+    @Test
+    void keepsARunningTotal() {
+        store.update(1, Map.of(1L, price(10.0), 2L, price(2.5)), items -> {
+            items.put(1L, 2);
+            items.put(2L, 4);
+        });
+        CartStore.CartView cart = store.update(1, items -> items.put(1L, 1));
+
+        assertThat(cart.total()).isEqualByComparingTo("20.0");
+        assertThat(cart.total()).isEqualByComparingTo(sumOfItems(cart));
+    }
+
+    @Test
+    void repricesCartsOnACommittedPriceChange() {
+        store.update(1, Map.of(1L, price(10.0), 2L, price(2.5)), items -> {
+            items.put(1L, 2);
+            items.put(2L, 4);
+        });
+
+        jdbcTemplate.update("update books set price = ? where id = ?", 3.0, 2L);
+        store.onCatalogEvent(BookCatalogEvent.updated(BookDTO.builder().id(2L).price(3.0).build()));
+
+        CartStore.CartView cart = store.read(1);
+        assertThat(cart.total()).isEqualByComparingTo("32.0");
+        assertThat(cart.total()).isEqualByComparingTo(sumOfItems(cart));
+    }
+
+    @Test
+    void repricesCartsOnAPriceChangeFromAnotherNode() {
+        store.update(1, Map.of(1L, price(10.0), 2L, price(2.5)), items -> {
+            items.put(1L, 2);
+            items.put(2L, 4);
+        });
+        store.update(2, Map.of(1L, price(10.0)), items -> items.put(1L, 1));
+
+        jdbcTemplate.update("update books set price = ? where id = ?", 12.0, 1L);
+        store.onInvalidation(new BookCacheInvalidationEvent(1L, "other-node"));
+
+        CartStore.CartView first = store.read(1);
+        CartStore.CartView second = store.read(2);
+        assertThat(first.total()).isEqualByComparingTo("34.0");
+        assertThat(first.total()).isEqualByComparingTo(sumOfItems(first));
+        assertThat(second.total()).isEqualByComparingTo("12.0");
+        assertThat(second.total()).isEqualByComparingTo(sumOfItems(second));
+    }
+
+    @Test
+    void aStalePriceFromTheCallerDoesNotRepriceTheOtherCarts() {
+        store.update(1, Map.of(1L, price(10.0)), items -> items.put(1L, 3));
+        jdbcTemplate.update("update books set price = ? where id = ?", 11.0, 1L);
+        store.onInvalidation(new BookCacheInvalidationEvent(1L, "other-node"));
+
+        // The caller's near cache still has the price from before the change
+        CartStore.CartView second = store.update(2, Map.of(1L, price(10.0)), items -> items.put(1L, 1));
+
+        CartStore.CartView first = store.read(1);
+        assertThat(second.total()).isEqualByComparingTo("11.0");
+        assertThat(first.total()).isEqualByComparingTo("33.0");
+        assertThat(first.total()).isEqualByComparingTo(sumOfItems(first));
+    }
+
+    @Test
+    void dropsABookDeletedOnAnotherNode() {
+        store.update(1, Map.of(1L, price(10.0), 3L, price(7.0)), items -> {
+            items.put(1L, 1);
+            items.put(3L, 2);
+        });
+
+        jdbcTemplate.update("delete from books where id = ?", 3L);
+        store.onInvalidation(new BookCacheInvalidationEvent(3L, "other-node"));
+
+        CartStore.CartView cart = store.read(1);
+        assertThat(cart.items()).containsOnlyKeys(1L);
+        assertThat(cart.total()).isEqualByComparingTo("10.0");
+    }
+
+    @Test
+    void rejectsABookWithoutAPrice() {
+        store.update(1, Map.of(1L, price(10.0)), items -> items.put(1L, 1));
+
+        assertThatThrownBy(() -> store.update(1, items -> items.put(2L, 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        CartStore.CartView cart = store.read(1);
+        assertThat(cart.items()).containsOnlyKeys(1L);
+        assertThat(cart.total()).isEqualByComparingTo("10.0");
+    }
+
+    @Test
+    void writesAChangeMadeWhileAFlushIsRunning() throws Exception {
+        store.update(1, Map.of(1L, price(10.0)), items -> items.put(1L, 2));
+        jdbcTemplate.beforeBatch = () -> inAnotherThread(() -> store.update(1, items -> items.put(1L, 7)));
+
+        store.flush();
+
+        // The flush wrote what it had read; the later change must stay dirty and resident
+        assertThat(storedQuantity(1, 1)).containsExactly(2);
+        Thread.sleep(5);
+        store.evictIdle();
+        assertThat(store.read(1).items()).isEqualTo(Map.of(1L, 7));
+
+        store.flush();
+
+        assertThat(storedQuantity(1, 1)).containsExactly(7);
+    }
+
+    @Test
+    void doesNotInstallACartLoadedBeforeItWasWrittenAndEvicted() throws Exception {
+        store.update(1, Map.of(1L, price(10.0)), items -> items.put(1L, 1));
+        store.flush();
+        Thread.sleep(5);
+        store.evictIdle();
+
+        // While this read loads the stored cart, another request loads it too, changes it, and the change is
+        // written and evicted: what this read loaded is stale by the time it gets the lock
+        jdbcTemplate.afterQuery = () -> inAnotherThread(() -> {
+            store.update(1, items -> items.put(1L, 5));
+            store.flush();
+            Thread.sleep(5);
+            store.evictIdle();
+            return null;
+        });
+        CartStore.CartView cart = store.read(1);
+
+        assertThat(cart.items()).isEqualTo(Map.of(1L, 5));
+        assertThat(cart.total()).isEqualByComparingTo("50.0");
+    }
+
+    @Test
+    void mergesACartAnotherNodeWroteMeanwhile() throws IOException {
+        store.update(1, Map.of(1L, price(10.0)), items -> items.put(1L, 1));
+        store.flush();
+        store.update(1, items -> items.put(1L, 3));
+
+        writeOnAnotherNode(1, 2, 4);
+        store.flush();
+
+        // Neither write is lost: this node's quantity of book 1, the other node's book 2
+        assertThat(storedQuantity(1, 1)).containsExactly(3);
+        assertThat(storedQuantity(1, 2)).containsExactly(4);
+        assertThat(storedVersion(1)).isEqualTo(3);
+        CartStore.CartView cart = store.read(1);
+        assertThat(cart.items()).isEqualTo(Map.of(1L, 3, 2L, 4));
+        assertThat(cart.total()).isEqualByComparingTo("40.0");
+        assertThat(cart.total()).isEqualByComparingTo(sumOfItems(cart));
+    }
+
+    @Test
+    void readsACartAgainAfterAnotherNodeWroteIt() throws IOException {
+        store.update(1, Map.of(1L, price(10.0)), items -> items.put(1L, 1));
+        store.flush();
+
+        writeOnAnotherNode(1, 1, 5);
+
+        CartStore.CartView cart = store.read(1);
+        assertThat(cart.items()).isEqualTo(Map.of(1L, 5));
+        assertThat(cart.total()).isEqualByComparingTo("50.0");
+    }
+
+    @Test
+    void replaysAJournaledChangeThatWasNeverWritten() throws IOException {
+        store.update(1, Map.of(1L, price(10.0)), items -> items.put(1L, 2));
+
+        // A crash before the flush: a new store starts over the same journal
+        CartStore restarted = newStore();
+        try {
+            assertThat(restarted.read(1).items()).isEqualTo(Map.of(1L, 2));
+            restarted.flush();
+            assertThat(storedQuantity(1, 1)).containsExactly(2);
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    void dropsAJournaledChangeOlderThanTheStoredCart() throws IOException {
+        store.update(1, Map.of(1L, price(10.0)), items -> items.put(1L, 2));
+        writeOnAnotherNode(1, 3, 1);
+
+        CartStore restarted = newStore();
+        try {
+            assertThat(restarted.read(1).items()).isEqualTo(Map.of(3L, 1));
+            restarted.flush();
+            assertThat(storedQuantity(1, 1)).isEmpty();
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    void refusesToStartWithoutAWritableJournalDirectory() throws IOException {
+        Path file = Files.createFile(journalDirectory.resolve("not-a-directory"));
+        CartStore cartStore = new CartStore(jdbcTemplate, new DataSourceTransactionManager(database),
+                new SimpleMeterRegistry(), 4, file.toString(), Duration.ofHours(1), Duration.ZERO, Duration.ZERO);
+
+        assertThatThrownBy(cartStore::start).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,99 @@
+package com.org.bookstore_backend.ranking;
+
+import com.org.bookstore_backend.events.OrderPlacedEvent;
+import com.org.bookstore_backend.events.OrderStreamEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BestsellerRankingsTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @TempDir
+    Path directory;
+
+    private BestsellerRankings newRankings() {
+        return new BestsellerRankings(4096, 100, directory.resolve("rankings.bin").toString(), Duration.ofMinutes(5), 20);
+    }
+
+    private static void sell(BestsellerRankings rankings, long bookId, int quantity, String genre, long time) {
+        OrderPlacedEvent order = new OrderPlacedEvent(1L, List.of(new OrderPlacedEvent.Item(bookId, quantity, genre)));
+        rankings.onOrder(new OrderStreamEvent(order, time));
+    }
+
+    @Test
+    void ranksOverallAndPerGenre() {
+        BestsellerRankings rankings = newRankings();
+        long now = System.currentTimeMillis();
+        sell(rankings, 1, 5, "Fantasy", now);
+        sell(rankings, 2, 3, "Crime", now);
+        sell(rankings, 3, 4, " fantasy ", now);
+
+        assertThat(rankings.top(RankingWindow.WEEK, null, 10)).containsExactly(
+                new BestsellerRankings.Ranking(1, 5), new BestsellerRankings.Ranking(3, 4),
+                new BestsellerRankings.Ranking(2, 3));
+        assertThat(rankings.top(RankingWindow.WEEK, "FANTASY", 10)).containsExactly(
+                new BestsellerRankings.Ranking(1, 5), new BestsellerRankings.Ranking(3, 4));
+    }
+
+    @Test
+    void trendingFavoursBooksThatSellFasterThanOverTheWeek() {
+        BestsellerRankings rankings = newRankings();
+        long now = System.currentTimeMillis();
+        // Book 1 sells 10 a day all week; book 2 sold its 10 only today
+        for (int day = 0; day < 7; day++) {
+            sell(rankings, 1, 10, "Fantasy", now - day * 24 * HOUR - HOUR);
+        }
+        sell(rankings, 2, 10, "Fantasy", now - HOUR);
+
+        assertThat(rankings.top(RankingWindow.WEEK, null, 1)).containsExactly(new BestsellerRankings.Ranking(1, 70));
+
+        List<BestsellerRankings.Trend> trending = rankings.trending(RankingWindow.DAY, null, 10);
+        assertThat(trending).hasSize(2);
+        assertThat(trending.get(0).bookId()).isEqualTo(2L);
+        assertThat(trending.get(1).bookId()).isEqualTo(1L);
+        // 10 a day projected to a week over (70 + prior) vs. (10 + prior)
+        assertThat(Math.round(trending.get(1).score() * 100)).isEqualTo(Math.round(70.0 / 90 * 100));
+        assertThat(Math.round(trending.get(0).score() * 100)).isEqualTo(Math.round(70.0 / 30 * 100));
+    }
+
+    @Test
+    void trendingNeedsAWindowShorterThanTheBaseline() {
+        BestsellerRankings rankings = newRankings();
+        assertThatThrownBy(() -> rankings.trending(RankingWindow.WEEK, null, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void ordersFromTheFutureCountAsNow() {
+        BestsellerRankings rankings = newRankings();
+        sell(rankings, 1, 2, null, System.currentTimeMillis() + 48 * HOUR);
+        assertThat(rankings.top(RankingWindow.HOUR, null, 10)).containsExactly(new BestsellerRankings.Ranking(1, 2));
+    }
+
+    @Test
+    void restoresTheLastSnapshotOnStart() {
+        BestsellerRankings rankings = newRankings();
+        long now = System.currentTimeMillis();
+        sell(rankings, 1, 5, "Fantasy", now);
+        sell(rankings, 2, 3, "Crime", now - 30 * HOUR);
+        rankings.snapshot();
+
+        BestsellerRankings restored = newRankings();
+        restored.start();
+        try {
+            assertThat(restored.top(RankingWindow.WEEK, null, 10)).containsExactly(
+                    new BestsellerRankings.Ranking(1, 5), new BestsellerRankings.Ranking(2, 3));
+            assertThat(restored.top(RankingWindow.DAY, "crime", 10)).isEmpty();
+        } finally {
+            restored.stop();
+        }
+    }
+}
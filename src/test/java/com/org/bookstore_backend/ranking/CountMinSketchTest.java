@@ -0,0 +1,87 @@
+package com.org.bookstore_backend.ranking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimatesAreNeverBelowTheTrueCount() {
+        // Far more keys than counters per row, so collisions are certain
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        Map<Long, Integer> truth = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            long key = random.nextInt(1000);
+            int count = 1 + random.nextInt(3);
+            sketch.add(key, count);
+            truth.merge(key, count, Integer::sum);
+        }
+        for (Map.Entry<Long, Integer> entry : truth.entrySet()) {
+            assertThat(sketch.estimate(entry.getKey())).isGreaterThanOrEqualTo(entry.getValue());
+        }
+    }
+
+    @Test
+    void estimatesAreExactWithoutCollisions() {
+        CountMinSketch sketch = new CountMinSketch(4, 4096);
+        sketch.add(7, 3);
+        sketch.add(7, 2);
+        sketch.add(8, 1);
+        assertThat(sketch.estimate(7)).isEqualTo(5);
+        assertThat(sketch.estimate(8)).isEqualTo(1);
+        assertThat(sketch.estimate(9)).isEqualTo(0);
+
+        sketch.clear();
+        assertThat(sketch.estimate(7)).isEqualTo(0);
+    }
+
+    @Test
+    void roundTripsThroughItsSerializedForm() throws IOException {
+        CountMinSketch sketch = new CountMinSketch(4, 256);
+        for (long key = 0; key < 100; key++) {
+            sketch.add(key, (int) key + 1);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+
+        CountMinSketch restored = new CountMinSketch(4, 256);
+        assertThat(restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))).isTrue();
+        for (long key = 0; key < 100; key++) {
+            assertThat(restored.estimate(key)).isEqualTo(sketch.estimate(key));
+        }
+    }
+
+    @Test
+    void skipsASketchOfOtherDimensions() throws IOException {
+        CountMinSketch sketch = new CountMinSketch(4, 256);
+        sketch.add(1, 5);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        sketch.writeTo(out);
+        out.writeInt(12345);
+
+        CountMinSketch other = new CountMinSketch(4, 512);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(other.readFrom(in)).isFalse();
+        assertThat(other.estimate(1)).isEqualTo(0);
+        // Positioned right after the skipped sketch
+        assertThat(in.readInt()).isEqualTo(12345);
+    }
+
+    @Test
+    void rejectsAWidthThatIsNotAPowerOfTwo() {
+        assertThatThrownBy(() -> new CountMinSketch(4, 100)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
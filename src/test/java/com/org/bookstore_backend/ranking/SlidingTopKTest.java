@@ -0,0 +1,102 @@
+package com.org.bookstore_backend.ranking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingTopKTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final String ALL = "";
+    // An arbitrary time on a bucket boundary of every window
+    private static final long NOW = 1_000L * 6 * HOUR;
+
+    private static SlidingTopK newDay() {
+        return new SlidingTopK(RankingWindow.DAY, 4, 4096, 10);
+    }
+
+    @Test
+    void ranksBooksByUnitsAcrossBuckets() {
+        SlidingTopK ranking = newDay();
+        ranking.add(1, 2, NOW - 5 * HOUR, ALL);
+        ranking.add(2, 3, NOW - 2 * HOUR, ALL);
+        ranking.add(1, 2, NOW, ALL);
+        ranking.add(3, 1, NOW, ALL);
+
+        assertThat(ranking.top(ALL, 10, NOW)).containsExactly(
+                new SlidingTopK.Ranked(1, 4), new SlidingTopK.Ranked(2, 3), new SlidingTopK.Ranked(3, 1));
+        assertThat(ranking.top(ALL, 1, NOW)).containsExactly(new SlidingTopK.Ranked(1, 4));
+        assertThat(ranking.units(1, NOW)).isEqualTo(4L);
+    }
+
+    @Test
+    void tiesAreBrokenByTheLowerBookId() {
+        SlidingTopK ranking = newDay();
+        ranking.add(9, 2, NOW, ALL);
+        ranking.add(4, 2, NOW, ALL);
+        assertThat(ranking.top(ALL, 10, NOW)).containsExactly(
+                new SlidingTopK.Ranked(4, 2), new SlidingTopK.Ranked(9, 2));
+    }
+
+    @Test
+    void salesLeaveTheWindowBucketByBucket() {
+        SlidingTopK ranking = newDay();
+        ranking.add(1, 5, NOW, ALL);
+        ranking.add(2, 1, NOW + 3 * HOUR, ALL);
+
+        assertThat(ranking.top(ALL, 10, NOW + 23 * HOUR)).hasSize(2);
+        List<SlidingTopK.Ranked> later = ranking.top(ALL, 10, NOW + 24 * HOUR);
+        assertThat(later).containsExactly(new SlidingTopK.Ranked(2, 1));
+        assertThat(ranking.units(1, NOW + 24 * HOUR)).isEqualTo(0L);
+    }
+
+    @Test
+    void ignoresSalesOlderThanTheBucketInTheirSlot() {
+        SlidingTopK ranking = newDay();
+        ranking.add(1, 1, NOW, ALL);
+        // Same slot, one full window earlier
+        ranking.add(2, 1, NOW - 24 * HOUR, ALL);
+        assertThat(ranking.top(ALL, 10, NOW)).containsExactly(new SlidingTopK.Ranked(1, 1));
+    }
+
+    @Test
+    void scopesAreRankedSeparately() {
+        SlidingTopK ranking = newDay();
+        ranking.add(1, 5, NOW, ALL, "fantasy");
+        ranking.add(2, 3, NOW, ALL, "crime");
+        assertThat(ranking.top("crime", 10, NOW)).containsExactly(new SlidingTopK.Ranked(2, 3));
+        assertThat(ranking.top("poetry", 10, NOW)).isEmpty();
+        assertThat(ranking.top(ALL, 10, NOW)).hasSize(2);
+    }
+
+    @Test
+    void keepsOnlyTheStrongestCandidatesPerBucket() {
+        SlidingTopK ranking = new SlidingTopK(RankingWindow.DAY, 4, 4096, 2);
+        ranking.add(1, 1, NOW, ALL);
+        ranking.add(2, 5, NOW, ALL);
+        ranking.add(3, 3, NOW, ALL);
+        assertThat(ranking.top(ALL, 10, NOW)).containsExactly(
+                new SlidingTopK.Ranked(2, 5), new SlidingTopK.Ranked(3, 3));
+    }
+
+    @Test
+    void restoresOnlyBucketsStillInTheWindow() throws IOException {
+        SlidingTopK ranking = newDay();
+        ranking.add(1, 4, NOW - 20 * HOUR, ALL);
+        ranking.add(2, 2, NOW, ALL);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ranking.writeTo(new DataOutputStream(bytes), NOW);
+
+        SlidingTopK restored = newDay();
+        long later = NOW + 5 * HOUR;
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), later);
+        assertThat(restored.top(ALL, 10, later)).containsExactly(new SlidingTopK.Ranked(2, 2));
+    }
+}
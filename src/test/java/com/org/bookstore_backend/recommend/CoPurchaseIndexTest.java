@@ -0,0 +1,109 @@
+package com.org.bookstore_backend.recommend;
+
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoPurchaseIndexTest {
+
+    @Test
+    void relatedBooksAreOrderedByCoPurchaseCount() {
+        CoPurchaseIndex index = new CoPurchaseIndex(5, 50);
+        index.recordOrder(1, new long[]{1, 2});
+        index.recordOrder(2, new long[]{1, 2, 3});
+        index.recordOrder(3, new long[]{1, 3, 3});
+        index.recordOrder(4, new long[]{1, 2});
+
+        assertThat(index.related(1, 10)).containsExactly(2, 3);
+        assertThat(index.related(1, 1)).containsExactly(2);
+        assertThat(index.related(2, 10)).containsExactly(1, 3);
+        assertThat(index.related(99, 10)).isEmpty();
+    }
+
+    @Test
+    void fullNeighbourListReplacesItsWeakestEntryAndInheritsItsCount() {
+        CoPurchaseIndex index = new CoPurchaseIndex(2, 50);
+        for (int i = 0; i < 3; i++) {
+            index.recordOrder(i, new long[]{1, 2});
+        }
+        index.recordOrder(10, new long[]{1, 3});
+        // 3 holds the last slot with count 1; 4 takes it over with count 2
+        index.recordOrder(11, new long[]{1, 4});
+        assertThat(index.related(1, 10)).containsExactly(2, 4);
+
+        // A tie keeps the order; 4 moves up only once its count is strictly higher
+        index.recordOrder(12, new long[]{1, 4});
+        assertThat(index.related(1, 10)).containsExactly(2, 4);
+        index.recordOrder(13, new long[]{1, 4});
+        assertThat(index.related(1, 10)).containsExactly(4, 2);
+    }
+
+    @Test
+    void ordersOutsideTheSizeLimitsAreIgnored() {
+        CoPurchaseIndex index = new CoPurchaseIndex(5, 3);
+        index.recordOrder(1, new long[]{1});
+        index.recordOrder(2, new long[]{1, 2, 3, 4});
+        assertThat(index.related(1, 10)).isEmpty();
+    }
+
+    @Test
+    void deletedBookIsDroppedFromEveryNeighbourList() {
+        CoPurchaseIndex index = new CoPurchaseIndex(5, 50);
+        index.recordOrder(1, new long[]{1, 2, 3});
+
+        index.onCatalogEvent(BookCatalogEvent.deleted(2L));
+
+        assertThat(index.related(1, 10)).containsExactly(3);
+        assertThat(index.related(3, 10)).containsExactly(1);
+        assertThat(index.related(2, 10)).isEmpty();
+    }
+
+    @Test
+    void ordersPlacedDuringARebuildAreReplayedUnlessTheRebuildReadThem() {
+        CoPurchaseIndex index = new CoPurchaseIndex(5, 50);
+        index.beginRebuild();
+        index.recordOrder(5, new long[]{1, 3});
+        index.recordOrder(11, new long[]{1, 4});
+
+        // The rebuild read orders up to 10, including order 5
+        CoPurchaseIndex.Table fresh = new CoPurchaseIndex.Table(5);
+        fresh.record(new long[]{1, 2});
+        fresh.record(new long[]{1, 2});
+        fresh.record(new long[]{1, 3});
+        index.completeRebuild(fresh, 10);
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.related(1, 10)).containsExactly(2, 3, 4);
+    }
+
+    @Test
+    void bookDeletedDuringARebuildStaysOutOfTheRebuiltTable() {
+        CoPurchaseIndex index = new CoPurchaseIndex(5, 50);
+        index.beginRebuild();
+
+        // Read from the history before the book was deleted
+        CoPurchaseIndex.Table fresh = new CoPurchaseIndex.Table(5);
+        fresh.record(new long[]{1, 2, 3});
+        index.onCatalogEvent(BookCatalogEvent.deleted(2L));
+        index.completeRebuild(fresh, 10);
+
+        assertThat(index.related(1, 10)).containsExactly(3);
+        assertThat(index.related(2, 10)).isEmpty();
+    }
+
+    @Test
+    void abortedRebuildForgetsPendingDeletes() {
+        CoPurchaseIndex index = new CoPurchaseIndex(5, 50);
+        index.beginRebuild();
+        index.onCatalogEvent(BookCatalogEvent.deleted(2L));
+        index.abortRebuild();
+
+        index.beginRebuild();
+        CoPurchaseIndex.Table fresh = new CoPurchaseIndex.Table(5);
+        fresh.record(new long[]{1, 2});
+        index.completeRebuild(fresh, 10);
+
+        assertThat(index.related(1, 10)).containsExactly(2);
+    }
+}
@@ -0,0 +1,144 @@
+package com.org.bookstore_backend.repo;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.dto.BookFilterDTO;
+import com.org.bookstore_backend.dto.BookSortField;
+import com.org.bookstore_backend.model.Author;
+import com.org.bookstore_backend.model.Book;
+import com.org.bookstore_backend.model.Publisher;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that each list read of books is one SQL statement, however many books, publishers and authors it covers.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("simple")
+class BookRepoStatementCountTest {
+
+    private static final int BOOKS = 12;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private BookRepo bookRepository;
+
+    private Statistics statistics;
+    private final List<Long> bookIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Publisher ace = entityManager.persist(Publisher.builder().name("Ace").build());
+        Publisher tor = entityManager.persist(Publisher.builder().name("Tor").build());
+        Author herbert = entityManager.persist(Author.builder().name("Frank Herbert").build());
+        Author anderson = entityManager.persist(Author.builder().name("Kevin J. Anderson").build());
+        for (int i = 0; i < BOOKS; i++) {
+            Set<Author> authors = new HashSet<>(i % 3 == 0 ? Set.of(herbert, anderson) : Set.of(herbert));
+            Book book = entityManager.persist(Book.builder()
+                    .title("Dune " + i)
+                    .description("Volume " + i)
+                    .isbn("978-0-00-00000" + String.format("%02d", i))
+                    .publicationYear(1965 + i)
+                    .imageUrl("https://images.example.com/dune-" + i + ".jpg")
+                    .genre(i % 2 == 0 ? "Science Fiction" : "Fantasy")
+                    .price(10.0 + i)
+                    .quantity(i)
+                    .isAvailable(i % 4 != 0)
+                    .publisher(i % 2 == 0 ? ace : tor)
+                    .authors(authors)
+                    .build());
+            bookIds.add(book.getId());
+        }
+        entityManager.flush();
+        // Nothing cached in the persistence context, so every read below has to go to the database
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+    }
+
+    private <T> T inOneStatement(Supplier<T> read) {
+        statistics.clear();
+        T result = read.get();
+        assertThat(statistics.getPrepareStatementCount()).as("prepared statements").isEqualTo(1);
+        return result;
+    }
+
+    @Test
+    void pagesThroughTheListingWithOneStatementPerPage() {
+        BookFilterDTO filter = BookFilterDTO.builder().build();
+        List<BookRepoCustom.BookKey> first = inOneStatement(() ->
+                bookRepository.findFilteredKeys(filter, BookSortField.TITLE, false, null, null, 5));
+        BookRepoCustom.BookKey last = first.get(first.size() - 1);
+
+        List<BookRepoCustom.BookKey> second = inOneStatement(() ->
+                bookRepository.findFilteredKeys(filter, BookSortField.TITLE, false, last.sortValue(), last.id(), 5));
+
+        assertThat(first).hasSize(5);
+        assertThat(second).hasSize(5);
+        assertThat(second).doesNotContainAnyElementsOf(first);
+    }
+
+    @Test
+    void hydratesAPageWithOneStatement() {
+        // Mapped inside the count: nothing is read lazily, the publisher and every co-author came with the row
+        List<BookDTO> books = inOneStatement(() -> bookRepository.findViewsByIdIn(bookIds).stream()
+                .map(BookView::toDTO)
+                .collect(Collectors.toList()));
+
+        assertThat(books).hasSize(BOOKS);
+        BookDTO first = books.stream().filter(book -> book.getId().equals(bookIds.get(0))).findFirst().orElseThrow();
+        assertThat(first.getPublisherName()).isEqualTo("Ace");
+        assertThat(first.getAuthorNames()).containsExactlyInAnyOrder("Frank Herbert", "Kevin J. Anderson");
+    }
+
+    @Test
+    void runsEveryFinderAsOneStatement() {
+        Map<String, Supplier<List<BookView>>> finders = new LinkedHashMap<>();
+        finders.put("findAllViews", () -> bookRepository.findAllViews());
+        finders.put("findViewsByPublisherName", () -> bookRepository.findViewsByPublisherName("Tor"));
+        finders.put("findViewsByAuthorName", () -> bookRepository.findViewsByAuthorName("Kevin J. Anderson"));
+        finders.put("findViewsByTitleContaining", () -> bookRepository.findViewsByTitleContaining("dune 1"));
+        finders.put("findViewsByGenre", () -> bookRepository.findViewsByGenre("fantasy"));
+        finders.put("findViewsByAvailability", () -> bookRepository.findViewsByAvailability(true));
+        finders.put("findViewsByPublicationYear", () -> bookRepository.findViewsByPublicationYear(1970));
+        finders.put("findViewsByPriceBetween", () -> bookRepository.findViewsByPriceBetween(12.0, 16.0));
+        finders.put("findViewsByQuantityGreaterThan", () -> bookRepository.findViewsByQuantityGreaterThan(6));
+        finders.put("findViewsByIsbn", () -> bookRepository.findViewsByIsbn("978-0-00-0000003"));
+        finders.put("findViewsByImageUrl", () -> bookRepository.findViewsByImageUrl("https://images.example.com/dune-3.jpg"));
+
+        finders.forEach((name, finder) -> {
+            statistics.clear();
+            List<BookView> views = finder.get();
+            assertThat(statistics.getPrepareStatementCount()).as(name).isEqualTo(1);
+            assertThat(views).as(name).isNotEmpty();
+        });
+    }
+
+    @Test
+    void keepsCoAuthorsWhenFilteringByOneAuthor() {
+        List<BookView> views = inOneStatement(() -> bookRepository.findViewsByAuthorName("Kevin J. Anderson"));
+
+        assertThat(views).hasSize(4);
+        assertThat(views).allSatisfy(view -> assertThat(view.toDTO().getAuthorNames())
+                .containsExactlyInAnyOrder("Frank Herbert", "Kevin J. Anderson"));
+    }
+}
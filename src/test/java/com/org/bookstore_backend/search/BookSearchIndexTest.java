@@ -0,0 +1,139 @@
+package com.org.bookstore_backend.search;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookSearchIndexTest {
+
+    private static BookDTO book(long id, String title, String author, String publisher, String genre, String isbn) {
+        return BookDTO.builder()
+                .id(id)
+                .title(title)
+                .authorNames(author == null ? Set.of() : Set.of(author))
+                .publisherName(publisher)
+                .genre(genre)
+                .isbn(isbn)
+                .build();
+    }
+
+    private static BookSearchIndex indexOf(BookDTO... books) {
+        BookSearchIndex index = new BookSearchIndex();
+        index.beginRebuild();
+        index.completeRebuild(List.of(books));
+        return index;
+    }
+
+    @Test
+    void isNotReadyUntilBuilt() {
+        BookSearchIndex index = new BookSearchIndex();
+        assertThat(index.isReady()).isFalse();
+
+        index.beginRebuild();
+        index.completeRebuild(List.of());
+
+        assertThat(index.isReady()).isTrue();
+    }
+
+    @Test
+    void aTitleHitOutranksAPublisherHit() {
+        BookSearchIndex index = indexOf(
+                book(1, "Moby Dick", "Herman Melville", "Penguin", null, null),
+                book(2, "Penguin Island", "Anatole France", "Gallimard", null, null));
+
+        assertThat(index.search("penguin", null)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void everyTokenMustMatch() {
+        BookSearchIndex index = indexOf(
+                book(1, "The Hobbit", "J.R.R. Tolkien", "Allen & Unwin", "Fantasy", null),
+                book(2, "The Silmarillion", "J.R.R. Tolkien", "Allen & Unwin", "Fantasy", null),
+                book(3, "The Hobbit Companion", "David Day", "Pavilion", "Reference", null));
+
+        assertThat(index.search("tolkien hobbit", null)).containsExactly(1L);
+        assertThat(index.search("tolkien dragons", null)).isEmpty();
+    }
+
+    @Test
+    void matchesPrefixesBelowExactTerms() {
+        BookSearchIndex index = indexOf(
+                book(1, "Dunes of Mars", "Ann Author", null, null, null),
+                book(2, "Dune", "Frank Herbert", null, null, null));
+
+        assertThat(index.search("dune", null)).containsExactly(2L, 1L);
+        assertThat(index.search("herb", null)).containsExactly(2L);
+    }
+
+    @Test
+    void ignoresCaseAndDiacritics() {
+        BookSearchIndex index = indexOf(book(1, "Jane Eyre", "Charlotte Brontë", null, null, null));
+
+        assertThat(index.search("BRONTE", null)).containsExactly(1L);
+        assertThat(index.search("Brontë eyre", null)).containsExactly(1L);
+    }
+
+    @Test
+    void findsIsbnsWholeOrByGroup() {
+        BookSearchIndex index = indexOf(
+                book(1, "The Hobbit", "J.R.R. Tolkien", null, null, "978-0-261-10334-4"),
+                book(2, "Dune", "Frank Herbert", null, null, "978-0-441-17271-9"));
+
+        assertThat(index.search("9780261103344", null)).containsExactly(1L);
+        assertThat(index.search("978-0-441", null)).containsExactly(2L);
+    }
+
+    @Test
+    void filtersByGenreIgnoringCase() {
+        BookSearchIndex index = indexOf(
+                book(1, "The Hobbit", "J.R.R. Tolkien", null, "Fantasy", null),
+                book(2, "Tolkien: A Biography", "Humphrey Carpenter", null, "Biography", null));
+
+        assertThat(index.search("tolkien", " fantasy ")).containsExactly(1L);
+        assertThat(index.search("tolkien", null)).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void returnsNothingForAnEmptyQuery() {
+        BookSearchIndex index = indexOf(book(1, "Dune", "Frank Herbert", null, null, null));
+
+        assertThat(index.search("  ", null)).isEmpty();
+        assertThat(index.search("--", null)).isEmpty();
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        BookSearchIndex index = indexOf(
+                book(1, "Dune", "Frank Herbert", null, null, null),
+                book(2, "Children of Dune", "Frank Herbert", null, null, null));
+
+        index.onCatalogEvent(BookCatalogEvent.updated(book(1, "Dune Messiah", "Frank Herbert", null, null, null)));
+        index.onCatalogEvent(BookCatalogEvent.deleted(2L));
+        index.onCatalogEvent(BookCatalogEvent.created(book(3, "Arrakis", "Someone Else", null, null, null)));
+
+        assertThat(index.search("messiah", null)).containsExactly(1L);
+        assertThat(index.search("children", null)).isEmpty();
+        assertThat(index.search("herbert", null)).containsExactly(1L);
+        assertThat(index.search("arrakis", null)).containsExactly(3L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsChangesMadeWhileTheCatalogIsRead() {
+        BookSearchIndex index = indexOf(book(1, "Dune", "Frank Herbert", null, null, null));
+
+        index.beginRebuild();
+        index.onCatalogEvent(BookCatalogEvent.created(book(2, "Hyperion", "Dan Simmons", null, null, null)));
+        index.onCatalogEvent(BookCatalogEvent.deleted(1L));
+        // The snapshot was read before both changes
+        index.completeRebuild(List.of(book(1, "Dune", "Frank Herbert", null, null, null)));
+
+        assertThat(index.search("hyperion", null)).containsExactly(2L);
+        assertThat(index.search("dune", null)).isEmpty();
+    }
+}
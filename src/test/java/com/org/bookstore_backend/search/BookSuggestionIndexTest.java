@@ -0,0 +1,136 @@
+package com.org.bookstore_backend.search;
+
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookSuggestionIndexTest {
+
+    private static BookDTO book(long id, String title, String... authors) {
+        return BookDTO.builder()
+                .id(id)
+                .title(title)
+                .authorNames(Set.of(authors))
+                .build();
+    }
+
+    private static BookSuggestionIndex indexOf(List<BookDTO> books) {
+        BookSuggestionIndex index = new BookSuggestionIndex(new SimpleMeterRegistry());
+        index.beginRebuild();
+        index.completeRebuild(books);
+        return index;
+    }
+
+    private static List<BookDTO> tolkienAndPratchett() {
+        return List.of(
+                book(1, "The Hobbit", "J.R.R. Tolkien"),
+                book(2, "The Two Towers", "J.R.R. Tolkien"),
+                book(3, "The Return of the King", "J.R.R. Tolkien"),
+                book(4, "Mort", "Terry Pratchett"),
+                book(5, "Guards! Guards!", "Terry Pratchett"));
+    }
+
+    @Test
+    void ranksByTheNumberOfBooksThenAlphabetically() {
+        BookSuggestionIndex index = indexOf(tolkienAndPratchett());
+
+        assertThat(index.suggest("t", 10)).containsExactly(
+                "J.R.R. Tolkien", "Terry Pratchett", "The Hobbit", "The Return of the King", "The Two Towers");
+        assertThat(index.suggest("t", 2)).containsExactly("J.R.R. Tolkien", "Terry Pratchett");
+    }
+
+    @Test
+    void matchesTheStartOfAnyWord() {
+        BookSuggestionIndex index = indexOf(tolkienAndPratchett());
+
+        assertThat(index.suggest("hobb", 10)).containsExactly("The Hobbit");
+        assertThat(index.suggest("kin", 10)).containsExactly("The Return of the King");
+        assertThat(index.suggest("guards g", 10)).containsExactly("Guards! Guards!");
+        assertThat(index.suggest("J.R.R. Tol", 10)).containsExactly("J.R.R. Tolkien");
+    }
+
+    @Test
+    void returnsNothingForUnknownOrEmptyPrefixes() {
+        BookSuggestionIndex index = indexOf(tolkienAndPratchett());
+
+        assertThat(index.suggest("xyz", 10)).isEmpty();
+        assertThat(index.suggest("hobbits", 10)).isEmpty();
+        assertThat(index.suggest(" ", 10)).isEmpty();
+        assertThat(index.suggest("the", 0)).isEmpty();
+    }
+
+    @Test
+    void reranksWhenBooksGoAway() {
+        BookSuggestionIndex index = indexOf(tolkienAndPratchett());
+
+        index.onCatalogEvent(BookCatalogEvent.deleted(2L));
+        // Two books each: the tie is broken alphabetically
+        assertThat(index.suggest("t", 2)).containsExactly("J.R.R. Tolkien", "Terry Pratchett");
+
+        index.onCatalogEvent(BookCatalogEvent.deleted(3L));
+        assertThat(index.suggest("t", 10)).containsExactly("Terry Pratchett", "J.R.R. Tolkien", "The Hobbit");
+
+        index.onCatalogEvent(BookCatalogEvent.deleted(1L));
+        assertThat(index.suggest("t", 10)).containsExactly("Terry Pratchett");
+        assertThat(index.suggest("tolk", 10)).isEmpty();
+    }
+
+    @Test
+    void splitsAndPrunesSharedEdges() {
+        BookSuggestionIndex index = indexOf(List.of(
+                book(1, "Harry Potter", "J.K. Rowling"),
+                book(2, "Harp Music", "Ann Lyre")));
+
+        assertThat(index.suggest("har", 10)).containsExactly("Harp Music", "Harry Potter");
+        assertThat(index.suggest("harr", 10)).containsExactly("Harry Potter");
+
+        index.onCatalogEvent(BookCatalogEvent.deleted(2L));
+
+        assertThat(index.suggest("har", 10)).containsExactly("Harry Potter");
+        assertThat(index.suggest("harp", 10)).isEmpty();
+        assertThat(index.suggest("harry p", 10)).containsExactly("Harry Potter");
+    }
+
+    @Test
+    void fillsTheTopListFromTheSubtreeWhenAnEntryLeavesIt() {
+        List<BookDTO> books = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            books.add(book(i, String.format("Book %02d", i)));
+        }
+        BookSuggestionIndex index = indexOf(books);
+        assertThat(index.suggest("book", 10)).containsExactly(
+                "Book 01", "Book 02", "Book 03", "Book 04", "Book 05",
+                "Book 06", "Book 07", "Book 08", "Book 09", "Book 10");
+
+        index.onCatalogEvent(BookCatalogEvent.deleted(3L));
+
+        assertThat(index.suggest("book", 10)).containsExactly(
+                "Book 01", "Book 02", "Book 04", "Book 05", "Book 06",
+                "Book 07", "Book 08", "Book 09", "Book 10", "Book 11");
+    }
+
+    @Test
+    void followsRenames() {
+        BookSuggestionIndex index = indexOf(List.of(book(1, "Dune", "Frank Herbert")));
+
+        index.onCatalogEvent(BookCatalogEvent.updated(book(1, "Dune Messiah", "Frank Herbert")));
+
+        assertThat(index.suggest("dune", 10)).containsExactly("Dune Messiah");
+        assertThat(index.suggest("mess", 10)).containsExactly("Dune Messiah");
+        assertThat(index.suggest("frank", 10)).containsExactly("Frank Herbert");
+    }
+
+    @Test
+    void ignoresCaseAndDiacritics() {
+        BookSuggestionIndex index = indexOf(List.of(book(1, "Jane Eyre", "Charlotte Brontë")));
+
+        assertThat(index.suggest("BRONT", 10)).containsExactly("Charlotte Brontë");
+    }
+}
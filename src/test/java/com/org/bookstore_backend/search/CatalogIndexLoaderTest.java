@@ -0,0 +1,123 @@
+package com.org.bookstore_backend.search;
+
+import com.org.bookstore_backend.cache.BookCacheInvalidationBus;
+import com.org.bookstore_backend.dto.BookDTO;
+import com.org.bookstore_backend.events.BookCacheInvalidationEvent;
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import com.org.bookstore_backend.repo.BookRepo;
+import com.org.bookstore_backend.repo.BookView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Changes committed on another node, which reach this node only as a cache invalidation.
+ */
+class CatalogIndexLoaderTest {
+
+    private static final String THIS_NODE = "this-node";
+
+    // The books table as the other node committed it
+    private final Map<Long, BookView> rows = new HashMap<>();
+    private final List<Collection<Long>> reads = new ArrayList<>();
+    private BookSearchIndex searchIndex;
+    private BookFacetIndex facetIndex;
+    private CatalogIndexLoader loader;
+
+    private static BookView row(long id, String title, String genre, double price) {
+        return new BookView(id, title, null, "isbn-" + id, 1990, null, genre, price, 3, true, "Corgi",
+                "Terry Pratchett");
+    }
+
+    @BeforeEach
+    void setUp() {
+        rows.put(1L, row(1, "Mort", "Fantasy", 9.5));
+        rows.put(2L, row(2, "Eric", "Fantasy", 8.0));
+        BookRepo bookRepo = (BookRepo) Proxy.newProxyInstance(BookRepo.class.getClassLoader(),
+                new Class<?>[]{BookRepo.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findAllViews" -> new ArrayList<>(rows.values());
+                    case "findViewsByIdIn" -> {
+                        @SuppressWarnings("unchecked")
+                        Collection<Long> ids = (Collection<Long>) args[0];
+                        reads.add(ids);
+                        yield ids.stream().filter(rows::containsKey).map(rows::get).toList();
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        BookCacheInvalidationBus bus = new BookCacheInvalidationBus() {
+            @Override
+            public void broadcast(Long bookId) {
+            }
+
+            @Override
+            public boolean isLocal(BookCacheInvalidationEvent event) {
+                return THIS_NODE.equals(event.getOriginNode());
+            }
+        };
+        searchIndex = new BookSearchIndex();
+        facetIndex = new BookFacetIndex(10);
+        loader = new CatalogIndexLoader(bookRepo, List.of(searchIndex, facetIndex), bus);
+        loader.rebuildAll();
+    }
+
+    private Map<String, Integer> genreCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        facetIndex.counts(null, 10).get("genre").forEach(count -> counts.put(count.getValue(), count.getCount()));
+        return counts;
+    }
+
+    @Test
+    void appliesABookChangedOnAnotherNodeToEveryIndex() {
+        rows.put(1L, row(1, "Mort", "Humour", 9.5));
+        rows.put(3L, row(3, "Sourcery", "Fantasy", 9.0));
+
+        loader.onInvalidation(new BookCacheInvalidationEvent(1L, "other-node"));
+        loader.onInvalidation(new BookCacheInvalidationEvent(3L, "other-node"));
+
+        assertThat(searchIndex.search("sourcery", null)).containsExactly(3L);
+        assertThat(genreCounts()).isEqualTo(Map.of("Fantasy", 2, "Humour", 1));
+    }
+
+    @Test
+    void removesABookDeletedOnAnotherNode() {
+        rows.remove(2L);
+
+        loader.onInvalidation(new BookCacheInvalidationEvent(2L, "other-node"));
+
+        assertThat(searchIndex.search("eric", null)).isEmpty();
+        assertThat(genreCounts()).isEqualTo(Map.of("Fantasy", 1));
+    }
+
+    @Test
+    void leavesChangesOfThisNodeToTheirCatalogEvent() {
+        BookDTO changed = row(1, "Mort", "Humour", 9.5).toDTO();
+        searchIndex.onCatalogEvent(BookCatalogEvent.updated(changed));
+
+        loader.onInvalidation(new BookCacheInvalidationEvent(1L, THIS_NODE));
+        loader.onInvalidation(new BookCacheInvalidationEvent(null, "other-node"));
+
+        assertThat(reads).isEmpty();
+        assertThat(searchIndex.search("mort", null)).containsExactly(1L);
+    }
+
+    @Test
+    void aChangeFromAnotherNodeDuringARebuildIsNotLost() {
+        searchIndex.beginRebuild();
+        rows.put(3L, row(3, "Sourcery", "Fantasy", 9.0));
+        loader.onInvalidation(new BookCacheInvalidationEvent(3L, "other-node"));
+        // The rebuild read the catalog before the other node committed
+        searchIndex.completeRebuild(List.of(row(1, "Mort", "Fantasy", 9.5).toDTO()));
+
+        assertThat(searchIndex.search("sourcery", null)).containsExactly(3L);
+        assertThat(Set.copyOf(reads.get(0))).containsExactly(3L);
+    }
+}
@@ -0,0 +1,207 @@
+package com.org.bookstore_backend.services.impl;
+
+import com.org.bookstore_backend.events.BookCatalogEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookCsvImporterTest {
+
+    private static final String HEADER = String.join(",", BookCsvImporter.HEADER);
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private final List<BookCatalogEvent> events = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table publishers (id bigint generated by default as identity primary key, "
+                + "publisher_name varchar(255) not null unique)");
+        jdbcTemplate.execute("create table authors (id bigint generated by default as identity primary key, "
+                + "author_name varchar(255) not null)");
+        jdbcTemplate.execute("create table books (id bigint generated by default as identity primary key, "
+                + "book_title varchar(255) not null, description varchar(1000), isbn varchar(255) not null unique, "
+                + "publication_year int, image_url varchar(255), genre varchar(255), price double precision, "
+                + "quantity int, is_available boolean, publisher_id bigint not null references publishers (id))");
+        jdbcTemplate.execute("create table book_authors (book_id bigint not null references books (id), "
+                + "author_id bigint not null references authors (id), primary key (book_id, author_id))");
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    // Small chunks and two writers, so a handful of rows already spreads over several concurrent transactions
+    private BookCsvImporter importer(int chunkSize) {
+        return new BookCsvImporter(jdbcTemplate, new DataSourceTransactionManager(database), events::add, chunkSize, 2);
+    }
+
+    private static ByteArrayInputStream csv(String... rows) {
+        String content = HEADER + "\n" + String.join("\n", rows) + "\n";
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String row(String title, String isbn, double price, String publisher, String authors) {
+        return String.join(",", title, "About " + title, isbn, "1990", "Fantasy", String.valueOf(price), "3", "true",
+                publisher, "\"" + authors + "\"");
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Integer.class);
+    }
+
+    private List<String> authorsOf(String isbn) {
+        return jdbcTemplate.queryForList("select a.author_name from authors a join book_authors ba on ba.author_id = a.id "
+                + "join books b on b.id = ba.book_id where b.isbn = ? order by a.author_name", String.class, isbn);
+    }
+
+    private double priceOf(String isbn) {
+        return jdbcTemplate.queryForObject("select price from books where isbn = ?", Double.class, isbn);
+    }
+
+    @Test
+    void createsBooksAcrossChunksWithSharedPublishersAndAuthors() throws IOException {
+        Map<String, Object> result = importer(2).importCsv(csv(
+                row("Mort", "isbn-1", 9.5, "Corgi", "Terry Pratchett"),
+                row("Good Omens", "isbn-2", 12.0, "Gollancz", "Terry Pratchett, Neil Gaiman"),
+                row("Stardust", "isbn-3", 8.0, "Gollancz", "Neil Gaiman"),
+                row("Sourcery", "isbn-4", 9.0, "Corgi", "Terry Pratchett"),
+                row("Coraline", "isbn-5", 7.0, "Bloomsbury", "Neil Gaiman")));
+
+        assertThat(result).isEqualTo(Map.of("created", 5, "updated", 0, "failed", 0));
+        assertThat(count("books")).isEqualTo(5);
+        assertThat(count("publishers")).isEqualTo(3);
+        assertThat(count("authors")).isEqualTo(2);
+        assertThat(authorsOf("isbn-2")).containsExactly("Neil Gaiman", "Terry Pratchett");
+        assertThat(events).hasSize(5).allSatisfy(event -> {
+            assertThat(event.getType()).isEqualTo(BookCatalogEvent.Type.CREATED);
+            assertThat(event.getBookId()).isNotNull();
+        });
+    }
+
+    @Test
+    void updatesTheBookWithAKnownIsbnAndRelinksItsAuthors() throws IOException {
+        importer(2).importCsv(csv(row("Mort", "isbn-1", 9.5, "Corgi", "Terry Pratchett")));
+        events.clear();
+
+        Map<String, Object> result = importer(2).importCsv(csv(
+                row("Mort", "isbn-1", 11.0, "Corgi", "Terry Pratchett, Neil Gaiman")));
+
+        assertThat(result).isEqualTo(Map.of("created", 0, "updated", 1, "failed", 0));
+        assertThat(count("books")).isEqualTo(1);
+        assertThat(priceOf("isbn-1")).isEqualTo(11.0);
+        assertThat(authorsOf("isbn-1")).containsExactly("Neil Gaiman", "Terry Pratchett");
+        assertThat(events).singleElement()
+                .satisfies(event -> assertThat(event.getType()).isEqualTo(BookCatalogEvent.Type.UPDATED));
+    }
+
+    @Test
+    void aRepeatedIsbnEndsUpAsOneBookWithTheLastRow() throws IOException {
+        // The same ISBN inside one chunk, then again in a later chunk written by the other writer
+        Map<String, Object> result = importer(2).importCsv(csv(
+                row("Mort", "isbn-1", 9.0, "Corgi", "Terry Pratchett"),
+                row("Mort", "isbn-1", 10.0, "Corgi", "Terry Pratchett"),
+                row("Mort", "isbn-1", 11.0, "Corgi", "Terry Pratchett")));
+
+        assertThat(result).isEqualTo(Map.of("created", 1, "updated", 2, "failed", 0));
+        assertThat(count("books")).isEqualTo(1);
+        assertThat(priceOf("isbn-1")).isEqualTo(11.0);
+        assertThat(authorsOf("isbn-1")).containsExactly("Terry Pratchett");
+    }
+
+    @Test
+    void countsAnUnparseableRowAsFailedAndImportsTheRestOfItsChunk() throws IOException {
+        String badYear = row("Sourcery", "isbn-2", 9.0, "Corgi", "Terry Pratchett").replace(",1990,", ",nineteen,");
+
+        Map<String, Object> result = importer(3).importCsv(csv(
+                row("Mort", "isbn-1", 9.5, "Corgi", "Terry Pratchett"),
+                badYear,
+                row("Eric", "isbn-3", 8.0, "Corgi", "Terry Pratchett")));
+
+        assertThat(result).isEqualTo(Map.of("created", 2, "updated", 0, "failed", 1));
+        assertThat(jdbcTemplate.queryForList("select isbn from books order by isbn", String.class))
+                .containsExactly("isbn-1", "isbn-3");
+    }
+
+    @Test
+    void retriesAFailedChunkRowByRowSoOnlyTheBadRowFails() throws IOException {
+        Map<Integer, BookCsvImporter.ChunkResult> committed = new ConcurrentHashMap<>();
+        BookCsvImporter.ImportProgress progress = new BookCsvImporter.ImportProgress() {
+            @Override
+            public void chunkCommitted(int chunkIndex, BookCsvImporter.ChunkResult result) {
+                committed.put(chunkIndex, result);
+            }
+        };
+
+        // Too long for book_title: the batch insert of the whole chunk fails and is rolled back
+        Map<String, Object> result = importer(3).importCsv(csv(
+                row("Mort", "isbn-1", 9.5, "Corgi", "Terry Pratchett"),
+                row("M".repeat(300), "isbn-2", 9.0, "Corgi", "Terry Pratchett"),
+                row("Eric", "isbn-3", 8.0, "Corgi", "Terry Pratchett")), progress);
+
+        assertThat(result).isEqualTo(Map.of("created", 2, "updated", 0, "failed", 1));
+        assertThat(jdbcTemplate.queryForList("select isbn from books order by isbn", String.class))
+                .containsExactly("isbn-1", "isbn-3");
+        // The retried rows get fresh ids; the ones generated by the rolled-back batch are not used for links
+        assertThat(authorsOf("isbn-1")).containsExactly("Terry Pratchett");
+        assertThat(authorsOf("isbn-3")).containsExactly("Terry Pratchett");
+        assertThat(events).hasSize(2);
+
+        BookCsvImporter.ChunkResult chunk = committed.get(0);
+        assertThat(chunk.records()).isEqualTo(3);
+        assertThat(chunk.created()).isEqualTo(2);
+        assertThat(chunk.errors()).singleElement()
+                .satisfies(error -> assertThat(error.line()).isEqualTo(2));
+    }
+
+    @Test
+    void skipsChunksAlreadyCommittedAndReportsTheOthers() throws IOException {
+        Map<Integer, BookCsvImporter.ChunkResult> committed = new ConcurrentHashMap<>();
+        BookCsvImporter.ImportProgress progress = new BookCsvImporter.ImportProgress() {
+            @Override
+            public boolean isChunkCommitted(int chunkIndex) {
+                return chunkIndex == 0;
+            }
+
+            @Override
+            public void chunkCommitted(int chunkIndex, BookCsvImporter.ChunkResult result) {
+                committed.put(chunkIndex, result);
+            }
+        };
+
+        Map<String, Object> result = importer(2).importCsv(csv(
+                row("Mort", "isbn-1", 9.5, "Corgi", "Terry Pratchett"),
+                row("Eric", "isbn-2", 8.0, "Corgi", "Terry Pratchett"),
+                row("Stardust", "isbn-3", 8.0, "Gollancz", "Neil Gaiman"),
+                row("Coraline", "isbn-4", 7.0, "Bloomsbury", "Neil Gaiman"),
+                row("Sourcery", "isbn-5", 9.0, "Corgi", "Terry Pratchett")), progress);
+
+        assertThat(result).isEqualTo(Map.of("created", 3, "updated", 0, "failed", 0));
+        assertThat(jdbcTemplate.queryForList("select isbn from books order by isbn", String.class))
+                .containsExactly("isbn-3", "isbn-4", "isbn-5");
+        assertThat(committed).containsOnlyKeys(1, 2);
+        assertThat(committed.get(1).records()).isEqualTo(2);
+        assertThat(committed.get(2).records()).isEqualTo(1);
+    }
+}
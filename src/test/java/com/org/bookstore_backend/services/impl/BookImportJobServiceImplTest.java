@@ -0,0 +1,161 @@
+package com.org.bookstore_backend.services.impl;
+
+import com.org.bookstore_backend.model.ImportJob;
+import com.org.bookstore_backend.model.ImportJobChunk;
+import com.org.bookstore_backend.model.ImportJobStatus;
+import com.org.bookstore_backend.repo.ImportJobChunkRepo;
+import com.org.bookstore_backend.repo.ImportJobErrorRepo;
+import com.org.bookstore_backend.repo.ImportJobRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Resuming and failing interrupted import jobs, against the real schema on H2.
+ */
+@DataJpaTest
+@ActiveProfiles("simple")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // chunks commit on the importer's own threads
+class BookImportJobServiceImplTest {
+
+    private static final int CHUNK_SIZE = 2;
+
+    @TempDir
+    Path spoolDirectory;
+
+    @Autowired
+    private ImportJobRepo importJobRepo;
+
+    @Autowired
+    private ImportJobChunkRepo importJobChunkRepo;
+
+    @Autowired
+    private ImportJobErrorRepo importJobErrorRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private BookImportJobServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        BookCsvImporter importer = new BookCsvImporter(jdbcTemplate, transactionManager, event -> {
+        }, CHUNK_SIZE, 2);
+        service = new BookImportJobServiceImpl(importer, importJobRepo, importJobChunkRepo, importJobErrorRepo,
+                jdbcTemplate, spoolDirectory.toString(), 1, Duration.ofSeconds(30));
+        service.checkSpoolDirectory();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        for (String table : List.of("import_job_errors", "import_job_chunks", "import_jobs", "book_authors", "books",
+                "authors", "publishers")) {
+            jdbcTemplate.update("delete from " + table);
+        }
+    }
+
+    private Path spool(int books) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.join(",", BookCsvImporter.HEADER));
+        for (int i = 1; i <= books; i++) {
+            lines.add("Book " + i + ",About book " + i + ",isbn-" + i + ",1990,Fantasy,9.5,3,true,Corgi,Terry Pratchett");
+        }
+        Path file = spoolDirectory.resolve("job-" + System.nanoTime() + ".csv");
+        Files.write(file, lines);
+        return file;
+    }
+
+    private ImportJob interruptedJob(String spoolPath, LocalDateTime heartbeatAt) {
+        return importJobRepo.save(ImportJob.builder()
+                .status(ImportJobStatus.RUNNING)
+                .fileName("books.csv")
+                .spoolPath(spoolPath)
+                .submittedAt(heartbeatAt)
+                .heartbeatAt(heartbeatAt)
+                .build());
+    }
+
+    private ImportJob awaitFinished(Long jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            ImportJob job = importJobRepo.findById(jobId).orElseThrow();
+            if (job.getStatus() == ImportJobStatus.COMPLETED || job.getStatus() == ImportJobStatus.FAILED) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Import job " + jobId + " did not finish");
+    }
+
+    @Test
+    void resumesAJobAfterItsCommittedChunks() throws Exception {
+        Path spooled = spool(6);
+        ImportJob job = interruptedJob(spooled.toString(), LocalDateTime.now().minusMinutes(1));
+        // Chunk 0 (books 1 and 2) committed before the restart; its books are not in the table, so re-running it
+        // would show up as two extra books
+        job.setRowsProcessed(CHUNK_SIZE);
+        job.setCreatedCount(CHUNK_SIZE);
+        job.setChunksCommitted(1);
+        importJobRepo.save(job);
+        importJobChunkRepo.save(ImportJobChunk.builder().jobId(job.getId()).chunkIndex(0).build());
+
+        service.resumeInterruptedJobs();
+        ImportJob finished = awaitFinished(job.getId());
+
+        assertThat(finished.getStatus()).isEqualTo(ImportJobStatus.COMPLETED);
+        assertThat(jdbcTemplate.queryForList("select isbn from books order by isbn", String.class))
+                .containsExactly("isbn-3", "isbn-4", "isbn-5", "isbn-6");
+        assertThat(finished.getRowsProcessed()).isEqualTo(6);
+        assertThat(finished.getCreatedCount()).isEqualTo(6);
+        assertThat(finished.getChunksCommitted()).isEqualTo(3);
+        assertThat(importJobChunkRepo.findChunkIndexesByJobId(job.getId())).containsExactlyInAnyOrder(0, 1, 2);
+        assertThat(spooled).doesNotExist();
+    }
+
+    @Test
+    void failsAJobWhoseSpoolFileIsGoneWithItsNode() {
+        ImportJob abandoned = interruptedJob(spoolDirectory.resolve("lost.csv").toString(),
+                LocalDateTime.now().minusHours(1));
+
+        service.resumeInterruptedJobs();
+
+        ImportJob job = importJobRepo.findById(abandoned.getId()).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(ImportJobStatus.FAILED);
+        assertThat(job.getFinishedAt()).isNotNull();
+        assertThat(job.getMessage()).contains("lost.csv");
+    }
+
+    @Test
+    void leavesAJobToTheLiveNodeHoldingItsSpoolFile() {
+        // Spooled on another node that still renews the heartbeat
+        ImportJob elsewhere = interruptedJob("/other-node/imports/job.csv", LocalDateTime.now());
+
+        service.resumeInterruptedJobs();
+
+        ImportJob job = importJobRepo.findById(elsewhere.getId()).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(ImportJobStatus.RUNNING);
+        assertThat(job.getMessage()).isNull();
+    }
+}